@@ -1,5 +1,7 @@
 package org.cp.condition;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -7,7 +9,15 @@ public class AndCondition extends Condition {
 	private final List<Condition> conditions;
 
 	public AndCondition(List<Condition> conditions) {
-		this.conditions = conditions;
+		this.conditions = Collections.unmodifiableList(new ArrayList<Condition>(conditions));
+	}
+	
+	/**
+	 * Returns the conditions combined by this condition, in the order
+	 * they are evaluated
+	 */
+	public List<Condition> getConditions() {
+		return conditions;
 	}
 
 	@Override
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.cp.ordering.IdentifierOrder;
+import org.cp.pojoconditions.ParserEngine;
 import org.cp.pojoconditions.PojoParser;
 
 import com.github.fge.grappa.Grappa;
@@ -27,7 +28,7 @@ public class CompoundConditionParser extends PojoParser<Condition> {
 	}
 	
 	public Rule condition() {
-		return firstOf(sequence(simpleCondition(), EOI), sequence(andCondition(), EOI), sequence(orCondition(), EOI));
+		return firstOf(sequence(comparison(), EOI), sequence(andCondition(), EOI), sequence(orCondition(), EOI));
 	}
 	
 	public Rule orCondition() {
@@ -35,12 +36,12 @@ public class CompoundConditionParser extends PojoParser<Condition> {
 		
 		return sequence(
 				  // starts with Simple or And Condition, which we pop off the stack and add to our list
-				  firstOf(andCondition(), simpleCondition()), conditions.get().add(pop()),
+				  firstOf(andCondition(), comparison()), conditions.get().add(pop()),
 				  
 				  // followed by one or more Simple or And Conditions separated by OR, each
 				  // of which we pop off the stack and add to our list
 				  oneOrMore(
-				    sequence(spacing(), or(), spacing(), firstOf(andCondition(), simpleCondition())), conditions.get().add(pop())
+				    sequence(spacing(), or(), spacing(), firstOf(andCondition(), comparison())), conditions.get().add(pop())
 				    ),
 				    
 				  // and finally we push the collected list of conditions back onto the stack
@@ -60,12 +61,12 @@ public class CompoundConditionParser extends PojoParser<Condition> {
 		return sequence(
 				  // AndCondition starts with a simple condition, which we pop off the stack
 				  // and add to our list
-				  simpleCondition(), conditions.get().add(pop()),
+				  comparison(), conditions.get().add(pop()),
 				  
 				  // followed by one or more simple conditions, separated by AND, each of which
 				  // we pop off the stack and add to our list of conditions
 				  oneOrMore(
-					  sequence(spacing(), and(), spacing(), simpleCondition(), conditions.get().add(pop()))
+					  sequence(spacing(), and(), spacing(), comparison(), conditions.get().add(pop()))
 				  ), 
 				  
 				  // and finally we push the collected list of conditions back onto the stack
@@ -74,6 +75,51 @@ public class CompoundConditionParser extends PojoParser<Condition> {
 				 );
 	}
 	
+	/**
+	 * Either a set membership test or a simple comparison
+	 */
+	public Rule comparison() {
+		return firstOf(inCondition(), simpleCondition());
+	}
+	
+	/**
+	 * Tests whether an identifier is, or with NOT is not, one of a list of values.
+	 * This takes the form of an identifier, whitespace, an optional NOT and
+	 * whitespace, IN, optional whitespace, and then one or more values separated
+	 * by commas and enclosed in parentheses, with optional whitespace around
+	 * each value.
+	 * 
+	 * For example, the following are valid:
+	 * a in (1, 2, 3)
+	 * a not in ('x','y')
+	 */
+	public Rule inCondition() {
+		StringVar identifier = new StringVar();
+		Var<Boolean> isMethod = new Var<Boolean>();
+		Var<Boolean> negated = new Var<Boolean>();
+		Var<List<String>> values = new Var<List<String>>();
+		
+		return sequence(
+				firstOf(sequence(matchMethods, noParamMethod(), identifier.set(match()), isMethod.set(true)), sequence(identifier(), identifier.set(match()), isMethod.set(false))),
+				spacing(), negated.set(false), values.set(new ArrayList<String>()),
+				optional(sequence(not(), spacing(), negated.set(true))),
+				in(), optional(spacing()), ch('('), optional(spacing()),
+				value(), values.get().add(match()),
+				zeroOrMore(sequence(optional(spacing()), ch(','), optional(spacing()), value(), values.get().add(match()))),
+				optional(spacing()), ch(')'),
+				push(newInCondition(identifier.get(), isMethod.get(), negated.get(), values.get())));
+	}
+	
+	/**
+	 * Builds the condition for inCondition, outside of the action expression so
+	 * that Grappa doesn't need to rewrite a conditional.  Package private since
+	 * Grappa's generated action classes call it.
+	 */
+	static Condition newInCondition(String identifier, boolean isMethod, boolean negated, List<String> values) {
+		InCondition in = new InCondition(identifier, isMethod, values);
+		return negated ? new NotInCondition(in) : in;
+	}
+	
 	/**
 	 * Represents a simple comparison between an identifier and a value.  This takes the
 	 * form of a valid identifier, optional whitespace, a comparison operator, optional whitespace,
@@ -111,6 +157,20 @@ public class CompoundConditionParser extends PojoParser<Condition> {
     	return ignoreCase("OR");
     }
     
+    /**
+     * Matches the IN of a set membership test.  The check is not case sensitive.
+     */
+    Rule in() {
+    	return ignoreCase("IN");
+    }
+    
+    /**
+     * Matches the NOT of NOT IN.  The check is not case sensitive.
+     */
+    Rule not() {
+    	return ignoreCase("NOT");
+    }
+    
     /**
      * Matches what we expect in a condition to represent AND
      * for two conditions.  The check is not case sensitive.
@@ -129,10 +189,23 @@ public class CompoundConditionParser extends PojoParser<Condition> {
     
     /**
      * Parses the given condition string and returns a condition object
-     * that reflects the string
+     * that reflects the string, using the default parser engine
      * @throws IllegalArgumentException if the condition fails to parse
      */
     public static Condition parseCondition(String condition, boolean matchMethods) {
+    	return parseCondition(condition, matchMethods, ParserEngine.getDefault());
+    }
+    
+    /**
+     * Parses the given condition string and returns a condition object
+     * that reflects the string, using the given parser engine
+     * @throws IllegalArgumentException if the condition fails to parse
+     */
+    public static Condition parseCondition(String condition, boolean matchMethods, ParserEngine engine) {
+    	if(engine == ParserEngine.RECURSIVE_DESCENT) {
+    		return RecursiveDescentConditionParser.parseCondition(condition, matchMethods);
+    	}
+    	
     	CompoundConditionParser parser = Grappa.createParser(CompoundConditionParser.class, matchMethods);
         ListeningParseRunner<Condition> runner = new ListeningParseRunner<>(parser.condition());
         ParsingResult<Condition> result = runner.run(condition);
@@ -0,0 +1,389 @@
+package org.cp.condition;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Simplifies parsed conditions so that they read fewer identifiers and make
+ * fewer comparisons:
+ * 
+ * Duplicate comparisons in an AND or OR are dropped.
+ * In an AND, the lower bounds (> and >=) of an identifier are reduced to the
+ * tightest, as are its upper bounds (< and <=), and the two are merged into
+ * a RangeCondition.  An equality makes the bounds it satisfies redundant, and
+ * bounds or equalities that can't all hold make the whole AND FALSE.
+ * In an OR, bounds are reduced to the loosest, and equalities of an identifier
+ * are folded into an InCondition, which tests them with one hash lookup.  FALSE
+ * conditions are dropped, and an OR of nothing but FALSE conditions is FALSE.
+ * 
+ * Conditions are optimized without knowing the types of the identifiers, so
+ * that the result is valid for whatever objects they're evaluated against.
+ * Bounds are only compared when their values order the same way as every
+ * type that can be compared with them, which for numbers means as text as
+ * well as numbers, such as 3 and 5, but not 9 and 10.  The optimized condition
+ * matches exactly the objects the original matches, among those that the
+ * original evaluates without an exception.  Comparisons that throw, such as
+ * those of nonexistent identifiers, or of values that can't be decoded as the
+ * type of their identifier, may throw for different objects, or not at all
+ * when they are part of a condition folded to FALSE.
+ */
+public final class ConditionOptimizer {
+	private ConditionOptimizer() {
+	}
+	
+	/**
+	 * Returns an equivalent condition that is as cheap or cheaper to evaluate,
+	 * which may be the condition itself
+	 */
+	public static Condition optimize(Condition condition) {
+		if(condition instanceof RangeCondition || condition instanceof InCondition) {
+			return condition;
+		} else if(condition instanceof AndCondition) {
+			return optimizeAnd(((AndCondition)condition).getConditions());
+		} else if(condition instanceof OrCondition) {
+			return optimizeOr(((OrCondition)condition).getConditions());
+		}
+		return condition;
+	}
+	
+	private static Condition optimizeAnd(List<Condition> conditions) {
+		List<Condition> optimized = new ArrayList<Condition>(conditions.size());
+		for(Condition condition : conditions) {
+			condition = optimize(condition);
+			if(condition == ConstantCondition.FALSE) {
+				return ConstantCondition.FALSE;
+			} else if(condition != ConstantCondition.TRUE) {
+				optimized.add(condition);
+			}
+		}
+		optimized = removeDuplicates(optimized);
+		
+		Map<SimpleCondition, Condition> replacements = new IdentityHashMap<SimpleCondition, Condition>();
+		for(List<SimpleCondition> comparisons : groupByIdentifier(optimized).values()) {
+			if(comparisons.size() < 2) {
+				continue;
+			}
+			
+			Condition merged = mergeAnd(comparisons);
+			if(merged == ConstantCondition.FALSE) {
+				return ConstantCondition.FALSE;
+			} else if(merged != null) {
+				replace(comparisons, merged, replacements);
+			}
+		}
+		
+		return combine(applyReplacements(optimized, replacements), false);
+	}
+	
+	private static Condition optimizeOr(List<Condition> conditions) {
+		List<Condition> optimized = new ArrayList<Condition>(conditions.size());
+		for(Condition condition : conditions) {
+			condition = optimize(condition);
+			if(condition == ConstantCondition.TRUE) {
+				return ConstantCondition.TRUE;
+			} else if(condition != ConstantCondition.FALSE) {
+				optimized.add(condition);
+			}
+		}
+		optimized = removeDuplicates(optimized);
+		
+		Map<SimpleCondition, Condition> replacements = new IdentityHashMap<SimpleCondition, Condition>();
+		for(List<SimpleCondition> comparisons : groupByIdentifier(optimized).values()) {
+			List<SimpleCondition> lowerBounds = new ArrayList<SimpleCondition>();
+			List<SimpleCondition> upperBounds = new ArrayList<SimpleCondition>();
+			List<SimpleCondition> equalities = new ArrayList<SimpleCondition>();
+			for(SimpleCondition comparison : comparisons) {
+				if(isLowerBound(comparison)) {
+					lowerBounds.add(comparison);
+				} else if(isUpperBound(comparison)) {
+					upperBounds.add(comparison);
+				} else {
+					equalities.add(comparison);
+				}
+			}
+			
+			if(lowerBounds.size() > 1) {
+				SimpleCondition loosest = loosestBound(lowerBounds);
+				if(loosest != null) {
+					replace(lowerBounds, loosest, replacements);
+				}
+			}
+			if(upperBounds.size() > 1) {
+				SimpleCondition loosest = loosestBound(upperBounds);
+				if(loosest != null) {
+					replace(upperBounds, loosest, replacements);
+				}
+			}
+			if(equalities.size() > 1) {
+				List<String> values = new ArrayList<String>(equalities.size());
+				for(SimpleCondition equality : equalities) {
+					values.add(equality.getValue());
+				}
+				SimpleCondition first = equalities.get(0);
+				String identifier = first.isMethod() ? first.getIdentifier() + "()" : first.getIdentifier();
+				replace(equalities, new InCondition(identifier, first.isMethod(), values), replacements);
+			}
+		}
+		
+		return combine(applyReplacements(optimized, replacements), true);
+	}
+	
+	/**
+	 * Merges the comparisons of one identifier in an AND, returning the merged
+	 * condition, FALSE if they contradict each other, or null if they can't
+	 * be merged
+	 */
+	private static Condition mergeAnd(List<SimpleCondition> comparisons) {
+		SimpleCondition lower = null;
+		SimpleCondition upper = null;
+		SimpleCondition equal = null;
+		
+		for(SimpleCondition comparison : comparisons) {
+			Operator operator = comparison.getComparisonOperator();
+			if(isLowerBound(comparison)) {
+				if(lower == null) {
+					lower = comparison;
+				} else {
+					Integer compared = compare(comparison, lower);
+					if(compared == null) {
+						return null;
+					} else if(compared > 0 || compared == 0 && operator == Operator.GREATER_THAN) {
+						lower = comparison;
+					}
+				}
+			} else if(isUpperBound(comparison)) {
+				if(upper == null) {
+					upper = comparison;
+				} else {
+					Integer compared = compare(comparison, upper);
+					if(compared == null) {
+						return null;
+					} else if(compared < 0 || compared == 0 && operator == Operator.LESS_THAN) {
+						upper = comparison;
+					}
+				}
+			} else if(equal == null) {
+				equal = comparison;
+			} else {
+				// duplicates have been removed, so the text differs, but booleans
+				// are decoded case insensitively and with anything else as false
+				if(compare(comparison, equal) == null
+						|| comparison.getLiteral().getBooleanValue() == equal.getLiteral().getBooleanValue()) {
+					return null;
+				}
+				return ConstantCondition.FALSE;
+			}
+		}
+		
+		if(equal != null) {
+			if(lower != null) {
+				Integer compared = compare(equal, lower);
+				if(compared == null) {
+					return null;
+				} else if(compared < 0 || compared == 0 && lower.getComparisonOperator() == Operator.GREATER_THAN) {
+					return ConstantCondition.FALSE;
+				}
+			}
+			if(upper != null) {
+				Integer compared = compare(equal, upper);
+				if(compared == null) {
+					return null;
+				} else if(compared > 0 || compared == 0 && upper.getComparisonOperator() == Operator.LESS_THAN) {
+					return ConstantCondition.FALSE;
+				}
+			}
+			return equal;
+		}
+		
+		if(lower != null && upper != null) {
+			// bounds that can't be compared still make a range, since it's just the AND of them
+			Integer compared = compare(lower, upper);
+			if(compared != null && (compared > 0 || compared == 0
+					&& (lower.getComparisonOperator() == Operator.GREATER_THAN || upper.getComparisonOperator() == Operator.LESS_THAN))) {
+				return ConstantCondition.FALSE;
+			}
+			return new RangeCondition(lower, upper);
+		}
+		
+		return lower != null ? lower : upper;
+	}
+	
+	/**
+	 * Returns the bound that every other bound implies, which for lower bounds
+	 * is the one with the least value, or null if they can't be compared
+	 */
+	private static SimpleCondition loosestBound(List<SimpleCondition> bounds) {
+		SimpleCondition loosest = bounds.get(0);
+		int direction = isLowerBound(loosest) ? 1 : -1;
+		
+		for(SimpleCondition bound : bounds.subList(1, bounds.size())) {
+			Integer compared = compare(bound, loosest);
+			if(compared == null) {
+				return null;
+			} else if(compared * direction < 0 || compared == 0 && isInclusive(bound)) {
+				loosest = bound;
+			}
+		}
+		return loosest;
+	}
+	
+	/**
+	 * Compares the values of two comparisons, returning the sign of the result
+	 * if their values order the same way as text and as every numeric type
+	 * they can be decoded as, or null if they don't or include NaN
+	 */
+	private static Integer compare(SimpleCondition a, SimpleCondition b) {
+		Literal first = a.getLiteral();
+		Literal second = b.getLiteral();
+		int text = Integer.signum(first.getText().compareTo(second.getText()));
+		
+		boolean firstIsNumber = isNumber(first);
+		boolean secondIsNumber = isNumber(second);
+		if(!firstIsNumber && !secondIsNumber) {
+			// only strings can be compared with either
+			return text;
+		} else if(firstIsNumber != secondIsNumber) {
+			return null;
+		}
+		
+		try {
+			if(sign(first.getDoubleValue(), second.getDoubleValue()) != text
+					|| sign(first.getFloatValue(), second.getFloatValue()) != text) {
+				return null;
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		
+		try {
+			if(Long.signum(Long.compare(first.getLongValue(), second.getLongValue())) != text) {
+				return null;
+			}
+		} catch (NumberFormatException e) {
+			// one isn't an integer, so they can only be compared as floats and doubles
+		}
+		
+		return text;
+	}
+	
+	/**
+	 * The sign of comparing a with b as the operators do, or 2 if either is NaN
+	 */
+	private static int sign(double a, double b) {
+		if(a < b) {
+			return -1;
+		} else if(a > b) {
+			return 1;
+		}
+		return a == b ? 0 : 2;
+	}
+	
+	private static boolean isNumber(Literal literal) {
+		try {
+			literal.getDoubleValue();
+			return true;
+		} catch (NumberFormatException e) {
+		}
+		
+		try {
+			literal.getLongValue();
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+	
+	private static boolean isLowerBound(SimpleCondition condition) {
+		Operator operator = condition.getComparisonOperator();
+		return operator == Operator.GREATER_THAN || operator == Operator.GREATER_THAN_OR_EQUAL;
+	}
+	
+	private static boolean isUpperBound(SimpleCondition condition) {
+		Operator operator = condition.getComparisonOperator();
+		return operator == Operator.LESS_THAN || operator == Operator.LESS_THAN_OR_EQUAL;
+	}
+	
+	private static boolean isInclusive(SimpleCondition condition) {
+		Operator operator = condition.getComparisonOperator();
+		return operator == Operator.GREATER_THAN_OR_EQUAL || operator == Operator.LESS_THAN_OR_EQUAL;
+	}
+	
+	/**
+	 * Groups the comparisons (<, <=, >, >= and =) of each identifier, in the order
+	 * they appear.  Fields and methods with the same name are different identifiers.
+	 */
+	private static Map<String, List<SimpleCondition>> groupByIdentifier(List<Condition> conditions) {
+		Map<String, List<SimpleCondition>> groups = new LinkedHashMap<String, List<SimpleCondition>>();
+		for(Condition condition : conditions) {
+			if(condition instanceof SimpleCondition && ((SimpleCondition)condition).getComparisonOperator().isComparison()) {
+				SimpleCondition comparison = (SimpleCondition)condition;
+				String key = comparison.isMethod() ? comparison.getIdentifier() + "()" : comparison.getIdentifier();
+				
+				List<SimpleCondition> group = groups.get(key);
+				if(group == null) {
+					group = new ArrayList<SimpleCondition>();
+					groups.put(key, group);
+				}
+				group.add(comparison);
+			}
+		}
+		return groups;
+	}
+	
+	/**
+	 * Removes simple conditions that repeat an earlier one exactly
+	 */
+	private static List<Condition> removeDuplicates(List<Condition> conditions) {
+		Set<String> seen = new HashSet<String>();
+		List<Condition> unique = new ArrayList<Condition>(conditions.size());
+		for(Condition condition : conditions) {
+			if(condition instanceof SimpleCondition) {
+				SimpleCondition simple = (SimpleCondition)condition;
+				String key = (simple.isMethod() ? simple.getIdentifier() + "()" : simple.getIdentifier())
+						+ simple.getComparisonOperator().getSymbol() + simple.getLiteral().getText();
+				if(!seen.add(key)) {
+					continue;
+				}
+			}
+			unique.add(condition);
+		}
+		return unique;
+	}
+	
+	/**
+	 * Records that the first of the comparisons is replaced by the condition,
+	 * and the rest are removed
+	 */
+	private static void replace(List<SimpleCondition> comparisons, Condition condition, Map<SimpleCondition, Condition> replacements) {
+		replacements.put(comparisons.get(0), condition);
+		for(SimpleCondition comparison : comparisons.subList(1, comparisons.size())) {
+			replacements.put(comparison, null);
+		}
+	}
+	
+	private static List<Condition> applyReplacements(List<Condition> conditions, Map<SimpleCondition, Condition> replacements) {
+		List<Condition> replaced = new ArrayList<Condition>(conditions.size());
+		for(Condition condition : conditions) {
+			if(!replacements.containsKey(condition)) {
+				replaced.add(condition);
+			} else if(replacements.get(condition) != null) {
+				replaced.add(replacements.get(condition));
+			}
+		}
+		return replaced;
+	}
+	
+	private static Condition combine(List<Condition> conditions, boolean isOr) {
+		if(conditions.isEmpty()) {
+			return isOr ? ConstantCondition.FALSE : ConstantCondition.TRUE;
+		} else if(conditions.size() == 1) {
+			return conditions.get(0);
+		}
+		return isOr ? new OrCondition(conditions) : new AndCondition(conditions);
+	}
+}
@@ -0,0 +1,39 @@
+package org.cp.condition;
+
+import java.util.Set;
+
+/**
+ * A condition that is always true or always false, whatever the object.
+ * Produced by ConditionOptimizer for conditions that can never match, so that
+ * evaluating them doesn't read any identifiers.
+ */
+public final class ConstantCondition extends Condition {
+	public static final ConstantCondition TRUE = new ConstantCondition(true);
+	public static final ConstantCondition FALSE = new ConstantCondition(false);
+	
+	private final boolean value;
+	
+	private ConstantCondition(boolean value) {
+		this.value = value;
+	}
+	
+	public boolean getValue() {
+		return value;
+	}
+	
+	public boolean isTrue(ValueComparer valueProvider) {
+		return value;
+	}
+	
+	void addUniqueIdentifiers(Set<String> identifiers) {
+	}
+	
+	@Override
+	public String toString() {
+		return "ConstantCondition [value=" + value + "]";
+	}
+	
+	public String toSimpleString() {
+		return value ? "TRUE" : "FALSE";
+	}
+}
@@ -0,0 +1,300 @@
+package org.cp.condition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Whether an identifier equals any of a set of values, written as
+ * light in ('red', 'yellow', 'green'), or folded by ConditionOptimizer from
+ * light='red' OR light='yellow' OR light='green'.  It is an OR of the
+ * equalities, so anything that evaluates ORs evaluates it correctly, but the
+ * contains methods test the value against all of them at once with a hash
+ * lookup.  NotInCondition negates one.
+ * 
+ * Values are decoded for each type the first time they're needed.  As when
+ * comparing them one at a time, a value that can't be decoded as the type
+ * of the identifier fails the comparison with a NumberFormatException, which
+ * the contains methods throw when the value isn't found among the others.
+ * 
+ * Instances are immutable and may be shared between threads.
+ */
+public class InCondition extends OrCondition {
+	private final String identifier;
+	private final boolean isMethod;
+	private final List<Literal> literals;
+	
+	private final Set<String> textValues = new HashSet<String>();
+	private final boolean containsTrue;
+	private final boolean containsFalse;
+	
+	// decoded on first use, since text values are rarely compared with numbers
+	private volatile NumericValues numericValues;
+	
+	/**
+	 * @param identifier the identifier as it appears in conditions, including
+	 * the parentheses of a method
+	 * @param values the values as they appear in conditions, either numbers or
+	 * text enclosed in single quotes, with single quotes escaped as ''
+	 * @throws IllegalArgumentException if there are no values
+	 */
+	public InCondition(String identifier, boolean isMethod, List<String> values) {
+		super(equalities(identifier, isMethod, values));
+		
+		this.identifier = ((SimpleCondition)getConditions().get(0)).getIdentifier();
+		this.isMethod = isMethod;
+		
+		List<Literal> literals = new ArrayList<Literal>();
+		boolean containsTrue = false;
+		boolean containsFalse = false;
+		for(Condition condition : getConditions()) {
+			Literal literal = ((SimpleCondition)condition).getLiteral();
+			literals.add(literal);
+			textValues.add(literal.getText());
+			if(literal.getBooleanValue()) {
+				containsTrue = true;
+			} else {
+				containsFalse = true;
+			}
+		}
+		this.literals = Collections.unmodifiableList(literals);
+		this.containsTrue = containsTrue;
+		this.containsFalse = containsFalse;
+	}
+	
+	private static List<Condition> equalities(String identifier, boolean isMethod, List<String> values) {
+		if(values.isEmpty()) {
+			throw new IllegalArgumentException("No values for " + identifier);
+		}
+		
+		List<Condition> equalities = new ArrayList<Condition>(values.size());
+		for(String value : values) {
+			equalities.add(new SimpleCondition(identifier, isMethod, "=", value));
+		}
+		return equalities;
+	}
+	
+	public String getIdentifier() {
+		return identifier;
+	}
+	
+	public boolean isMethod() {
+		return isMethod;
+	}
+	
+	public List<Literal> getLiterals() {
+		return literals;
+	}
+	
+	/**
+	 * @throws NullPointerException if the value is null, as comparing it would
+	 */
+	public boolean containsText(String value) {
+		if(value == null) {
+			throw new NullPointerException();
+		}
+		return textValues.contains(value);
+	}
+	
+	public boolean containsBoolean(boolean value) {
+		return value ? containsTrue : containsFalse;
+	}
+	
+	/**
+	 * @throws NumberFormatException if the value isn't found and one of the
+	 * values can't be decoded as a byte
+	 */
+	public boolean containsByte(byte value) {
+		NumericValues values = getNumericValues();
+		return contains(values.byteValues, values.byteError, value);
+	}
+	
+	/**
+	 * @throws NumberFormatException if the value isn't found and one of the
+	 * values can't be decoded as a short
+	 */
+	public boolean containsShort(short value) {
+		NumericValues values = getNumericValues();
+		return contains(values.shortValues, values.shortError, value);
+	}
+	
+	/**
+	 * @throws NumberFormatException if the value isn't found and one of the
+	 * values can't be decoded as an int
+	 */
+	public boolean containsInt(int value) {
+		NumericValues values = getNumericValues();
+		return contains(values.intValues, values.intError, value);
+	}
+	
+	/**
+	 * @throws NumberFormatException if the value isn't found and one of the
+	 * values can't be decoded as a long
+	 */
+	public boolean containsLong(long value) {
+		NumericValues values = getNumericValues();
+		return contains(values.longValues, values.longError, value);
+	}
+	
+	/**
+	 * Like the = operator, NaN is never found, and 0.0 and -0.0 are equal
+	 * @throws NumberFormatException if the value isn't found and one of the
+	 * values can't be decoded as a float
+	 */
+	public boolean containsFloat(float value) {
+		NumericValues values = getNumericValues();
+		return contains(values.floatValues, values.floatError, floatKey(value));
+	}
+	
+	/**
+	 * Like the = operator, NaN is never found, and 0.0 and -0.0 are equal
+	 * @throws NumberFormatException if the value isn't found and one of the
+	 * values can't be decoded as a double
+	 */
+	public boolean containsDouble(double value) {
+		NumericValues values = getNumericValues();
+		return contains(values.doubleValues, values.doubleError, doubleKey(value));
+	}
+	
+	private static boolean contains(LongHashSet set, String error, long key) {
+		if(set.contains(key)) {
+			return true;
+		}
+		if(error != null) {
+			throw new NumberFormatException(error);
+		}
+		return false;
+	}
+	
+	/**
+	 * The bits of the value with -0.0 as 0.0, and NaN as a key that's never added
+	 */
+	private static long floatKey(float value) {
+		if(value != value) {
+			return Long.MIN_VALUE;
+		}
+		return Float.floatToIntBits(value == 0f ? 0f : value);
+	}
+	
+	private static long doubleKey(double value) {
+		if(value != value) {
+			// every other key is the bits of a non NaN double, so this bit pattern of a NaN is unused
+			return Double.doubleToRawLongBits(Double.NaN) ^ 1L;
+		}
+		return Double.doubleToLongBits(value == 0d ? 0d : value);
+	}
+	
+	private NumericValues getNumericValues() {
+		NumericValues values = numericValues;
+		if(values == null) {
+			// decoding is repeatable, so threads racing here just do the same work
+			values = new NumericValues(literals);
+			numericValues = values;
+		}
+		return values;
+	}
+	
+	public boolean isTrue(ValueComparer valueProvider) {
+		return valueProvider.isTrue(this);
+	}
+	
+	@Override
+	public String toString() {
+		return "InCondition [identifier=" + identifier + ", isMethod=" + isMethod + ", values=" + textValues + "]";
+	}
+	
+	public String toSimpleString() {
+		return toSimpleString(false);
+	}
+	
+	String toSimpleString(boolean negated) {
+		StringBuilder sb = new StringBuilder(identifier);
+		sb.append(negated ? " NOT IN (" : " IN (");
+		
+		boolean afterFirst = false;
+		for(Literal literal : literals) {
+			if(afterFirst) {
+				sb.append(", ");
+			}
+			sb.append("'").append(literal.getText().replace("'", "''")).append("'");
+			afterFirst = true;
+		}
+		
+		sb.append(")");
+		return sb.toString();
+	}
+	
+	/**
+	 * The values decoded as each numeric type, and the reason the first value
+	 * that can't be, if any
+	 */
+	private static final class NumericValues {
+		private final LongHashSet byteValues;
+		private String byteError;
+		private final LongHashSet shortValues;
+		private String shortError;
+		private final LongHashSet intValues;
+		private String intError;
+		private final LongHashSet longValues;
+		private String longError;
+		private final LongHashSet floatValues;
+		private String floatError;
+		private final LongHashSet doubleValues;
+		private String doubleError;
+		
+		NumericValues(List<Literal> literals) {
+			byteValues = new LongHashSet(literals.size());
+			shortValues = new LongHashSet(literals.size());
+			intValues = new LongHashSet(literals.size());
+			longValues = new LongHashSet(literals.size());
+			floatValues = new LongHashSet(literals.size());
+			doubleValues = new LongHashSet(literals.size());
+			
+			for(Literal literal : literals) {
+				try {
+					byteValues.add(literal.getByteValue());
+				} catch (NumberFormatException e) {
+					byteError = byteError != null ? byteError : String.valueOf(e.getMessage());
+				}
+				
+				try {
+					shortValues.add(literal.getShortValue());
+				} catch (NumberFormatException e) {
+					shortError = shortError != null ? shortError : String.valueOf(e.getMessage());
+				}
+				
+				try {
+					intValues.add(literal.getIntValue());
+				} catch (NumberFormatException e) {
+					intError = intError != null ? intError : String.valueOf(e.getMessage());
+				}
+				
+				try {
+					longValues.add(literal.getLongValue());
+				} catch (NumberFormatException e) {
+					longError = longError != null ? longError : String.valueOf(e.getMessage());
+				}
+				
+				try {
+					float value = literal.getFloatValue();
+					if(value == value) {
+						floatValues.add(floatKey(value));
+					}
+				} catch (NumberFormatException e) {
+					floatError = floatError != null ? floatError : String.valueOf(e.getMessage());
+				}
+				
+				try {
+					double value = literal.getDoubleValue();
+					if(value == value) {
+						doubleValues.add(doubleKey(value));
+					}
+				} catch (NumberFormatException e) {
+					doubleError = doubleError != null ? doubleError : String.valueOf(e.getMessage());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package org.cp.condition;
+
+/**
+ * The value on the right hand side of a simple condition, decoded ahead of
+ * time for each type of identifier it may be compared with.  Quotes are
+ * stripped and unescaped when the literal is built, and numeric values are
+ * decoded the first time they're needed and then kept, so that evaluating
+ * a condition against an object doesn't need to parse anything.
+ * 
+ * Literals are immutable and may be shared between threads.
+ */
+public final class Literal {
+	private final String text;
+	private final String lowerCaseText;
+	private final boolean booleanValue;
+	
+	// decoded on first use, since text values are rarely compared with numbers
+	private volatile NumericValues numericValues;
+	
+	/**
+	 * @param value the value as it appears in the condition, either a number or
+	 * text enclosed in single quotes, with single quotes escaped as ''
+	 */
+	public Literal(String value) {
+		if(value.startsWith("'") && value.endsWith("'")) {
+			value = value.substring(1, value.length()-1);
+		}
+		this.text = value.replace("''", "'");
+		this.lowerCaseText = text.toLowerCase();
+		this.booleanValue = Boolean.valueOf(text);
+	}
+	
+	/**
+	 * The value without enclosing quotes and with any quotes unescaped
+	 */
+	public String getText() {
+		return text;
+	}
+	
+	/**
+	 * The text in lower case, for case insensitive matching
+	 */
+	public String getLowerCaseText() {
+		return lowerCaseText;
+	}
+	
+	public boolean getBooleanValue() {
+		return booleanValue;
+	}
+	
+	/**
+	 * @throws NumberFormatException if the value isn't a byte, as decided by Byte.decode
+	 */
+	public byte getByteValue() {
+		NumericValues values = getNumericValues();
+		if(values.byteError != null) {
+			throw new NumberFormatException(values.byteError);
+		}
+		return values.byteValue;
+	}
+	
+	/**
+	 * @throws NumberFormatException if the value isn't a short, as decided by Short.decode
+	 */
+	public short getShortValue() {
+		NumericValues values = getNumericValues();
+		if(values.shortError != null) {
+			throw new NumberFormatException(values.shortError);
+		}
+		return values.shortValue;
+	}
+	
+	/**
+	 * @throws NumberFormatException if the value isn't an int, as decided by Integer.decode
+	 */
+	public int getIntValue() {
+		NumericValues values = getNumericValues();
+		if(values.intError != null) {
+			throw new NumberFormatException(values.intError);
+		}
+		return values.intValue;
+	}
+	
+	/**
+	 * @throws NumberFormatException if the value isn't a long, as decided by Long.decode
+	 */
+	public long getLongValue() {
+		NumericValues values = getNumericValues();
+		if(values.longError != null) {
+			throw new NumberFormatException(values.longError);
+		}
+		return values.longValue;
+	}
+	
+	/**
+	 * @throws NumberFormatException if the value isn't a float, as decided by Float.valueOf
+	 */
+	public float getFloatValue() {
+		NumericValues values = getNumericValues();
+		if(values.floatError != null) {
+			throw new NumberFormatException(values.floatError);
+		}
+		return values.floatValue;
+	}
+	
+	/**
+	 * @throws NumberFormatException if the value isn't a double, as decided by Double.valueOf
+	 */
+	public double getDoubleValue() {
+		NumericValues values = getNumericValues();
+		if(values.doubleError != null) {
+			throw new NumberFormatException(values.doubleError);
+		}
+		return values.doubleValue;
+	}
+	
+	private NumericValues getNumericValues() {
+		NumericValues values = numericValues;
+		if(values == null) {
+			// decoding is repeatable, so threads racing here just do the same work
+			values = new NumericValues(text);
+			numericValues = values;
+		}
+		return values;
+	}
+	
+	@Override
+	public String toString() {
+		return "Literal [text=" + text + "]";
+	}
+	
+	/**
+	 * The literal's text decoded as each numeric type, or the reason it can't be
+	 */
+	private static final class NumericValues {
+		private byte byteValue;
+		private String byteError;
+		private short shortValue;
+		private String shortError;
+		private int intValue;
+		private String intError;
+		private long longValue;
+		private String longError;
+		private float floatValue;
+		private String floatError;
+		private double doubleValue;
+		private String doubleError;
+		
+		NumericValues(String text) {
+			try {
+				byteValue = Byte.decode(text);
+			} catch (NumberFormatException e) {
+				byteError = String.valueOf(e.getMessage());
+			}
+			
+			try {
+				shortValue = Short.decode(text);
+			} catch (NumberFormatException e) {
+				shortError = String.valueOf(e.getMessage());
+			}
+			
+			try {
+				intValue = Integer.decode(text);
+			} catch (NumberFormatException e) {
+				intError = String.valueOf(e.getMessage());
+			}
+			
+			try {
+				longValue = Long.decode(text);
+			} catch (NumberFormatException e) {
+				longError = String.valueOf(e.getMessage());
+			}
+			
+			try {
+				floatValue = Float.valueOf(text);
+			} catch (NumberFormatException e) {
+				floatError = String.valueOf(e.getMessage());
+			}
+			
+			try {
+				doubleValue = Double.valueOf(text);
+			} catch (NumberFormatException e) {
+				doubleError = String.valueOf(e.getMessage());
+			}
+		}
+	}
+}
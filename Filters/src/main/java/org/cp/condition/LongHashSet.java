@@ -0,0 +1,81 @@
+package org.cp.condition;
+
+/**
+ * A set of longs held in an open addressing hash table with linear probing,
+ * so that testing membership neither boxes the value nor follows pointers.
+ * The table is at most half full, which keeps probe sequences short, and zero
+ * is tracked separately since empty slots hold zero.
+ * 
+ * Sets are filled once and then only read, so may be shared between threads
+ * once safely published.
+ */
+final class LongHashSet {
+	private long[] table;
+	private int mask;
+	private int size;
+	private boolean containsZero;
+	
+	LongHashSet(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+		this.table = new long[capacity];
+		this.mask = capacity - 1;
+	}
+	
+	void add(long value) {
+		if(value == 0) {
+			containsZero = true;
+			return;
+		}
+		
+		int index = index(value);
+		while(table[index] != 0) {
+			if(table[index] == value) {
+				return;
+			}
+			index = (index + 1) & mask;
+		}
+		table[index] = value;
+		
+		if(++size * 2 > table.length) {
+			grow();
+		}
+	}
+	
+	boolean contains(long value) {
+		if(value == 0) {
+			return containsZero;
+		}
+		
+		long[] table = this.table;
+		int index = index(value);
+		long entry;
+		while((entry = table[index]) != 0) {
+			if(entry == value) {
+				return true;
+			}
+			index = (index + 1) & mask;
+		}
+		return false;
+	}
+	
+	private void grow() {
+		long[] oldTable = table;
+		table = new long[oldTable.length * 2];
+		mask = table.length - 1;
+		size = 0;
+		for(long value : oldTable) {
+			if(value != 0) {
+				add(value);
+			}
+		}
+	}
+	
+	/**
+	 * Spreads the bits of the value with a multiplicative hash, so that
+	 * sequential values and doubles' bit patterns don't cluster
+	 */
+	private int index(long value) {
+		long hash = value * 0x9E3779B97F4A7C15L;
+		return (int)(hash ^ (hash >>> 32)) & mask;
+	}
+}
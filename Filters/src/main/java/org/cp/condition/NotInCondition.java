@@ -0,0 +1,40 @@
+package org.cp.condition;
+
+import java.util.Set;
+
+/**
+ * Whether an identifier equals none of a set of values, written as
+ * light not in ('red', 'yellow').  True exactly when the InCondition it
+ * negates is false, so tested with the same hash lookup.
+ */
+public class NotInCondition extends Condition {
+	private final InCondition inCondition;
+	
+	public NotInCondition(InCondition inCondition) {
+		this.inCondition = inCondition;
+	}
+	
+	/**
+	 * The condition this negates
+	 */
+	public InCondition getInCondition() {
+		return inCondition;
+	}
+	
+	public boolean isTrue(ValueComparer valueProvider) {
+		return !inCondition.isTrue(valueProvider);
+	}
+	
+	void addUniqueIdentifiers(Set<String> identifiers) {
+		inCondition.addUniqueIdentifiers(identifiers);
+	}
+	
+	@Override
+	public String toString() {
+		return "NotInCondition [inCondition=" + inCondition + "]";
+	}
+	
+	public String toSimpleString() {
+		return inCondition.toSimpleString(true);
+	}
+}
@@ -0,0 +1,114 @@
+package org.cp.condition;
+
+/**
+ * The comparison operators allowed in simple conditions
+ */
+public enum Operator {
+	LESS_THAN("<"),
+	LESS_THAN_OR_EQUAL("<="),
+	GREATER_THAN(">"),
+	GREATER_THAN_OR_EQUAL(">="),
+	EQUAL("="),
+	CONTAINS("=~"),
+	NOT_CONTAINS("!~");
+	
+	private final String symbol;
+	
+	private Operator(String symbol) {
+		this.symbol = symbol;
+	}
+	
+	/**
+	 * The operator as it appears in conditions
+	 */
+	public String getSymbol() {
+		return symbol;
+	}
+	
+	/**
+	 * True for the operators that order values (<, <=, >, >= and =), and false for
+	 * the case insensitive substring operators =~ and !~
+	 */
+	public boolean isComparison() {
+		return this != CONTAINS && this != NOT_CONTAINS;
+	}
+	
+	/**
+	 * Returns the operator for a symbol
+	 * @throws IllegalArgumentException if the symbol isn't an operator
+	 */
+	public static Operator forSymbol(String symbol) {
+		for(Operator operator : values()) {
+			if(operator.symbol.equals(symbol)) {
+				return operator;
+			}
+		}
+		
+		throw new IllegalArgumentException("Unsupported operator: " + symbol);
+	}
+	
+	/**
+	 * Determines if the result of a compareTo between an identifier's value and
+	 * a condition's value satisfies this operator
+	 */
+	public boolean isTrue(int compareTo) {
+		switch(this) {
+		case LESS_THAN:
+			return compareTo < 0;
+		case LESS_THAN_OR_EQUAL:
+			return compareTo <= 0;
+		case GREATER_THAN:
+			return compareTo > 0;
+		case GREATER_THAN_OR_EQUAL:
+			return compareTo >= 0;
+		case EQUAL:
+			return compareTo == 0;
+		default:
+			throw new UnsupportedOperationException(symbol + " is not a comparison");
+		}
+	}
+	
+	/**
+	 * Compares an identifier's value with a condition's value.  Used for
+	 * bytes, shorts and ints as well, since widening them to longs doesn't
+	 * change the result.
+	 */
+	public boolean isTrue(long identifierValue, long value) {
+		switch(this) {
+		case LESS_THAN:
+			return identifierValue < value;
+		case LESS_THAN_OR_EQUAL:
+			return identifierValue <= value;
+		case GREATER_THAN:
+			return identifierValue > value;
+		case GREATER_THAN_OR_EQUAL:
+			return identifierValue >= value;
+		case EQUAL:
+			return identifierValue == value;
+		default:
+			throw new UnsupportedOperationException(symbol + " is not a comparison");
+		}
+	}
+	
+	/**
+	 * Compares an identifier's value with a condition's value.  Used for
+	 * floats as well, since widening them to doubles doesn't change the result.
+	 * Like Java's own operators, any comparison involving NaN is false.
+	 */
+	public boolean isTrue(double identifierValue, double value) {
+		switch(this) {
+		case LESS_THAN:
+			return identifierValue < value;
+		case LESS_THAN_OR_EQUAL:
+			return identifierValue <= value;
+		case GREATER_THAN:
+			return identifierValue > value;
+		case GREATER_THAN_OR_EQUAL:
+			return identifierValue >= value;
+		case EQUAL:
+			return identifierValue == value;
+		default:
+			throw new UnsupportedOperationException(symbol + " is not a comparison");
+		}
+	}
+}
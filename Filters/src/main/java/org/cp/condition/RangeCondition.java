@@ -0,0 +1,52 @@
+package org.cp.condition;
+
+import java.util.Arrays;
+
+/**
+ * A lower and an upper bound on the same identifier, such as x>0 AND x<10,
+ * merged by ConditionOptimizer from the comparisons of an AND.  It is an AND
+ * of the two bounds, so anything that evaluates ANDs evaluates it correctly,
+ * and PojoEvaluator.matches reads the identifier once for both bounds.
+ */
+public class RangeCondition extends AndCondition {
+	private final SimpleCondition lowerBound;
+	private final SimpleCondition upperBound;
+	
+	/**
+	 * @param lowerBound a > or >= comparison
+	 * @param upperBound a < or <= comparison of the same identifier
+	 * @throws IllegalArgumentException if the bounds are not comparisons of the
+	 * same identifier in those directions
+	 */
+	public RangeCondition(SimpleCondition lowerBound, SimpleCondition upperBound) {
+		super(Arrays.<Condition>asList(lowerBound, upperBound));
+		
+		Operator lower = lowerBound.getComparisonOperator();
+		Operator upper = upperBound.getComparisonOperator();
+		if(lower != Operator.GREATER_THAN && lower != Operator.GREATER_THAN_OR_EQUAL) {
+			throw new IllegalArgumentException("Not a lower bound: " + lowerBound.toSimpleString());
+		}
+		if(upper != Operator.LESS_THAN && upper != Operator.LESS_THAN_OR_EQUAL) {
+			throw new IllegalArgumentException("Not an upper bound: " + upperBound.toSimpleString());
+		}
+		if(!lowerBound.getIdentifier().equals(upperBound.getIdentifier()) || lowerBound.isMethod() != upperBound.isMethod()) {
+			throw new IllegalArgumentException("Bounds of different identifiers: " + lowerBound.toSimpleString() + ", " + upperBound.toSimpleString());
+		}
+		
+		this.lowerBound = lowerBound;
+		this.upperBound = upperBound;
+	}
+	
+	public SimpleCondition getLowerBound() {
+		return lowerBound;
+	}
+	
+	public SimpleCondition getUpperBound() {
+		return upperBound;
+	}
+	
+	@Override
+	public String toString() {
+		return "RangeCondition [lowerBound=" + lowerBound + ", upperBound=" + upperBound + "]";
+	}
+}
@@ -0,0 +1,241 @@
+package org.cp.condition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cp.pojoconditions.RecursiveDescentParser;
+
+/**
+ * Hand written parser accepting the same non-nested AND and OR conditions as
+ * CompoundConditionParser, and producing the same conditions:
+ * a>'3'
+ * a>3
+ * a>3 and b>4 or c>5
+ */
+public class RecursiveDescentConditionParser extends RecursiveDescentParser {
+	private final boolean matchMethods;
+	
+	private RecursiveDescentConditionParser(String condition, boolean matchMethods) {
+		super(condition);
+		this.matchMethods = matchMethods;
+	}
+	
+    /**
+     * Parses the given condition string and returns a condition object
+     * that reflects the string
+     * @throws IllegalArgumentException if the condition fails to parse
+     */
+	public static Condition parseCondition(String condition, boolean matchMethods) {
+		RecursiveDescentConditionParser parser = new RecursiveDescentConditionParser(condition, matchMethods);
+		Condition result = parser.orCondition();
+		
+		if(result == null || !parser.atEnd()) {
+			throw new IllegalArgumentException("Failed to parse: " + condition);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * One or more AND conditions or simple conditions separated by OR.  Returns
+	 * the single condition when there is no OR.
+	 */
+	private Condition orCondition() {
+		Condition first = andCondition();
+		if(first == null) {
+			return null;
+		}
+		
+		List<Condition> conditions = null;
+		
+		while(true) {
+			int start = position;
+			Condition next = null;
+			
+			if(spacing() && ignoreCase("or") && spacing()) {
+				next = andCondition();
+			}
+			
+			if(next == null) {
+				position = start;
+				break;
+			}
+			
+			if(conditions == null) {
+				conditions = new ArrayList<Condition>();
+				conditions.add(first);
+			}
+			conditions.add(next);
+		}
+		
+		return conditions == null ? first : new OrCondition(conditions);
+	}
+	
+	/**
+	 * One or more comparisons separated by AND.  Returns the single
+	 * condition when there is no AND.
+	 */
+	private Condition andCondition() {
+		Condition first = comparison();
+		if(first == null) {
+			return null;
+		}
+		
+		List<Condition> conditions = null;
+		
+		while(true) {
+			int start = position;
+			Condition next = null;
+			
+			if(spacing() && ignoreCase("and") && spacing()) {
+				next = comparison();
+			}
+			
+			if(next == null) {
+				position = start;
+				break;
+			}
+			
+			if(conditions == null) {
+				conditions = new ArrayList<Condition>();
+				conditions.add(first);
+			}
+			conditions.add(next);
+		}
+		
+		return conditions == null ? first : new AndCondition(conditions);
+	}
+	
+	/**
+	 * Either a set membership test or a simple comparison
+	 */
+	private Condition comparison() {
+		Condition inCondition = inCondition();
+		return inCondition != null ? inCondition : simpleCondition();
+	}
+	
+	/**
+	 * Tests whether an identifier is, or with NOT is not, one of a list of values,
+	 * such as a in (1, 2, 3) or a not in ('x','y').
+	 */
+	private Condition inCondition() {
+		int start = position;
+		boolean isMethod;
+		
+		if(matchMethods && noParamMethod()) {
+			isMethod = true;
+		} else if(identifier()) {
+			isMethod = false;
+		} else {
+			return null;
+		}
+		String identifier = input.substring(start, position);
+		
+		if(!spacing()) {
+			position = start;
+			return null;
+		}
+		
+		int notStart = position;
+		boolean negated = ignoreCase("not") && spacing();
+		if(!negated) {
+			position = notStart;
+		}
+		
+		if(!ignoreCase("in")) {
+			position = start;
+			return null;
+		}
+		optionalSpacing();
+		
+		List<String> values = new ArrayList<String>();
+		if(!ch('(')) {
+			position = start;
+			return null;
+		}
+		
+		do {
+			optionalSpacing();
+			int valueStart = position;
+			if(!value()) {
+				position = start;
+				return null;
+			}
+			values.add(input.substring(valueStart, position));
+			optionalSpacing();
+		} while(ch(','));
+		
+		if(!ch(')')) {
+			position = start;
+			return null;
+		}
+		
+		InCondition inCondition = new InCondition(identifier, isMethod, values);
+		return negated ? new NotInCondition(inCondition) : inCondition;
+	}
+	
+	/**
+	 * Represents a simple comparison between an identifier and a value.  This takes the
+	 * form of a valid identifier, optional whitespace, a comparison operator, optional whitespace,
+	 * and then the value.
+	 */
+	private SimpleCondition simpleCondition() {
+		int start = position;
+		boolean isMethod;
+		
+		if(matchMethods && noParamMethod()) {
+			isMethod = true;
+		} else if(identifier()) {
+			isMethod = false;
+		} else {
+			return null;
+		}
+		String identifier = input.substring(start, position);
+		
+		optionalSpacing();
+		String operator = comparisonOperator();
+		if(operator == null) {
+			position = start;
+			return null;
+		}
+		
+		optionalSpacing();
+		int valueStart = position;
+		if(!value()) {
+			position = start;
+			return null;
+		}
+		
+		return new SimpleCondition(identifier, isMethod, operator, input.substring(valueStart, position));
+	}
+	
+	/**
+	 * Comparison operators that we allow for our conditions.  These
+	 * include <=, >=, <, >, =, =~ and !~, with the longest matching
+	 * operator used
+	 */
+	private String comparisonOperator() {
+		if(position + 1 < input.length()) {
+			char first = input.charAt(position);
+			char second = input.charAt(position + 1);
+			
+			if((first == '<' || first == '>') && second == '=') {
+				position += 2;
+				return first == '<' ? "<=" : ">=";
+			} else if((first == '=' || first == '!') && second == '~') {
+				position += 2;
+				return first == '=' ? "=~" : "!~";
+			}
+		}
+		
+		if(ch('<')) {
+			return "<";
+		} else if(ch('>')) {
+			return ">";
+		} else if(ch('=')) {
+			return "=";
+		}
+		
+		return null;
+	}
+}
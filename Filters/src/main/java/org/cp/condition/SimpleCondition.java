@@ -8,6 +8,14 @@ public class SimpleCondition extends Condition {
 	private final String operator;
 	private final String value;
 	
+	// the operator and value, resolved and decoded once so that evaluating
+	// the condition doesn't need to
+	private final Operator comparisonOperator;
+	private final Literal literal;
+	
+	/**
+	 * @throws IllegalArgumentException if the operator isn't supported
+	 */
 	public SimpleCondition(String identifier, boolean isMethod, String operator, String value) {
 		if(isMethod) {
 			int lastRParen = identifier.lastIndexOf(')');
@@ -18,6 +26,8 @@ public class SimpleCondition extends Condition {
 		this.isMethod = isMethod;
 		this.operator = operator;
 		this.value = value;
+		this.comparisonOperator = Operator.forSymbol(operator);
+		this.literal = new Literal(value);
 	}
 	
 	public String getIdentifier() {
@@ -32,12 +42,20 @@ public class SimpleCondition extends Condition {
 		return operator;
 	}
 
+	public Operator getComparisonOperator() {
+		return comparisonOperator;
+	}
+
 	public String getValue() {
 		return value;
 	}
 	
+	public Literal getLiteral() {
+		return literal;
+	}
+	
 	public boolean isTrue(ValueComparer valueProvider) {
-		return valueProvider.isTrue(identifier, isMethod, operator, value);
+		return valueProvider.isTrue(this);
 	}
 
 	void addUniqueIdentifiers(Set<String> identifiers) {
@@ -2,4 +2,27 @@ package org.cp.condition;
 
 public interface ValueComparer {
 	public boolean isTrue(String identifier, boolean isMethod, String operator, String value);
+	
+	/**
+	 * Determines if the condition is true.  By default passes its parts to
+	 * isTrue(identifier, isMethod, operator, value); implementations can
+	 * override this to use the operator and value the condition has already
+	 * decoded.
+	 */
+	public default boolean isTrue(SimpleCondition condition) {
+		return isTrue(condition.getIdentifier(), condition.isMethod(), condition.getOperator(), condition.getValue());
+	}
+	
+	/**
+	 * Determines if the identifier equals any of the condition's values.  By
+	 * default compares it with each value in turn, as the OR it's made of.
+	 */
+	public default boolean isTrue(InCondition condition) {
+		for(Condition equality : condition.getConditions()) {
+			if(isTrue((SimpleCondition)equality)) {
+				return true;
+			}
+		}
+		return false;
+	}
 }
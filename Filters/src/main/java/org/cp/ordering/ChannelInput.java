@@ -0,0 +1,160 @@
+package org.cp.ordering;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A DataInput reading from a channel through a buffer, in the format
+ * written by ChannelOutput and DataOutputStream.  The buffer is refilled
+ * from the channel whenever it holds less than the next value needs.
+ *
+ * Not thread safe.
+ */
+final class ChannelInput implements DataInput {
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer;
+	
+	ChannelInput(ReadableByteChannel channel, int bufferSize) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 8));
+		this.buffer.flip();
+	}
+	
+	/**
+	 * Reads from the channel until the buffer holds at least the number of
+	 * bytes, which is no more than 8
+	 * @throws EOFException if the channel ends first
+	 */
+	private void require(int bytes) throws IOException {
+		if(buffer.remaining() >= bytes) {
+			return;
+		}
+		
+		buffer.compact();
+		try {
+			while(buffer.position() < bytes) {
+				if(channel.read(buffer) < 0) {
+					throw new EOFException();
+				}
+			}
+		} finally {
+			buffer.flip();
+		}
+	}
+	
+	public void readFully(byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+	
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		while(len > 0) {
+			require(1);
+			int count = Math.min(len, buffer.remaining());
+			buffer.get(b, off, count);
+			off += count;
+			len -= count;
+		}
+	}
+	
+	public int skipBytes(int n) throws IOException {
+		int skipped = 0;
+		while(skipped < n) {
+			if(!buffer.hasRemaining()) {
+				try {
+					require(1);
+				} catch (EOFException e) {
+					break;
+				}
+			}
+			int count = Math.min(n - skipped, buffer.remaining());
+			buffer.position(buffer.position() + count);
+			skipped += count;
+		}
+		return skipped;
+	}
+	
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+	
+	public byte readByte() throws IOException {
+		require(1);
+		return buffer.get();
+	}
+	
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xFF;
+	}
+	
+	public short readShort() throws IOException {
+		require(2);
+		return buffer.getShort();
+	}
+	
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xFFFF;
+	}
+	
+	public char readChar() throws IOException {
+		require(2);
+		return buffer.getChar();
+	}
+	
+	public int readInt() throws IOException {
+		require(4);
+		return buffer.getInt();
+	}
+	
+	public long readLong() throws IOException {
+		require(8);
+		return buffer.getLong();
+	}
+	
+	public float readFloat() throws IOException {
+		require(4);
+		return buffer.getFloat();
+	}
+	
+	public double readDouble() throws IOException {
+		require(8);
+		return buffer.getDouble();
+	}
+	
+	/**
+	 * Reads bytes as chars up to the end of the line, as DataInputStream does
+	 */
+	public String readLine() throws IOException {
+		StringBuilder line = new StringBuilder();
+		while(true) {
+			int c;
+			try {
+				c = readUnsignedByte();
+			} catch (EOFException e) {
+				return line.length() == 0 ? null : line.toString();
+			}
+			
+			if(c == '\n') {
+				return line.toString();
+			} else if(c == '\r') {
+				try {
+					require(1);
+					if(buffer.get(buffer.position()) == '\n') {
+						buffer.get();
+					}
+				} catch (EOFException e) {
+					// the line ends with the input
+				}
+				return line.toString();
+			}
+			line.append((char)c);
+		}
+	}
+	
+	public String readUTF() throws IOException {
+		return DataInputStream.readUTF(this);
+	}
+}
@@ -0,0 +1,122 @@
+package org.cp.ordering;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A DataOutput writing to a channel through a buffer, in the same format as
+ * DataOutputStream.  Values are put into the buffer, which is written to the
+ * channel whenever the next value doesn't fit, and by flush.
+ *
+ * Not thread safe.
+ */
+final class ChannelOutput implements DataOutput {
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer;
+	
+	ChannelOutput(WritableByteChannel channel, int bufferSize) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 8));
+	}
+	
+	/**
+	 * Writes everything in the buffer to the channel
+	 */
+	void flush() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+	
+	/**
+	 * Makes room in the buffer for a value of the number of bytes, which is
+	 * no more than 8
+	 */
+	private void ensure(int bytes) throws IOException {
+		if(buffer.remaining() < bytes) {
+			flush();
+		}
+	}
+	
+	public void write(int b) throws IOException {
+		ensure(1);
+		buffer.put((byte)b);
+	}
+	
+	public void write(byte[] b) throws IOException {
+		write(b, 0, b.length);
+	}
+	
+	public void write(byte[] b, int off, int len) throws IOException {
+		while(len > 0) {
+			ensure(1);
+			int count = Math.min(len, buffer.remaining());
+			buffer.put(b, off, count);
+			off += count;
+			len -= count;
+		}
+	}
+	
+	public void writeBoolean(boolean v) throws IOException {
+		write(v ? 1 : 0);
+	}
+	
+	public void writeByte(int v) throws IOException {
+		write(v);
+	}
+	
+	public void writeShort(int v) throws IOException {
+		ensure(2);
+		buffer.putShort((short)v);
+	}
+	
+	public void writeChar(int v) throws IOException {
+		ensure(2);
+		buffer.putChar((char)v);
+	}
+	
+	public void writeInt(int v) throws IOException {
+		ensure(4);
+		buffer.putInt(v);
+	}
+	
+	public void writeLong(long v) throws IOException {
+		ensure(8);
+		buffer.putLong(v);
+	}
+	
+	public void writeFloat(float v) throws IOException {
+		ensure(4);
+		buffer.putFloat(v);
+	}
+	
+	public void writeDouble(double v) throws IOException {
+		ensure(8);
+		buffer.putDouble(v);
+	}
+	
+	public void writeBytes(String s) throws IOException {
+		for(int i = 0; i < s.length(); i++) {
+			write(s.charAt(i));
+		}
+	}
+	
+	public void writeChars(String s) throws IOException {
+		for(int i = 0; i < s.length(); i++) {
+			writeChar(s.charAt(i));
+		}
+	}
+	
+	public void writeUTF(String s) throws IOException {
+		// DataOutputStream has the only encoder for modified UTF-8
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(s.length() + 2);
+		new DataOutputStream(bytes).writeUTF(s);
+		write(bytes.toByteArray());
+	}
+}
@@ -0,0 +1,223 @@
+package org.cp.ordering;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Comparator;
+import java.util.List;
+
+import org.cp.pojoconditions.IdentifierAccessor;
+import org.cp.pojoconditions.NonexistentIdentifierException;
+import org.cp.pojoconditions.ValueType;
+
+/**
+ * A comparator for objects of one class, built by PojoOrdering.compile.
+ * Each identifier in the ordering is bound to an accessor for the class once,
+ * when compiled, and compares values with the comparison for its type, such
+ * as Integer.compare for ints, without boxing or casting them.  Identifiers
+ * compare in turn, each falling through to the next when its values are equal.
+ *
+ * Identifiers of types that conditions don't support, such as Dates or enums,
+ * are compared with compareTo, and fail in the same way as the ordering's
+ * comparator if their values aren't Comparable.
+ */
+abstract class CompiledComparator<T> implements Comparator<T> {
+	// compares the objects by the remaining identifiers, or EQUAL after the last one
+	protected final Comparator<Object> next;
+	
+	// 1 for ascending, -1 for descending
+	protected final int direction;
+	
+	private static final Comparator<Object> EQUAL = new Comparator<Object>() {
+		public int compare(Object o1, Object o2) {
+			return 0;
+		}
+	};
+	
+	protected CompiledComparator(Comparator<Object> next, boolean ascending) {
+		this.next = next;
+		this.direction = ascending ? 1 : -1;
+	}
+	
+	/**
+	 * Builds a comparator for the ordering's identifiers in the class
+	 * @throws NonexistentIdentifierException if the class does not declare an identifier
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> Comparator<T> compile(List<IdentifierOrder> identifierOrders, Class<T> clazz) {
+		Comparator<Object> comparator = EQUAL;
+		for(int i = identifierOrders.size() - 1; i >= 0; i--) {
+			comparator = compile(identifierOrders.get(i), clazz, comparator);
+		}
+		return (Comparator<T>)comparator;
+	}
+	
+	private static Comparator<Object> compile(IdentifierOrder identifierOrder, Class<?> clazz, Comparator<Object> next) {
+		String identifier = identifierOrder.getIdentifier();
+		boolean ascending = identifierOrder.isAscending();
+		
+		Member member = getMember(clazz, identifier, identifierOrder.isMethod());
+		ValueType type = ValueType.forClass(member instanceof Method ? ((Method)member).getReturnType() : ((Field)member).getType());
+		if(type == null) {
+			return new ObjectComparator(identifier, getHandle(member), next, ascending);
+		}
+		
+		IdentifierAccessor accessor = IdentifierAccessor.forIdentifier(clazz, identifier, identifierOrder.isMethod());
+		switch(type) {
+		case BYTE:
+		case SHORT:
+		case INT:
+			return new IntComparator(accessor, next, ascending);
+		case LONG:
+			return new LongComparator(accessor, next, ascending);
+		case FLOAT:
+		case DOUBLE:
+			return new DoubleComparator(accessor, next, ascending);
+		case BOOLEAN:
+			return new BooleanComparator(accessor, next, ascending);
+		default:
+			return new StringComparator(accessor, next, ascending);
+		}
+	}
+	
+	private static Member getMember(Class<?> clazz, String identifier, boolean isMethod) {
+		try {
+			return isMethod ? clazz.getDeclaredMethod(identifier) : clazz.getDeclaredField(identifier);
+		} catch (NoSuchFieldException e) {
+			throw new NonexistentIdentifierException(identifier, false, clazz);
+		} catch (NoSuchMethodException e) {
+			throw new NonexistentIdentifierException(identifier, true, clazz);
+		}
+	}
+	
+	/**
+	 * Returns a handle of type (Object) -> Object reading the identifier,
+	 * boxing primitive values
+	 */
+	private static MethodHandle getHandle(Member member) {
+		try {
+			MethodHandle handle;
+			if(member instanceof Method) {
+				((Method)member).setAccessible(true);
+				handle = MethodHandles.lookup().unreflect((Method)member);
+			} else {
+				((Field)member).setAccessible(true);
+				handle = MethodHandles.lookup().unreflectGetter((Field)member);
+			}
+			
+			if(Modifier.isStatic(member.getModifiers())) {
+				handle = MethodHandles.dropArguments(handle, 0, Object.class);
+			}
+			return handle.asType(MethodType.methodType(Object.class, Object.class));
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	public final int compare(T o1, T o2) {
+		int compareTo = compareValues(o1, o2);
+		return compareTo != 0 ? compareTo * direction : next.compare(o1, o2);
+	}
+	
+	/**
+	 * Compares the objects' values of this identifier in ascending order
+	 */
+	protected abstract int compareValues(T o1, T o2);
+	
+	private static final class IntComparator extends CompiledComparator<Object> {
+		private final IdentifierAccessor accessor;
+		
+		IntComparator(IdentifierAccessor accessor, Comparator<Object> next, boolean ascending) {
+			super(next, ascending);
+			this.accessor = accessor;
+		}
+		
+		protected int compareValues(Object o1, Object o2) {
+			return Integer.compare(accessor.getInt(o1), accessor.getInt(o2));
+		}
+	}
+	
+	private static final class LongComparator extends CompiledComparator<Object> {
+		private final IdentifierAccessor accessor;
+		
+		LongComparator(IdentifierAccessor accessor, Comparator<Object> next, boolean ascending) {
+			super(next, ascending);
+			this.accessor = accessor;
+		}
+		
+		protected int compareValues(Object o1, Object o2) {
+			return Long.compare(accessor.getLong(o1), accessor.getLong(o2));
+		}
+	}
+	
+	private static final class DoubleComparator extends CompiledComparator<Object> {
+		private final IdentifierAccessor accessor;
+		
+		DoubleComparator(IdentifierAccessor accessor, Comparator<Object> next, boolean ascending) {
+			super(next, ascending);
+			this.accessor = accessor;
+		}
+		
+		protected int compareValues(Object o1, Object o2) {
+			// floats are widened exactly, so this orders them as Float.compareTo does
+			return Double.compare(accessor.getDouble(o1), accessor.getDouble(o2));
+		}
+	}
+	
+	private static final class BooleanComparator extends CompiledComparator<Object> {
+		private final IdentifierAccessor accessor;
+		
+		BooleanComparator(IdentifierAccessor accessor, Comparator<Object> next, boolean ascending) {
+			super(next, ascending);
+			this.accessor = accessor;
+		}
+		
+		protected int compareValues(Object o1, Object o2) {
+			return Boolean.compare(accessor.getBoolean(o1), accessor.getBoolean(o2));
+		}
+	}
+	
+	private static final class StringComparator extends CompiledComparator<Object> {
+		private final IdentifierAccessor accessor;
+		
+		StringComparator(IdentifierAccessor accessor, Comparator<Object> next, boolean ascending) {
+			super(next, ascending);
+			this.accessor = accessor;
+		}
+		
+		protected int compareValues(Object o1, Object o2) {
+			return accessor.getString(o1).compareTo(accessor.getString(o2));
+		}
+	}
+	
+	private static final class ObjectComparator extends CompiledComparator<Object> {
+		private final String identifier;
+		private final MethodHandle handle;
+		
+		ObjectComparator(String identifier, MethodHandle handle, Comparator<Object> next, boolean ascending) {
+			super(next, ascending);
+			this.identifier = identifier;
+			this.handle = handle;
+		}
+		
+		private Object getValue(Object pojo) {
+			try {
+				return (Object)handle.invokeExact(pojo);
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new RuntimeException(t);
+			}
+		}
+		
+		protected int compareValues(Object o1, Object o2) {
+			return KeyReader.compare(identifier, getValue(o1), o1, getValue(o2), o2);
+		}
+	}
+}
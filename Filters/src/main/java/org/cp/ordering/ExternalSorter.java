@@ -0,0 +1,552 @@
+package org.cp.ordering;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Sorts more records than fit in memory, built by PojoOrdering.externalSorter.
+ * Records are read in runs of up to runSize, and each run is sorted in memory
+ * the same way as PojoOrdering.sort, reading the values to sort by once per
+ * record.  Every run but the last is written to a temporary file with the
+ * codec, through a buffered FileChannel, and the runs are then merged, up
+ * to fanIn at a time, until few enough remain to be merged as the sorted
+ * records are read.  Records that are equal in the ordering keep their order.
+ *
+ * Memory holds one run of records, plus one buffer for each run being
+ * merged.  Settings can be changed between sorts; an ExternalSorter is not
+ * thread safe, but each sort is independent of the others.
+ */
+public final class ExternalSorter<T> {
+	private static final int DEFAULT_RUN_SIZE = 1 << 20;
+	private static final int DEFAULT_FAN_IN = 64;
+	private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+	
+	private final List<IdentifierOrder> identifierOrders;
+	private final RecordCodec<T> codec;
+	
+	private int runSize = DEFAULT_RUN_SIZE;
+	private int fanIn = DEFAULT_FAN_IN;
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	private Path tempDirectory;
+	
+	ExternalSorter(List<IdentifierOrder> identifierOrders, RecordCodec<T> codec) {
+		this.identifierOrders = identifierOrders;
+		this.codec = codec;
+	}
+	
+	public int getRunSize() {
+		return runSize;
+	}
+	
+	/**
+	 * Sets the number of records sorted in memory at once, 1048576 by default
+	 */
+	public ExternalSorter<T> setRunSize(int runSize) {
+		if(runSize < 1) {
+			throw new IllegalArgumentException("runSize must be positive: " + runSize);
+		}
+		this.runSize = runSize;
+		return this;
+	}
+	
+	public int getFanIn() {
+		return fanIn;
+	}
+	
+	/**
+	 * Sets the number of runs merged at once, and so the number of files open
+	 * at once, 64 by default
+	 */
+	public ExternalSorter<T> setFanIn(int fanIn) {
+		if(fanIn < 2) {
+			throw new IllegalArgumentException("fanIn must be at least 2: " + fanIn);
+		}
+		this.fanIn = fanIn;
+		return this;
+	}
+	
+	public int getBufferSize() {
+		return bufferSize;
+	}
+	
+	/**
+	 * Sets the size in bytes of the buffer for each file read or written,
+	 * 65536 by default
+	 */
+	public ExternalSorter<T> setBufferSize(int bufferSize) {
+		if(bufferSize < 1) {
+			throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+		}
+		this.bufferSize = bufferSize;
+		return this;
+	}
+	
+	public Path getTempDirectory() {
+		return tempDirectory;
+	}
+	
+	/**
+	 * Sets the directory for the runs' files, or null, the default, for the
+	 * system's temporary directory
+	 */
+	public ExternalSorter<T> setTempDirectory(Path tempDirectory) {
+		this.tempDirectory = tempDirectory;
+		return this;
+	}
+	
+	/**
+	 * Same as sort(records.iterator())
+	 */
+	public SortedIterator<T> sort(Iterable<? extends T> records) {
+		return sort(records.iterator());
+	}
+	
+	/**
+	 * Reads every record from the iterator, sorting them into runs and
+	 * merging those until no more than fanIn remain, and returns an iterator
+	 * merging the remaining runs as it's read.  The iterator deletes each
+	 * run's file once it has been read, and should be closed if it isn't
+	 * read to the end.  Records in the last run are returned as they were
+	 * read; all others are as the codec read them back.
+	 * @throws UncheckedIOException if a run's file can't be written or read,
+	 * in which case every file written has been deleted
+	 */
+	public SortedIterator<T> sort(Iterator<? extends T> records) {
+		List<Run> runs = new ArrayList<Run>();
+		boolean sorted = false;
+		try {
+			Object[] buffer = new Object[Math.min(runSize, 1024)];
+			int count = 0;
+			while(records.hasNext()) {
+				if(count == runSize) {
+					// writing the run empties the buffer for the next
+					runs.add(write(new MemorySource(buffer, sort(buffer), 0)));
+					count = 0;
+				} else if(count == buffer.length) {
+					buffer = Arrays.copyOf(buffer, (int)Math.min(runSize, buffer.length * 2L));
+				}
+				buffer[count++] = records.next();
+			}
+			
+			// the last run is merged from memory, so it counts towards fanIn
+			Object[] last = count == buffer.length ? buffer : Arrays.copyOf(buffer, count);
+			buffer = null;
+			while(runs.size() >= fanIn) {
+				runs = merge(runs);
+			}
+			
+			List<Source> sources = open(runs);
+			sources.add(new MemorySource(last, sort(last), sources.size()));
+			SortedIterator<T> iterator = new SortedIterator<T>(sources.size() == 1 ? sources.get(0) : new Merge(sources));
+			sorted = true;
+			return iterator;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			if(!sorted) {
+				delete(runs);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the positions of the elements in order
+	 */
+	private int[] sort(Object[] elements) {
+		if(elements.length < 2) {
+			return new int[elements.length];
+		}
+		return new SortKeys(identifierOrders, elements).sort();
+	}
+	
+	/**
+	 * Merges each consecutive group of fanIn runs into one, returning the
+	 * merged runs in the same order.  The files of the runs merged are
+	 * deleted as they are read.
+	 */
+	private List<Run> merge(List<Run> runs) throws IOException {
+		List<Run> merged = new ArrayList<Run>((runs.size() + fanIn - 1) / fanIn);
+		boolean done = false;
+		try {
+			for(int i = 0; i < runs.size(); i += fanIn) {
+				List<Run> group = runs.subList(i, Math.min(i + fanIn, runs.size()));
+				if(group.size() == 1) {
+					merged.add(group.get(0));
+					continue;
+				}
+				
+				Merge merge = new Merge(open(group));
+				try {
+					merged.add(write(merge));
+				} finally {
+					merge.close();
+				}
+			}
+			done = true;
+			return merged;
+		} finally {
+			if(!done) {
+				delete(merged);
+			}
+		}
+	}
+	
+	/**
+	 * Opens a source for each run, indexed in order
+	 */
+	private List<Source> open(List<Run> runs) throws IOException {
+		List<Source> sources = new ArrayList<Source>(runs.size() + 1);
+		boolean opened = false;
+		try {
+			for(Run run : runs) {
+				sources.add(new FileSource(run, sources.size()));
+			}
+			opened = true;
+			return sources;
+		} finally {
+			if(!opened) {
+				for(Source source : sources) {
+					try {
+						source.close();
+					} catch (IOException e) {
+						// the open failure is the one to report
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Writes every record from the source to a new file
+	 */
+	@SuppressWarnings("unchecked")
+	private Run write(Source source) throws IOException {
+		Path path = tempDirectory == null ? Files.createTempFile("pojosort", ".run") : Files.createTempFile(tempDirectory, "pojosort", ".run");
+		long count = 0;
+		boolean written = false;
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			ChannelOutput out = new ChannelOutput(channel, bufferSize);
+			while(source.advance()) {
+				codec.write((T)source.current, out);
+				count++;
+			}
+			out.flush();
+			written = true;
+		} finally {
+			if(!written) {
+				Files.deleteIfExists(path);
+			}
+		}
+		return new Run(path, count);
+	}
+	
+	private static void delete(List<Run> runs) {
+		for(Run run : runs) {
+			try {
+				Files.deleteIfExists(run.path);
+			} catch (IOException e) {
+				// leave the file for the system to clean up
+			}
+		}
+	}
+	
+	/**
+	 * The records of a sort, in order, merged from the runs as they're read.
+	 * Closing the iterator deletes any files not yet read, and is only needed
+	 * when it isn't read to the end.
+	 */
+	public static final class SortedIterator<T> implements Iterator<T>, Closeable {
+		private final Source source;
+		private boolean ready;
+		private boolean closed;
+		
+		private SortedIterator(Source source) {
+			this.source = source;
+		}
+		
+		/**
+		 * @throws UncheckedIOException if a run's file can't be read, in which
+		 * case the iterator is closed
+		 */
+		public boolean hasNext() {
+			if(!ready && !closed) {
+				try {
+					ready = source.advance();
+				} catch (IOException e) {
+					close();
+					throw new UncheckedIOException(e);
+				}
+				if(!ready) {
+					close();
+				}
+			}
+			return ready;
+		}
+		
+		@SuppressWarnings("unchecked")
+		public T next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			ready = false;
+			return (T)source.current;
+		}
+		
+		public void close() {
+			if(!closed) {
+				closed = true;
+				ready = false;
+				try {
+					source.close();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+	}
+	
+	private static final class Run {
+		private final Path path;
+		private final long count;
+		
+		Run(Path path, long count) {
+			this.path = path;
+			this.count = count;
+		}
+	}
+	
+	/**
+	 * Records in order, one at a time.  Each source holds the values of the
+	 * ordering's identifiers read from its current record so far, for
+	 * merging, and its index among the sources merged with it, which ranks
+	 * records that are equal in the ordering.
+	 */
+	private static abstract class Source {
+		protected Object current;
+		private final int index;
+		private Object[] values;
+		
+		// the number of values read, which are always the first ones
+		private int read;
+		
+		Source(int index) {
+			this.index = index;
+		}
+		
+		/**
+		 * Moves to the next record, returning false if there isn't one
+		 */
+		abstract boolean advance() throws IOException;
+		
+		void close() throws IOException {
+		}
+		
+		protected void setCurrent(Object current) {
+			this.current = current;
+			if(values != null) {
+				Arrays.fill(values, 0, read, null);
+			}
+			this.read = 0;
+		}
+		
+		/**
+		 * Returns the current record's value of the identifier, reading it and
+		 * any before it that haven't been read yet
+		 */
+		Object value(int identifier, KeyReader[] readers) {
+			if(values == null) {
+				values = new Object[readers.length];
+			}
+			while(read <= identifier) {
+				values[read] = readers[read].read(current);
+				read++;
+			}
+			return values[identifier];
+		}
+	}
+	
+	private static final class MemorySource extends Source {
+		private final Object[] elements;
+		private final int[] order;
+		private int next;
+		
+		MemorySource(Object[] elements, int[] order, int index) {
+			super(index);
+			this.elements = elements;
+			this.order = order;
+		}
+		
+		boolean advance() {
+			if(next == order.length) {
+				setCurrent(null);
+				return false;
+			}
+			
+			// let the element go once it's been returned
+			int position = order[next++];
+			setCurrent(elements[position]);
+			elements[position] = null;
+			return true;
+		}
+	}
+	
+	private final class FileSource extends Source {
+		private final Run run;
+		private final FileChannel channel;
+		private final ChannelInput in;
+		private long remaining;
+		
+		FileSource(Run run, int index) throws IOException {
+			super(index);
+			this.run = run;
+			this.channel = FileChannel.open(run.path, StandardOpenOption.READ);
+			this.in = new ChannelInput(channel, bufferSize);
+			this.remaining = run.count;
+		}
+		
+		boolean advance() throws IOException {
+			if(remaining == 0) {
+				setCurrent(null);
+				return false;
+			}
+			setCurrent(codec.read(in));
+			remaining--;
+			return true;
+		}
+		
+		void close() throws IOException {
+			try {
+				channel.close();
+			} finally {
+				Files.deleteIfExists(run.path);
+			}
+		}
+	}
+	
+	/**
+	 * Merges sources, kept in a min heap ordered by their current records,
+	 * the way TopK does: values are read only when a comparison first needs
+	 * them, and ties go to the source with the lower index.  Sources are
+	 * closed as they run out.
+	 */
+	private final class Merge extends Source {
+		private final IdentifierOrder[] orders;
+		private final KeyReader[] readers;
+		private final Source[] heap;
+		private int size;
+		
+		Merge(List<Source> sources) throws IOException {
+			super(0);
+			this.orders = identifierOrders.toArray(new IdentifierOrder[0]);
+			this.readers = new KeyReader[orders.length];
+			for(int i = 0; i < readers.length; i++) {
+				readers[i] = new KeyReader(orders[i]);
+			}
+			
+			this.heap = new Source[sources.size()];
+			boolean started = false;
+			try {
+				for(Source source : sources) {
+					if(source.advance()) {
+						heap[size] = source;
+						siftUp(size++);
+					} else {
+						source.close();
+					}
+				}
+				started = true;
+			} finally {
+				if(!started) {
+					for(Source source : sources) {
+						source.close();
+					}
+				}
+			}
+		}
+		
+		boolean advance() throws IOException {
+			if(size == 0) {
+				setCurrent(null);
+				return false;
+			}
+			
+			Source top = heap[0];
+			setCurrent(top.current);
+			if(!top.advance()) {
+				top.close();
+				heap[0] = heap[--size];
+				heap[size] = null;
+			}
+			if(size > 0) {
+				siftDown(0);
+			}
+			return true;
+		}
+		
+		void close() throws IOException {
+			IOException failure = null;
+			for(int i = 0; i < size; i++) {
+				try {
+					heap[i].close();
+				} catch (IOException e) {
+					failure = e;
+				}
+				heap[i] = null;
+			}
+			size = 0;
+			if(failure != null) {
+				throw failure;
+			}
+		}
+		
+		private void siftUp(int index) {
+			Source source = heap[index];
+			while(index > 0) {
+				int parent = (index - 1) >>> 1;
+				if(compare(source, heap[parent]) >= 0) {
+					break;
+				}
+				heap[index] = heap[parent];
+				index = parent;
+			}
+			heap[index] = source;
+		}
+		
+		private void siftDown(int index) {
+			Source source = heap[index];
+			int half = size >>> 1;
+			while(index < half) {
+				int child = 2 * index + 1;
+				if(child + 1 < size && compare(heap[child + 1], heap[child]) < 0) {
+					child++;
+				}
+				if(compare(source, heap[child]) <= 0) {
+					break;
+				}
+				heap[index] = heap[child];
+				index = child;
+			}
+			heap[index] = source;
+		}
+		
+		private int compare(Source source1, Source source2) {
+			for(int i = 0; i < readers.length; i++) {
+				int compareTo = KeyReader.compare(readers[i].getIdentifier(), source1.value(i, readers), source1.current, source2.value(i, readers), source2.current);
+				if(compareTo != 0) {
+					return orders[i].isAscending() ? compareTo : -compareTo;
+				}
+			}
+			return Integer.compare(source1.index, source2.index);
+		}
+	}
+}
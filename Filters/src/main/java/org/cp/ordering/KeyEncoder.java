@@ -0,0 +1,179 @@
+package org.cp.ordering;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.cp.pojoconditions.FieldTypeException;
+import org.cp.pojoconditions.IncompatibleFieldsException;
+import org.cp.pojoconditions.NonexistentIdentifierException;
+
+/**
+ * Encodes the values of an ordering's identifiers for an object into a
+ * single array of bytes, such that comparing two objects' keys byte by byte,
+ * as unsigned bytes, with compare gives the same order as the ordering's
+ * comparator.  A key is read and encoded once per object, after which
+ * comparisons read no fields or methods and make no calls to compareTo,
+ * however many identifiers the ordering has.  Keys also suit storing objects
+ * in sorted files or indexes, as long as they're compared with keys from the
+ * same encoder.
+ *
+ * Each value is encoded in turn, big endian:
+ * Bytes, Shorts, Integers and Longs in 1, 2, 4 and 8 bytes with their sign
+ * bits flipped, so negative values come first;
+ * Floats and Doubles in 4 and 8 bytes with all their bits flipped if they are
+ * negative, and their sign bits flipped if not, so they order in the same
+ * way as compareTo, with -0.0 before 0.0 and NaN last;
+ * Characters in 2 bytes, and Booleans in 1;
+ * Strings one char at a time, in 1 to 3 bytes as in UTF-8, with the char 0
+ * as the bytes 0 and 255, and ending with two 0 bytes, so a String comes
+ * before any longer String it starts.
+ * Values of descending identifiers have every byte flipped.  No encoding is
+ * the start of another encoding of the same type, so flipping a value's bytes
+ * reverses its order against every other value, including those it starts.
+ *
+ * Not thread safe.
+ */
+public final class KeyEncoder<T> {
+	private final IdentifierOrder[] identifierOrders;
+	private final KeyReader[] readers;
+	
+	// the class of each identifier's values, and of the first object read, once one has been read
+	private final Class<?>[] valueClasses;
+	private final Class<?>[] pojoClasses;
+	
+	private byte[] buffer = new byte[64];
+	private int length;
+	
+	KeyEncoder(List<IdentifierOrder> identifierOrders) {
+		this.identifierOrders = identifierOrders.toArray(new IdentifierOrder[0]);
+		this.readers = new KeyReader[this.identifierOrders.length];
+		for(int i = 0; i < readers.length; i++) {
+			readers[i] = new KeyReader(this.identifierOrders[i]);
+		}
+		this.valueClasses = new Class<?>[readers.length];
+		this.pojoClasses = new Class<?>[readers.length];
+	}
+	
+	/**
+	 * Returns the key of the object
+	 * @throws NonexistentIdentifierException if the object has no such field or method
+	 * @throws FieldTypeException if a value is null, or isn't a number, Character,
+	 * Boolean or String
+	 * @throws IncompatibleFieldsException if a value has a different class
+	 * than the same identifier's values in objects encoded before
+	 */
+	public byte[] encode(T pojo) {
+		length = 0;
+		for(int i = 0; i < readers.length; i++) {
+			Object value = readers[i].read(pojo);
+			checkClass(i, value, pojo);
+			
+			int start = length;
+			append(value);
+			if(!identifierOrders[i].isAscending()) {
+				for(int b = start; b < length; b++) {
+					buffer[b] = (byte)~buffer[b];
+				}
+			}
+		}
+		return Arrays.copyOf(buffer, length);
+	}
+	
+	/**
+	 * Compares keys as unsigned bytes, negative if the first comes first
+	 */
+	public static int compare(byte[] key1, byte[] key2) {
+		int length = Math.min(key1.length, key2.length);
+		for(int i = 0; i < length; i++) {
+			if(key1[i] != key2[i]) {
+				return (key1[i] & 0xFF) - (key2[i] & 0xFF);
+			}
+		}
+		return key1.length - key2.length;
+	}
+	
+	private void checkClass(int identifier, Object value, Object pojo) {
+		if(value == null) {
+			throw new FieldTypeException(identifierOrders[identifier].getIdentifier(), null, pojo.getClass());
+		}
+		
+		if(valueClasses[identifier] == null) {
+			if(!isEncodable(value.getClass())) {
+				throw new FieldTypeException(identifierOrders[identifier].getIdentifier(), value.getClass(), pojo.getClass());
+			}
+			valueClasses[identifier] = value.getClass();
+			pojoClasses[identifier] = pojo.getClass();
+		} else if(value.getClass() != valueClasses[identifier]) {
+			throw new IncompatibleFieldsException(identifierOrders[identifier].getIdentifier(), valueClasses[identifier], pojoClasses[identifier],
+					value.getClass(), pojo.getClass());
+		}
+	}
+	
+	private static boolean isEncodable(Class<?> valueClass) {
+		return valueClass == Integer.class || valueClass == Long.class || valueClass == Short.class || valueClass == Byte.class
+				|| valueClass == Double.class || valueClass == Float.class || valueClass == Character.class
+				|| valueClass == Boolean.class || valueClass == String.class;
+	}
+	
+	private void append(Object value) {
+		if(value instanceof String) {
+			appendString((String)value);
+		} else if(value instanceof Integer) {
+			appendBits(((Integer)value) ^ Integer.MIN_VALUE, 4);
+		} else if(value instanceof Long) {
+			appendBits(((Long)value) ^ Long.MIN_VALUE, 8);
+		} else if(value instanceof Double) {
+			appendBits(SortKeys.doubleKey((Double)value) ^ Long.MIN_VALUE, 8);
+		} else if(value instanceof Float) {
+			int bits = Float.floatToIntBits((Float)value);
+			appendBits((bits ^ ((bits >> 31) & Integer.MAX_VALUE)) ^ Integer.MIN_VALUE, 4);
+		} else if(value instanceof Short) {
+			appendBits(((Short)value) ^ Short.MIN_VALUE, 2);
+		} else if(value instanceof Byte) {
+			appendBits(((Byte)value) ^ Byte.MIN_VALUE, 1);
+		} else if(value instanceof Character) {
+			appendBits((Character)value, 2);
+		} else {
+			appendBits((Boolean)value ? 1 : 0, 1);
+		}
+	}
+	
+	/**
+	 * Appends the low bytes of the bits, most significant first
+	 */
+	private void appendBits(long bits, int bytes) {
+		ensure(bytes);
+		for(int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+			buffer[length++] = (byte)(bits >>> shift);
+		}
+	}
+	
+	private void appendString(String value) {
+		ensure(value.length() * 3 + 2);
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if(c == 0) {
+				buffer[length++] = 0;
+				buffer[length++] = (byte)0xFF;
+			} else if(c < 0x80) {
+				buffer[length++] = (byte)c;
+			} else if(c < 0x800) {
+				buffer[length++] = (byte)(0xC0 | c >> 6);
+				buffer[length++] = (byte)(0x80 | c & 0x3F);
+			} else {
+				// surrogates are encoded on their own, keeping the order of chars rather than code points
+				buffer[length++] = (byte)(0xE0 | c >> 12);
+				buffer[length++] = (byte)(0x80 | c >> 6 & 0x3F);
+				buffer[length++] = (byte)(0x80 | c & 0x3F);
+			}
+		}
+		buffer[length++] = 0;
+		buffer[length++] = 0;
+	}
+	
+	private void ensure(int bytes) {
+		if(length + bytes > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + bytes));
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package org.cp.ordering;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cp.pojoconditions.FieldTypeException;
+import org.cp.pojoconditions.IncompatibleFieldsException;
+import org.cp.pojoconditions.NonexistentIdentifierException;
+
+/**
+ * Reads one identifier of an ordering from objects of any class, the way the
+ * ordering's comparator does, but looking the field or method up once for
+ * each class of object rather than for every value.  Objects of the same
+ * class as the last one read skip the lookup entirely.
+ *
+ * Not thread safe.
+ */
+final class KeyReader {
+	private final String identifier;
+	private final boolean isMethod;
+	private final Map<Class<?>, MethodHandle> handles = new HashMap<Class<?>, MethodHandle>();
+	
+	private Class<?> lastClass;
+	private MethodHandle lastHandle;
+	
+	KeyReader(IdentifierOrder identifierOrder) {
+		this.identifier = identifierOrder.getIdentifier();
+		this.isMethod = identifierOrder.isMethod();
+	}
+	
+	String getIdentifier() {
+		return identifier;
+	}
+	
+	/**
+	 * Reads the value, boxing primitives
+	 * @throws NonexistentIdentifierException if the object's class has no such field or method
+	 */
+	Object read(Object pojo) {
+		if(pojo.getClass() != lastClass) {
+			lastHandle = handles.get(pojo.getClass());
+			if(lastHandle == null) {
+				lastHandle = lookup(pojo.getClass());
+				handles.put(pojo.getClass(), lastHandle);
+			}
+			lastClass = pojo.getClass();
+		}
+		
+		try {
+			return (Object)lastHandle.invokeExact(pojo);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RuntimeException(t);
+		}
+	}
+	
+	/**
+	 * Compares two values of the identifier in ascending order, failing in the
+	 * same way as the ordering's comparator when they can't be compared
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	static int compare(String identifier, Object value1, Object pojo1, Object value2, Object pojo2) {
+		if(!(value1 instanceof Comparable) && value1 != null) {
+			throw new FieldTypeException(identifier, value1.getClass(), pojo1.getClass());
+		} else if(!(value2 instanceof Comparable) && value2 != null) {
+			throw new FieldTypeException(identifier, value2.getClass(), pojo2.getClass());
+		}
+		
+		try {
+			return Integer.signum(((Comparable)value1).compareTo(value2));
+		} catch (ClassCastException e) {
+			throw new IncompatibleFieldsException(identifier, value1.getClass(), pojo1.getClass(), value2.getClass(), pojo2.getClass());
+		}
+	}
+	
+	private MethodHandle lookup(Class<?> pojoClass) {
+		try {
+			MethodHandle handle;
+			int modifiers;
+			if(isMethod) {
+				Method method = pojoClass.getDeclaredMethod(identifier);
+				method.setAccessible(true);
+				handle = MethodHandles.lookup().unreflect(method);
+				modifiers = method.getModifiers();
+			} else {
+				Field field = pojoClass.getDeclaredField(identifier);
+				field.setAccessible(true);
+				handle = MethodHandles.lookup().unreflectGetter(field);
+				modifiers = field.getModifiers();
+			}
+			
+			if(Modifier.isStatic(modifiers)) {
+				handle = MethodHandles.dropArguments(handle, 0, Object.class);
+			}
+			return handle.asType(MethodType.methodType(Object.class, Object.class));
+		} catch (NoSuchFieldException e) {
+			throw new NonexistentIdentifierException(identifier, false, pojoClass);
+		} catch (NoSuchMethodException e) {
+			throw new NonexistentIdentifierException(identifier, true, pojoClass);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
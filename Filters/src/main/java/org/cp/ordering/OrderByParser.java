@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.cp.pojoconditions.ParserEngine;
 import org.cp.pojoconditions.PojoParser;
 
 import com.github.fge.grappa.Grappa;
@@ -59,10 +60,24 @@ public class OrderByParser extends PojoParser<List<IdentifierOrder>> {
 	}
 	
     /**
-     * Parses the given order by string and returns a list of identifiers with their order
+     * Parses the given order by string and returns a list of identifiers with their order,
+     * using the default parser engine
      * @throws IllegalArgumentException if the condition fails to parse
      */
 	public static List<IdentifierOrder> parseOrderBy(String orderBy, boolean matchMethods) {
+		return parseOrderBy(orderBy, matchMethods, ParserEngine.getDefault());
+	}
+	
+    /**
+     * Parses the given order by string and returns a list of identifiers with their order,
+     * using the given parser engine
+     * @throws IllegalArgumentException if the condition fails to parse
+     */
+	public static List<IdentifierOrder> parseOrderBy(String orderBy, boolean matchMethods, ParserEngine engine) {
+		if(engine == ParserEngine.RECURSIVE_DESCENT) {
+			return RecursiveDescentOrderByParser.parseOrderBy(orderBy, matchMethods);
+		}
+		
     	OrderByParser parser = Grappa.createParser(OrderByParser.class, matchMethods);
     	ListeningParseRunner<List<IdentifierOrder>> runner = new ListeningParseRunner<>(parser.orderBy());
     	ParsingResult<List<IdentifierOrder>> result = runner.run(orderBy);
@@ -0,0 +1,203 @@
+package org.cp.ordering;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cp.pojoconditions.FieldTypeException;
+import org.cp.pojoconditions.ValueType;
+
+/**
+ * The codec returned by RecordCodec.forClass.  Fields are written in the
+ * order the class and then its superclasses declare them, primitives with
+ * DataOutput's methods for their type, and Strings as their length in chars
+ * followed by writeChars, which unlike writeUTF has no limit on length and
+ * keeps unpaired surrogates.
+ * Fields that may be null are preceded by a boolean that is true if the
+ * value follows.
+ */
+final class PojoCodec<T> implements RecordCodec<T> {
+	private final Constructor<T> constructor;
+	private final Field[] fields;
+	private final ValueType[] types;
+	private final boolean[] nullable;
+	
+	PojoCodec(Class<T> clazz) {
+		try {
+			this.constructor = clazz.getDeclaredConstructor();
+			this.constructor.setAccessible(true);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException(clazz.getName() + " has no constructor without parameters");
+		}
+		
+		List<Field> fields = new ArrayList<Field>();
+		for(Class<?> declaringClass = clazz; declaringClass != Object.class; declaringClass = declaringClass.getSuperclass()) {
+			for(Field field : declaringClass.getDeclaredFields()) {
+				if(!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()) && !field.isSynthetic()) {
+					fields.add(field);
+				}
+			}
+		}
+		
+		this.fields = fields.toArray(new Field[0]);
+		this.types = new ValueType[this.fields.length];
+		this.nullable = new boolean[this.fields.length];
+		for(int i = 0; i < this.fields.length; i++) {
+			Field field = this.fields[i];
+			types[i] = ValueType.forClass(field.getType());
+			if(types[i] == null) {
+				throw new FieldTypeException(field.getName(), field.getType(), clazz);
+			}
+			nullable[i] = !field.getType().isPrimitive();
+			field.setAccessible(true);
+		}
+	}
+	
+	public void write(T record, DataOutput out) throws IOException {
+		try {
+			for(int i = 0; i < fields.length; i++) {
+				Field field = fields[i];
+				if(nullable[i]) {
+					Object value = field.get(record);
+					out.writeBoolean(value != null);
+					if(value != null) {
+						writeBoxed(types[i], value, out);
+					}
+					continue;
+				}
+				
+				switch(types[i]) {
+				case BYTE:
+					out.writeByte(field.getByte(record));
+					break;
+				case SHORT:
+					out.writeShort(field.getShort(record));
+					break;
+				case INT:
+					out.writeInt(field.getInt(record));
+					break;
+				case LONG:
+					out.writeLong(field.getLong(record));
+					break;
+				case FLOAT:
+					out.writeFloat(field.getFloat(record));
+					break;
+				case DOUBLE:
+					out.writeDouble(field.getDouble(record));
+					break;
+				default:
+					out.writeBoolean(field.getBoolean(record));
+					break;
+				}
+			}
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	public T read(DataInput in) throws IOException {
+		try {
+			T record = constructor.newInstance();
+			for(int i = 0; i < fields.length; i++) {
+				Field field = fields[i];
+				if(nullable[i]) {
+					field.set(record, in.readBoolean() ? readBoxed(types[i], in) : null);
+					continue;
+				}
+				
+				switch(types[i]) {
+				case BYTE:
+					field.setByte(record, in.readByte());
+					break;
+				case SHORT:
+					field.setShort(record, in.readShort());
+					break;
+				case INT:
+					field.setInt(record, in.readInt());
+					break;
+				case LONG:
+					field.setLong(record, in.readLong());
+					break;
+				case FLOAT:
+					field.setFloat(record, in.readFloat());
+					break;
+				case DOUBLE:
+					field.setDouble(record, in.readDouble());
+					break;
+				default:
+					field.setBoolean(record, in.readBoolean());
+					break;
+				}
+			}
+			return record;
+		} catch (InstantiationException e) {
+			throw new RuntimeException(e);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		} catch (InvocationTargetException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static void writeBoxed(ValueType type, Object value, DataOutput out) throws IOException {
+		switch(type) {
+		case BYTE:
+			out.writeByte((Byte)value);
+			break;
+		case SHORT:
+			out.writeShort((Short)value);
+			break;
+		case INT:
+			out.writeInt((Integer)value);
+			break;
+		case LONG:
+			out.writeLong((Long)value);
+			break;
+		case FLOAT:
+			out.writeFloat((Float)value);
+			break;
+		case DOUBLE:
+			out.writeDouble((Double)value);
+			break;
+		case BOOLEAN:
+			out.writeBoolean((Boolean)value);
+			break;
+		default:
+			String string = (String)value;
+			out.writeInt(string.length());
+			out.writeChars(string);
+			break;
+		}
+	}
+	
+	private static Object readBoxed(ValueType type, DataInput in) throws IOException {
+		switch(type) {
+		case BYTE:
+			return in.readByte();
+		case SHORT:
+			return in.readShort();
+		case INT:
+			return in.readInt();
+		case LONG:
+			return in.readLong();
+		case FLOAT:
+			return in.readFloat();
+		case DOUBLE:
+			return in.readDouble();
+		case BOOLEAN:
+			return in.readBoolean();
+		default:
+			char[] chars = new char[in.readInt()];
+			for(int i = 0; i < chars.length; i++) {
+				chars[i] = in.readChar();
+			}
+			return new String(chars);
+		}
+	}
+}
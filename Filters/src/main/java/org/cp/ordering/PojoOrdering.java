@@ -3,15 +3,35 @@ package org.cp.ordering;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
 
 import org.cp.pojoconditions.FieldTypeException;
 import org.cp.pojoconditions.IncompatibleFieldsException;
 import org.cp.pojoconditions.NonexistentIdentifierException;
+import org.cp.pojoconditions.ParseCache;
 
 public class PojoOrdering<T> {
+	private static final ParseCache<List<IdentifierOrder>> ORDER_BY_CACHE = new ParseCache<List<IdentifierOrder>>(4096) {
+		protected List<IdentifierOrder> parse(String orderBy, boolean matchMethods) {
+			return Collections.unmodifiableList(OrderByParser.parseOrderBy(orderBy, matchMethods));
+		}
+	};
+	
+	// lists no larger than this are sorted on one thread by parallelSort
+	private static final int DEFAULT_PARALLEL_THRESHOLD = 8192;
+	
 	private final List<IdentifierOrder> identifierOrders;
 	
 	public PojoOrdering(List<IdentifierOrder> identifierOrders) {
@@ -19,21 +39,328 @@ public class PojoOrdering<T> {
 	}
 	
 	public static <T> PojoOrdering<T> forOrderBy(String orderBy) {
-		return new PojoOrdering<T>(OrderByParser.parseOrderBy(orderBy));
+		return new PojoOrdering<T>(ORDER_BY_CACHE.get(orderBy, true));
 	}
 	
 	public static <T> PojoOrdering<T> forOrderBy(String orderBy, boolean matchMethods) {
-		return new PojoOrdering<T>(OrderByParser.parseOrderBy(orderBy, matchMethods));
+		return new PojoOrdering<T>(ORDER_BY_CACHE.get(orderBy, matchMethods));
+	}
+	
+	/**
+	 * The cache of parsed order by clauses shared by all orderings built with
+	 * forOrderBy.  Holds the 4096 most recently used clauses by default, which
+	 * can be changed with setMaximumSize.
+	 */
+	public static ParseCache<List<IdentifierOrder>> getOrderByCache() {
+		return ORDER_BY_CACHE;
 	}
 	
+	List<IdentifierOrder> getIdentifierOrders() {
+		return identifierOrders;
+	}
+	
+	/**
+	 * Sorts the list.  Elements that are equal in the ordering keep their
+	 * order.
+	 *
+	 * The values to sort by are read once from each element before sorting,
+	 * rather than for each comparison as the comparator does, so each method
+	 * is called once per element.  Every value of every element is read, so
+	 * a missing or unsupported identifier fails the sort even where earlier
+	 * identifiers decide the order.
+	 */
 	public void sort(List<T> list) {
-		Collections.sort(list, new ReflectiveComparator());
+		Object[] elements = list.toArray();
+		if(elements.length > 1) {
+			apply(new SortKeys(identifierOrders, elements).sort(), elements, list);
+		}
+	}
+	
+	/**
+	 * Sorts the list by keys from keyEncoder, encoding each element's values
+	 * once into a single key and comparing keys byte by byte.  Gives the same
+	 * order as sort(list), keeping equal elements in order, but every value
+	 * must be a number, Character, Boolean or String, and each identifier's
+	 * values must all be of the same class.  Suits orderings with several
+	 * identifiers that include Strings, which sort(list) compares one column
+	 * at a time.
+	 * @throws FieldTypeException if a value can't be encoded
+	 * @throws IncompatibleFieldsException if an identifier's values are of different classes
+	 */
+	@SuppressWarnings("unchecked")
+	public void sortByEncodedKeys(List<T> list) {
+		Object[] elements = list.toArray();
+		if(elements.length > 1) {
+			apply(new SortKeys((KeyEncoder<Object>)keyEncoder(), elements).sort(), elements, list);
+		}
+	}
+	
+	/**
+	 * Returns an encoder of the values of this ordering's identifiers into
+	 * keys that compare, as unsigned bytes, in this ordering.  Encoders are
+	 * not thread safe, and keys only compare with keys from the same encoder.
+	 */
+	public KeyEncoder<T> keyEncoder() {
+		return new KeyEncoder<T>(identifierOrders);
+	}
+	
+	/**
+	 * Sorts the array in the same way as sort(list)
+	 */
+	public void sort(T[] array) {
+		if(array.length > 1) {
+			SortKeys keys = new SortKeys(identifierOrders, array.clone());
+			keys.reorder(keys.sort(), array);
+		}
+	}
+	
+	/**
+	 * Sorts the list in the same way as sort(list), using the threads of the
+	 * common ForkJoinPool.  Lists of up to 8192 elements are sorted on the
+	 * calling thread.
+	 */
+	public void parallelSort(List<T> list) {
+		parallelSort(list, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+	}
+	
+	/**
+	 * Sorts the list in the same way as sort(list), using the pool's threads
+	 * to read the elements' values and sort them.  The result is the same as
+	 * sort(list), including the order of equal elements.  The work is split
+	 * into ranges of no more than threshold elements, and lists no larger
+	 * than the threshold are sorted on the calling thread.
+	 */
+	public void parallelSort(List<T> list, ForkJoinPool pool, int threshold) {
+		checkThreshold(threshold);
+		Object[] elements = list.toArray();
+		if(elements.length > 1) {
+			apply(new SortKeys(identifierOrders, elements, pool, threshold).sort(), elements, list);
+		}
+	}
+	
+	/**
+	 * Sorts the array in the same way as parallelSort(list)
+	 */
+	public void parallelSort(T[] array) {
+		parallelSort(array, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+	}
+	
+	/**
+	 * Sorts the array in the same way as parallelSort(list, pool, threshold)
+	 */
+	public void parallelSort(T[] array, ForkJoinPool pool, int threshold) {
+		checkThreshold(threshold);
+		if(array.length > 1) {
+			SortKeys keys = new SortKeys(identifierOrders, array.clone(), pool, threshold);
+			keys.reorder(keys.sort(), array);
+		}
+	}
+	
+	/**
+	 * Returns the first k elements in this ordering, sorted, in a single pass
+	 * over the elements that holds no more than k of them at once.  The same
+	 * as sorting all the elements and keeping the first k, including for
+	 * elements that are equal in the ordering, but taking time proportional
+	 * to n log k rather than n log n.
+	 *
+	 * The elements kept are in a heap, with the values of their identifiers
+	 * kept alongside them once read.  Each element's values are read as
+	 * comparisons need them, so most elements of a large input are discarded
+	 * having had only their first value read.
+	 */
+	public List<T> topK(Iterable<? extends T> elements, int k) {
+		return topK(elements.iterator(), k);
+	}
+	
+	/**
+	 * Same as topK(elements, k) for the elements the iterator returns
+	 */
+	public List<T> topK(Iterator<? extends T> iterator, int k) {
+		checkLimit(k);
+		TopK<T> top = new TopK<T>(identifierOrders, k);
+		for(long sequence = 0; k > 0 && iterator.hasNext(); sequence++) {
+			top.offer(iterator.next(), sequence);
+		}
+		return top.toList();
+	}
+	
+	/**
+	 * Same as topK(list, k), using the threads of the common ForkJoinPool.
+	 * Lists of up to 8192 elements are handled on the calling thread.
+	 */
+	public List<T> parallelTopK(List<? extends T> list, int k) {
+		return parallelTopK(list, k, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+	}
+	
+	/**
+	 * Same as topK(list, k), using the pool's threads.  The list is split into
+	 * ranges of no more than threshold elements, the first k of each range are
+	 * found independently, and these are merged.
+	 */
+	public List<T> parallelTopK(List<? extends T> list, int k, ForkJoinPool pool, int threshold) {
+		checkLimit(k);
+		checkThreshold(threshold);
+		if(k == 0) {
+			return new ArrayList<T>();
+		}
+		
+		Object[] elements = list.toArray();
+		TopKRange range = new TopKRange(elements, 0, elements.length, k, threshold);
+		return (elements.length > threshold ? pool.invoke(range) : range.compute()).toList();
+	}
+	
+	/**
+	 * Returns a sorter for more records than fit in memory, which sorts them
+	 * in runs, writes the runs to temporary files with the codec, and merges
+	 * them back.  RecordCodec.forClass provides a codec for simple pojos.
+	 */
+	public ExternalSorter<T> externalSorter(RecordCodec<T> codec) {
+		return new ExternalSorter<T>(identifierOrders, codec);
+	}
+	
+	private static void checkLimit(int limit) {
+		if(limit < 0) {
+			throw new IllegalArgumentException("limit must not be negative: " + limit);
+		}
+	}
+	
+	private static void checkThreshold(int threshold) {
+		if(threshold < 1) {
+			throw new IllegalArgumentException("threshold must be positive: " + threshold);
+		}
+	}
+	
+	/**
+	 * Puts the elements into the list in the order given by their positions
+	 */
+	@SuppressWarnings("unchecked")
+	private void apply(int[] order, Object[] elements, List<T> list) {
+		ListIterator<T> iterator = list.listIterator();
+		for(int position : order) {
+			iterator.next();
+			iterator.set((T)elements[position]);
+		}
+	}
+	
+	/**
+	 * Builds a comparator for objects of the provided class.  Every identifier
+	 * in the ordering is looked up in the class once, here, and compared with
+	 * the comparison for its type, so comparing objects with the returned
+	 * comparator does no reflective lookups, and primitive values aren't
+	 * boxed.  Useful when comparing large numbers of objects of the same class.
+	 * @throws NonexistentIdentifierException if the class does not declare an
+	 * identifier in the ordering
+	 */
+	public Comparator<T> compile(Class<T> clazz) {
+		return CompiledComparator.compile(identifierOrders, clazz);
 	}
 	
 	public Comparator<T> getComparator() {
 		return new ReflectiveComparator();
 	}
 	
+	/**
+	 * Same as getComparator().  The comparator holds no state, so it can be
+	 * used to sort streams, including parallel streams: stream.sorted(ordering.asComparator())
+	 */
+	public Comparator<T> asComparator() {
+		return getComparator();
+	}
+	
+	/**
+	 * Returns a collector that collects elements into a list sorted by this
+	 * ordering.  Elements that are equal in the ordering keep their encounter order.
+	 */
+	public Collector<T, ?, List<T>> toSortedList() {
+		return toSortedList(Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Returns a collector that collects the first limit elements in this ordering
+	 * into a sorted list.  Elements that are equal in the ordering keep their
+	 * encounter order.  No more than twice the limit elements are held at once,
+	 * so a small limit needs little memory however many elements are collected.
+	 */
+	public Collector<T, ?, List<T>> toSortedList(final int limit) {
+		checkLimit(limit);
+		
+		return Collector.of(new Supplier<List<T>>() {
+			public List<T> get() {
+				return new ArrayList<T>();
+			}
+		}, new BiConsumer<List<T>, T>() {
+			public void accept(List<T> list, T object) {
+				list.add(object);
+				if(list.size() - limit >= limit) {
+					truncate(list, limit);
+				}
+			}
+		}, new BinaryOperator<List<T>>() {
+			public List<T> apply(List<T> left, List<T> right) {
+				left.addAll(right);
+				if(left.size() - limit >= limit) {
+					truncate(left, limit);
+				}
+				return left;
+			}
+		}, new Function<List<T>, List<T>>() {
+			public List<T> apply(List<T> list) {
+				truncate(list, limit);
+				return list;
+			}
+		});
+	}
+	
+	/**
+	 * Sorts the list and removes all but the first limit elements
+	 */
+	private void truncate(List<T> list, int limit) {
+		sort(list);
+		if(list.size() > limit) {
+			list.subList(limit, list.size()).clear();
+		}
+	}
+	
+	/**
+	 * Finds the first k elements of a range, splitting it in half until no
+	 * larger than the threshold
+	 */
+	private class TopKRange extends RecursiveTask<TopK<T>> {
+		private static final long serialVersionUID = 3094652917761307126L;
+		
+		private final Object[] elements;
+		private final int from;
+		private final int to;
+		private final int k;
+		private final int threshold;
+		
+		TopKRange(Object[] elements, int from, int to, int k, int threshold) {
+			this.elements = elements;
+			this.from = from;
+			this.to = to;
+			this.k = k;
+			this.threshold = threshold;
+		}
+		
+		@Override
+		protected TopK<T> compute() {
+			if(to - from <= threshold) {
+				TopK<T> top = new TopK<T>(identifierOrders, k);
+				for(int i = from; i < to; i++) {
+					top.offer(elements[i], i);
+				}
+				return top;
+			}
+			
+			int middle = (from + to) >>> 1;
+			TopKRange right = new TopKRange(elements, middle, to, k, threshold);
+			right.fork();
+			TopK<T> top = new TopKRange(elements, from, middle, k, threshold).compute();
+			top.offerAll(right.join());
+			return top;
+		}
+	}
+	
 	private class ReflectiveComparator implements Comparator<T> {
 		public Object getValueFromMethod(Object pojo, String identifier) {
 			Method method = null;
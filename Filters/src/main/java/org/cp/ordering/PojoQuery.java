@@ -0,0 +1,190 @@
+package org.cp.ordering;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.cp.pojoconditions.PojoEvaluator;
+
+/**
+ * A query combining a condition, an ordering and a page of the results, such
+ * as "where score > 100 order by score desc, name limit 20 offset 40".  Every
+ * clause is optional, but they must be in that order.
+ *
+ * Executing the query makes a single pass over the elements, testing each
+ * against the condition as it goes, and picks the cheapest way to produce
+ * the page:
+ * SCAN when there is no order by, which stops reading as soon as the page
+ * is filled;
+ * TOP_K when there is both an order by and a limit, which keeps only the
+ * first offset + limit matches, reading their values as they are compared,
+ * the same as PojoOrdering.topK;
+ * SORT when there is an order by without a limit, which sorts every match,
+ * reading each value once, the same as PojoOrdering.sort.
+ *
+ * Queries hold no state once built, so one can be executed by several
+ * threads at once.
+ */
+public class PojoQuery<T> {
+	public enum Strategy {
+		SCAN,
+		TOP_K,
+		SORT
+	}
+	
+	// null when there is no where clause
+	private final PojoEvaluator evaluator;
+	
+	// null when there is no order by clause
+	private final PojoOrdering<T> ordering;
+	
+	// -1 when there is no limit clause
+	private final int limit;
+	private final int offset;
+	
+	private PojoQuery(PojoEvaluator evaluator, PojoOrdering<T> ordering, int limit, int offset) {
+		this.evaluator = evaluator;
+		this.ordering = ordering;
+		this.limit = limit;
+		this.offset = offset;
+	}
+	
+	/**
+	 * See forQuery(query, boolean).  Defaults the matchMethods parameter to
+	 * true, as PojoOrdering.forOrderBy does.
+	 */
+	public static <T> PojoQuery<T> forQuery(String query) {
+		return forQuery(query, true);
+	}
+	
+	/**
+	 * Builds a query of the form
+	 * "[where condition] [order by identifier [asc|desc], ...] [limit n] [offset m]".
+	 * The condition and the order by clause accept the same grammar as
+	 * PojoEvaluator.forCondition and PojoOrdering.forOrderBy, and are parsed
+	 * through the same caches.
+	 * @throws IllegalArgumentException if the query fails to parse
+	 */
+	public static <T> PojoQuery<T> forQuery(String query, boolean matchMethods) {
+		QueryParser parser = QueryParser.parseQuery(query);
+		PojoEvaluator evaluator = parser.getCondition() == null ? null : PojoEvaluator.forCondition(parser.getCondition(), matchMethods);
+		PojoOrdering<T> ordering = parser.getOrderBy() == null ? null : PojoOrdering.<T>forOrderBy(parser.getOrderBy(), matchMethods);
+		return new PojoQuery<T>(evaluator, ordering, parser.getLimit(), parser.getOffset());
+	}
+	
+	/**
+	 * The evaluator for the where clause, or null if there isn't one
+	 */
+	public PojoEvaluator getEvaluator() {
+		return evaluator;
+	}
+	
+	/**
+	 * The ordering for the order by clause, or null if there isn't one
+	 */
+	public PojoOrdering<T> getOrdering() {
+		return ordering;
+	}
+	
+	/**
+	 * The limit, or -1 if there is no limit clause
+	 */
+	public int getLimit() {
+		return limit;
+	}
+	
+	public int getOffset() {
+		return offset;
+	}
+	
+	public Strategy getStrategy() {
+		if(ordering == null) {
+			return Strategy.SCAN;
+		}
+		return limit >= 0 ? Strategy.TOP_K : Strategy.SORT;
+	}
+	
+	/**
+	 * Same as execute(elements.iterator())
+	 */
+	public List<T> execute(Iterable<? extends T> elements) {
+		return execute(elements.iterator());
+	}
+	
+	/**
+	 * Returns the page of elements matching the condition, in order.  Elements
+	 * equal in the ordering, or all elements when there is no order by, keep
+	 * the order the iterator returned them in.
+	 * @throws FieldException if the condition or ordering names a field or
+	 * method an element doesn't have, or can't compare its values
+	 */
+	public List<T> execute(Iterator<? extends T> iterator) {
+		if(limit == 0) {
+			return new ArrayList<T>();
+		}
+		
+		switch(getStrategy()) {
+		case SCAN:
+			return scan(iterator);
+		case TOP_K:
+			return topK(iterator);
+		default:
+			return sort(iterator);
+		}
+	}
+	
+	private boolean matches(T element) {
+		return evaluator == null || evaluator.matches(element);
+	}
+	
+	private List<T> scan(Iterator<? extends T> iterator) {
+		List<T> page = new ArrayList<T>();
+		int skipped = 0;
+		while((limit < 0 || page.size() < limit) && iterator.hasNext()) {
+			T element = iterator.next();
+			if(matches(element)) {
+				if(skipped < offset) {
+					skipped++;
+				} else {
+					page.add(element);
+				}
+			}
+		}
+		return page;
+	}
+	
+	private List<T> topK(Iterator<? extends T> iterator) {
+		int k = (int)Math.min(Integer.MAX_VALUE, (long)offset + limit);
+		TopK<T> top = new TopK<T>(ordering.getIdentifierOrders(), k);
+		long sequence = 0;
+		while(iterator.hasNext()) {
+			T element = iterator.next();
+			if(matches(element)) {
+				top.offer(element, sequence++);
+			}
+		}
+		return page(top.toList());
+	}
+	
+	private List<T> sort(Iterator<? extends T> iterator) {
+		List<T> matches = new ArrayList<T>();
+		while(iterator.hasNext()) {
+			T element = iterator.next();
+			if(matches(element)) {
+				matches.add(element);
+			}
+		}
+		ordering.sort(matches);
+		return page(matches);
+	}
+	
+	/**
+	 * Drops the first offset elements of the sorted matches
+	 */
+	private List<T> page(List<T> sorted) {
+		if(offset == 0) {
+			return sorted;
+		}
+		return new ArrayList<T>(sorted.subList(Math.min(offset, sorted.size()), sorted.size()));
+	}
+}
@@ -0,0 +1,205 @@
+package org.cp.ordering;
+
+import org.cp.pojoconditions.RecursiveDescentParser;
+
+/**
+ * Splits a query of the form
+ * "[where condition] [order by identifier [asc|desc], ...] [limit n] [offset m]"
+ * into its clauses, each optional but in that order.  The condition and the
+ * order by clause are only delimited here, and are left for their own parsers.
+ *
+ * A condition ends at the first order by, limit or offset keyword following a
+ * value, outside of quotes, so fields with those names can still be compared.
+ */
+class QueryParser extends RecursiveDescentParser {
+	private String condition;
+	private String orderBy;
+	private int limit = -1;
+	private int offset;
+	
+	private QueryParser(String query) {
+		super(query);
+	}
+	
+	/**
+	 * Splits the query into its clauses
+	 * @throws IllegalArgumentException if the query fails to parse
+	 */
+	static QueryParser parseQuery(String query) {
+		QueryParser parser = new QueryParser(query);
+		if(!parser.query()) {
+			throw new IllegalArgumentException("Failed parsing: " + query);
+		}
+		return parser;
+	}
+	
+	/**
+	 * The text of the condition, or null if there is no where clause
+	 */
+	String getCondition() {
+		return condition;
+	}
+	
+	/**
+	 * The order by clause, including "order by", or null if there isn't one
+	 */
+	String getOrderBy() {
+		return orderBy;
+	}
+	
+	/**
+	 * The limit, or -1 if there is no limit clause
+	 */
+	int getLimit() {
+		return limit;
+	}
+	
+	int getOffset() {
+		return offset;
+	}
+	
+	private boolean query() {
+		optionalSpacing();
+		int begin = position;
+		
+		int start = position;
+		if(ignoreCase("where") && spacing()) {
+			int conditionStart = position;
+			condition();
+			int conditionEnd = position;
+			while(conditionEnd > conditionStart && input.charAt(conditionEnd - 1) == ' ') {
+				conditionEnd--;
+			}
+			if(conditionEnd == conditionStart) {
+				return false;
+			}
+			condition = input.substring(conditionStart, conditionEnd);
+		} else {
+			position = start;
+		}
+		
+		start = position;
+		int orderByStart = separator(begin) ? position : -1;
+		if(orderByStart >= 0 && ignoreCase("order") && spacing() && ignoreCase("by") && spacing()) {
+			if(!orderList()) {
+				return false;
+			}
+			orderBy = input.substring(orderByStart, position);
+		} else {
+			position = start;
+		}
+		
+		start = position;
+		if(separator(begin) && ignoreCase("limit") && spacing()) {
+			limit = number();
+			if(limit < 0) {
+				return false;
+			}
+		} else {
+			position = start;
+		}
+		
+		start = position;
+		if(separator(begin) && ignoreCase("offset") && spacing()) {
+			offset = number();
+			if(offset < 0) {
+				return false;
+			}
+		} else {
+			position = start;
+		}
+		
+		optionalSpacing();
+		return atEnd();
+	}
+	
+	/**
+	 * Clauses are separated by spaces, except the first
+	 */
+	private boolean separator(int begin) {
+		return position == begin || spacing();
+	}
+	
+	/**
+	 * Moves to the end of the condition
+	 */
+	private void condition() {
+		int start = position;
+		while(position < input.length()) {
+			char c = input.charAt(position);
+			if(c == '\'') {
+				if(!value()) {
+					// an unterminated value, which the condition's parser rejects
+					position = input.length();
+				}
+				continue;
+			}
+			
+			if(c == ' ' && position > start && endsValue(input.charAt(position - 1))) {
+				int space = position;
+				spacing();
+				boolean clause = keyword("order") || keyword("limit") || keyword("offset");
+				position = space;
+				if(clause) {
+					return;
+				}
+			}
+			position++;
+		}
+	}
+	
+	private static boolean endsValue(char c) {
+		return isDigit(c) || c == '\'' || c == ')';
+	}
+	
+	/**
+	 * True if the keyword is at the current position, followed by a space,
+	 * a comma or the end, without moving
+	 */
+	private boolean keyword(String lowerCaseText) {
+		int start = position;
+		boolean matched = ignoreCase(lowerCaseText) && (atEnd() || input.charAt(position) == ' ' || input.charAt(position) == ',');
+		position = start;
+		return matched;
+	}
+	
+	/**
+	 * Moves past 'identifier [asc|desc][, identifier [asc|desc] ...]'
+	 */
+	private boolean orderList() {
+		while(true) {
+			if(!noParamMethod() && !identifier()) {
+				return false;
+			}
+			
+			int start = position;
+			if(!(spacing() && (keyword("asc") && ignoreCase("asc") || keyword("desc") && ignoreCase("desc")))) {
+				position = start;
+			}
+			
+			start = position;
+			optionalSpacing();
+			if(!ch(',')) {
+				position = start;
+				return true;
+			}
+			optionalSpacing();
+		}
+	}
+	
+	/**
+	 * Matches a non-negative int, returning -1 if there isn't one
+	 */
+	private int number() {
+		int start = position;
+		while(position < input.length() && isDigit(input.charAt(position))) {
+			position++;
+		}
+		if(position == start || position - start > 10) {
+			return -1;
+		}
+		
+		long value = Long.parseLong(input.substring(start, position));
+		return value > Integer.MAX_VALUE ? -1 : (int)value;
+	}
+}
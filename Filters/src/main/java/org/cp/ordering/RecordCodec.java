@@ -0,0 +1,31 @@
+package org.cp.ordering;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes records to, and reads them back from, the temporary files of an
+ * ExternalSorter.  read must return a record equivalent to the one written,
+ * reading exactly the bytes write wrote.
+ */
+public interface RecordCodec<T> {
+	void write(T record, DataOutput out) throws IOException;
+	
+	T read(DataInput in) throws IOException;
+	
+	/**
+	 * Returns a codec for simple pojos, which writes every field of the class
+	 * and its superclasses that isn't static or transient, and creates records
+	 * with the class's constructor without parameters before setting their
+	 * fields.  Fields must be of the types supported in conditions: primitives,
+	 * their boxed counterparts, and Strings, any of which but primitives may
+	 * be null.
+	 * @throws FieldTypeException if a field's type is not supported
+	 * @throws IllegalArgumentException if the class has no constructor
+	 * without parameters
+	 */
+	static <T> RecordCodec<T> forClass(Class<T> clazz) {
+		return new PojoCodec<T>(clazz);
+	}
+}
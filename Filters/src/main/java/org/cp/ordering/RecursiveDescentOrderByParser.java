@@ -0,0 +1,101 @@
+package org.cp.ordering;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cp.pojoconditions.RecursiveDescentParser;
+
+/**
+ * Hand written parser accepting the same statements as OrderByParser, of the
+ * form "order by fieldName1 [asc|desc] [, fieldName2 [asc|desc]]
+ */
+public class RecursiveDescentOrderByParser extends RecursiveDescentParser {
+	private final boolean matchMethods;
+	
+	private RecursiveDescentOrderByParser(String orderBy, boolean matchMethods) {
+		super(orderBy);
+		this.matchMethods = matchMethods;
+	}
+	
+    /**
+     * Parses the given order by string and returns a list of identifiers with their order
+     * @throws IllegalArgumentException if the order by fails to parse
+     */
+	public static List<IdentifierOrder> parseOrderBy(String orderBy, boolean matchMethods) {
+		RecursiveDescentOrderByParser parser = new RecursiveDescentOrderByParser(orderBy, matchMethods);
+		List<IdentifierOrder> result = parser.orderBy();
+		
+		if(result == null || !parser.atEnd()) {
+			throw new IllegalArgumentException("Failed parsing: " + orderBy);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Matches on 'order by IdentifierOrder[, IdentifierOrder, ...]
+	 */
+	private List<IdentifierOrder> orderBy() {
+		if(!(ignoreCase("order") && spacing() && ignoreCase("by") && spacing())) {
+			return null;
+		}
+		
+		List<IdentifierOrder> identifierOrders = new ArrayList<IdentifierOrder>();
+		
+		IdentifierOrder first = identifierOrder();
+		if(first == null) {
+			return null;
+		}
+		identifierOrders.add(first);
+		
+		while(true) {
+			int start = position;
+			optionalSpacing();
+			
+			IdentifierOrder next = null;
+			if(ch(',')) {
+				optionalSpacing();
+				next = identifierOrder();
+			}
+			
+			if(next == null) {
+				position = start;
+				break;
+			}
+			identifierOrders.add(next);
+		}
+		
+		return identifierOrders;
+	}
+	
+	/**
+	 * Matches on 'identifier [asc|desc]
+	 */
+	private IdentifierOrder identifierOrder() {
+		int start = position;
+		boolean isMethod;
+		
+		if(matchMethods && noParamMethod()) {
+			isMethod = true;
+		} else if(identifier()) {
+			isMethod = false;
+		} else {
+			return null;
+		}
+		String identifier = input.substring(start, position);
+		
+		boolean ascending = true;
+		int orderStart = position;
+		if(spacing()) {
+			if(ignoreCase("asc")) {
+				ascending = true;
+			} else if(ignoreCase("desc")) {
+				ascending = false;
+			} else {
+				position = orderStart;
+			}
+		}
+		
+		return new IdentifierOrder(identifier, isMethod, ascending);
+	}
+}
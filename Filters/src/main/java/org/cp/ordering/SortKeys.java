@@ -0,0 +1,928 @@
+package org.cp.ordering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import org.cp.pojoconditions.FieldTypeException;
+import org.cp.pojoconditions.NonexistentIdentifierException;
+
+/**
+ * The values of an ordering's identifiers for an array of objects, each read
+ * once, for sorting the objects without reading their values again for every
+ * comparison.  A sort of n objects would otherwise look up and read each
+ * value about 2 log n times.
+ *
+ * The values of each identifier are held in a column, which is an array of
+ * longs when every value is a number, Character or Boolean of the same class,
+ * with doubles and floats mapped to longs that order the same way, and an
+ * array of Strings when every value is a String.  Other values, including
+ * nulls and mixed classes, are held as they are and compared with compareTo,
+ * failing in the same way as the ordering's comparator.
+ *
+ * Sorting packs the leading long columns, as offsets from their smallest
+ * value, into a single long along with each element's position, as long as
+ * they fit, and sorts those longs.  This avoids following the positions to
+ * the keys for every comparison, which misses the cache on large arrays.
+ * Runs of elements with equal packed keys are then sorted by the remaining
+ * columns.
+ *
+ * Large arrays of packed keys are sorted with an LSD radix sort over just
+ * the bits of the columns: the positions start in order and each pass is
+ * stable, so equal keys stay in order without sorting the position bits,
+ * and a column of few distinct values takes a single counting pass.  When
+ * every column is a long column but they don't fit in one long, each column
+ * is radix sorted in turn, from the last to the first, along with the
+ * positions.
+ *
+ * Given a pool, values are read and converted, and the elements sorted, by
+ * the pool's threads, in ranges of no more than the threshold.  The sorts
+ * are merge sorts whose halves are sorted in parallel and then merged in
+ * parallel, by splitting the larger half at its middle and the other half
+ * where that middle element would go, so the result is the same as sorting
+ * on one thread.
+ */
+final class SortKeys {
+	// runs shorter than this are insertion sorted
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+	
+	// ranges of keys shorter than this are sorted with Arrays.sort rather than radix sorted
+	private static final int RADIX_SORT_THRESHOLD = 2048;
+	
+	// the most bits radix sorted in each pass, counted in an array of 2^RADIX_BITS ints
+	private static final int RADIX_BITS = 11;
+	
+	private final Object[] elements;
+	private final KeyColumn[] columns;
+	
+	// the pool to work in, or null to work on the calling thread
+	private final ForkJoinPool pool;
+	
+	// ranges no larger than this are worked on by a single thread
+	private final int threshold;
+	
+	/**
+	 * Reads every identifier of every element
+	 * @throws NonexistentIdentifierException if an element has no such field or method
+	 * @throws FieldTypeException if a value is not Comparable
+	 */
+	SortKeys(List<IdentifierOrder> identifierOrders, Object[] elements) {
+		this(identifierOrders, elements, null, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Reads every identifier of every element with the pool's threads, as
+	 * does sorting
+	 * @throws NonexistentIdentifierException if an element has no such field or method
+	 * @throws FieldTypeException if a value is not Comparable
+	 */
+	SortKeys(List<IdentifierOrder> identifierOrders, Object[] elements, ForkJoinPool pool, int threshold) {
+		this.elements = elements;
+		this.pool = elements.length > threshold ? pool : null;
+		this.threshold = threshold;
+		this.columns = new KeyColumn[identifierOrders.size()];
+		for(int i = 0; i < columns.length; i++) {
+			columns[i] = readColumn(identifierOrders.get(i));
+		}
+	}
+	
+	/**
+	 * Encodes every element's values into one key with the encoder, to sort
+	 * by a single column of keys compared as bytes
+	 * @throws NonexistentIdentifierException if an element has no such field or method
+	 * @throws FieldTypeException if a value can't be encoded
+	 */
+	SortKeys(KeyEncoder<Object> encoder, Object[] elements) {
+		this.elements = elements;
+		this.pool = null;
+		this.threshold = Integer.MAX_VALUE;
+		
+		byte[][] keys = new byte[elements.length][];
+		for(int i = 0; i < keys.length; i++) {
+			keys[i] = encoder.encode(elements[i]);
+		}
+		this.columns = new KeyColumn[] {new EncodedColumn(keys)};
+	}
+	
+	int size() {
+		return elements.length;
+	}
+	
+	/**
+	 * Compares the elements at two positions, negative if the first comes first
+	 */
+	int compare(int a, int b) {
+		return compare(a, b, 0);
+	}
+	
+	private int compare(int a, int b, int firstColumn) {
+		for(int i = firstColumn; i < columns.length; i++) {
+			int compareTo = columns[i].compare(a, b);
+			if(compareTo != 0) {
+				return compareTo;
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * Returns the positions of the elements in sorted order.  Elements that
+	 * are equal in the ordering keep their original order.
+	 */
+	int[] sort() {
+		final int size = elements.length;
+		final int positionBits = 32 - Integer.numberOfLeadingZeros(Math.max(size - 1, 1));
+		
+		int packedBits = positionBits;
+		int packedColumns = 0;
+		while(packedColumns < columns.length && columns[packedColumns] instanceof LongColumn
+				&& packedBits + ((LongColumn)columns[packedColumns]).bits() <= 63) {
+			packedBits += ((LongColumn)columns[packedColumns++]).bits();
+		}
+		
+		final int[] order = new int[size];
+		if(packedColumns < columns.length && pool == null && size >= RADIX_SORT_THRESHOLD && allLongColumns()) {
+			for(int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			radixSortColumns(order);
+			return order;
+		}
+		if(packedColumns == 0) {
+			forEachRange(size, new Range() {
+				void run(int from, int to) {
+					for(int i = from; i < to; i++) {
+						order[i] = i;
+					}
+				}
+			});
+			sortPositions(order.clone(), order, 0, size, 0);
+			return order;
+		}
+		
+		// positions in the low bits keep equal keys in their original order
+		final long[] packed = new long[size];
+		final int finalPackedColumns = packedColumns;
+		forEachRange(size, new Range() {
+			void run(int from, int to) {
+				for(int i = from; i < to; i++) {
+					long key = 0;
+					for(int c = 0; c < finalPackedColumns; c++) {
+						LongColumn column = (LongColumn)columns[c];
+						key = key << column.bits() | column.offset(i);
+					}
+					packed[i] = key << positionBits | i;
+				}
+			}
+		});
+		if(pool == null) {
+			sortPacked(packed, 0, size, positionBits, packedBits);
+		} else {
+			pool.invoke(new PackedSort(packed.clone(), packed, 0, size, positionBits, packedBits));
+		}
+		
+		final long positionMask = (1L << positionBits) - 1;
+		forEachRange(size, new Range() {
+			void run(int from, int to) {
+				for(int i = from; i < to; i++) {
+					order[i] = (int)(packed[i] & positionMask);
+				}
+			}
+		});
+		
+		if(packedColumns < columns.length) {
+			sortRuns(order, packed, positionBits, packedColumns);
+		}
+		return order;
+	}
+	
+	private boolean allLongColumns() {
+		for(KeyColumn column : columns) {
+			if(!(column instanceof LongColumn)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Sorts the packed keys from index from to index to, which are all
+	 * different and start in the order of their positions, held in the bits
+	 * below keyBit
+	 */
+	private static void sortPacked(long[] packed, int from, int to, int keyBit, int packedBits) {
+		if(to - from < RADIX_SORT_THRESHOLD) {
+			Arrays.sort(packed, from, to);
+		} else {
+			radixSort(packed, from, to, keyBit, packedBits);
+		}
+	}
+	
+	/**
+	 * Sorts the longs from index from to index to by their bits from lowBit
+	 * up to highBit, treated as unsigned, where higher bits are all 0.  Longs
+	 * with equal bits keep their order, so lower bits already in order needn't
+	 * be sorted.  Passes where every long has the same digit are skipped.
+	 */
+	private static void radixSort(long[] keys, int from, int to, int lowBit, int highBit) {
+		int size = to - from;
+		int passes = (highBit - lowBit + RADIX_BITS - 1) / RADIX_BITS;
+		if(passes == 0) {
+			return;
+		}
+		int digitBits = (highBit - lowBit + passes - 1) / passes;
+		int mask = (1 << digitBits) - 1;
+		
+		// count the digits of every pass in one read of the keys
+		int[][] counts = new int[passes][1 << digitBits];
+		for(int i = from; i < to; i++) {
+			long key = keys[i];
+			for(int pass = 0; pass < passes; pass++) {
+				counts[pass][(int)(key >>> (lowBit + pass * digitBits)) & mask]++;
+			}
+		}
+		
+		long[] src = keys;
+		int srcFrom = from;
+		long[] dest = new long[size];
+		int destFrom = 0;
+		for(int pass = 0; pass < passes; pass++) {
+			int[] starts = counts[pass];
+			if(!toStarts(starts, destFrom, size)) {
+				continue;
+			}
+			
+			int shift = lowBit + pass * digitBits;
+			for(int i = srcFrom; i < srcFrom + size; i++) {
+				long key = src[i];
+				dest[starts[(int)(key >>> shift) & mask]++] = key;
+			}
+			
+			long[] swap = src;
+			src = dest;
+			dest = swap;
+			int swapFrom = srcFrom;
+			srcFrom = destFrom;
+			destFrom = swapFrom;
+		}
+		
+		if(src != keys) {
+			System.arraycopy(src, srcFrom, keys, from, size);
+		}
+	}
+	
+	/**
+	 * Sorts the positions by every column in turn, from the last to the
+	 * first, each with a stable radix sort of the column's offsets over as
+	 * many bits as they need
+	 */
+	private void radixSortColumns(int[] order) {
+		int size = order.length;
+		long[] keys = new long[size];
+		long[] keysScratch = new long[size];
+		int[] orderScratch = new int[size];
+		for(int c = columns.length - 1; c >= 0; c--) {
+			LongColumn column = (LongColumn)columns[c];
+			for(int i = 0; i < size; i++) {
+				keys[i] = column.offset(order[i]);
+			}
+			
+			int bits = column.bits();
+			int passes = (bits + RADIX_BITS - 1) / RADIX_BITS;
+			if(passes == 0) {
+				continue;
+			}
+			int digitBits = (bits + passes - 1) / passes;
+			int mask = (1 << digitBits) - 1;
+			
+			int[][] counts = new int[passes][1 << digitBits];
+			for(int i = 0; i < size; i++) {
+				long key = keys[i];
+				for(int pass = 0; pass < passes; pass++) {
+					counts[pass][(int)(key >>> (pass * digitBits)) & mask]++;
+				}
+			}
+			
+			long[] srcKeys = keys;
+			int[] srcOrder = order;
+			long[] destKeys = keysScratch;
+			int[] destOrder = orderScratch;
+			for(int pass = 0; pass < passes; pass++) {
+				int[] starts = counts[pass];
+				if(!toStarts(starts, 0, size)) {
+					continue;
+				}
+				
+				int shift = pass * digitBits;
+				for(int i = 0; i < size; i++) {
+					int index = starts[(int)(srcKeys[i] >>> shift) & mask]++;
+					destKeys[index] = srcKeys[i];
+					destOrder[index] = srcOrder[i];
+				}
+				
+				long[] swapKeys = srcKeys;
+				srcKeys = destKeys;
+				destKeys = swapKeys;
+				int[] swapOrder = srcOrder;
+				srcOrder = destOrder;
+				destOrder = swapOrder;
+			}
+			
+			if(srcOrder != order) {
+				System.arraycopy(srcOrder, 0, order, 0, size);
+			}
+		}
+	}
+	
+	/**
+	 * Turns the counts of each digit into the index the first key with the
+	 * digit goes to, returning false, and leaving the counts, if every key
+	 * has the same digit
+	 */
+	private static boolean toStarts(int[] counts, int from, int size) {
+		int start = from;
+		for(int digit = 0; digit < counts.length; digit++) {
+			int count = counts[digit];
+			if(count == size) {
+				return false;
+			}
+			counts[digit] = start;
+			start += count;
+		}
+		return true;
+	}
+	
+	/**
+	 * Copies the elements into the array in the order given by their positions
+	 */
+	void reorder(final int[] order, final Object[] array) {
+		forEachRange(order.length, new Range() {
+			void run(int from, int to) {
+				for(int i = from; i < to; i++) {
+					array[i] = elements[order[i]];
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Sorts each run of positions with equal packed keys by the columns that
+	 * weren't packed.  In parallel, runs larger than the threshold are sorted
+	 * in parallel themselves, and smaller runs are sorted in groups.
+	 */
+	private void sortRuns(final int[] order, long[] packed, int positionBits, final int firstColumn) {
+		final int[] scratch = order.clone();
+		final List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+		final List<int[]> group = new ArrayList<int[]>();
+		int groupSize = 0;
+		
+		int start = 0;
+		for(int i = 1; i <= order.length; i++) {
+			if(i == order.length || packed[i] >>> positionBits != packed[start] >>> positionBits) {
+				if(i - start < 2) {
+					// a single element is already sorted
+				} else if(pool == null) {
+					mergeSort(scratch, order, start, i, firstColumn);
+				} else if(i - start > threshold) {
+					tasks.add(new PositionSort(scratch, order, start, i, firstColumn));
+				} else {
+					group.add(new int[] {start, i});
+					groupSize += i - start;
+					if(groupSize >= threshold) {
+						tasks.add(new RunGroup(scratch, order, new ArrayList<int[]>(group), firstColumn));
+						group.clear();
+						groupSize = 0;
+					}
+				}
+				start = i;
+			}
+		}
+		
+		if(!group.isEmpty()) {
+			tasks.add(new RunGroup(scratch, order, group, firstColumn));
+		}
+		if(!tasks.isEmpty()) {
+			pool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 4057130766918053311L;
+				
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Sorts dest from index from to index to, where src holds the same
+	 * positions and is used as scratch space, in parallel if there's a pool
+	 */
+	private void sortPositions(int[] src, int[] dest, int from, int to, int firstColumn) {
+		if(pool == null) {
+			mergeSort(src, dest, from, to, firstColumn);
+		} else {
+			pool.invoke(new PositionSort(src, dest, from, to, firstColumn));
+		}
+	}
+	
+	/**
+	 * Runs the range over every position, split into ranges no larger than
+	 * the threshold run in parallel if there's a pool
+	 */
+	private void forEachRange(int size, Range range) {
+		if(pool == null) {
+			range.run(0, size);
+		} else {
+			pool.invoke(new RangeTask(range, 0, size));
+		}
+	}
+	
+	/**
+	 * Merges src from aFrom to aTo with src from bFrom to bTo into dest from
+	 * destFrom, taking the first range's position when they compare equal
+	 */
+	private void merge(int[] src, int aFrom, int aTo, int bFrom, int bTo, int[] dest, int destFrom, int firstColumn) {
+		int p = aFrom;
+		int q = bFrom;
+		int i = destFrom;
+		while(p < aTo && q < bTo) {
+			dest[i++] = compare(src[p], src[q], firstColumn) <= 0 ? src[p++] : src[q++];
+		}
+		System.arraycopy(src, p, dest, i, aTo - p);
+		System.arraycopy(src, q, dest, i + aTo - p, bTo - q);
+	}
+	
+	/**
+	 * Sorts dest from index from to index to, where src holds the same
+	 * positions and is used as scratch space, comparing columns from firstColumn on
+	 */
+	private void mergeSort(int[] src, int[] dest, int from, int to, int firstColumn) {
+		if(to - from < INSERTION_SORT_THRESHOLD) {
+			for(int i = from + 1; i < to; i++) {
+				int position = dest[i];
+				int j = i;
+				for(; j > from && compare(dest[j - 1], position, firstColumn) > 0; j--) {
+					dest[j] = dest[j - 1];
+				}
+				dest[j] = position;
+			}
+			return;
+		}
+		
+		// sort each half into src, then merge them into dest
+		int mid = (from + to) >>> 1;
+		mergeSort(dest, src, from, mid, firstColumn);
+		mergeSort(dest, src, mid, to, firstColumn);
+		
+		if(compare(src[mid - 1], src[mid], firstColumn) <= 0) {
+			// the halves are already in order, as in partly sorted lists
+			System.arraycopy(src, from, dest, from, to - from);
+			return;
+		}
+		
+		merge(src, from, mid, mid, to, dest, from, firstColumn);
+	}
+	
+	private KeyColumn readColumn(final IdentifierOrder identifierOrder) {
+		final Object[] values = new Object[elements.length];
+		forEachRange(elements.length, new Range() {
+			void run(int from, int to) {
+				readValues(identifierOrder, elements, values, from, to);
+			}
+		});
+		boolean ascending = identifierOrder.isAscending();
+		
+		Class<?> valueClass = values.length == 0 || values[0] == null ? null : values[0].getClass();
+		for(Object value : values) {
+			if(value == null || value.getClass() != valueClass) {
+				valueClass = null;
+				break;
+			}
+		}
+		
+		if(valueClass == String.class) {
+			final String[] keys = new String[values.length];
+			forEachRange(values.length, new Range() {
+				void run(int from, int to) {
+					for(int i = from; i < to; i++) {
+						keys[i] = (String)values[i];
+					}
+				}
+			});
+			return new StringColumn(keys, ascending);
+		} else if(valueClass == Integer.class || valueClass == Long.class || valueClass == Short.class || valueClass == Byte.class
+				|| valueClass == Character.class || valueClass == Boolean.class || valueClass == Double.class || valueClass == Float.class) {
+			final long[] keys = new long[values.length];
+			forEachRange(values.length, new Range() {
+				void run(int from, int to) {
+					for(int i = from; i < to; i++) {
+						keys[i] = longKey(values[i]);
+					}
+				}
+			});
+			return new LongColumn(keys, ascending);
+		}
+		
+		for(int i = 0; i < values.length; i++) {
+			if(values[i] != null && !(values[i] instanceof Comparable)) {
+				throw new FieldTypeException(identifierOrder.getIdentifier(), values[i].getClass(), elements[i].getClass());
+			}
+		}
+		return new ObjectColumn(identifierOrder.getIdentifier(), values, elements, ascending);
+	}
+	
+	/**
+	 * Reads the identifier of the elements from index from to index to into values
+	 */
+	private static void readValues(IdentifierOrder identifierOrder, Object[] elements, Object[] values, int from, int to) {
+		KeyReader reader = new KeyReader(identifierOrder);
+		for(int i = from; i < to; i++) {
+			values[i] = reader.read(elements[i]);
+		}
+	}
+	
+	/**
+	 * Maps a number, Character or Boolean to a long that orders the same way
+	 * as other values of its class
+	 */
+	private static long longKey(Object value) {
+		if(value instanceof Double || value instanceof Float) {
+			// floats convert to doubles exactly, so compare the same way
+			return doubleKey(((Number)value).doubleValue());
+		} else if(value instanceof Character) {
+			return ((Character)value).charValue();
+		} else if(value instanceof Boolean) {
+			return ((Boolean)value).booleanValue() ? 1 : 0;
+		}
+		return ((Number)value).longValue();
+	}
+	
+	/**
+	 * Maps doubles to longs that order in the same way as Double.compareTo,
+	 * with -0.0 before 0.0 and NaN after positive infinity
+	 */
+	static long doubleKey(double value) {
+		long bits = Double.doubleToLongBits(value);
+		// negative doubles order in reverse as longs, so their other bits are flipped
+		return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Work on a range of positions
+	 */
+	private static abstract class Range {
+		abstract void run(int from, int to);
+	}
+	
+	private class RangeTask extends RecursiveAction {
+		private static final long serialVersionUID = 4705480152280673532L;
+		
+		private final Range range;
+		private final int from;
+		private final int to;
+		
+		RangeTask(Range range, int from, int to) {
+			this.range = range;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if(to - from <= threshold) {
+				range.run(from, to);
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new RangeTask(range, from, mid), new RangeTask(range, mid, to));
+			}
+		}
+	}
+	
+	/**
+	 * Sorts positions like mergeSort, sorting and merging the halves in parallel
+	 */
+	private class PositionSort extends RecursiveAction {
+		private static final long serialVersionUID = 8405896415965541531L;
+		
+		private final int[] src;
+		private final int[] dest;
+		private final int from;
+		private final int to;
+		private final int firstColumn;
+		
+		PositionSort(int[] src, int[] dest, int from, int to, int firstColumn) {
+			this.src = src;
+			this.dest = dest;
+			this.from = from;
+			this.to = to;
+			this.firstColumn = firstColumn;
+		}
+		
+		@Override
+		protected void compute() {
+			if(to - from <= threshold) {
+				mergeSort(src, dest, from, to, firstColumn);
+				return;
+			}
+			
+			int mid = (from + to) >>> 1;
+			invokeAll(new PositionSort(dest, src, from, mid, firstColumn), new PositionSort(dest, src, mid, to, firstColumn));
+			if(compare(src[mid - 1], src[mid], firstColumn) <= 0) {
+				System.arraycopy(src, from, dest, from, to - from);
+			} else {
+				new PositionMerge(src, from, mid, mid, to, dest, from, firstColumn).compute();
+			}
+		}
+	}
+	
+	/**
+	 * Merges two sorted ranges of positions like merge, splitting them into
+	 * pairs of smaller ranges to merge in parallel
+	 */
+	private class PositionMerge extends RecursiveAction {
+		private static final long serialVersionUID = -2463968379935356175L;
+		
+		private final int[] src;
+		private final int aFrom;
+		private final int aTo;
+		private final int bFrom;
+		private final int bTo;
+		private final int[] dest;
+		private final int destFrom;
+		private final int firstColumn;
+		
+		PositionMerge(int[] src, int aFrom, int aTo, int bFrom, int bTo, int[] dest, int destFrom, int firstColumn) {
+			this.src = src;
+			this.aFrom = aFrom;
+			this.aTo = aTo;
+			this.bFrom = bFrom;
+			this.bTo = bTo;
+			this.dest = dest;
+			this.destFrom = destFrom;
+			this.firstColumn = firstColumn;
+		}
+		
+		@Override
+		protected void compute() {
+			// splitting two elements wouldn't make either range smaller
+			if(aTo - aFrom + bTo - bFrom <= Math.max(threshold, 2)) {
+				merge(src, aFrom, aTo, bFrom, bTo, dest, destFrom, firstColumn);
+				return;
+			}
+			
+			// positions equal to the split position go after it if they're in b, and before it if in a
+			int aSplit;
+			int bSplit;
+			if(aTo - aFrom >= bTo - bFrom) {
+				aSplit = (aFrom + aTo) >>> 1;
+				int split = src[aSplit];
+				int low = bFrom;
+				int high = bTo;
+				while(low < high) {
+					int mid = (low + high) >>> 1;
+					if(compare(src[mid], split, firstColumn) < 0) {
+						low = mid + 1;
+					} else {
+						high = mid;
+					}
+				}
+				bSplit = low;
+			} else {
+				bSplit = (bFrom + bTo) >>> 1;
+				int split = src[bSplit];
+				int low = aFrom;
+				int high = aTo;
+				while(low < high) {
+					int mid = (low + high) >>> 1;
+					if(compare(src[mid], split, firstColumn) <= 0) {
+						low = mid + 1;
+					} else {
+						high = mid;
+					}
+				}
+				aSplit = low;
+			}
+			
+			invokeAll(new PositionMerge(src, aFrom, aSplit, bFrom, bSplit, dest, destFrom, firstColumn),
+					new PositionMerge(src, aSplit, aTo, bSplit, bTo, dest, destFrom + (aSplit - aFrom) + (bSplit - bFrom), firstColumn));
+		}
+	}
+	
+	/**
+	 * Sorts runs of positions, each no larger than the threshold
+	 */
+	private class RunGroup extends RecursiveAction {
+		private static final long serialVersionUID = 7755642738888409219L;
+		
+		private final int[] src;
+		private final int[] dest;
+		private final List<int[]> runs;
+		private final int firstColumn;
+		
+		RunGroup(int[] src, int[] dest, List<int[]> runs, int firstColumn) {
+			this.src = src;
+			this.dest = dest;
+			this.runs = runs;
+			this.firstColumn = firstColumn;
+		}
+		
+		@Override
+		protected void compute() {
+			for(int[] run : runs) {
+				mergeSort(src, dest, run[0], run[1], firstColumn);
+			}
+		}
+	}
+	
+	/**
+	 * Sorts packed keys, which are all different, by sorting ranges no larger
+	 * than the threshold and merging them in parallel
+	 */
+	private class PackedSort extends RecursiveAction {
+		private static final long serialVersionUID = -520214174836312054L;
+		
+		private final long[] src;
+		private final long[] dest;
+		private final int from;
+		private final int to;
+		private final int keyBit;
+		private final int packedBits;
+		
+		PackedSort(long[] src, long[] dest, int from, int to, int keyBit, int packedBits) {
+			this.src = src;
+			this.dest = dest;
+			this.from = from;
+			this.to = to;
+			this.keyBit = keyBit;
+			this.packedBits = packedBits;
+		}
+		
+		@Override
+		protected void compute() {
+			if(to - from <= threshold) {
+				// both arrays still hold the keys in position order here
+				sortPacked(dest, from, to, keyBit, packedBits);
+				return;
+			}
+			
+			int mid = (from + to) >>> 1;
+			invokeAll(new PackedSort(dest, src, from, mid, keyBit, packedBits), new PackedSort(dest, src, mid, to, keyBit, packedBits));
+			new PackedMerge(src, from, mid, mid, to, dest, from).compute();
+		}
+	}
+	
+	private class PackedMerge extends RecursiveAction {
+		private static final long serialVersionUID = 7874188555247366441L;
+		
+		private final long[] src;
+		private final int aFrom;
+		private final int aTo;
+		private final int bFrom;
+		private final int bTo;
+		private final long[] dest;
+		private final int destFrom;
+		
+		PackedMerge(long[] src, int aFrom, int aTo, int bFrom, int bTo, long[] dest, int destFrom) {
+			this.src = src;
+			this.aFrom = aFrom;
+			this.aTo = aTo;
+			this.bFrom = bFrom;
+			this.bTo = bTo;
+			this.dest = dest;
+			this.destFrom = destFrom;
+		}
+		
+		@Override
+		protected void compute() {
+			// splitting two elements wouldn't make either range smaller
+			if(aTo - aFrom + bTo - bFrom <= Math.max(threshold, 2)) {
+				int p = aFrom;
+				int q = bFrom;
+				int i = destFrom;
+				while(p < aTo && q < bTo) {
+					dest[i++] = src[p] < src[q] ? src[p++] : src[q++];
+				}
+				System.arraycopy(src, p, dest, i, aTo - p);
+				System.arraycopy(src, q, dest, i + aTo - p, bTo - q);
+				return;
+			}
+			
+			// split the larger range in the middle, and the other where its middle key would go
+			int aSplit;
+			int bSplit;
+			if(aTo - aFrom >= bTo - bFrom) {
+				aSplit = (aFrom + aTo) >>> 1;
+				bSplit = Arrays.binarySearch(src, bFrom, bTo, src[aSplit]);
+				bSplit = bSplit < 0 ? -bSplit - 1 : bSplit;
+			} else {
+				bSplit = (bFrom + bTo) >>> 1;
+				aSplit = Arrays.binarySearch(src, aFrom, aTo, src[bSplit]);
+				aSplit = aSplit < 0 ? -aSplit - 1 : aSplit;
+			}
+			
+			invokeAll(new PackedMerge(src, aFrom, aSplit, bFrom, bSplit, dest, destFrom),
+					new PackedMerge(src, aSplit, aTo, bSplit, bTo, dest, destFrom + (aSplit - aFrom) + (bSplit - bFrom)));
+		}
+	}
+	
+	private static abstract class KeyColumn {
+		protected final boolean ascending;
+		
+		KeyColumn(boolean ascending) {
+			this.ascending = ascending;
+		}
+		
+		abstract int compare(int a, int b);
+	}
+	
+	private static final class LongColumn extends KeyColumn {
+		private final long[] keys;
+		private final long min;
+		private final long max;
+		
+		LongColumn(long[] keys, boolean ascending) {
+			super(ascending);
+			this.keys = keys;
+			
+			long min = Long.MAX_VALUE;
+			long max = Long.MIN_VALUE;
+			for(long key : keys) {
+				min = Math.min(min, key);
+				max = Math.max(max, key);
+			}
+			this.min = min;
+			this.max = max;
+		}
+		
+		/**
+		 * The number of bits needed for the offsets of the keys
+		 */
+		int bits() {
+			return 64 - Long.numberOfLeadingZeros(max - min);
+		}
+		
+		/**
+		 * The key at the position as an unsigned offset that orders in the
+		 * column's direction
+		 */
+		long offset(int position) {
+			return ascending ? keys[position] - min : max - keys[position];
+		}
+		
+		int compare(int a, int b) {
+			int compareTo = Long.compare(keys[a], keys[b]);
+			return ascending ? compareTo : -compareTo;
+		}
+	}
+	
+	private static final class StringColumn extends KeyColumn {
+		private final String[] keys;
+		
+		StringColumn(String[] keys, boolean ascending) {
+			super(ascending);
+			this.keys = keys;
+		}
+		
+		int compare(int a, int b) {
+			int compareTo = keys[a].compareTo(keys[b]);
+			return ascending ? compareTo : -compareTo;
+		}
+	}
+	
+	/**
+	 * Keys from a KeyEncoder, which already order in each identifier's direction
+	 */
+	private static final class EncodedColumn extends KeyColumn {
+		private final byte[][] keys;
+		
+		EncodedColumn(byte[][] keys) {
+			super(true);
+			this.keys = keys;
+		}
+		
+		int compare(int a, int b) {
+			return KeyEncoder.compare(keys[a], keys[b]);
+		}
+	}
+	
+	private static final class ObjectColumn extends KeyColumn {
+		private final String identifier;
+		private final Object[] values;
+		private final Object[] elements;
+		
+		ObjectColumn(String identifier, Object[] values, Object[] elements, boolean ascending) {
+			super(ascending);
+			this.identifier = identifier;
+			this.values = values;
+			this.elements = elements;
+		}
+		
+		int compare(int a, int b) {
+			int compareTo = KeyReader.compare(identifier, values[a], elements[a], values[b], elements[b]);
+			return ascending ? compareTo : -compareTo;
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package org.cp.ordering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The first k of the objects offered to it in an ordering, kept in a heap
+ * with the last of them on top.  Each entry holds the values of the
+ * ordering's identifiers read from its object so far.  Values are only read
+ * when a comparison first needs them, and are then kept, so an object that
+ * comes after the top entry on its first identifier is discarded having had
+ * just that one value read.  Objects equal in the ordering are ranked by
+ * their sequence numbers, so the result is the same as stably sorting all
+ * the objects and keeping the first k.
+ *
+ * Not thread safe, but a TopK filled on one thread can be merged into one
+ * filled on another once it's done.
+ */
+final class TopK<T> {
+	private final IdentifierOrder[] identifierOrders;
+	private final KeyReader[] readers;
+	private final int k;
+	
+	// a max heap of the entries, ordered by compare, which grows up to k entries
+	private Entry[] heap;
+	private int size;
+	
+	// an entry for the next object offered, reused until an object is kept
+	private Entry spare;
+	
+	TopK(List<IdentifierOrder> identifierOrders, int k) {
+		this.identifierOrders = identifierOrders.toArray(new IdentifierOrder[0]);
+		this.readers = new KeyReader[this.identifierOrders.length];
+		for(int i = 0; i < readers.length; i++) {
+			readers[i] = new KeyReader(this.identifierOrders[i]);
+		}
+		this.k = k;
+		this.heap = new Entry[Math.min(k, 16)];
+	}
+	
+	/**
+	 * Offers an object, whose sequence number is its position among all the
+	 * objects offered
+	 */
+	void offer(Object pojo, long sequence) {
+		if(k == 0) {
+			return;
+		}
+		
+		Entry entry = spare != null ? spare : new Entry(readers.length);
+		entry.reset(pojo, sequence);
+		spare = offer(entry);
+	}
+	
+	/**
+	 * Offers every entry of a TopK filled on another thread, keeping the
+	 * values it has already read
+	 */
+	void offerAll(TopK<T> other) {
+		for(int i = 0; i < other.size; i++) {
+			offer(other.heap[i]);
+		}
+	}
+	
+	/**
+	 * Returns the objects kept, in order
+	 */
+	@SuppressWarnings("unchecked")
+	List<T> toList() {
+		Entry[] entries = Arrays.copyOf(heap, size);
+		Arrays.sort(entries, new Comparator<Entry>() {
+			public int compare(Entry entry1, Entry entry2) {
+				return TopK.this.compare(entry1, entry2);
+			}
+		});
+		
+		List<T> list = new ArrayList<T>(size);
+		for(Entry entry : entries) {
+			list.add((T)entry.pojo);
+		}
+		return list;
+	}
+	
+	/**
+	 * Adds the entry if it's among the first k so far, returning the entry
+	 * no longer needed, either the entry itself or the one it replaced, or
+	 * null if none was
+	 */
+	private Entry offer(Entry entry) {
+		if(size < k) {
+			if(size == heap.length) {
+				heap = Arrays.copyOf(heap, (int)Math.min(k, heap.length * 2L));
+			}
+			heap[size] = entry;
+			siftUp(size++);
+			return null;
+		}
+		
+		if(compare(entry, heap[0]) >= 0) {
+			return entry;
+		}
+		
+		Entry replaced = heap[0];
+		heap[0] = entry;
+		siftDown(0);
+		return replaced;
+	}
+	
+	private void siftUp(int index) {
+		Entry entry = heap[index];
+		while(index > 0) {
+			int parent = (index - 1) >>> 1;
+			if(compare(entry, heap[parent]) <= 0) {
+				break;
+			}
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = entry;
+	}
+	
+	private void siftDown(int index) {
+		Entry entry = heap[index];
+		int half = size >>> 1;
+		while(index < half) {
+			int child = 2 * index + 1;
+			if(child + 1 < size && compare(heap[child + 1], heap[child]) > 0) {
+				child++;
+			}
+			if(compare(entry, heap[child]) >= 0) {
+				break;
+			}
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = entry;
+	}
+	
+	/**
+	 * Compares entries in the ordering, then by sequence number, reading
+	 * values only as far as needed to tell them apart
+	 */
+	private int compare(Entry entry1, Entry entry2) {
+		for(int i = 0; i < readers.length; i++) {
+			int compareTo = KeyReader.compare(readers[i].getIdentifier(), entry1.value(i, readers), entry1.pojo, entry2.value(i, readers), entry2.pojo);
+			if(compareTo != 0) {
+				return identifierOrders[i].isAscending() ? compareTo : -compareTo;
+			}
+		}
+		return Long.compare(entry1.sequence, entry2.sequence);
+	}
+	
+	private static final class Entry {
+		private Object pojo;
+		private long sequence;
+		private final Object[] values;
+		
+		// the number of values read, which are always the first ones
+		private int read;
+		
+		Entry(int identifiers) {
+			this.values = new Object[identifiers];
+		}
+		
+		void reset(Object pojo, long sequence) {
+			this.pojo = pojo;
+			this.sequence = sequence;
+			Arrays.fill(values, 0, read, null);
+			this.read = 0;
+		}
+		
+		/**
+		 * Returns the value of the identifier, reading it and any before it
+		 * that haven't been read yet
+		 */
+		Object value(int identifier, KeyReader[] readers) {
+			while(read <= identifier) {
+				values[read] = readers[read].read(pojo);
+				read++;
+			}
+			return values[identifier];
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package org.cp.pojoconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.cp.condition.AndCondition;
+import org.cp.condition.Condition;
+import org.cp.condition.ConstantCondition;
+import org.cp.condition.InCondition;
+import org.cp.condition.NotInCondition;
+import org.cp.condition.OrCondition;
+import org.cp.condition.SimpleCondition;
+
+/**
+ * Evaluates a condition against a batch of objects a condition at a time
+ * rather than an object at a time.  Each simple condition is applied to every
+ * object still in question in a block of the batch, producing a bitmask, and
+ * ANDs and ORs combine the masks of their conditions a 64 bit word at a time.
+ * The blocks and the ANDs and ORs are shared with ColumnarEvaluator, which
+ * evaluates conditions over columns of values instead of objects.
+ *
+ * A condition is only applied to the objects whose result still depends on it:
+ * each condition of an AND only sees the objects that passed the ones before it,
+ * and each condition of an OR only the objects that failed the ones before it.
+ * So exactly the same identifiers are read as when matching the objects one by
+ * one, and the same exceptions are thrown.
+ *
+ * Instances are immutable and may be shared between threads.
+ */
+final class BatchEvaluator {
+	// rows evaluated together, small enough for their masks to stay in cache
+	private static final int BLOCK_SIZE = 1024;
+	private static final int BLOCK_WORDS = BLOCK_SIZE / 64;
+	
+	private final Node<List<?>> root;
+	
+	BatchEvaluator(Condition condition) {
+		this.root = build(condition);
+	}
+	
+	private static Node<List<?>> build(Condition condition) {
+		if(condition instanceof ConstantCondition) {
+			return new Constant<List<?>>(((ConstantCondition)condition).getValue());
+		} else if(condition instanceof InCondition || condition instanceof NotInCondition) {
+			return new Simple(condition);
+		} else if(condition instanceof AndCondition) {
+			return new And<List<?>>(buildAll(((AndCondition)condition).getConditions()));
+		} else if(condition instanceof OrCondition) {
+			return new Or<List<?>>(buildAll(((OrCondition)condition).getConditions()));
+		} else if(condition instanceof SimpleCondition) {
+			return new Simple(condition);
+		}
+		
+		throw new IllegalArgumentException("Unsupported condition: " + condition);
+	}
+	
+	private static List<Node<List<?>>> buildAll(List<Condition> conditions) {
+		List<Node<List<?>>> nodes = new ArrayList<Node<List<?>>>(conditions.size());
+		for(Condition condition : conditions) {
+			nodes.add(build(condition));
+		}
+		return nodes;
+	}
+	
+	/**
+	 * Returns a bitmask with bit i (bit i % 64 of word i / 64) set when
+	 * element i of the batch matches
+	 */
+	long[] matchAll(List<?> batch) {
+		batch = randomAccess(batch);
+		return matchAll(root, batch, batch.size());
+	}
+	
+	/**
+	 * Returns the number of elements of the batch that match
+	 */
+	int matchCount(List<?> batch) {
+		batch = randomAccess(batch);
+		return matchCount(root, batch, batch.size());
+	}
+	
+	/**
+	 * Returns a bitmask with bit i set when row i of the given rows matches
+	 */
+	static <R> long[] matchAll(Node<R> root, R rows, int size) {
+		long[] matches = new long[(size + 63) >>> 6];
+		
+		long[] candidates = new long[BLOCK_WORDS];
+		long[] result = new long[BLOCK_WORDS];
+		for(int offset = 0; offset < size; offset += BLOCK_SIZE) {
+			int words = evaluateBlock(root, rows, size, offset, candidates, result);
+			System.arraycopy(result, 0, matches, offset >>> 6, words);
+		}
+		
+		return matches;
+	}
+	
+	/**
+	 * Returns the number of the given rows that match
+	 */
+	static <R> int matchCount(Node<R> root, R rows, int size) {
+		int count = 0;
+		
+		long[] candidates = new long[BLOCK_WORDS];
+		long[] result = new long[BLOCK_WORDS];
+		for(int offset = 0; offset < size; offset += BLOCK_SIZE) {
+			int words = evaluateBlock(root, rows, size, offset, candidates, result);
+			for(int w = 0; w < words; w++) {
+				count += Long.bitCount(result[w]);
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Evaluates the rows of the block starting at offset into result, and
+	 * returns the number of words used
+	 */
+	private static <R> int evaluateBlock(Node<R> root, R rows, int size, int offset, long[] candidates, long[] result) {
+		int blockSize = Math.min(BLOCK_SIZE, size - offset);
+		int words = (blockSize + 63) >>> 6;
+		
+		for(int w = 0; w < words; w++) {
+			candidates[w] = -1L;
+		}
+		if((blockSize & 63) != 0) {
+			candidates[words - 1] = (1L << (blockSize & 63)) - 1;
+		}
+		
+		root.evaluate(rows, offset, words, candidates, result);
+		return words;
+	}
+	
+	/**
+	 * Lists that can't be read by index cheaply are copied so that blocks can be
+	 */
+	private static List<?> randomAccess(List<?> batch) {
+		return batch instanceof RandomAccess ? batch : new ArrayList<Object>(batch);
+	}
+	
+	private static boolean isEmpty(long[] mask, int words) {
+		for(int w = 0; w < words; w++) {
+			if(mask[w] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * A condition evaluated over rows of type R, which are either objects or
+	 * columns of values
+	 */
+	static abstract class Node<R> {
+		/**
+		 * Sets the bits in result for the rows of the block starting at offset
+		 * that are set in candidates and match, and clears the others.  Only the
+		 * first words of each mask are used, and candidates is left unchanged.
+		 */
+		abstract void evaluate(R rows, int offset, int words, long[] candidates, long[] result);
+	}
+	
+	static final class And<R> extends Node<R> {
+		private final List<Node<R>> nodes;
+		
+		And(List<Node<R>> nodes) {
+			this.nodes = nodes;
+		}
+		
+		void evaluate(R rows, int offset, int words, long[] candidates, long[] result) {
+			// each condition narrows the rows still passing, which the next one starts from
+			long[] passing = new long[words];
+			System.arraycopy(candidates, 0, passing, 0, words);
+			
+			for(Node<R> node : nodes) {
+				node.evaluate(rows, offset, words, passing, result);
+				if(isEmpty(result, words)) {
+					return;
+				}
+				System.arraycopy(result, 0, passing, 0, words);
+			}
+		}
+	}
+	
+	static final class Or<R> extends Node<R> {
+		private final List<Node<R>> nodes;
+		
+		Or(List<Node<R>> nodes) {
+			this.nodes = nodes;
+		}
+		
+		void evaluate(R rows, int offset, int words, long[] candidates, long[] result) {
+			// each condition only looks at the rows that haven't matched yet
+			long[] remaining = new long[words];
+			long[] matched = new long[words];
+			System.arraycopy(candidates, 0, remaining, 0, words);
+			
+			for(Node<R> node : nodes) {
+				node.evaluate(rows, offset, words, remaining, result);
+				
+				boolean anyRemaining = false;
+				for(int w = 0; w < words; w++) {
+					matched[w] |= result[w];
+					remaining[w] &= ~result[w];
+					anyRemaining |= remaining[w] != 0;
+				}
+				
+				if(!anyRemaining) {
+					break;
+				}
+			}
+			
+			System.arraycopy(matched, 0, result, 0, words);
+		}
+	}
+	
+	static final class Constant<R> extends Node<R> {
+		private final boolean value;
+		
+		Constant(boolean value) {
+			this.value = value;
+		}
+		
+		void evaluate(R rows, int offset, int words, long[] candidates, long[] result) {
+			for(int w = 0; w < words; w++) {
+				result[w] = value ? candidates[w] : 0;
+			}
+		}
+	}
+	
+	/**
+	 * Applies a simple condition, InCondition or NotInCondition to each candidate row.  The
+	 * condition is compiled once for each class of object it meets, and objects
+	 * of classes it can't be compiled for are matched reflectively, which throws
+	 * for exactly the objects matches(object) would throw for.
+	 */
+	private static final class Simple extends Node<List<?>> {
+		private final Condition condition;
+		
+		// null for classes the condition can't be compiled for
+		private final ClassValue<CompiledCondition> compiled = new ClassValue<CompiledCondition>() {
+			protected CompiledCondition computeValue(Class<?> type) {
+				try {
+					return CompiledCondition.compile(condition, type);
+				} catch (FieldException e) {
+					return null;
+				} catch (NumberFormatException e) {
+					return null;
+				}
+			}
+		};
+		
+		Simple(Condition condition) {
+			this.condition = condition;
+		}
+		
+		void evaluate(List<?> batch, int offset, int words, long[] candidates, long[] result) {
+			Class<?> lastClass = null;
+			CompiledCondition lastCompiled = null;
+			
+			for(int w = 0; w < words; w++) {
+				long word = candidates[w];
+				long matches = 0;
+				
+				while(word != 0) {
+					long bit = word & -word;
+					word ^= bit;
+					
+					Object pojo = batch.get(offset + (w << 6) + Long.numberOfTrailingZeros(bit));
+					if(pojo.getClass() != lastClass) {
+						lastClass = pojo.getClass();
+						lastCompiled = compiled.get(lastClass);
+					}
+					
+					boolean matched = lastCompiled != null ? lastCompiled.matches(pojo)
+							: condition.isTrue(new ObjectFieldComparer(pojo));
+					if(matched) {
+						matches |= bit;
+					}
+				}
+				
+				result[w] = matches;
+			}
+		}
+	}
+}
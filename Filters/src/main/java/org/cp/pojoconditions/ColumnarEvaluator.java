@@ -0,0 +1,404 @@
+package org.cp.pojoconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cp.condition.AndCondition;
+import org.cp.condition.Condition;
+import org.cp.condition.ConstantCondition;
+import org.cp.condition.InCondition;
+import org.cp.condition.Literal;
+import org.cp.condition.NotInCondition;
+import org.cp.condition.Operator;
+import org.cp.condition.OrCondition;
+import org.cp.condition.SimpleCondition;
+
+/**
+ * Binds a condition to columns of values, so that it can be evaluated with
+ * the same blocks, ANDs and ORs as BatchEvaluator.  Numeric and boolean
+ * comparisons are evaluated for 64 rows at a time by branch free loops over
+ * the column's array, producing a word of the mask directly.  These loops
+ * compare every row of a word, whether or not it is a candidate, since that is
+ * cheaper than testing each bit, and skip words without any candidates.
+ * Strings are only compared for candidate rows.
+ */
+final class ColumnarEvaluator {
+	private ColumnarEvaluator() {
+	}
+	
+	/**
+	 * Binds each identifier in the condition to its column
+	 * @throws NonexistentIdentifierException if there is no column for an identifier
+	 * @throws FieldTypeException if a column's type does not support the operator used with it
+	 * @throws NumberFormatException if a value cannot be converted to the type
+	 * of the column it is compared with
+	 */
+	static BatchEvaluator.Node<Columns> bind(Condition condition, Columns columns) {
+		if(condition instanceof ConstantCondition) {
+			return new BatchEvaluator.Constant<Columns>(((ConstantCondition)condition).getValue());
+		} else if(condition instanceof InCondition) {
+			return bindInCondition((InCondition)condition, false, columns);
+		} else if(condition instanceof NotInCondition) {
+			return bindInCondition(((NotInCondition)condition).getInCondition(), true, columns);
+		} else if(condition instanceof AndCondition) {
+			return new BatchEvaluator.And<Columns>(bindAll(((AndCondition)condition).getConditions(), columns));
+		} else if(condition instanceof OrCondition) {
+			return new BatchEvaluator.Or<Columns>(bindAll(((OrCondition)condition).getConditions(), columns));
+		} else if(condition instanceof SimpleCondition) {
+			return bindSimpleCondition((SimpleCondition)condition, columns);
+		}
+		
+		throw new IllegalArgumentException("Unsupported condition: " + condition);
+	}
+	
+	private static List<BatchEvaluator.Node<Columns>> bindAll(List<Condition> conditions, Columns columns) {
+		List<BatchEvaluator.Node<Columns>> nodes = new ArrayList<BatchEvaluator.Node<Columns>>(conditions.size());
+		for(Condition condition : conditions) {
+			nodes.add(bind(condition, columns));
+		}
+		return nodes;
+	}
+	
+	private static BatchEvaluator.Node<Columns> bindSimpleCondition(SimpleCondition condition, Columns columns) {
+		String identifier = condition.getIdentifier();
+		Object column = columns.getColumn(identifier);
+		if(column == null) {
+			throw new NonexistentIdentifierException(identifier, condition.isMethod(), Columns.class);
+		}
+		
+		Operator operator = condition.getComparisonOperator();
+		Literal literal = condition.getLiteral();
+		
+		if(column instanceof String[]) {
+			if(!operator.isComparison()) {
+				return new StringContains((String[])column, operator == Operator.CONTAINS, literal.getLowerCaseText());
+			}
+			return new StringComparison((String[])column, operator, literal.getText());
+		}
+		
+		if(column instanceof boolean[]) {
+			if(operator != Operator.EQUAL) {
+				throw new FieldTypeException(identifier, boolean.class, Columns.class);
+			}
+			return new BooleanEquals((boolean[])column, literal.getBooleanValue());
+		}
+		
+		// the remaining types are numeric, which can't be matched with =~ or !~
+		if(!operator.isComparison()) {
+			throw new FieldTypeException(identifier, column.getClass().getComponentType(), Columns.class);
+		}
+		
+		if(column instanceof int[]) {
+			return new IntComparison((int[])column, operator, literal.getIntValue());
+		} else if(column instanceof long[]) {
+			return new LongComparison((long[])column, operator, literal.getLongValue());
+		}
+		return new DoubleComparison((double[])column, operator, literal.getDoubleValue());
+	}
+	
+	private static BatchEvaluator.Node<Columns> bindInCondition(InCondition condition, boolean negated, Columns columns) {
+		// binding the equalities checks every value can be compared with the column
+		bindAll(condition.getConditions(), columns);
+		return new In(columns.getColumn(condition.getIdentifier()), columns.size(), condition, negated);
+	}
+	
+	/**
+	 * Evaluates a column a word of rows at a time
+	 */
+	private static abstract class ColumnCondition extends BatchEvaluator.Node<Columns> {
+		private final int size;
+		
+		ColumnCondition(int size) {
+			this.size = size;
+		}
+		
+		void evaluate(Columns rows, int offset, int words, long[] candidates, long[] result) {
+			for(int w = 0; w < words; w++) {
+				long candidateBits = candidates[w];
+				if(candidateBits == 0) {
+					result[w] = 0;
+				} else {
+					int start = offset + (w << 6);
+					result[w] = matches(start, Math.min(64, size - start), candidateBits) & candidateBits;
+				}
+			}
+		}
+		
+		/**
+		 * Returns a word with bit i set if row start + i matches, for the given
+		 * number of rows.  Rows that aren't candidates may be set or not.
+		 */
+		abstract long matches(int start, int rows, long candidateBits);
+	}
+	
+	/**
+	 * Compares byte, short and int columns
+	 */
+	private static final class IntComparison extends ColumnCondition {
+		private final int[] values;
+		private final Operator operator;
+		private final int value;
+		
+		IntComparison(int[] values, Operator operator, int value) {
+			super(values.length);
+			this.values = values;
+			this.operator = operator;
+			this.value = value;
+		}
+		
+		long matches(int start, int rows, long candidateBits) {
+			int[] values = this.values;
+			int value = this.value;
+			long bits = 0;
+			
+			switch(operator) {
+			case LESS_THAN:
+				for(int i = 0; i < rows; i++) {
+					bits |= (values[start + i] < value ? 1L : 0L) << i;
+				}
+				break;
+			case LESS_THAN_OR_EQUAL:
+				for(int i = 0; i < rows; i++) {
+					bits |= (values[start + i] <= value ? 1L : 0L) << i;
+				}
+				break;
+			case GREATER_THAN:
+				for(int i = 0; i < rows; i++) {
+					bits |= (values[start + i] > value ? 1L : 0L) << i;
+				}
+				break;
+			case GREATER_THAN_OR_EQUAL:
+				for(int i = 0; i < rows; i++) {
+					bits |= (values[start + i] >= value ? 1L : 0L) << i;
+				}
+				break;
+			default:
+				for(int i = 0; i < rows; i++) {
+					bits |= (values[start + i] == value ? 1L : 0L) << i;
+				}
+				break;
+			}
+			
+			return bits;
+		}
+	}
+	
+	private static final class LongComparison extends ColumnCondition {
+		private final long[] values;
+		private final Operator operator;
+		private final long value;
+		
+		LongComparison(long[] values, Operator operator, long value) {
+			super(values.length);
+			this.values = values;
+			this.operator = operator;
+			this.value = value;
+		}
+		
+		long matches(int start, int rows, long candidateBits) {
+			long[] values = this.values;
+			long value = this.value;
+			long bits = 0;
+			
+			switch(operator) {
+			case LESS_THAN:
+				for(int i = 0; i < rows; i++) {
+					bits |= (values[start + i] < value ? 1L : 0L) << i;
+				}
+				break;
+			case LESS_THAN_OR_EQUAL:
+				for(int i = 0; i < rows; i++) {
+					bits |= (values[start + i] <= value ? 1L : 0L) << i;
+				}
+				break;
+			case GREATER_THAN:
+				for(int i = 0; i < rows; i++) {
+					bits |= (values[start + i] > value ? 1L : 0L) << i;
+				}
+				break;
+			case GREATER_THAN_OR_EQUAL:
+				for(int i = 0; i < rows; i++) {
+					bits |= (values[start + i] >= value ? 1L : 0L) << i;
+				}
+				break;
+			default:
+				for(int i = 0; i < rows; i++) {
+					bits |= (values[start + i] == value ? 1L : 0L) << i;
+				}
+				break;
+			}
+			
+			return bits;
+		}
+	}
+	
+	/**
+	 * Compares float and double columns.  Like Java's own operators, any
+	 * comparison involving NaN is false.
+	 */
+	private static final class DoubleComparison extends ColumnCondition {
+		private final double[] values;
+		private final Operator operator;
+		private final double value;
+		
+		DoubleComparison(double[] values, Operator operator, double value) {
+			super(values.length);
+			this.values = values;
+			this.operator = operator;
+			this.value = value;
+		}
+		
+		long matches(int start, int rows, long candidateBits) {
+			double[] values = this.values;
+			double value = this.value;
+			long bits = 0;
+			
+			switch(operator) {
+			case LESS_THAN:
+				for(int i = 0; i < rows; i++) {
+					bits |= (values[start + i] < value ? 1L : 0L) << i;
+				}
+				break;
+			case LESS_THAN_OR_EQUAL:
+				for(int i = 0; i < rows; i++) {
+					bits |= (values[start + i] <= value ? 1L : 0L) << i;
+				}
+				break;
+			case GREATER_THAN:
+				for(int i = 0; i < rows; i++) {
+					bits |= (values[start + i] > value ? 1L : 0L) << i;
+				}
+				break;
+			case GREATER_THAN_OR_EQUAL:
+				for(int i = 0; i < rows; i++) {
+					bits |= (values[start + i] >= value ? 1L : 0L) << i;
+				}
+				break;
+			default:
+				for(int i = 0; i < rows; i++) {
+					bits |= (values[start + i] == value ? 1L : 0L) << i;
+				}
+				break;
+			}
+			
+			return bits;
+		}
+	}
+	
+	private static final class BooleanEquals extends ColumnCondition {
+		private final boolean[] values;
+		private final boolean value;
+		
+		BooleanEquals(boolean[] values, boolean value) {
+			super(values.length);
+			this.values = values;
+			this.value = value;
+		}
+		
+		long matches(int start, int rows, long candidateBits) {
+			boolean[] values = this.values;
+			boolean value = this.value;
+			long bits = 0;
+			for(int i = 0; i < rows; i++) {
+				bits |= (values[start + i] == value ? 1L : 0L) << i;
+			}
+			return bits;
+		}
+	}
+	
+	private static final class StringComparison extends ColumnCondition {
+		private final String[] values;
+		private final Operator operator;
+		private final String value;
+		
+		StringComparison(String[] values, Operator operator, String value) {
+			super(values.length);
+			this.values = values;
+			this.operator = operator;
+			this.value = value;
+		}
+		
+		long matches(int start, int rows, long candidateBits) {
+			long bits = 0;
+			while(candidateBits != 0) {
+				long bit = candidateBits & -candidateBits;
+				candidateBits ^= bit;
+				if(operator.isTrue(values[start + Long.numberOfTrailingZeros(bit)].compareTo(value))) {
+					bits |= bit;
+				}
+			}
+			return bits;
+		}
+	}
+	
+	/**
+	 * Tests candidate rows of any type of column against the values of an
+	 * InCondition with a hash lookup each, matching those found, or when
+	 * negated for NOT IN, those that aren't
+	 */
+	private static final class In extends ColumnCondition {
+		private final Object values;
+		private final InCondition condition;
+		private final boolean negated;
+		
+		In(Object values, int size, InCondition condition, boolean negated) {
+			super(size);
+			this.values = values;
+			this.condition = condition;
+			this.negated = negated;
+		}
+		
+		long matches(int start, int rows, long candidateBits) {
+			long bits = 0;
+			while(candidateBits != 0) {
+				long bit = candidateBits & -candidateBits;
+				candidateBits ^= bit;
+				if(contains(start + Long.numberOfTrailingZeros(bit)) != negated) {
+					bits |= bit;
+				}
+			}
+			return bits;
+		}
+		
+		private boolean contains(int row) {
+			if(values instanceof int[]) {
+				return condition.containsInt(((int[])values)[row]);
+			} else if(values instanceof long[]) {
+				return condition.containsLong(((long[])values)[row]);
+			} else if(values instanceof double[]) {
+				return condition.containsDouble(((double[])values)[row]);
+			} else if(values instanceof boolean[]) {
+				return condition.containsBoolean(((boolean[])values)[row]);
+			}
+			return condition.containsText(((String[])values)[row]);
+		}
+	}
+	
+	/**
+	 * Case insensitive substring matching for =~ and !~
+	 */
+	private static final class StringContains extends ColumnCondition {
+		private final String[] values;
+		private final boolean contains;
+		private final String lowerCaseValue;
+		
+		StringContains(String[] values, boolean contains, String lowerCaseValue) {
+			super(values.length);
+			this.values = values;
+			this.contains = contains;
+			this.lowerCaseValue = lowerCaseValue;
+		}
+		
+		long matches(int start, int rows, long candidateBits) {
+			long bits = 0;
+			while(candidateBits != 0) {
+				long bit = candidateBits & -candidateBits;
+				candidateBits ^= bit;
+				if(values[start + Long.numberOfTrailingZeros(bit)].toLowerCase().contains(lowerCaseValue) == contains) {
+					bits |= bit;
+				}
+			}
+			return bits;
+		}
+	}
+}
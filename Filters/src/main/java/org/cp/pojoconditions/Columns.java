@@ -0,0 +1,88 @@
+package org.cp.pojoconditions;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Data held as columns rather than objects: a number of rows, and for each
+ * identifier an array holding its value for every row.  Conditions are
+ * evaluated against columns with PojoEvaluator.matchAll(Columns) and
+ * matchCount(Columns), which compare whole columns at a time without
+ * building an object for each row.
+ *
+ * Identifiers in conditions are looked up by name, so a method identifier
+ * such as getX() reads the column named getX.
+ *
+ * The arrays are not copied, so changes to them are seen by later evaluations.
+ */
+public final class Columns {
+	private final int size;
+	private final Map<String, Object> columns = new LinkedHashMap<String, Object>();
+	
+	/**
+	 * @param size the number of rows, which every column must have
+	 */
+	public Columns(int size) {
+		if(size < 0) {
+			throw new IllegalArgumentException("size must not be negative: " + size);
+		}
+		this.size = size;
+	}
+	
+	/**
+	 * Adds a column of byte, short or int values, all compared as ints
+	 */
+	public Columns add(String identifier, int[] values) {
+		return addColumn(identifier, values, values.length);
+	}
+	
+	public Columns add(String identifier, long[] values) {
+		return addColumn(identifier, values, values.length);
+	}
+	
+	/**
+	 * Adds a column of float or double values, all compared as doubles
+	 */
+	public Columns add(String identifier, double[] values) {
+		return addColumn(identifier, values, values.length);
+	}
+	
+	public Columns add(String identifier, boolean[] values) {
+		return addColumn(identifier, values, values.length);
+	}
+	
+	public Columns add(String identifier, String[] values) {
+		return addColumn(identifier, values, values.length);
+	}
+	
+	private Columns addColumn(String identifier, Object values, int length) {
+		if(length != size) {
+			throw new IllegalArgumentException("Column " + identifier + " has " + length + " rows instead of " + size);
+		}
+		if(columns.containsKey(identifier)) {
+			throw new IllegalArgumentException("Column " + identifier + " already exists");
+		}
+		columns.put(identifier, values);
+		return this;
+	}
+	
+	/**
+	 * The number of rows
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the array holding the identifier's values, or null if there is
+	 * no column for the identifier
+	 */
+	Object getColumn(String identifier) {
+		return columns.get(identifier);
+	}
+	
+	@Override
+	public String toString() {
+		return "Columns [size=" + size + ", identifiers=" + columns.keySet() + "]";
+	}
+}
@@ -0,0 +1,551 @@
+package org.cp.pojoconditions;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.cp.condition.AndCondition;
+import org.cp.condition.Condition;
+import org.cp.condition.ConstantCondition;
+import org.cp.condition.InCondition;
+import org.cp.condition.Literal;
+import org.cp.condition.NotInCondition;
+import org.cp.condition.Operator;
+import org.cp.condition.OrCondition;
+import org.cp.condition.SimpleCondition;
+
+/**
+ * A condition that has been bound to a single pojo class.  Identifiers are
+ * resolved to accessors and values are decoded to the identifier's type when
+ * the condition is compiled, so matching does no reflective lookups or parsing.
+ */
+abstract class CompiledCondition {
+	abstract boolean matches(Object pojo);
+	
+	/**
+	 * Compiles the condition for objects of the provided class
+	 * @throws FieldException if an identifier does not exist in the class, has
+	 * an unsupported type, or does not support the operator used with it
+	 * @throws NumberFormatException if a value cannot be converted to the type
+	 * of the identifier it is compared with
+	 */
+	static CompiledCondition compile(Condition condition, Class<?> pojoClass) {
+		return compile(condition, pojoClass, false);
+	}
+	
+	/**
+	 * Compiles the condition for objects of the provided class, with ANDs and
+	 * ORs that reorder their conditions as they're evaluated if adaptive is true
+	 * @see Adaptive
+	 */
+	static CompiledCondition compile(Condition condition, Class<?> pojoClass, boolean adaptive) {
+		return compile(condition, pojoClass, adaptive, new HashMap<String, IdentifierAccessor>());
+	}
+	
+	/**
+	 * Compiles the condition for objects of the provided class, looking up
+	 * identifiers in and adding them to accessors, which holds the accessor
+	 * for each field by name and each method by name followed by ().  Reusing
+	 * accessors across conditions avoids looking identifiers up again, and
+	 * lets the JIT reuse the code it has built for their method handles.
+	 */
+	static CompiledCondition compile(Condition condition, Class<?> pojoClass, Map<String, IdentifierAccessor> accessors) {
+		return compile(condition, pojoClass, false, accessors);
+	}
+	
+	private static CompiledCondition compile(Condition condition, Class<?> pojoClass, boolean adaptive, Map<String, IdentifierAccessor> accessors) {
+		if(condition instanceof ConstantCondition) {
+			return ((ConstantCondition)condition).getValue() ? Constant.TRUE : Constant.FALSE;
+		} else if(condition instanceof InCondition) {
+			return compileIn((InCondition)condition, false, pojoClass, accessors);
+		} else if(condition instanceof NotInCondition) {
+			return compileIn(((NotInCondition)condition).getInCondition(), true, pojoClass, accessors);
+		} else if(condition instanceof AndCondition) {
+			CompiledCondition[] conditions = compileAll(((AndCondition)condition).getConditions(), pojoClass, adaptive, accessors);
+			return adaptive ? new Adaptive(conditions, false) : new And(conditions);
+		} else if(condition instanceof OrCondition) {
+			CompiledCondition[] conditions = compileAll(((OrCondition)condition).getConditions(), pojoClass, adaptive, accessors);
+			return adaptive ? new Adaptive(conditions, true) : new Or(conditions);
+		} else if(condition instanceof SimpleCondition) {
+			return compileSimpleCondition((SimpleCondition)condition, pojoClass, accessors);
+		}
+		
+		throw new IllegalArgumentException("Unsupported condition: " + condition);
+	}
+	
+	private static CompiledCondition[] compileAll(List<Condition> conditions, Class<?> pojoClass, boolean adaptive, Map<String, IdentifierAccessor> accessors) {
+		CompiledCondition[] compiled = new CompiledCondition[conditions.size()];
+		for(int i = 0; i < compiled.length; i++) {
+			compiled[i] = compile(conditions.get(i), pojoClass, adaptive, accessors);
+		}
+		return compiled;
+	}
+	
+	private static CompiledCondition compileIn(InCondition condition, boolean negated, Class<?> pojoClass, Map<String, IdentifierAccessor> accessors) {
+		// compiling the equalities checks every value can be compared with the identifier
+		compileAll(condition.getConditions(), pojoClass, false, accessors);
+		String key = condition.isMethod() ? condition.getIdentifier() + "()" : condition.getIdentifier();
+		return new In(accessors.get(key), condition, negated);
+	}
+	
+	private static CompiledCondition compileSimpleCondition(SimpleCondition condition, Class<?> pojoClass, Map<String, IdentifierAccessor> accessors) {
+		String identifier = condition.getIdentifier();
+		
+		// each identifier is only looked up once, no matter how many times it appears
+		// in the condition.  fields and methods with the same name are different identifiers
+		String key = condition.isMethod() ? identifier + "()" : identifier;
+		IdentifierAccessor accessor = accessors.get(key);
+		if(accessor == null) {
+			accessor = IdentifierAccessor.forIdentifier(pojoClass, identifier, condition.isMethod());
+			accessors.put(key, accessor);
+		}
+		
+		Operator operator = condition.getComparisonOperator();
+		Literal literal = condition.getLiteral();
+		ValueType type = accessor.getType();
+		
+		if(type == ValueType.STRING) {
+			if(!operator.isComparison()) {
+				return new StringContains(accessor, operator == Operator.CONTAINS, literal.getLowerCaseText());
+			}
+			return new StringComparison(accessor, operator, literal.getText());
+		}
+		
+		if(type == ValueType.BOOLEAN) {
+			if(operator != Operator.EQUAL) {
+				throw new FieldTypeException(identifier, accessor.getValueClass(), pojoClass);
+			}
+			return new BooleanEquals(accessor, literal.getBooleanValue());
+		}
+		
+		// the remaining types are numeric, which can't be matched with =~ or !~
+		if(!operator.isComparison()) {
+			throw new FieldTypeException(identifier, accessor.getValueClass(), pojoClass);
+		}
+		
+		switch(type) {
+		case BYTE:
+			return new IntComparison(accessor, operator, literal.getByteValue());
+		case SHORT:
+			return new IntComparison(accessor, operator, literal.getShortValue());
+		case INT:
+			return new IntComparison(accessor, operator, literal.getIntValue());
+		case LONG:
+			return new LongComparison(accessor, operator, literal.getLongValue());
+		case FLOAT:
+			return new DoubleComparison(accessor, operator, literal.getFloatValue());
+		default:
+			return new DoubleComparison(accessor, operator, literal.getDoubleValue());
+		}
+	}
+	
+	static final class And extends CompiledCondition {
+		final CompiledCondition[] conditions;
+		
+		And(CompiledCondition[] conditions) {
+			this.conditions = conditions;
+		}
+		
+		boolean matches(Object pojo) {
+			for(CompiledCondition condition : conditions) {
+				if(!condition.matches(pojo)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+	
+	static final class Or extends CompiledCondition {
+		final CompiledCondition[] conditions;
+		
+		Or(CompiledCondition[] conditions) {
+			this.conditions = conditions;
+		}
+		
+		boolean matches(Object pojo) {
+			for(CompiledCondition condition : conditions) {
+				if(condition.matches(pojo)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * An AND (isOr false) or OR (isOr true) that evaluates its conditions in
+	 * the order that is cheapest on average for the objects it has seen.
+	 * 
+	 * One evaluation in SAMPLE_RATE, picked at random, is a sample: every
+	 * condition is evaluated and timed, and whether it matched is recorded.
+	 * Samples evaluate the conditions in their original order, and only throw
+	 * what a condition throws if no condition before it decided the result.
+	 * After every SAMPLES_PER_REORDER samples the conditions are ranked by
+	 * their average time divided by how often they decide the result, which
+	 * is how often they're false for an AND and true for an OR, and the new
+	 * order is published for the following evaluations.  That puts cheap and
+	 * selective conditions first in ANDs and cheap and likely conditions first
+	 * in ORs.  Conditions that never decide the result keep their place after
+	 * the others, and the statistics restart with each new order so that it
+	 * follows changes in the objects being evaluated.
+	 * 
+	 * Any other evaluation that throws is repeated in the original order, so
+	 * objects are only failed for when the conditions as written would fail.
+	 * 
+	 * The order is an immutable array in a volatile field, so evaluations on
+	 * any thread use a complete order.  Statistics are kept in atomics but may
+	 * mix samples from either side of a reorder, which only affects how good
+	 * the next order is.
+	 */
+	static final class Adaptive extends CompiledCondition {
+		// must be a power of two
+		private static final int SAMPLE_RATE = 64;
+		private static final int SAMPLES_PER_REORDER = 256;
+		
+		final CompiledCondition[] conditions;
+		final boolean isOr;
+		
+		// indexes into conditions, in the order they're evaluated
+		private volatile int[] order;
+		
+		private final AtomicInteger samples = new AtomicInteger();
+		private final AtomicLongArray decisions;
+		private final AtomicLongArray nanos;
+		
+		Adaptive(CompiledCondition[] conditions, boolean isOr) {
+			this.conditions = conditions;
+			this.isOr = isOr;
+			this.decisions = new AtomicLongArray(conditions.length);
+			this.nanos = new AtomicLongArray(conditions.length);
+			
+			int[] order = new int[conditions.length];
+			for(int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			this.order = order;
+		}
+		
+		boolean matches(Object pojo) {
+			if((ThreadLocalRandom.current().nextInt() & (SAMPLE_RATE - 1)) == 0) {
+				return sample(pojo);
+			}
+			
+			// an AND is decided by the first false condition, and an OR by the first true one
+			try {
+				for(int i : order) {
+					if(conditions[i].matches(pojo) == isOr) {
+						return isOr;
+					}
+				}
+				return !isOr;
+			} catch (RuntimeException e) {
+				// a condition that comes first in the original order may decide the result
+				return matchesInOriginalOrder(pojo);
+			}
+		}
+		
+		private boolean matchesInOriginalOrder(Object pojo) {
+			for(CompiledCondition condition : conditions) {
+				if(condition.matches(pojo) == isOr) {
+					return isOr;
+				}
+			}
+			return !isOr;
+		}
+		
+		/**
+		 * The order conditions are currently evaluated in, as indexes into conditions
+		 */
+		int[] getOrder() {
+			return order.clone();
+		}
+		
+		private boolean sample(Object pojo) {
+			boolean result = !isOr;
+			RuntimeException failure = null;
+			
+			for(int i = 0; i < conditions.length; i++) {
+				long start = System.nanoTime();
+				boolean matched;
+				try {
+					matched = conditions[i].matches(pojo);
+				} catch (RuntimeException e) {
+					// conditions after the one deciding the result wouldn't have been evaluated
+					if(result == !isOr && failure == null) {
+						failure = e;
+					}
+					matched = !isOr;
+				}
+				nanos.addAndGet(i, System.nanoTime() - start);
+				
+				if(matched == isOr) {
+					decisions.incrementAndGet(i);
+					if(failure == null) {
+						result = isOr;
+					}
+				}
+			}
+			
+			if(samples.incrementAndGet() == SAMPLES_PER_REORDER) {
+				reorder();
+			}
+			
+			if(failure != null) {
+				throw failure;
+			}
+			return result;
+		}
+		
+		/**
+		 * Publishes a new order from the statistics, and restarts them.  Only
+		 * called by the thread taking the last sample, since the count restarts too.
+		 */
+		private void reorder() {
+			final double[] ranks = new double[conditions.length];
+			Integer[] newOrder = new Integer[conditions.length];
+			
+			for(int i = 0; i < conditions.length; i++) {
+				long decided = decisions.getAndSet(i, 0);
+				long time = nanos.getAndSet(i, 0);
+				ranks[i] = decided == 0 ? Double.POSITIVE_INFINITY : (double)(time + 1) / decided;
+				newOrder[i] = i;
+			}
+			samples.set(0);
+			
+			// a stable sort, so conditions that rank the same keep their relative order
+			Arrays.sort(newOrder, new Comparator<Integer>() {
+				public int compare(Integer o1, Integer o2) {
+					return Double.compare(ranks[o1], ranks[o2]);
+				}
+			});
+			
+			int[] order = new int[newOrder.length];
+			for(int i = 0; i < order.length; i++) {
+				order[i] = newOrder[i];
+			}
+			this.order = order;
+		}
+	}
+	
+	static final class Constant extends CompiledCondition {
+		static final Constant TRUE = new Constant(true);
+		static final Constant FALSE = new Constant(false);
+		
+		final boolean value;
+		
+		private Constant(boolean value) {
+			this.value = value;
+		}
+		
+		boolean matches(Object pojo) {
+			return value;
+		}
+	}
+	
+	/**
+	 * Tests an identifier against all of the values of an InCondition with one
+	 * hash lookup, matching when the value is found, or when negated for NOT IN,
+	 * when it isn't
+	 */
+	static final class In extends CompiledCondition {
+		final IdentifierAccessor accessor;
+		final InCondition condition;
+		final boolean negated;
+		
+		In(IdentifierAccessor accessor, InCondition condition, boolean negated) {
+			this.accessor = accessor;
+			this.condition = condition;
+			this.negated = negated;
+		}
+		
+		boolean matches(Object pojo) {
+			return contains(pojo) != negated;
+		}
+		
+		private boolean contains(Object pojo) {
+			switch(accessor.getType()) {
+			case BYTE:
+				return condition.containsByte((byte)accessor.getInt(pojo));
+			case SHORT:
+				return condition.containsShort((short)accessor.getInt(pojo));
+			case INT:
+				return condition.containsInt(accessor.getInt(pojo));
+			case LONG:
+				return condition.containsLong(accessor.getLong(pojo));
+			case FLOAT:
+				return condition.containsFloat((float)accessor.getDouble(pojo));
+			case DOUBLE:
+				return condition.containsDouble(accessor.getDouble(pojo));
+			case BOOLEAN:
+				return condition.containsBoolean(accessor.getBoolean(pojo));
+			default:
+				return condition.containsText(accessor.getString(pojo));
+			}
+		}
+		
+		/**
+		 * Returns a handle of type (accessor.getType().getComparisonType()) -> boolean
+		 * that tests a value
+		 */
+		MethodHandle getContainsHandle() {
+			ValueType type = accessor.getType();
+			Class<?> comparisonType = type.getComparisonType();
+			
+			String name;
+			Class<?> parameterType = comparisonType;
+			switch(type) {
+			case BYTE:
+				name = "containsByte";
+				parameterType = byte.class;
+				break;
+			case SHORT:
+				name = "containsShort";
+				parameterType = short.class;
+				break;
+			case INT:
+				name = "containsInt";
+				break;
+			case LONG:
+				name = "containsLong";
+				break;
+			case FLOAT:
+				name = "containsFloat";
+				parameterType = float.class;
+				break;
+			case DOUBLE:
+				name = "containsDouble";
+				break;
+			case BOOLEAN:
+				name = "containsBoolean";
+				break;
+			default:
+				name = "containsText";
+				break;
+			}
+			
+			try {
+				MethodHandle handle = MethodHandles.publicLookup().findVirtual(InCondition.class, name,
+						MethodType.methodType(boolean.class, parameterType)).bindTo(condition);
+				// bytes, shorts and floats are widened when read, and narrowed back here
+				return MethodHandles.explicitCastArguments(handle, MethodType.methodType(boolean.class, comparisonType));
+			} catch (NoSuchMethodException e) {
+				throw new RuntimeException(e);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+	
+	/**
+	 * Compares byte, short and int identifiers
+	 */
+	static final class IntComparison extends CompiledCondition {
+		final IdentifierAccessor accessor;
+		final Operator operator;
+		final int value;
+		
+		IntComparison(IdentifierAccessor accessor, Operator operator, int value) {
+			this.accessor = accessor;
+			this.operator = operator;
+			this.value = value;
+		}
+		
+		boolean matches(Object pojo) {
+			return operator.isTrue(accessor.getInt(pojo), value);
+		}
+	}
+	
+	static final class LongComparison extends CompiledCondition {
+		final IdentifierAccessor accessor;
+		final Operator operator;
+		final long value;
+		
+		LongComparison(IdentifierAccessor accessor, Operator operator, long value) {
+			this.accessor = accessor;
+			this.operator = operator;
+			this.value = value;
+		}
+		
+		boolean matches(Object pojo) {
+			return operator.isTrue(accessor.getLong(pojo), value);
+		}
+	}
+	
+	/**
+	 * Compares float and double identifiers.  Floats are widened to doubles,
+	 * along with a value decoded as a float, which doesn't change the result
+	 */
+	static final class DoubleComparison extends CompiledCondition {
+		final IdentifierAccessor accessor;
+		final Operator operator;
+		final double value;
+		
+		DoubleComparison(IdentifierAccessor accessor, Operator operator, double value) {
+			this.accessor = accessor;
+			this.operator = operator;
+			this.value = value;
+		}
+		
+		boolean matches(Object pojo) {
+			return operator.isTrue(accessor.getDouble(pojo), value);
+		}
+	}
+	
+	static final class BooleanEquals extends CompiledCondition {
+		final IdentifierAccessor accessor;
+		final boolean value;
+		
+		BooleanEquals(IdentifierAccessor accessor, boolean value) {
+			this.accessor = accessor;
+			this.value = value;
+		}
+		
+		boolean matches(Object pojo) {
+			return accessor.getBoolean(pojo) == value;
+		}
+	}
+	
+	static final class StringComparison extends CompiledCondition {
+		final IdentifierAccessor accessor;
+		final Operator operator;
+		final String value;
+		
+		StringComparison(IdentifierAccessor accessor, Operator operator, String value) {
+			this.accessor = accessor;
+			this.operator = operator;
+			this.value = value;
+		}
+		
+		boolean matches(Object pojo) {
+			return operator.isTrue(accessor.getString(pojo).compareTo(value));
+		}
+	}
+	
+	/**
+	 * Case insensitive substring matching for =~ and !~
+	 */
+	static final class StringContains extends CompiledCondition {
+		final IdentifierAccessor accessor;
+		final boolean contains;
+		final String lowerCaseValue;
+		
+		StringContains(IdentifierAccessor accessor, boolean contains, String lowerCaseValue) {
+			this.accessor = accessor;
+			this.contains = contains;
+			this.lowerCaseValue = lowerCaseValue;
+		}
+		
+		boolean matches(Object pojo) {
+			return accessor.getString(pojo).toLowerCase().contains(lowerCaseValue) == contains;
+		}
+	}
+}
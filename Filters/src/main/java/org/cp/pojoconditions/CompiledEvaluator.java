@@ -0,0 +1,50 @@
+package org.cp.pojoconditions;
+
+import java.util.function.Predicate;
+
+/**
+ * Evaluates a condition against pojos of a single class.  Built by
+ * PojoEvaluator.compile(Class), which resolves all of the identifiers in
+ * the condition ahead of time, so that matching an object does not require
+ * any reflective lookups.
+ * 
+ * Instances may be shared between threads.  They are immutable, apart from
+ * the order conditions are evaluated in by evaluators from
+ * PojoEvaluator.compileAdaptive(Class).
+ */
+public final class CompiledEvaluator<T> implements Predicate<T> {
+	private final Class<T> pojoClass;
+	private final CompiledCondition condition;
+	
+	CompiledEvaluator(Class<T> pojoClass, CompiledCondition condition) {
+		this.pojoClass = pojoClass;
+		this.condition = condition;
+	}
+	
+	/**
+	 * The class the evaluator was compiled for.  Identifiers are read from the
+	 * fields and methods declared by this class, even for subclass instances.
+	 */
+	public Class<T> getPojoClass() {
+		return pojoClass;
+	}
+	
+	/**
+	 * Determines if the pojo matches the condition
+	 * @return true if it does, otherwise false
+	 */
+	public boolean matches(T object) {
+		return condition.matches(object);
+	}
+	
+	/**
+	 * Same as matches(object)
+	 */
+	public boolean test(T object) {
+		return condition.matches(object);
+	}
+	
+	CompiledCondition getCondition() {
+		return condition;
+	}
+}
@@ -0,0 +1,572 @@
+package org.cp.pojoconditions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.cp.condition.AndCondition;
+import org.cp.condition.Condition;
+import org.cp.condition.ConstantCondition;
+import org.cp.condition.InCondition;
+import org.cp.condition.Literal;
+import org.cp.condition.Operator;
+import org.cp.condition.OrCondition;
+import org.cp.condition.SimpleCondition;
+
+/**
+ * Matches objects of one class against many conditions at once, such as
+ * routing each incoming event to every subscription whose condition it
+ * matches.  Subscriptions are added with a key and an evaluator, and may be
+ * added and removed at any time, and match(object) returns the keys of the
+ * subscriptions matching an object.
+ *
+ * Rather than evaluating every condition for every object, the conditions
+ * share indexes of their comparisons.  Each condition is split into the ANDs
+ * of its top level OR, and within an AND the comparisons of each identifier
+ * are combined into a single range of values.  Ranges holding a single value
+ * and the values of INs go in a hash table for their identifier, and other
+ * ranges in an interval tree for it.  Matching an object reads each indexed
+ * identifier once, looks its value up in the hash table and searches the
+ * interval tree for the ranges containing it, and counts how many of each
+ * AND's indexed comparisons matched.  Only ANDs whose indexed comparisons all
+ * matched go on to evaluate any other comparisons, such as =~ or NOT IN,
+ * so the cost of matching grows with the number of comparisons that match
+ * rather than with the number of subscriptions.  ANDs without any indexed
+ * comparisons are evaluated for every object.
+ *
+ * The subscriptions returned are those whose evaluators would match the
+ * object, except that every indexed identifier is read for every object, so
+ * reading one that fails, such as a null Integer, fails the whole match.
+ *
+ * Matching may be done by any number of threads at once, with additions and
+ * removals waiting for matches in progress to finish.
+ */
+public final class ConditionMatcher<T, K> {
+	private final Class<T> pojoClass;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	private final Map<K, List<Conjunction<K>>> subscriptions = new HashMap<K, List<Conjunction<K>>>();
+	
+	// by identifier, with methods followed by ()
+	private final Map<String, IdentifierIndex<K>> indexes = new LinkedHashMap<String, IdentifierIndex<K>>();
+	private final Map<String, IdentifierAccessor> accessors = new ConcurrentHashMap<String, IdentifierAccessor>();
+	
+	// ANDs without indexed comparisons, evaluated for every object
+	private final List<Conjunction<K>> unindexed = new ArrayList<Conjunction<K>>();
+	
+	// ANDs by id, which are reused once removed to keep the counts small
+	private final List<Conjunction<K>> conjunctions = new ArrayList<Conjunction<K>>();
+	private final ArrayDeque<Integer> freeIds = new ArrayDeque<Integer>();
+	
+	private final ThreadLocal<Scratch<K>> scratch = new ThreadLocal<Scratch<K>>() {
+		protected Scratch<K> initialValue() {
+			return new Scratch<K>();
+		}
+	};
+	
+	public ConditionMatcher(Class<T> pojoClass) {
+		this.pojoClass = pojoClass;
+	}
+	
+	public Class<T> getPojoClass() {
+		return pojoClass;
+	}
+	
+	/**
+	 * Adds a subscription to objects matching the evaluator's condition
+	 * @throws FieldException if the condition specifies an identifier that
+	 * does not exist in the class, or that is not valid for the operator used
+	 * @throws NumberFormatException if a value in the condition cannot be
+	 * converted to the type of the identifier it is compared with
+	 * @throws IllegalArgumentException if there is already a subscription with the key
+	 */
+	public void add(K key, PojoEvaluator evaluator) {
+		Condition condition = evaluator.getCondition();
+		
+		lock.writeLock().lock();
+		try {
+			if(subscriptions.containsKey(key)) {
+				throw new IllegalArgumentException("Subscription " + key + " already exists");
+			}
+			
+			// compiling checks every identifier and value, and looks up the identifiers' accessors
+			CompiledCondition.compile(condition, pojoClass, accessors);
+			
+			List<Conjunction<K>> added = new ArrayList<Conjunction<K>>();
+			for(List<Condition> conditions : splitOr(condition)) {
+				Conjunction<K> conjunction = plan(key, conditions);
+				if(conjunction != null) {
+					added.add(conjunction);
+				}
+			}
+			
+			for(Conjunction<K> conjunction : added) {
+				register(conjunction);
+			}
+			subscriptions.put(key, added);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Removes a subscription
+	 * @return true if there was a subscription with the key
+	 */
+	public boolean remove(K key) {
+		lock.writeLock().lock();
+		try {
+			List<Conjunction<K>> removed = subscriptions.remove(key);
+			if(removed == null) {
+				return false;
+			}
+			
+			for(Conjunction<K> conjunction : removed) {
+				unregister(conjunction);
+			}
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * The number of subscriptions
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return subscriptions.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Returns the keys of the subscriptions whose conditions the object
+	 * matches, in no particular order
+	 * @throws FieldException if an identifier is not valid for the object
+	 */
+	public Set<K> match(T object) {
+		lock.readLock().lock();
+		Scratch<K> scratch = this.scratch.get();
+		try {
+			List<Conjunction<K>> hits = scratch.hits;
+			for(IdentifierIndex<K> index : indexes.values()) {
+				index.find(object, hits);
+			}
+			
+			// an AND is a candidate once its last indexed comparison matches
+			int[] counts = scratch.counts(conjunctions.size());
+			List<Conjunction<K>> candidates = scratch.candidates;
+			for(Conjunction<K> conjunction : hits) {
+				if(++counts[conjunction.id] == conjunction.required) {
+					candidates.add(conjunction);
+				}
+			}
+			candidates.addAll(unindexed);
+			
+			Set<K> matches = new LinkedHashSet<K>();
+			for(Conjunction<K> conjunction : candidates) {
+				if(!matches.contains(conjunction.key) && (conjunction.remaining == null || conjunction.remaining.matches(object))) {
+					matches.add(conjunction.key);
+				}
+			}
+			return matches;
+		} finally {
+			scratch.clear();
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Splits a condition into the lists of conditions ANDed together that
+	 * are ORed to form it
+	 */
+	private static List<List<Condition>> splitOr(Condition condition) {
+		List<List<Condition>> conjunctions = new ArrayList<List<Condition>>();
+		if(condition instanceof OrCondition && !(condition instanceof InCondition)) {
+			for(Condition orCondition : ((OrCondition)condition).getConditions()) {
+				conjunctions.add(splitAnd(orCondition, new ArrayList<Condition>()));
+			}
+		} else {
+			conjunctions.add(splitAnd(condition, new ArrayList<Condition>()));
+		}
+		return conjunctions;
+	}
+	
+	private static List<Condition> splitAnd(Condition condition, List<Condition> conditions) {
+		if(condition instanceof AndCondition) {
+			for(Condition andCondition : ((AndCondition)condition).getConditions()) {
+				splitAnd(andCondition, conditions);
+			}
+		} else if(condition != ConstantCondition.TRUE) {
+			conditions.add(condition);
+		}
+		return conditions;
+	}
+	
+	/**
+	 * Works out how to index an AND of the conditions, returning null if it
+	 * can never match
+	 */
+	private Conjunction<K> plan(K key, List<Condition> conditions) {
+		Map<IdentifierAccessor, Range> ranges = new LinkedHashMap<IdentifierAccessor, Range>();
+		Map<IdentifierAccessor, List<Set<Comparable<Object>>>> ins = new LinkedHashMap<IdentifierAccessor, List<Set<Comparable<Object>>>>();
+		List<Condition> remaining = new ArrayList<Condition>();
+		
+		for(Condition condition : conditions) {
+			if(condition == ConstantCondition.FALSE) {
+				return null;
+			} else if(condition instanceof InCondition) {
+				InCondition in = (InCondition)condition;
+				IdentifierAccessor accessor = accessors.get(in.isMethod() ? in.getIdentifier() + "()" : in.getIdentifier());
+				Set<Comparable<Object>> values = new LinkedHashSet<Comparable<Object>>();
+				for(Condition equality : in.getConditions()) {
+					Range range = Range.forComparison((SimpleCondition)equality, accessor.getType());
+					if(range != null) {
+						values.add(range.lower);
+					}
+				}
+				if(values.isEmpty()) {
+					return null;
+				}
+				if(!ins.containsKey(accessor)) {
+					ins.put(accessor, new ArrayList<Set<Comparable<Object>>>());
+				}
+				ins.get(accessor).add(values);
+			} else if(condition instanceof SimpleCondition && ((SimpleCondition)condition).getComparisonOperator().isComparison()) {
+				SimpleCondition comparison = (SimpleCondition)condition;
+				IdentifierAccessor accessor = accessors.get(comparison.isMethod() ? comparison.getIdentifier() + "()" : comparison.getIdentifier());
+				Range range = Range.forComparison(comparison, accessor.getType());
+				Range existing = ranges.get(accessor);
+				range = range == null || existing == null ? range : existing.intersect(range);
+				if(range == null) {
+					return null;
+				}
+				ranges.put(accessor, range);
+			} else {
+				remaining.add(condition);
+			}
+		}
+		
+		Conjunction<K> conjunction = new Conjunction<K>(key);
+		conjunction.ranges.putAll(ranges);
+		conjunction.ins.putAll(ins);
+		conjunction.required = ranges.size();
+		for(List<Set<Comparable<Object>>> identifierIns : ins.values()) {
+			conjunction.required += identifierIns.size();
+		}
+		if(!remaining.isEmpty()) {
+			conjunction.remaining = CompiledCondition.compile(remaining.size() == 1 ? remaining.get(0) : new AndCondition(remaining), pojoClass, accessors);
+		}
+		return conjunction;
+	}
+	
+	private void register(Conjunction<K> conjunction) {
+		if(freeIds.isEmpty()) {
+			conjunction.id = conjunctions.size();
+			conjunctions.add(conjunction);
+		} else {
+			conjunction.id = freeIds.pop();
+			conjunctions.set(conjunction.id, conjunction);
+		}
+		
+		if(conjunction.required == 0) {
+			unindexed.add(conjunction);
+			return;
+		}
+		
+		for(Map.Entry<IdentifierAccessor, Range> entry : conjunction.ranges.entrySet()) {
+			IdentifierIndex<K> index = getIndex(entry.getKey());
+			Range range = entry.getValue().finish(entry.getKey().getType());
+			if(range.isPoint()) {
+				index.addEquality(range.lower, conjunction);
+			} else {
+				conjunction.nodes.add(index.ranges.add(range.lower, range.upper, conjunction));
+			}
+			index.references++;
+		}
+		
+		for(Map.Entry<IdentifierAccessor, List<Set<Comparable<Object>>>> entry : conjunction.ins.entrySet()) {
+			IdentifierIndex<K> index = getIndex(entry.getKey());
+			for(Set<Comparable<Object>> values : entry.getValue()) {
+				for(Comparable<Object> value : values) {
+					index.addEquality(value, conjunction);
+				}
+				index.references++;
+			}
+		}
+	}
+	
+	private void unregister(Conjunction<K> conjunction) {
+		conjunctions.set(conjunction.id, null);
+		freeIds.push(conjunction.id);
+		
+		if(conjunction.required == 0) {
+			unindexed.remove(conjunction);
+			return;
+		}
+		
+		int node = 0;
+		for(Map.Entry<IdentifierAccessor, Range> entry : conjunction.ranges.entrySet()) {
+			IdentifierIndex<K> index = indexes.get(getKey(entry.getKey()));
+			Range range = entry.getValue().finish(entry.getKey().getType());
+			if(range.isPoint()) {
+				index.removeEquality(range.lower, conjunction);
+			} else {
+				index.ranges.remove(conjunction.nodes.get(node++));
+			}
+			release(index);
+		}
+		
+		for(Map.Entry<IdentifierAccessor, List<Set<Comparable<Object>>>> entry : conjunction.ins.entrySet()) {
+			IdentifierIndex<K> index = indexes.get(getKey(entry.getKey()));
+			for(Set<Comparable<Object>> values : entry.getValue()) {
+				for(Comparable<Object> value : values) {
+					index.removeEquality(value, conjunction);
+				}
+				release(index);
+			}
+		}
+	}
+	
+	private IdentifierIndex<K> getIndex(IdentifierAccessor accessor) {
+		String key = getKey(accessor);
+		IdentifierIndex<K> index = indexes.get(key);
+		if(index == null) {
+			index = new IdentifierIndex<K>(accessor);
+			indexes.put(key, index);
+		}
+		return index;
+	}
+	
+	/**
+	 * Drops a reference to the index, removing it once nothing uses it so
+	 * that its identifier is no longer read
+	 */
+	private void release(IdentifierIndex<K> index) {
+		if(--index.references == 0) {
+			indexes.remove(getKey(index.accessor));
+		}
+	}
+	
+	private static String getKey(IdentifierAccessor accessor) {
+		return accessor.isMethod() ? accessor.getIdentifier() + "()" : accessor.getIdentifier();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Comparable<Object> comparable(Object value) {
+		return (Comparable<Object>)value;
+	}
+	
+	/**
+	 * An AND in the condition of a subscription
+	 */
+	private static final class Conjunction<K> {
+		private final K key;
+		private int id;
+		
+		// the number of indexed comparisons, which must all match
+		private int required;
+		
+		// the conditions that aren't indexed, or null if there are none
+		private CompiledCondition remaining;
+		
+		private final Map<IdentifierAccessor, Range> ranges = new LinkedHashMap<IdentifierAccessor, Range>();
+		private final Map<IdentifierAccessor, List<Set<Comparable<Object>>>> ins = new LinkedHashMap<IdentifierAccessor, List<Set<Comparable<Object>>>>();
+		
+		// the interval tree nodes of the ranges that aren't single values, in order
+		private final List<IntervalTree.Node<Conjunction<K>>> nodes = new ArrayList<IntervalTree.Node<Conjunction<K>>>();
+		
+		Conjunction(K key) {
+			this.key = key;
+		}
+	}
+	
+	/**
+	 * The comparisons of one identifier, indexed by the values they match
+	 */
+	private static final class IdentifierIndex<K> {
+		private final IdentifierAccessor accessor;
+		private final Map<Comparable<Object>, List<Conjunction<K>>> equalities = new HashMap<Comparable<Object>, List<Conjunction<K>>>();
+		private final IntervalTree<Conjunction<K>> ranges = new IntervalTree<Conjunction<K>>();
+		
+		// the number of comparisons indexed
+		private int references;
+		
+		IdentifierIndex(IdentifierAccessor accessor) {
+			this.accessor = accessor;
+		}
+		
+		/**
+		 * Adds the ANDs with comparisons matching the object's value to hits
+		 */
+		void find(Object pojo, List<Conjunction<K>> hits) {
+			Comparable<Object> value;
+			if(accessor.getType() == ValueType.STRING) {
+				String string = accessor.getString(pojo);
+				if(string == null) {
+					throw new NullPointerException(accessor.getIdentifier() + " is null");
+				}
+				value = comparable(string);
+			} else {
+				value = comparable(SortedIndex.NumericIndex.readKey(accessor, pojo));
+			}
+			
+			List<Conjunction<K>> equal = equalities.get(value);
+			if(equal != null) {
+				hits.addAll(equal);
+			}
+			if(ranges.size() > 0) {
+				ranges.stab(value, hits);
+			}
+		}
+		
+		void addEquality(Comparable<Object> value, Conjunction<K> conjunction) {
+			List<Conjunction<K>> equal = equalities.get(value);
+			if(equal == null) {
+				equal = new ArrayList<Conjunction<K>>(1);
+				equalities.put(value, equal);
+			}
+			equal.add(conjunction);
+		}
+		
+		void removeEquality(Comparable<Object> value, Conjunction<K> conjunction) {
+			List<Conjunction<K>> equal = equalities.get(value);
+			equal.remove(conjunction);
+			if(equal.isEmpty()) {
+				equalities.remove(value);
+			}
+		}
+	}
+	
+	/**
+	 * The values from lower (inclusive) to upper (exclusive) satisfying
+	 * comparisons of one identifier, where a null bound is unbounded.  Values
+	 * are Longs, ordered in the same way as SortedIndex orders them, or Strings.
+	 * Excluding a bound uses the next value instead, which is the next long
+	 * or the string followed by \0.
+	 */
+	private static final class Range {
+		private final Comparable<Object> lower;
+		private final Comparable<Object> upper;
+		
+		Range(Comparable<Object> lower, Comparable<Object> upper) {
+			this.lower = lower;
+			this.upper = upper;
+		}
+		
+		/**
+		 * Returns the range of values satisfying a comparison, or null if none do
+		 */
+		static Range forComparison(SimpleCondition comparison, ValueType type) {
+			Literal literal = comparison.getLiteral();
+			if(type == ValueType.FLOAT && Float.isNaN(literal.getFloatValue())
+					|| type == ValueType.DOUBLE && Double.isNaN(literal.getDoubleValue())) {
+				// NaN compares false with everything
+				return null;
+			}
+			
+			Comparable<Object> value = comparable(type == ValueType.STRING ? literal.getText()
+					: Long.valueOf(SortedIndex.NumericIndex.literalKey(type, literal)));
+			Comparable<Object> next = next(value);
+			
+			Operator operator = comparison.getComparisonOperator();
+			switch(operator) {
+			case EQUAL:
+				return new Range(value, next);
+			case GREATER_THAN_OR_EQUAL:
+				return new Range(value, null);
+			case GREATER_THAN:
+				return next == null ? null : new Range(next, null);
+			case LESS_THAN:
+				return new Range(null, value);
+			case LESS_THAN_OR_EQUAL:
+				return new Range(null, next);
+			default:
+				throw new IllegalArgumentException(operator.getSymbol() + " is not a comparison");
+			}
+		}
+		
+		/**
+		 * Returns the values in both ranges, or null if there are none
+		 */
+		Range intersect(Range other) {
+			Comparable<Object> lower = this.lower == null || other.lower != null && other.lower.compareTo(this.lower) > 0 ? other.lower : this.lower;
+			Comparable<Object> upper = this.upper == null || other.upper != null && other.upper.compareTo(this.upper) < 0 ? other.upper : this.upper;
+			if(lower != null && upper != null && lower.compareTo(upper) >= 0) {
+				return null;
+			}
+			return new Range(lower, upper);
+		}
+		
+		/**
+		 * Returns the range as indexed for a type, where floats and doubles
+		 * without an upper bound stop before NaN, which compares false with everything
+		 */
+		Range finish(ValueType type) {
+			if(upper == null && (type == ValueType.FLOAT || type == ValueType.DOUBLE)) {
+				return new Range(lower, comparable(Long.valueOf(SortedIndex.NumericIndex.doubleKey(Double.NaN))));
+			}
+			return this;
+		}
+		
+		boolean isPoint() {
+			return lower != null && upper != null && upper.equals(next(lower));
+		}
+		
+		/**
+		 * The smallest value after the value, or null if there isn't one
+		 */
+		private static Comparable<Object> next(Object value) {
+			if(value instanceof String) {
+				return comparable(value + "\0");
+			}
+			long longValue = (Long)value;
+			return longValue == Long.MAX_VALUE ? null : comparable(Long.valueOf(longValue + 1));
+		}
+	}
+	
+	/**
+	 * The state of a match in progress on one thread, reused by its next match
+	 */
+	private static final class Scratch<K> {
+		private final List<Conjunction<K>> hits = new ArrayList<Conjunction<K>>();
+		private final List<Conjunction<K>> candidates = new ArrayList<Conjunction<K>>();
+		
+		// how many indexed comparisons of each AND have matched, all zero between matches
+		private int[] counts = new int[0];
+		
+		int[] counts(int size) {
+			if(counts.length < size) {
+				counts = new int[Math.max(size, counts.length * 2)];
+			}
+			return counts;
+		}
+		
+		void clear() {
+			for(Conjunction<K> conjunction : hits) {
+				if(conjunction.id < counts.length) {
+					counts[conjunction.id] = 0;
+				}
+			}
+			hits.clear();
+			candidates.clear();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "ConditionMatcher [pojoClass=" + pojoClass.getName() + ", subscriptions=" + size() + "]";
+	}
+}
@@ -0,0 +1,83 @@
+package org.cp.pojoconditions;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Wraps an existing spliterator and filters the elements based on whether
+ * they match a predicate or not.  Splitting is delegated to the wrapped
+ * spliterator, so the filtered spliterator splits exactly as well as its
+ * source, which keeps parallel streams over lists balanced.
+ *
+ * Every characteristic of the source is kept apart from SIZED and SUBSIZED,
+ * since the number of matching elements isn't known until they're filtered.
+ * The estimated size is the source's size, which is an upper bound.
+ */
+final class FilteringSpliterator<T> implements Spliterator<T>, Consumer<T> {
+	private final Spliterator<T> source;
+	private final Predicate<? super T> predicate;
+	private final boolean matching;
+	
+	// the last element accepted from the source by tryAdvance, if it was included
+	private T nextObject;
+	private boolean found;
+	
+	FilteringSpliterator(Spliterator<T> source, Predicate<? super T> predicate, boolean matching) {
+		this.source = source;
+		this.predicate = predicate;
+		this.matching = matching;
+	}
+	
+	public boolean tryAdvance(Consumer<? super T> action) {
+		do {
+			if(!source.tryAdvance(this)) {
+				return false;
+			}
+		} while(!found);
+		
+		T toReturn = nextObject;
+		nextObject = null;
+		found = false;
+		action.accept(toReturn);
+		return true;
+	}
+	
+	/**
+	 * Receives elements from the source for tryAdvance
+	 */
+	public void accept(T object) {
+		if(predicate.test(object) == matching) {
+			nextObject = object;
+			found = true;
+		}
+	}
+	
+	public void forEachRemaining(final Consumer<? super T> action) {
+		source.forEachRemaining(new Consumer<T>() {
+			public void accept(T object) {
+				if(predicate.test(object) == matching) {
+					action.accept(object);
+				}
+			}
+		});
+	}
+	
+	public Spliterator<T> trySplit() {
+		Spliterator<T> prefix = source.trySplit();
+		return prefix == null ? null : new FilteringSpliterator<T>(prefix, predicate, matching);
+	}
+	
+	public long estimateSize() {
+		return source.estimateSize();
+	}
+	
+	public int characteristics() {
+		return source.characteristics() & ~(SIZED | SUBSIZED);
+	}
+	
+	public Comparator<? super T> getComparator() {
+		return source.getComparator();
+	}
+}
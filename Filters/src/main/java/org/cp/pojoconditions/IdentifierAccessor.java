@@ -0,0 +1,205 @@
+package org.cp.pojoconditions;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Reads the value of a single field or no parameter method from pojos of
+ * one class.  The field or method is looked up once when the accessor is
+ * created, and values are read through method handles afterwards.
+ */
+public final class IdentifierAccessor {
+	private final String identifier;
+	private final boolean isMethod;
+	private final Class<?> pojoClass;
+	private final Class<?> valueClass;
+	private final ValueType type;
+	private final Member member;
+	
+	// (Object) -> type.getComparisonType()
+	private final MethodHandle handle;
+	
+	// (Object) -> Object, boxing primitive values
+	private final MethodHandle valueHandle;
+	
+	private IdentifierAccessor(String identifier, boolean isMethod, Class<?> pojoClass, Class<?> valueClass, ValueType type, Member member, MethodHandle rawHandle) {
+		this.identifier = identifier;
+		this.isMethod = isMethod;
+		this.pojoClass = pojoClass;
+		this.valueClass = valueClass;
+		this.type = type;
+		this.member = member;
+		this.handle = rawHandle.asType(MethodType.methodType(type.getComparisonType(), Object.class));
+		this.valueHandle = rawHandle.asType(MethodType.methodType(Object.class, Object.class));
+	}
+	
+	/**
+	 * Looks up the field or no parameter method declared by the class
+	 * @throws NonexistentIdentifierException if the class does not declare the identifier
+	 * @throws FieldTypeException if the identifier's type is not supported
+	 */
+	public static IdentifierAccessor forIdentifier(Class<?> pojoClass, String identifier, boolean isMethod) {
+		try {
+			MethodHandle rawHandle;
+			Class<?> valueClass;
+			Member member;
+			
+			if(isMethod) {
+				Method method = pojoClass.getDeclaredMethod(identifier);
+				method.setAccessible(true);
+				valueClass = method.getReturnType();
+				rawHandle = MethodHandles.lookup().unreflect(method);
+				member = method;
+			} else {
+				Field field = pojoClass.getDeclaredField(identifier);
+				field.setAccessible(true);
+				valueClass = field.getType();
+				rawHandle = MethodHandles.lookup().unreflectGetter(field);
+				member = field;
+			}
+			
+			// static members don't need a pojo, but are read the same way as
+			// instance members by ignoring it
+			if(Modifier.isStatic(member.getModifiers())) {
+				rawHandle = MethodHandles.dropArguments(rawHandle, 0, Object.class);
+			}
+			
+			ValueType type = ValueType.forClass(valueClass);
+			if(type == null) {
+				throw new FieldTypeException(identifier, valueClass, pojoClass);
+			}
+			
+			return new IdentifierAccessor(identifier, isMethod, pojoClass, valueClass, type, member, rawHandle);
+		} catch (NoSuchFieldException e) {
+			throw new NonexistentIdentifierException(identifier, false, pojoClass);
+		} catch (NoSuchMethodException e) {
+			throw new NonexistentIdentifierException(identifier, true, pojoClass);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	public String getIdentifier() {
+		return identifier;
+	}
+	
+	public boolean isMethod() {
+		return isMethod;
+	}
+	
+	public Class<?> getPojoClass() {
+		return pojoClass;
+	}
+	
+	/**
+	 * The declared type of the field, or return type of the method
+	 */
+	public Class<?> getValueClass() {
+		return valueClass;
+	}
+	
+	public ValueType getType() {
+		return type;
+	}
+	
+	/**
+	 * The field or method the accessor reads
+	 */
+	Member getMember() {
+		return member;
+	}
+	
+	/**
+	 * Returns a handle of type (Object) -> getType().getComparisonType()
+	 */
+	public MethodHandle getHandle() {
+		return handle;
+	}
+	
+	/**
+	 * Reads a byte, short or int value
+	 */
+	public int getInt(Object pojo) {
+		try {
+			return (int)handle.invokeExact(pojo);
+		} catch (Throwable t) {
+			throw propagate(t);
+		}
+	}
+	
+	/**
+	 * Reads a long value
+	 */
+	public long getLong(Object pojo) {
+		try {
+			return (long)handle.invokeExact(pojo);
+		} catch (Throwable t) {
+			throw propagate(t);
+		}
+	}
+	
+	/**
+	 * Reads a float or double value
+	 */
+	public double getDouble(Object pojo) {
+		try {
+			return (double)handle.invokeExact(pojo);
+		} catch (Throwable t) {
+			throw propagate(t);
+		}
+	}
+	
+	/**
+	 * Reads a boolean value
+	 */
+	public boolean getBoolean(Object pojo) {
+		try {
+			return (boolean)handle.invokeExact(pojo);
+		} catch (Throwable t) {
+			throw propagate(t);
+		}
+	}
+	
+	/**
+	 * Reads a String value
+	 */
+	public String getString(Object pojo) {
+		try {
+			return (String)handle.invokeExact(pojo);
+		} catch (Throwable t) {
+			throw propagate(t);
+		}
+	}
+	
+	/**
+	 * Reads the value regardless of type, boxing primitives
+	 */
+	public Object getValue(Object pojo) {
+		try {
+			return (Object)valueHandle.invokeExact(pojo);
+		} catch (Throwable t) {
+			throw propagate(t);
+		}
+	}
+	
+	static RuntimeException propagate(Throwable t) {
+		if(t instanceof RuntimeException) {
+			return (RuntimeException)t;
+		} else if(t instanceof Error) {
+			throw (Error)t;
+		}
+		
+		return new RuntimeException(t);
+	}
+	
+	@Override
+	public String toString() {
+		return "IdentifierAccessor [identifier=" + identifier + ", isMethod="
+				+ isMethod + ", pojoClass=" + pojoClass.getName() + ", type=" + type + "]";
+	}
+}
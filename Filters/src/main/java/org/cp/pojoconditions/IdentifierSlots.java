@@ -0,0 +1,93 @@
+package org.cp.pojoconditions;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.cp.condition.AndCondition;
+import org.cp.condition.Condition;
+import org.cp.condition.InCondition;
+import org.cp.condition.NotInCondition;
+import org.cp.condition.OrCondition;
+import org.cp.condition.SimpleCondition;
+
+/**
+ * Numbers the unique identifiers of a condition, so that the value of each
+ * can be kept in a slot of an array while an object is evaluated.  Every
+ * simple condition is mapped to the slot of its identifier, and the simple
+ * conditions that share an identifier share its slot.  A field and a method
+ * with the same name are different identifiers.
+ * 
+ * Instances are immutable and may be shared between threads.
+ */
+final class IdentifierSlots {
+	private final Map<SimpleCondition, Integer> slots = new IdentityHashMap<SimpleCondition, Integer>();
+	private final int size;
+	
+	// the number of times identifiers are read, which is once for an InCondition
+	private int reads;
+	
+	IdentifierSlots(Condition condition) {
+		Map<String, Integer> identifierSlots = new HashMap<String, Integer>();
+		addSlots(condition, identifierSlots);
+		this.size = identifierSlots.size();
+	}
+	
+	private void addSlots(Condition condition, Map<String, Integer> identifierSlots) {
+		if(condition instanceof AndCondition) {
+			for(Condition child : ((AndCondition)condition).getConditions()) {
+				addSlots(child, identifierSlots);
+			}
+		} else if(condition instanceof InCondition) {
+			// its equalities share the one read
+			for(Condition child : ((InCondition)condition).getConditions()) {
+				addSlot((SimpleCondition)child, identifierSlots);
+			}
+			reads -= ((InCondition)condition).getConditions().size() - 1;
+		} else if(condition instanceof NotInCondition) {
+			addSlots(((NotInCondition)condition).getInCondition(), identifierSlots);
+		} else if(condition instanceof OrCondition) {
+			for(Condition child : ((OrCondition)condition).getConditions()) {
+				addSlots(child, identifierSlots);
+			}
+		} else if(condition instanceof SimpleCondition) {
+			addSlot((SimpleCondition)condition, identifierSlots);
+		}
+	}
+	
+	private void addSlot(SimpleCondition condition, Map<String, Integer> identifierSlots) {
+		String key = condition.isMethod() ? condition.getIdentifier() + "()" : condition.getIdentifier();
+		
+		Integer slot = identifierSlots.get(key);
+		if(slot == null) {
+			slot = identifierSlots.size();
+			identifierSlots.put(key, slot);
+		}
+		slots.put(condition, slot);
+		reads++;
+	}
+	
+	/**
+	 * The slot of the condition's identifier, or -1 if the condition isn't part
+	 * of the condition the slots were numbered for
+	 */
+	int getSlot(SimpleCondition condition) {
+		Integer slot = slots.get(condition);
+		return slot == null ? -1 : slot;
+	}
+	
+	/**
+	 * The number of unique identifiers
+	 */
+	int size() {
+		return size;
+	}
+	
+	/**
+	 * Whether any identifier is read by more than one condition, which is
+	 * when keeping values in slots saves reading them again
+	 */
+	boolean hasRepeatedIdentifiers() {
+		return size < reads;
+	}
+}
@@ -0,0 +1,306 @@
+package org.cp.pojoconditions;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.cp.condition.AndCondition;
+import org.cp.condition.Condition;
+import org.cp.condition.ConstantCondition;
+import org.cp.condition.NotInCondition;
+import org.cp.condition.OrCondition;
+import org.cp.condition.SimpleCondition;
+
+/**
+ * The elements of a list of pojos of one class, along with sorted indexes
+ * over some of their fields or methods, so that conditions can be answered
+ * without evaluating every element.  Conditions are evaluated against the
+ * collection with PojoEvaluator.filter(IndexedCollection) and
+ * matchCount(IndexedCollection).
+ *
+ * An index holds the values of its identifier sorted, with the row, or
+ * position in the list, of the element each came from.  A bitmap index,
+ * for identifiers with few distinct values, instead holds each distinct
+ * value once with a compressed bitmap of its rows.  A comparison of an
+ * indexed identifier with a value is answered by binary searching for the
+ * range of values that satisfy it, which gives the matching rows as a
+ * compressed bitmap.  ANDs combine the ranges of each index they compare,
+ * AND the bitmaps of different indexes, and evaluate their other comparisons
+ * for just the rows left.  ORs and INs OR the bitmaps of their conditions,
+ * and NOT INs take the rows their IN doesn't match.  Counting the matches of
+ * a condition the indexes answer entirely doesn't read any elements.
+ * Conditions no index helps with, such as an OR with a comparison of an
+ * identifier without an index, are evaluated for every element as
+ * compile(clazz) would, so a condition is only as quick as its indexes allow.
+ *
+ * The list is copied when the collection is built and each index reads its
+ * values when it is added, so later changes to the list or its elements
+ * aren't seen.  Once all of its indexes are added the collection may be
+ * shared between threads.
+ */
+public final class IndexedCollection<T> {
+	// how many times larger than the smallest set of rows in an AND a range may
+	// be before its comparisons are evaluated for the intersected rows instead
+	private static final int RANGE_SCAN_RATIO = 16;
+	
+	private final Class<T> pojoClass;
+	private final Object[] elements;
+	private final Map<String, SortedIndex> indexes = new LinkedHashMap<String, SortedIndex>();
+	
+	// shared by the conditions compiled for comparisons the indexes don't answer
+	private final Map<String, IdentifierAccessor> accessors = new ConcurrentHashMap<String, IdentifierAccessor>();
+	
+	public IndexedCollection(Class<T> pojoClass, List<? extends T> elements) {
+		this.pojoClass = pojoClass;
+		this.elements = elements.toArray();
+	}
+	
+	/**
+	 * Adds an index of a field, or of a no parameter method if the identifier
+	 * ends with (), as it would in a condition
+	 * @throws NonexistentIdentifierException if the class does not declare the identifier
+	 * @throws FieldTypeException if the identifier's type is not supported
+	 * @throws NullPointerException if the value of an element is null
+	 * @throws IllegalArgumentException if the identifier is already indexed
+	 */
+	public IndexedCollection<T> addIndex(String identifier) {
+		return addIndex(identifier, false);
+	}
+	
+	/**
+	 * Adds an index of a field, or of a no parameter method if the identifier
+	 * ends with (), that keeps a compressed bitmap of the rows with each
+	 * distinct value rather than the row of every value.  Suited to
+	 * identifiers with few distinct values, such as a type, status or boolean,
+	 * where it is far smaller than the index added by addIndex, and comparisons
+	 * with it are answered by ORing the bitmaps of the values that satisfy them.
+	 * @throws NonexistentIdentifierException if the class does not declare the identifier
+	 * @throws FieldTypeException if the identifier's type is not supported
+	 * @throws NullPointerException if the value of an element is null
+	 * @throws IllegalArgumentException if the identifier is already indexed
+	 */
+	public IndexedCollection<T> addBitmapIndex(String identifier) {
+		return addIndex(identifier, true);
+	}
+	
+	private IndexedCollection<T> addIndex(String identifier, boolean bitmaps) {
+		if(indexes.containsKey(identifier)) {
+			throw new IllegalArgumentException("Index on " + identifier + " already exists");
+		}
+		
+		boolean isMethod = identifier.endsWith("()");
+		String name = isMethod ? identifier.substring(0, identifier.length() - 2) : identifier;
+		IdentifierAccessor accessor = IdentifierAccessor.forIdentifier(pojoClass, name, isMethod);
+		indexes.put(identifier, SortedIndex.build(accessor, elements, bitmaps));
+		accessors.put(identifier, accessor);
+		return this;
+	}
+	
+	public Class<T> getPojoClass() {
+		return pojoClass;
+	}
+	
+	/**
+	 * The number of elements
+	 */
+	public int size() {
+		return elements.length;
+	}
+	
+	/**
+	 * Returns the elements that match the condition, in their order in the list
+	 */
+	@SuppressWarnings("unchecked")
+	List<T> filter(Condition condition) {
+		int[] rows = select(condition).toArray();
+		List<T> matches = new ArrayList<T>(rows.length);
+		for(int row : rows) {
+			matches.add((T)elements[row]);
+		}
+		return matches;
+	}
+	
+	int count(Condition condition) {
+		return select(condition).cardinality();
+	}
+	
+	/**
+	 * Returns the rows of the elements that match the condition
+	 * @throws FieldException if an identifier does not exist in the class, has
+	 * an unsupported type, or does not support the operator used with it
+	 * @throws NumberFormatException if a value cannot be converted to the type
+	 * of the identifier it is compared with
+	 */
+	private RowBitmap select(Condition condition) {
+		RowBitmap rows = selectIndexed(condition);
+		if(rows == null) {
+			rows = scan(CompiledCondition.compile(condition, pojoClass, accessors), null);
+		}
+		return rows;
+	}
+	
+	/**
+	 * Returns the rows of the elements that match the condition, or null if
+	 * the indexes don't help to find them
+	 */
+	private RowBitmap selectIndexed(Condition condition) {
+		if(condition instanceof ConstantCondition) {
+			return ((ConstantCondition)condition).getValue() ? null : RowBitmap.EMPTY;
+		} else if(condition instanceof NotInCondition) {
+			RowBitmap rows = selectIndexed(((NotInCondition)condition).getInCondition());
+			return rows == null ? null : RowBitmap.range(0, elements.length).andNot(rows);
+		} else if(condition instanceof AndCondition) {
+			return selectAnd(((AndCondition)condition).getConditions());
+		} else if(condition instanceof OrCondition) {
+			// includes INs, which are ORs of equalities
+			List<RowBitmap> sets = new ArrayList<RowBitmap>();
+			for(Condition orCondition : ((OrCondition)condition).getConditions()) {
+				RowBitmap rows = selectIndexed(orCondition);
+				if(rows == null) {
+					return null;
+				}
+				sets.add(rows);
+			}
+			return RowBitmap.or(sets);
+		} else if(condition instanceof SimpleCondition) {
+			SortedIndex index = getIndex((SimpleCondition)condition);
+			if(index == null) {
+				return null;
+			}
+			int[] range = index.range((SimpleCondition)condition);
+			return index.rows(range[0], range[1]);
+		}
+		
+		return null;
+	}
+	
+	private RowBitmap selectAnd(List<Condition> conditions) {
+		// comparisons of the same index narrow a single range of it, such as x>=1 AND x<5
+		Map<SortedIndex, IndexRange> ranges = new LinkedHashMap<SortedIndex, IndexRange>();
+		List<RowBitmap> sets = new ArrayList<RowBitmap>();
+		List<Condition> remaining = new ArrayList<Condition>();
+		
+		for(Condition condition : conditions) {
+			SortedIndex index = condition instanceof SimpleCondition ? getIndex((SimpleCondition)condition) : null;
+			if(index != null) {
+				IndexRange range = ranges.get(index);
+				if(range == null) {
+					range = new IndexRange(index);
+					ranges.put(index, range);
+				}
+				range.narrow((SimpleCondition)condition);
+				continue;
+			}
+			
+			RowBitmap rows = condition instanceof SimpleCondition ? null : selectIndexed(condition);
+			if(rows != null) {
+				sets.add(rows);
+			} else {
+				remaining.add(condition);
+			}
+		}
+		
+		if(sets.isEmpty() && ranges.isEmpty()) {
+			return null;
+		}
+		
+		int smallest = Integer.MAX_VALUE;
+		for(RowBitmap set : sets) {
+			smallest = Math.min(smallest, set.cardinality());
+		}
+		for(IndexRange range : ranges.values()) {
+			smallest = Math.min(smallest, range.size());
+		}
+		
+		// a range much larger than the smallest set costs more to turn into rows than
+		// to check its comparisons for the rows left after intersecting the others
+		for(IndexRange range : ranges.values()) {
+			if(range.size() > smallest * RANGE_SCAN_RATIO + RANGE_SCAN_RATIO) {
+				remaining.addAll(range.conditions);
+			} else {
+				sets.add(range.index.rows(range.from, range.to));
+			}
+		}
+		
+		// compiling the other conditions checks them even if no rows are left
+		CompiledCondition remainingCondition = remaining.isEmpty() ? null
+				: CompiledCondition.compile(remaining.size() == 1 ? remaining.get(0) : new AndCondition(remaining), pojoClass, accessors);
+		
+		// intersecting the smallest sets first keeps the intermediate sets small
+		RowBitmap rows = null;
+		while(!sets.isEmpty() && (rows == null || rows.cardinality() > 0)) {
+			int next = 0;
+			for(int i = 1; i < sets.size(); i++) {
+				if(sets.get(i).cardinality() < sets.get(next).cardinality()) {
+					next = i;
+				}
+			}
+			RowBitmap set = sets.remove(next);
+			rows = rows == null ? set : rows.and(set);
+		}
+		
+		return remainingCondition == null ? rows : scan(remainingCondition, rows);
+	}
+	
+	/**
+	 * Returns the index of the comparison's identifier if it has one and the
+	 * comparison is one an index can answer, otherwise null
+	 */
+	private SortedIndex getIndex(SimpleCondition condition) {
+		if(!condition.getComparisonOperator().isComparison()) {
+			return null;
+		}
+		return indexes.get(condition.isMethod() ? condition.getIdentifier() + "()" : condition.getIdentifier());
+	}
+	
+	/**
+	 * Evaluates the condition for the rows, or every row if rows is null,
+	 * returning the rows that match
+	 */
+	private RowBitmap scan(CompiledCondition condition, RowBitmap candidates) {
+		int[] rows = candidates == null ? null : candidates.toArray();
+		int count = rows == null ? elements.length : rows.length;
+		int[] matches = new int[count];
+		int matched = 0;
+		for(int i = 0; i < count; i++) {
+			int row = rows == null ? i : rows[i];
+			if(condition.matches(elements[row])) {
+				matches[matched++] = row;
+			}
+		}
+		return RowBitmap.fromSorted(matches, 0, matched);
+	}
+	
+	/**
+	 * The positions of an index satisfying all of an AND's comparisons of its identifier
+	 */
+	private static final class IndexRange {
+		private final SortedIndex index;
+		private final List<Condition> conditions = new ArrayList<Condition>();
+		private int from;
+		private int to;
+		
+		IndexRange(SortedIndex index) {
+			this.index = index;
+			this.to = Integer.MAX_VALUE;
+		}
+		
+		void narrow(SimpleCondition condition) {
+			int[] range = index.range(condition);
+			from = Math.max(from, range[0]);
+			to = Math.min(to, range[1]);
+			conditions.add(condition);
+		}
+		
+		int size() {
+			return index.count(from, to);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "IndexedCollection [pojoClass=" + pojoClass.getName() + ", size=" + elements.length + ", indexes=" + indexes.keySet() + "]";
+	}
+}
@@ -0,0 +1,202 @@
+package org.cp.pojoconditions;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Intervals from a lower bound (inclusive) to an upper bound (exclusive),
+ * each with a value, that can be added and removed at any time and searched
+ * for the intervals containing a point.  Bounds are Longs or Strings, all of
+ * the same type in one tree, and a null lower or upper bound is unbounded.
+ *
+ * The intervals are held in a treap ordered by lower bound, a binary search
+ * tree kept balanced by random priorities, with each node also holding the
+ * largest upper bound in its subtree.  Searching skips subtrees whose upper
+ * bounds are all at or below the point and, to the right of any lower bound
+ * above the point, so it takes time proportional to the depth of the tree
+ * plus the number of intervals found.
+ *
+ * Not thread safe.
+ */
+final class IntervalTree<V> {
+	private Node<V> root;
+	private int size;
+	
+	// orders intervals with the same lower bound, so every node has a distinct position
+	private long sequence;
+	
+	/**
+	 * Adds an interval, returning the node to pass to remove
+	 */
+	Node<V> add(Comparable<Object> lower, Comparable<Object> upper, V value) {
+		Node<V> node = new Node<V>(lower, upper, value, sequence++, ThreadLocalRandom.current().nextInt());
+		root = insert(root, node);
+		size++;
+		return node;
+	}
+	
+	void remove(Node<V> node) {
+		root = delete(root, node);
+		size--;
+	}
+	
+	int size() {
+		return size;
+	}
+	
+	/**
+	 * Adds the value of every interval containing the point to values
+	 */
+	void stab(Comparable<Object> point, List<V> values) {
+		stab(root, point, values);
+	}
+	
+	private static <V> void stab(Node<V> node, Comparable<Object> point, List<V> values) {
+		while(node != null) {
+			if(node.maxUpper != null && node.maxUpper.compareTo(point) <= 0) {
+				// every interval in the subtree ends at or below the point
+				return;
+			}
+			
+			stab(node.left, point, values);
+			
+			if(node.lower != null && node.lower.compareTo(point) > 0) {
+				// this interval and those to its right start above the point
+				return;
+			}
+			if(node.upper == null || node.upper.compareTo(point) > 0) {
+				values.add(node.value);
+			}
+			node = node.right;
+		}
+	}
+	
+	private static <V> Node<V> insert(Node<V> node, Node<V> inserted) {
+		if(node == null) {
+			return inserted;
+		}
+		
+		if(compare(inserted, node) < 0) {
+			node.left = insert(node.left, inserted);
+			if(node.left.priority > node.priority) {
+				node = rotateRight(node);
+			}
+		} else {
+			node.right = insert(node.right, inserted);
+			if(node.right.priority > node.priority) {
+				node = rotateLeft(node);
+			}
+		}
+		node.update();
+		return node;
+	}
+	
+	private static <V> Node<V> delete(Node<V> node, Node<V> deleted) {
+		if(node == null) {
+			throw new IllegalArgumentException("Interval is not in the tree");
+		}
+		
+		if(node == deleted) {
+			if(node.left == null) {
+				return node.right;
+			} else if(node.right == null) {
+				return node.left;
+			}
+			
+			// rotate the node down below the child with the higher priority, then delete it from there
+			if(node.left.priority > node.right.priority) {
+				node = rotateRight(node);
+				node.right = delete(node.right, deleted);
+			} else {
+				node = rotateLeft(node);
+				node.left = delete(node.left, deleted);
+			}
+		} else if(compare(deleted, node) < 0) {
+			node.left = delete(node.left, deleted);
+		} else {
+			node.right = delete(node.right, deleted);
+		}
+		node.update();
+		return node;
+	}
+	
+	private static <V> Node<V> rotateRight(Node<V> node) {
+		Node<V> left = node.left;
+		node.left = left.right;
+		left.right = node;
+		node.update();
+		left.update();
+		return left;
+	}
+	
+	private static <V> Node<V> rotateLeft(Node<V> node) {
+		Node<V> right = node.right;
+		node.right = right.left;
+		right.left = node;
+		node.update();
+		right.update();
+		return right;
+	}
+	
+	/**
+	 * Orders nodes by lower bound, unbounded first, then by when they were added
+	 */
+	private static int compare(Node<?> a, Node<?> b) {
+		if(a.lower != b.lower) {
+			if(a.lower == null) {
+				return -1;
+			} else if(b.lower == null) {
+				return 1;
+			}
+			int compareTo = a.lower.compareTo(b.lower);
+			if(compareTo != 0) {
+				return compareTo;
+			}
+		}
+		return Long.compare(a.sequence, b.sequence);
+	}
+	
+	/**
+	 * Returns the larger of two upper bounds, where null is unbounded
+	 */
+	private static Comparable<Object> maxUpper(Comparable<Object> a, Comparable<Object> b) {
+		if(a == null || b == null) {
+			return null;
+		}
+		return a.compareTo(b) >= 0 ? a : b;
+	}
+	
+	static final class Node<V> {
+		private final Comparable<Object> lower;
+		private final Comparable<Object> upper;
+		private final V value;
+		private final long sequence;
+		private final int priority;
+		
+		private Node<V> left;
+		private Node<V> right;
+		
+		// the largest upper bound in this subtree, or null if any is unbounded
+		private Comparable<Object> maxUpper;
+		
+		private Node(Comparable<Object> lower, Comparable<Object> upper, V value, long sequence, int priority) {
+			this.lower = lower;
+			this.upper = upper;
+			this.value = value;
+			this.sequence = sequence;
+			this.priority = priority;
+			this.maxUpper = upper;
+		}
+		
+		private void update() {
+			Comparable<Object> max = upper;
+			if(left != null) {
+				max = maxUpper(max, left.maxUpper);
+			}
+			if(right != null) {
+				max = maxUpper(max, right.maxUpper);
+			}
+			maxUpper = max;
+		}
+	}
+}
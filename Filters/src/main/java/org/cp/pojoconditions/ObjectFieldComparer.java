@@ -3,25 +3,50 @@ package org.cp.pojoconditions;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.cp.condition.InCondition;
+import org.cp.condition.Literal;
+import org.cp.condition.Operator;
+import org.cp.condition.SimpleCondition;
 import org.cp.condition.ValueComparer;
 
 class ObjectFieldComparer implements ValueComparer {
 	private static final Set<Class<?>> SUPPORTED_FIELD_TYPES = getSupportedFieldTypes();
 	
+	// marks the slots of identifiers that haven't been read yet
+	private static final Object UNREAD = new Object();
+	
 	public final Object pojo;
 	
+	// the value of each identifier once read, when the condition repeats identifiers
+	private final IdentifierSlots slots;
+	private Object[] values;
+	
 	public ObjectFieldComparer(Object pojo) {
+		this(pojo, null);
+	}
+	
+	/**
+	 * Reads each identifier with a slot at most once, the first time a
+	 * condition needs it, however many conditions compare it
+	 */
+	public ObjectFieldComparer(Object pojo, IdentifierSlots slots) {
 		this.pojo = pojo;
+		this.slots = slots;
 	}
 	
 	public boolean isTrue(String identifier, boolean isMethod, String operator, String value) {
-		return evaluateSimpleCondition(identifier, isMethod, operator, value);
+		// method identifiers are passed without their parentheses, which SimpleCondition expects
+		return isTrue(new SimpleCondition(isMethod ? identifier + "()" : identifier, isMethod, operator, value));
+	}
+	
+	public boolean isTrue(SimpleCondition condition) {
+		return evaluateSimpleCondition(condition);
 	}
 	
 	public static List<FieldException> getUnsupportedFields(Class<?> clazz, Set<String> fields) {
@@ -43,151 +68,79 @@ class ObjectFieldComparer implements ValueComparer {
 		return fieldExceptions;
 	}
 	
-    private boolean evaluateSimpleCondition(String identifier, boolean isMethod, String operator, String value) {
-    	boolean result = true;
+    private boolean evaluateSimpleCondition(SimpleCondition condition) {
+    	String identifier = condition.getIdentifier();
+    	Operator operator = condition.getComparisonOperator();
+    	Literal literal = condition.getLiteral();
+    	
+    	Object identifierValue = readValue(condition);
+    	
+    	if(identifierValue instanceof String) {
+    		String stringIdentifierValue = (String)identifierValue;
+    		
+    		if(operator == Operator.CONTAINS) {
+    			return stringIdentifierValue.toLowerCase().contains(literal.getLowerCaseText());
+    		} else if(operator == Operator.NOT_CONTAINS) {
+    			return !stringIdentifierValue.toLowerCase().contains(literal.getLowerCaseText());
+    		}
+    		return operator.isTrue(stringIdentifierValue.compareTo(literal.getText()));
+    	} else if(identifierValue instanceof Boolean && operator == Operator.EQUAL) {
+    		return ((Boolean)identifierValue).booleanValue() == literal.getBooleanValue();
+    	} else if(!operator.isComparison() || identifierValue instanceof Boolean) {
+    		// numbers can't be matched as substrings, and booleans can only be equal
+    		throw new FieldTypeException(identifier, identifierValue.getClass(), pojo.getClass());
+    	} else if(identifierValue instanceof Byte) {
+    		return operator.isTrue(((Byte)identifierValue).byteValue(), literal.getByteValue());
+    	} else if(identifierValue instanceof Short) {
+    		return operator.isTrue(((Short)identifierValue).shortValue(), literal.getShortValue());
+    	} else if(identifierValue instanceof Integer) {
+    		return operator.isTrue(((Integer)identifierValue).intValue(), literal.getIntValue());
+    	} else if(identifierValue instanceof Long) {
+    		return operator.isTrue(((Long)identifierValue).longValue(), literal.getLongValue());
+    	} else if(identifierValue instanceof Float) {
+    		return operator.isTrue(((Float)identifierValue).floatValue(), literal.getFloatValue());
+    	} else if(identifierValue instanceof Double) {
+    		return operator.isTrue(((Double)identifierValue).doubleValue(), literal.getDoubleValue());
+    	}
+    	
+    	throw new FieldTypeException(identifier, identifierValue.getClass(), pojo.getClass());
+    }
+    
+    /**
+     * Tests the identifier against all of the values with one hash lookup,
+     * reading it once through the first of the equalities
+     */
+    public boolean isTrue(InCondition condition) {
+    	SimpleCondition first = (SimpleCondition)condition.getConditions().get(0);
+    	Object identifierValue = readValue(first);
     	
-    	if(value.startsWith("'") && value.endsWith("'")) {
-    		value = value.substring(1, value.length()-1);
+    	if(identifierValue instanceof String) {
+    		return condition.containsText((String)identifierValue);
+    	} else if(identifierValue instanceof Boolean) {
+    		return condition.containsBoolean(((Boolean)identifierValue).booleanValue());
+    	} else if(identifierValue instanceof Byte) {
+    		return condition.containsByte(((Byte)identifierValue).byteValue());
+    	} else if(identifierValue instanceof Short) {
+    		return condition.containsShort(((Short)identifierValue).shortValue());
+    	} else if(identifierValue instanceof Integer) {
+    		return condition.containsInt(((Integer)identifierValue).intValue());
+    	} else if(identifierValue instanceof Long) {
+    		return condition.containsLong(((Long)identifierValue).longValue());
+    	} else if(identifierValue instanceof Float) {
+    		return condition.containsFloat(((Float)identifierValue).floatValue());
+    	} else if(identifierValue instanceof Double) {
+    		return condition.containsDouble(((Double)identifierValue).doubleValue());
     	}
-    	value = value.replace("''", "'");
     	
-    	String stringIdentifierValue = null;
+    	// fails the same way comparing each value would
+    	return evaluateSimpleCondition(first);
+    }
+    
+    private Object readValue(SimpleCondition condition) {
+    	String identifier = condition.getIdentifier();
     	
     	try {
-    		Object identifierValue = null;
-    		
-    		if(isMethod) {
-    			Method method = pojo.getClass().getDeclaredMethod(identifier);
-    			method.setAccessible(true);
-    			identifierValue = method.invoke(pojo);
-    		} else {
-        		Field field = pojo.getClass().getDeclaredField(identifier);
-        		field.setAccessible(true);
-        		identifierValue = field.get(pojo);
-    		}
-
-    		stringIdentifierValue = identifierValue.toString();
-    		
-    		if(identifierValue instanceof Byte) {
-    			if(operator.equals(">")) {
-    				result = ((Byte)identifierValue).byteValue() > Byte.decode(value);
-    			} else if(operator.equals("<")) {
-    				result = ((Byte)identifierValue).byteValue() < Byte.decode(value);
-    			} else if(operator.equals("=")) {
-    				result = ((Byte)identifierValue).byteValue() == Byte.decode(value);
-    			} else if(operator.equals("<=")) {
-    				result = ((Byte)identifierValue).byteValue() <= Byte.decode(value);
-    			} else if (operator.equals(">=")) {
-    				result = ((Byte)identifierValue).byteValue() >= Byte.decode(value);
-    			} else if (operator.equals("=~")) {
-    			    throw new FieldTypeException(identifier, identifierValue.getClass(), pojo.getClass());
-    			} else /* if (operator.equals("!~"))*/ {
-    			    throw new FieldTypeException(identifier, identifierValue.getClass(), pojo.getClass());
-    			}
-    		} else if(identifierValue instanceof Short) {
-    			if(operator.equals(">")) {
-    				result = ((Short)identifierValue).shortValue() > Short.decode(value);
-    			} else if(operator.equals("<")) {
-    				result = ((Short)identifierValue).shortValue() < Short.decode(value);
-    			} else if(operator.equals("=")) {
-    				result = ((Short)identifierValue).shortValue() == Short.decode(value);
-    			} else if(operator.equals("<=")) {
-    				result = ((Short)identifierValue).shortValue() <= Short.decode(value);
-    			} else if (operator.equals(">=")) {
-    				result = ((Short)identifierValue).shortValue() >= Short.decode(value);
-    			} else if (operator.equals("=~")) {
-    			    throw new FieldTypeException(identifier, identifierValue.getClass(), pojo.getClass());
-                } else /* if (operator.equals("!~"))*/ {
-                    throw new FieldTypeException(identifier, identifierValue.getClass(), pojo.getClass());
-                }
-    		} else if(identifierValue instanceof Integer) {
-    			if(operator.equals(">")) {
-    				result = ((Integer)identifierValue).intValue() > Integer.decode(value);
-    			} else if(operator.equals("<")) {
-    				result = ((Integer)identifierValue).intValue() < Integer.decode(value);
-    			} else if(operator.equals("=")) {
-    				result = ((Integer)identifierValue).intValue() == Integer.decode(value);
-    			} else if(operator.equals("<=")) {
-    				result = ((Integer)identifierValue).intValue() <= Integer.decode(value);
-    			} else if (operator.equals(">=")) {
-    				result = ((Integer)identifierValue).intValue() >= Integer.decode(value);
-    			} else if (operator.equals("=~")) {
-    			    throw new FieldTypeException(identifier, identifierValue.getClass(), pojo.getClass());
-                } else /* if (operator.equals("!~"))*/ {
-                    throw new FieldTypeException(identifier, identifierValue.getClass(), pojo.getClass());
-                }
-    		} else if(identifierValue instanceof Long) {
-    			if(operator.equals(">")) {
-    				result = ((Long)identifierValue).longValue() > Long.decode(value);
-    			} else if(operator.equals("<")) {
-    				result = ((Long)identifierValue).longValue() < Long.decode(value);
-    			} else if(operator.equals("=")) {
-    				result = ((Long)identifierValue).longValue() == Long.decode(value);
-    			} else if(operator.equals("<=")) {
-    				result = ((Long)identifierValue).longValue() <= Long.decode(value);
-    			} else if (operator.equals(">=")) {
-    				result = ((Long)identifierValue).longValue() >= Long.decode(value);
-    			} else if (operator.equals("=~")) {
-    			    throw new FieldTypeException(identifier, identifierValue.getClass(), pojo.getClass());
-                } else /* if (operator.equals("!~"))*/ {
-                    throw new FieldTypeException(identifier, identifierValue.getClass(), pojo.getClass());
-                }
-    		} else if(identifierValue instanceof Float) {
-    			if(operator.equals(">")) {
-    				result = ((Float)identifierValue).floatValue() > Float.valueOf(value);
-    			} else if(operator.equals("<")) {
-    				result = ((Float)identifierValue).floatValue() < Float.valueOf(value);
-    			} else if(operator.equals("=")) {
-    				result = ((Float)identifierValue).floatValue() == Float.valueOf(value);
-    			} else if(operator.equals("<=")) {
-    				result = ((Float)identifierValue).floatValue() <= Float.valueOf(value);
-    			} else if (operator.equals(">=")) {
-    				result = ((Float)identifierValue).floatValue() >= Float.valueOf(value);
-    			} else if (operator.equals("=~")) {
-    			    throw new FieldTypeException(identifier, identifierValue.getClass(), pojo.getClass());
-                } else /* if (operator.equals("!~"))*/ {
-                    throw new FieldTypeException(identifier, identifierValue.getClass(), pojo.getClass());
-                }
-    		} else if(identifierValue instanceof Double) {
-    			if(operator.equals(">")) {
-    				result = ((Double)identifierValue).doubleValue() > Double.valueOf(value);
-    			} else if(operator.equals("<")) {
-    				result = ((Double)identifierValue).doubleValue() < Double.valueOf(value);
-    			} else if(operator.equals("=")) {
-    				result = ((Double)identifierValue).doubleValue() == Double.valueOf(value);
-    			} else if(operator.equals("<=")) {
-    				result = ((Double)identifierValue).doubleValue() <= Double.valueOf(value);
-    			} else if (operator.equals(">=")) {
-    				result = ((Double)identifierValue).doubleValue() >= Double.valueOf(value);
-    			} else if (operator.equals("=~")) {
-    			    throw new FieldTypeException(identifier, identifierValue.getClass(), pojo.getClass());
-                } else /* if (operator.equals("!~"))*/ {
-                    throw new FieldTypeException(identifier, identifierValue.getClass(), pojo.getClass());
-                }
-    		} else if(identifierValue instanceof Boolean && operator.equals("=")) {
-    				result = ((Boolean)identifierValue).booleanValue() == Boolean.valueOf(value);
-    		} else if(identifierValue instanceof String){
-    		    if (operator.equals("=~")) {
-    		        result = ((String)identifierValue).toLowerCase().contains(value.toLowerCase());
-    		    } else if (operator.equals("!~")) {
-    		        result = !((String)identifierValue).toLowerCase().contains(value.toLowerCase());
-    		    } else {
-    		        int compareTo = stringIdentifierValue.compareTo(value);
-    		        if(operator.equals(">")) {
-    		            result = (compareTo > 0);
-    		        } else if(operator.equals("<")) {
-    		            result = (compareTo < 0);
-    		        } else if(operator.equals("=")) {
-    		            result = (compareTo == 0);
-    		        } else if(operator.equals("<=")) {
-    		            result = (compareTo <= 0);
-    		        } else if (operator.equals(">=")) {
-    		            result = (compareTo >= 0);
-    		        }
-    		    }
-    		} else {
-    			throw new FieldTypeException(identifier, identifierValue.getClass(), pojo.getClass());
-    		}
+    		return getIdentifierValue(condition);
     	} catch(NoSuchFieldException e) {
     		throw new NonexistentIdentifierException(identifier, false, pojo.getClass());
 		} catch (NoSuchMethodException e) {
@@ -197,8 +150,41 @@ class ObjectFieldComparer implements ValueComparer {
 		} catch (InvocationTargetException e) {
 			throw new RuntimeException(e);
 		}
+    }
+    
+    private Object getIdentifierValue(SimpleCondition condition) throws NoSuchFieldException,
+    		NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+    	int slot = slots == null ? -1 : slots.getSlot(condition);
+    	if(slot < 0) {
+    		return readIdentifier(condition);
+    	}
+    	
+    	if(values == null) {
+    		values = new Object[slots.size()];
+    		Arrays.fill(values, UNREAD);
+    	}
+    	
+    	Object identifierValue = values[slot];
+    	if(identifierValue == UNREAD) {
+    		identifierValue = readIdentifier(condition);
+    		values[slot] = identifierValue;
+    	}
+    	return identifierValue;
+    }
+    
+    private Object readIdentifier(SimpleCondition condition) throws NoSuchFieldException,
+    		NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+    	String identifier = condition.getIdentifier();
+    	
+    	if(condition.isMethod()) {
+    		Method method = pojo.getClass().getDeclaredMethod(identifier);
+    		method.setAccessible(true);
+    		return method.invoke(pojo);
+    	}
     	
-    	return result;
+    	Field field = pojo.getClass().getDeclaredField(identifier);
+    	field.setAccessible(true);
+    	return field.get(pojo);
     }
     
     public static Set<Class<?>> getSupportedFieldTypes() {
@@ -0,0 +1,226 @@
+package org.cp.pojoconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Filters a list on several threads by splitting it into chunks of consecutive
+ * elements and filtering each chunk independently.
+ *
+ * When the order is preserved, each chunk's matches are kept separately and
+ * concatenated in chunk order once every chunk is done.  Otherwise each chunk
+ * copies its matches into the shared result as soon as it finishes, so the
+ * merging is spread over the threads rather than done by the caller at the end.
+ */
+final class ParallelFilter<T> {
+	// chunks smaller than this cost more to schedule than to filter
+	private static final int MINIMUM_CHUNK_SIZE = 1024;
+	
+	// chunks per thread, so that threads finishing early can take on more work
+	private static final int CHUNKS_PER_THREAD = 8;
+	
+	private final List<T> list;
+	private final Predicate<? super T> predicate;
+	private final boolean preserveOrder;
+	private final int chunkSize;
+	private final int chunkCount;
+	
+	// the matches of each chunk when preserving order
+	private final Object[][] chunkMatches;
+	
+	// the matches of all chunks, in the order chunks finished, otherwise
+	private final Object[] matches;
+	private final AtomicInteger matchCount = new AtomicInteger();
+	
+	private ParallelFilter(List<T> list, Predicate<? super T> predicate, boolean preserveOrder, int parallelism) {
+		// lists that can't be read by index cheaply are copied so that chunks can be
+		this.list = list instanceof RandomAccess ? list : new ArrayList<T>(list);
+		this.predicate = predicate;
+		this.preserveOrder = preserveOrder;
+		
+		int size = list.size();
+		int targetChunks = Math.max(1, parallelism) * CHUNKS_PER_THREAD;
+		this.chunkSize = Math.max(MINIMUM_CHUNK_SIZE, (size + targetChunks - 1) / targetChunks);
+		this.chunkCount = (size + chunkSize - 1) / chunkSize;
+		this.chunkMatches = preserveOrder ? new Object[chunkCount][] : null;
+		this.matches = preserveOrder ? null : new Object[size];
+	}
+	
+	/**
+	 * Filters the list with the pool's threads, which split the chunks between
+	 * themselves by work stealing
+	 */
+	static <T> List<T> filter(List<T> list, Predicate<? super T> predicate, boolean preserveOrder, ForkJoinPool pool) {
+		ParallelFilter<T> filter = new ParallelFilter<T>(list, predicate, preserveOrder, pool.getParallelism());
+		if(filter.chunkCount > 1) {
+			pool.invoke(filter.new ChunkRange(0, filter.chunkCount));
+		} else if(filter.chunkCount == 1) {
+			filter.filterChunk(0);
+		}
+		return filter.result();
+	}
+	
+	/**
+	 * Filters the list with the executor's threads and the calling thread, each
+	 * repeatedly taking the next unfiltered chunk.  The calling thread never waits
+	 * on tasks the executor hasn't started, so a busy executor only means that
+	 * the caller does more of the work itself, as does one that rejects tasks.
+	 */
+	static <T> List<T> filter(List<T> list, Predicate<? super T> predicate, boolean preserveOrder, Executor executor) {
+		return filter(list, predicate, preserveOrder, executor, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Same as filter(list, predicate, preserveOrder, executor), with up to
+	 * parallelism - 1 executor tasks rather than one less than the number of
+	 * processors
+	 */
+	static <T> List<T> filter(List<T> list, Predicate<? super T> predicate, boolean preserveOrder, Executor executor, int parallelism) {
+		ParallelFilter<T> filter = new ParallelFilter<T>(list, predicate, preserveOrder, parallelism);
+		if(filter.chunkCount > 0) {
+			filter.new ChunkQueue(executor, Math.min(parallelism, filter.chunkCount) - 1).filterAll();
+		}
+		return filter.result();
+	}
+	
+	private void filterChunk(int chunk) {
+		int start = chunk * chunkSize;
+		int end = Math.min(start + chunkSize, list.size());
+		
+		Object[] chunkResult = new Object[end - start];
+		int count = 0;
+		for(int i = start; i < end; i++) {
+			T object = list.get(i);
+			if(predicate.test(object)) {
+				chunkResult[count++] = object;
+			}
+		}
+		
+		if(preserveOrder) {
+			chunkMatches[chunk] = count == chunkResult.length ? chunkResult : Arrays.copyOf(chunkResult, count);
+		} else {
+			System.arraycopy(chunkResult, 0, matches, matchCount.getAndAdd(count), count);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<T> result() {
+		if(!preserveOrder) {
+			return new ArrayList<T>((List<T>)Arrays.asList(matches).subList(0, matchCount.get()));
+		}
+		
+		int size = 0;
+		for(Object[] chunkResult : chunkMatches) {
+			size += chunkResult.length;
+		}
+		
+		List<T> result = new ArrayList<T>(size);
+		for(Object[] chunkResult : chunkMatches) {
+			result.addAll((List<T>)Arrays.asList(chunkResult));
+		}
+		return result;
+	}
+	
+	/**
+	 * Filters a range of chunks, splitting it in half until a single chunk is left
+	 */
+	private class ChunkRange extends RecursiveAction {
+		private static final long serialVersionUID = -2967408296125817593L;
+		
+		private final int from;
+		private final int to;
+		
+		ChunkRange(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if(to - from == 1) {
+				filterChunk(from);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ChunkRange(from, middle), new ChunkRange(middle, to));
+			}
+		}
+	}
+	
+	/**
+	 * Hands out chunks in order to whichever thread asks next.  The first failure
+	 * stops any more chunks being handed out, and is rethrown to the caller.
+	 */
+	private class ChunkQueue {
+		private final Executor executor;
+		private final int helpers;
+		private final AtomicInteger nextChunk = new AtomicInteger();
+		private final AtomicInteger remainingChunks = new AtomicInteger(chunkCount);
+		private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		private final CountDownLatch done = new CountDownLatch(1);
+		
+		ChunkQueue(Executor executor, int helpers) {
+			this.executor = executor;
+			this.helpers = helpers;
+		}
+		
+		/**
+		 * Runs on the calling thread, and returns once every chunk has been filtered
+		 */
+		void filterAll() {
+			for(int i = 0; i < helpers; i++) {
+				try {
+					executor.execute(new Runnable() {
+						public void run() {
+							filterChunks();
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					// the executor is full, so this thread filters whatever the others don't
+					break;
+				}
+			}
+			filterChunks();
+			
+			try {
+				done.await();
+			} catch (InterruptedException e) {
+				// stop the helpers from taking any more chunks
+				nextChunk.set(chunkCount);
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			
+			Throwable t = failure.get();
+			if(t != null) {
+				throw IdentifierAccessor.propagate(t);
+			}
+		}
+		
+		private void filterChunks() {
+			int chunk;
+			while((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+				try {
+					if(failure.get() == null) {
+						filterChunk(chunk);
+					}
+				} catch (Throwable t) {
+					failure.compareAndSet(null, t);
+				} finally {
+					if(remainingChunks.decrementAndGet() == 0) {
+						done.countDown();
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package org.cp.pojoconditions;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A size bounded cache of parsed conditions or clauses, keyed by the parsed
+ * text and whether methods were matched.  Parsing the same text repeatedly is
+ * comparatively expensive, while the parsed results are immutable and can be
+ * shared freely, so a cache lets request driven code build evaluators and
+ * orderings from strings without paying for parsing every time.
+ * 
+ * Larger caches are split into segments, each evicting its least recently
+ * used entry once full, so that threads using different text rarely contend
+ * for the same lock.  It is safe to use from any number of threads.
+ */
+public abstract class ParseCache<V> {
+	private static final int SEGMENT_COUNT = 16;
+	
+	// caches smaller than this use a single segment, so that small caches
+	// still evict exactly their least recently used entry
+	private static final int MINIMUM_SEGMENTED_SIZE = SEGMENT_COUNT * 64;
+	
+	private final Segment[] segments;
+	private volatile int segmentShift;
+	private volatile int segmentCapacity;
+	private volatile int maximumSize;
+	
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+	
+	/**
+	 * @param maximumSize the number of parsed results to keep, or 0 to disable caching
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	protected ParseCache(int maximumSize) {
+		segments = new ParseCache.Segment[SEGMENT_COUNT];
+		for(int i = 0; i < segments.length; i++) {
+			segments[i] = new Segment();
+		}
+		setMaximumSize(maximumSize);
+	}
+	
+	/**
+	 * Parses the text.  Only called on a cache miss.
+	 * @throws IllegalArgumentException if the text fails to parse
+	 */
+	protected abstract V parse(String text, boolean matchMethods);
+	
+	/**
+	 * Returns the parsed result for the text, parsing it only if it isn't
+	 * already cached.  Text that fails to parse is not cached.
+	 * @throws IllegalArgumentException if the text fails to parse
+	 */
+	public V get(String text, boolean matchMethods) {
+		if(maximumSize == 0) {
+			missCount.increment();
+			return parse(text, matchMethods);
+		}
+		
+		Key key = new Key(text, matchMethods);
+		
+		// pick the segment with the top bits of a scrambled hash, since the
+		// segment's own map uses the low bits.  Shifting by 32 bits is the same
+		// as not shifting in Java, so a single segment is handled separately
+		int shift = segmentShift;
+		Segment segment = shift == 32 ? segments[0] : segments[(key.hashCode() * 0x9E3779B9) >>> shift];
+		
+		V value;
+		synchronized(segment) {
+			value = segment.get(key);
+		}
+		
+		if(value != null) {
+			hitCount.increment();
+			return value;
+		}
+		
+		// parse outside of the lock; two threads missing on the same text at
+		// once will both parse it, which is harmless since the results are equal
+		missCount.increment();
+		value = parse(text, matchMethods);
+		
+		synchronized(segment) {
+			// setMaximumSize may have moved entries to other segments since this
+			// one was picked, in which case the result isn't cached
+			if(segmentShift == shift) {
+				segment.put(key, value);
+			}
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Changes the number of parsed results kept, evicting entries if the cache
+	 * is now too large.  A size of 0 disables caching.
+	 */
+	public void setMaximumSize(int maximumSize) {
+		if(maximumSize < 0) {
+			throw new IllegalArgumentException("maximumSize must not be negative: " + maximumSize);
+		}
+		
+		boolean segmented = maximumSize >= MINIMUM_SEGMENTED_SIZE;
+		int shift = segmented ? 32 - Integer.numberOfTrailingZeros(SEGMENT_COUNT) : 32;
+		
+		synchronized(segments) {
+			int oldShift = segmentShift;
+			
+			// the new shift is set before any segment is cleared, so that a get
+			// putting into a segment either does so before it is cleared, or
+			// sees the new shift and doesn't
+			this.maximumSize = maximumSize;
+			this.segmentShift = shift;
+			this.segmentCapacity = segmented ? (maximumSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT : maximumSize;
+			
+			if(shift != oldShift) {
+				// entries would be looked for in the wrong segments, so start over.
+				// Like clear(), this isn't eviction and isn't counted as such
+				for(Segment segment : segments) {
+					synchronized(segment) {
+						segment.clear();
+					}
+				}
+			}
+			
+			for(Segment segment : segments) {
+				synchronized(segment) {
+					segment.trim();
+				}
+			}
+		}
+	}
+	
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+	
+	/**
+	 * The number of parsed results currently cached
+	 */
+	public int size() {
+		int size = 0;
+		for(Segment segment : segments) {
+			synchronized(segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+	
+	/**
+	 * Removes all cached results.  The hit, miss and eviction counts are not reset.
+	 */
+	public void clear() {
+		for(Segment segment : segments) {
+			synchronized(segment) {
+				segment.clear();
+			}
+		}
+	}
+	
+	/**
+	 * The number of times get(text, matchMethods) found a cached result
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+	
+	/**
+	 * The number of times get(text, matchMethods) had to parse the text
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+	
+	/**
+	 * The number of results removed to keep the cache within its maximum size
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+	
+	@Override
+	public String toString() {
+		return "ParseCache [maximumSize=" + maximumSize + ", size=" + size()
+				+ ", hitCount=" + getHitCount() + ", missCount=" + getMissCount()
+				+ ", evictionCount=" + getEvictionCount() + "]";
+	}
+	
+	/**
+	 * A least recently used map holding part of the cache.  Guarded by its own lock.
+	 */
+	private class Segment extends LinkedHashMap<Key, V> {
+		private static final long serialVersionUID = -4150347447932460758L;
+		
+		Segment() {
+			super(16, 0.75f, true);
+		}
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, V> eldest) {
+			if(size() > segmentCapacity) {
+				evictionCount.increment();
+				return true;
+			}
+			return false;
+		}
+		
+		void trim() {
+			Iterator<Key> keys = keySet().iterator();
+			while(size() > segmentCapacity && keys.hasNext()) {
+				keys.next();
+				keys.remove();
+				evictionCount.increment();
+			}
+		}
+	}
+	
+	private static final class Key {
+		private final String text;
+		private final boolean matchMethods;
+		
+		Key(String text, boolean matchMethods) {
+			this.text = text;
+			this.matchMethods = matchMethods;
+		}
+		
+		@Override
+		public int hashCode() {
+			return text.hashCode() * 31 + (matchMethods ? 1 : 0);
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key)obj;
+			return matchMethods == other.matchMethods && text.equals(other.text);
+		}
+	}
+}
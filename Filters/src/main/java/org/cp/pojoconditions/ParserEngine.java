@@ -0,0 +1,38 @@
+package org.cp.pojoconditions;
+
+/**
+ * The implementations available for parsing conditions and order by clauses.
+ * Both accept exactly the same grammar and produce the same results.
+ */
+public enum ParserEngine {
+	/**
+	 * Parsers built with Grappa, which generates parser classes at runtime the
+	 * first time they are used.  Grappa finds the variables each rule keeps in
+	 * the parser's local variable tables, so the parsers must be compiled with
+	 * debug information, or values from one match leak into the next.
+	 */
+	GRAPPA,
+	
+	/**
+	 * Hand written recursive descent parsers, which need no warm up and produce
+	 * very little garbage
+	 */
+	RECURSIVE_DESCENT;
+	
+	private static volatile ParserEngine defaultEngine = RECURSIVE_DESCENT;
+	
+	/**
+	 * The engine used when parsing without specifying one, which is
+	 * RECURSIVE_DESCENT unless changed
+	 */
+	public static ParserEngine getDefault() {
+		return defaultEngine;
+	}
+	
+	public static void setDefault(ParserEngine engine) {
+		if(engine == null) {
+			throw new IllegalArgumentException("engine must not be null");
+		}
+		defaultEngine = engine;
+	}
+}
@@ -1,23 +1,61 @@
 package org.cp.pojoconditions;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
 
 import org.cp.condition.CompoundConditionParser;
+import org.cp.condition.ConditionOptimizer;
 import org.cp.condition.Condition;
 
 
 public class PojoEvaluator {
+	private static final ParseCache<ParsedCondition> CONDITION_CACHE = new ParseCache<ParsedCondition>(4096) {
+		protected ParsedCondition parse(String condition, boolean matchMethods) {
+			return new ParsedCondition(CompoundConditionParser.parseCondition(condition, matchMethods));
+		}
+	};
+	
 	private final Condition baseCondition;
 	
+	// the condition as written, before it was optimized, which validating it
+	// against a class checks, so that identifiers optimized away are still checked
+	private final Condition parsedCondition;
+	
+	// slots for the values of identifiers compared more than once, or null if none are
+	private final IdentifierSlots identifierSlots;
+	
+	// built the first time a batch is matched
+	private volatile BatchEvaluator batchEvaluator;
+	
 	/**
 	 * Builds a PojoEvaluator to determine if supplied pojos
 	 * match the condition
 	 * @throws IllegalArgumentException if the condition is invalid
 	 */
 	private PojoEvaluator(String condition, boolean matchMethods) {
-		baseCondition = CompoundConditionParser.parseCondition(condition, matchMethods);
+		ParsedCondition parsed = CONDITION_CACHE.get(condition, matchMethods);
+		baseCondition = parsed.optimized;
+		parsedCondition = parsed.parsed;
+		
+		IdentifierSlots slots = new IdentifierSlots(baseCondition);
+		identifierSlots = slots.hasRepeatedIdentifiers() ? slots : null;
+	}
+	
+	/**
+	 * The cache of parsed conditions shared by all evaluators built with
+	 * forCondition.  Holds the 4096 most recently used conditions by default,
+	 * which can be changed with setMaximumSize.
+	 */
+	public static ParseCache<?> getConditionCache() {
+		return CONDITION_CACHE;
 	}
 	
 	/**
@@ -40,6 +78,11 @@ public class PojoEvaluator {
 	 * separated by either AND or OR.  Conditions cannot
 	 * be nested  '(' and ')' are not allowed except as
 	 * part of the value (the right hand of the comparison)
+	 * 
+	 * The parsed condition is simplified by ConditionOptimizer, which
+	 * describes how that can change the objects evaluating it throws for.
+	 * compile, compileAdaptive and getUnsupportedIdentifiers still check the
+	 * condition as written.
 	 * @return an evaluator that will determine if a given
 	 *         matches the condition
 	 */
@@ -48,14 +91,207 @@ public class PojoEvaluator {
 	}
 	
 	/**
-	 * Determines if the pojo matches the condition
+	 * The parsed and optimized condition
+	 */
+	Condition getCondition() {
+		return baseCondition;
+	}
+	
+	/**
+	 * Determines if the pojo matches the condition.  Each field or method is
+	 * read at most once, when first needed, however many times the condition
+	 * compares it.
 	 * @param object pojo to have its fields inspected
 	 * @return true if it does, otherwise false
 	 * @throws FieldException if the condition specified a field
 	 * not valid for this object
 	 */
 	public boolean matches(Object object) {
-		return baseCondition.isTrue(new ObjectFieldComparer(object));
+		return baseCondition.isTrue(new ObjectFieldComparer(object, identifierSlots));
+	}
+	
+	/**
+	 * Determines which objects in the batch match the condition.  Rather than
+	 * matching each object in turn, each comparison in the condition is applied
+	 * to a block of objects at a time, and ANDs and ORs combine the results 64
+	 * objects at a time.  Comparisons are only applied to the objects whose
+	 * result depends on them, as when matching objects one at a time.
+	 * @return a bit set with bit i set if element i of the batch matches
+	 * @throws FieldException if the condition specified a field
+	 * not valid for one of the objects
+	 */
+	public BitSet matchAll(List<?> batch) {
+		return BitSet.valueOf(getBatchEvaluator().matchAll(batch));
+	}
+	
+	/**
+	 * Counts the objects in the batch that match the condition, evaluating
+	 * them in the same way as matchAll(batch)
+	 * @throws FieldException if the condition specified a field
+	 * not valid for one of the objects
+	 */
+	public int matchCount(List<?> batch) {
+		return getBatchEvaluator().matchCount(batch);
+	}
+	
+	/**
+	 * Determines which rows of the columns match the condition.  Identifiers
+	 * are read from the columns with the same names, and numeric and boolean
+	 * comparisons are evaluated for 64 rows at a time by loops over the
+	 * columns' arrays, without building an object for each row.
+	 * @return a bit set with bit i set if row i matches
+	 * @throws FieldException if the condition specifies an identifier
+	 * without a column, or that is not valid for the operator used
+	 * @throws NumberFormatException if a value in the condition cannot be
+	 * converted to the type of the column it is compared with
+	 */
+	public BitSet matchAll(Columns columns) {
+		return BitSet.valueOf(BatchEvaluator.matchAll(ColumnarEvaluator.bind(baseCondition, columns), columns, columns.size()));
+	}
+	
+	/**
+	 * Counts the rows of the columns that match the condition, evaluating
+	 * them in the same way as matchAll(columns)
+	 * @throws FieldException if the condition specifies an identifier
+	 * without a column, or that is not valid for the operator used
+	 * @throws NumberFormatException if a value in the condition cannot be
+	 * converted to the type of the column it is compared with
+	 */
+	public int matchCount(Columns columns) {
+		return BatchEvaluator.matchCount(ColumnarEvaluator.bind(baseCondition, columns), columns, columns.size());
+	}
+	
+	/**
+	 * Returns the elements of the collection that match the condition, in
+	 * their order in the collection.  Comparisons of indexed identifiers are
+	 * answered by the collection's indexes, as it describes, and the rest are
+	 * evaluated like compile(clazz) for just the elements that can still match.
+	 * @throws FieldException if the condition specifies an identifier that
+	 * does not exist in the collection's class, or that is not valid for the
+	 * operator used
+	 * @throws NumberFormatException if a value in the condition cannot be
+	 * converted to the type of the identifier it is compared with
+	 */
+	public <T> List<T> filter(IndexedCollection<T> collection) {
+		return collection.filter(baseCondition);
+	}
+	
+	/**
+	 * Counts the elements of the collection that match the condition,
+	 * evaluating them in the same way as filter(collection)
+	 * @throws FieldException if the condition specifies an identifier that
+	 * does not exist in the collection's class, or that is not valid for the
+	 * operator used
+	 * @throws NumberFormatException if a value in the condition cannot be
+	 * converted to the type of the identifier it is compared with
+	 */
+	public int matchCount(IndexedCollection<?> collection) {
+		return collection.count(baseCondition);
+	}
+	
+	private BatchEvaluator getBatchEvaluator() {
+		BatchEvaluator evaluator = batchEvaluator;
+		if(evaluator == null) {
+			// building is repeatable, so threads racing here just do the same work
+			evaluator = new BatchEvaluator(baseCondition);
+			batchEvaluator = evaluator;
+		}
+		return evaluator;
+	}
+	
+	/**
+	 * Builds an evaluator for objects of the provided class.  Every identifier
+	 * in the condition is looked up and type checked against the class once,
+	 * here, so matching objects with the returned evaluator does no reflective
+	 * lookups.  Useful when evaluating large numbers of objects of the same class.
+	 * @throws FieldException if the condition specifies an identifier that
+	 * does not exist in the class, or that is not valid for the operator used
+	 * @throws NumberFormatException if a value in the condition cannot be
+	 * converted to the type of the identifier it is compared with
+	 */
+	public <T> CompiledEvaluator<T> compile(Class<T> clazz) {
+		validate(clazz);
+		return new CompiledEvaluator<T>(clazz, CompiledCondition.compile(baseCondition, clazz));
+	}
+	
+	/**
+	 * Builds an evaluator like compile(clazz) whose ANDs and ORs reorder their
+	 * conditions as objects are evaluated, so that conditions that are cheap
+	 * and usually decide the result are evaluated first: cheap and selective
+	 * ones for ANDs, and cheap and likely ones for ORs.  Occasional samples
+	 * time every condition, which for instance moves field comparisons ahead
+	 * of slow methods, and the order is updated regularly so that it keeps up
+	 * with the objects being evaluated.  The evaluator may be shared between
+	 * threads, which all contribute samples and see each new order.
+	 * 
+	 * Results are the same as compile(clazz), but methods may be called in a
+	 * different order, or when the result no longer depends on them, so this
+	 * is only suitable for conditions without side effects.  An object is only
+	 * failed for, with the same exception, when compile(clazz) would fail for
+	 * it, though one it would fail for may instead get the result decided by
+	 * a condition evaluated earlier.
+	 * @throws FieldException if the condition specifies an identifier that
+	 * does not exist in the class, or that is not valid for the operator used
+	 * @throws NumberFormatException if a value in the condition cannot be
+	 * converted to the type of the identifier it is compared with
+	 */
+	public <T> CompiledEvaluator<T> compileAdaptive(Class<T> clazz) {
+		validate(clazz);
+		return new CompiledEvaluator<T>(clazz, CompiledCondition.compile(baseCondition, clazz, true));
+	}
+	
+	/**
+	 * Checks the condition as written is valid for the class, by compiling it,
+	 * when optimizing it may have removed identifiers or values that aren't
+	 */
+	private void validate(Class<?> clazz) {
+		if(parsedCondition != baseCondition) {
+			CompiledCondition.compile(parsedCondition, clazz);
+		}
+	}
+	
+	/**
+	 * Builds a predicate for objects of the provided class, implemented by a
+	 * class generated at runtime specifically for this condition.  The
+	 * generated class reads identifiers directly where it can, compares them
+	 * with constants and short circuits ANDs and ORs, which lets the JIT inline
+	 * the entire condition where the predicate is used.  Intended for long
+	 * lived conditions, as generating the class is relatively expensive.
+	 * 
+	 * If a class can't be defined, or can't see the classes it reads, the
+	 * predicate returned is the evaluator from compile(clazz).  If the condition isn't valid for the class itself,
+	 * the predicate returned uses matches(object), so that, like matches, it
+	 * only throws when evaluating objects.
+	 */
+	public <T> Predicate<T> toPredicate(Class<T> clazz) {
+		CompiledEvaluator<T> compiledEvaluator;
+		
+		try {
+			compiledEvaluator = compile(clazz);
+		} catch (FieldException e) {
+			return new InterpretedPredicate<T>();
+		} catch (NumberFormatException e) {
+			return new InterpretedPredicate<T>();
+		}
+		
+		try {
+			return PredicateGenerator.generate(clazz, compiledEvaluator.getCondition());
+		} catch (SecurityException e) {
+			return compiledEvaluator;
+		} catch (NoClassDefFoundError e) {
+			return compiledEvaluator;
+		} catch (IllegalAccessError e) {
+			return compiledEvaluator;
+		}
+	}
+	
+	/**
+	 * Returns a predicate that evaluates the condition with matches(object),
+	 * for use with streams and other APIs that accept predicates.  It may be
+	 * shared between threads, including in parallel streams.
+	 */
+	public <T> Predicate<T> asPredicate() {
+		return new InterpretedPredicate<T>();
 	}
 	
 	/**
@@ -65,7 +301,7 @@ public class PojoEvaluator {
 	 * that are not applicable to the provided class
 	 */
 	public List<FieldException> getUnsupportedIdentifiers(Class<?> clazz) {
-		Set<String> uniqueIdentifiers = baseCondition.getUniqueIdentifiers();
+		Set<String> uniqueIdentifiers = parsedCondition.getUniqueIdentifiers();
 		
 		return ObjectFieldComparer.getUnsupportedFields(clazz, uniqueIdentifiers);
 	}
@@ -113,6 +349,103 @@ public class PojoEvaluator {
 		return new ConditionalIterable<T>(iterable, matching);
 	}
 	
+	/**
+	 * Returns a spliterator consisting of elements from the supplied
+	 * spliterator that match the condition.  It splits wherever the supplied
+	 * spliterator does, so streams built on it with StreamSupport.stream
+	 * parallelize as well as the source
+	 * @throws FieldException if the condition specified a field
+	 * not valid for this object
+	 */
+	public <T> Spliterator<T> filter(Spliterator<T> spliterator) {
+		return filter(spliterator, true);
+	}
+	
+	/**
+	 * Filters an existing spliterator based on whether its elements
+	 * match the condition or not.  The filtered spliterator has the same
+	 * characteristics as the supplied one, except that it isn't SIZED
+	 * or SUBSIZED, and estimates its size as the supplied one's size.
+	 * @param matching true if matching elements should included, or false if nonmatching elements
+	 * @throws FieldException if the condition specified a field
+	 * not valid for this object
+	 */
+	public <T> Spliterator<T> filter(Spliterator<T> spliterator, boolean matching) {
+		return new FilteringSpliterator<T>(spliterator, new InterpretedPredicate<T>(), matching);
+	}
+	
+	/**
+	 * Adapts a collector to only accumulate elements that match the condition,
+	 * for example to filter, sort and limit elements in one collect:
+	 * stream.collect(evaluator.filtering(ordering.toSortedList(100)))
+	 * @throws FieldException if the condition specified a field
+	 * not valid for this object
+	 */
+	public <T, A, R> Collector<T, A, R> filtering(Collector<? super T, A, R> downstream) {
+		final BiConsumer<A, ? super T> accumulator = downstream.accumulator();
+		
+		return Collector.of(downstream.supplier(), new BiConsumer<A, T>() {
+			public void accept(A container, T object) {
+				if(matches(object)) {
+					accumulator.accept(container, object);
+				}
+			}
+		}, downstream.combiner(), downstream.finisher(), 
+				downstream.characteristics().toArray(new Collector.Characteristics[0]));
+	}
+	
+	/**
+	 * Returns the elements of the list that match the condition, in their
+	 * order in the list.  The list is split into chunks that are filtered in
+	 * parallel by the pool's threads.  Lists that don't implement RandomAccess
+	 * are copied first.
+	 * @throws FieldException if the condition specified a field
+	 * not valid for one of the objects
+	 */
+	public <T> List<T> filterParallel(List<T> list, ForkJoinPool pool) {
+		return filterParallel(list, pool, true);
+	}
+	
+	/**
+	 * Same as filterParallel(list, pool), except that the matching elements
+	 * are only returned in list order if preserveOrder is true.  Without
+	 * preserving the order, matches are merged as each chunk finishes, which
+	 * is faster.
+	 */
+	public <T> List<T> filterParallel(List<T> list, ForkJoinPool pool, boolean preserveOrder) {
+		return ParallelFilter.filter(list, new InterpretedPredicate<T>(), preserveOrder, pool);
+	}
+	
+	/**
+	 * Returns the elements of the list that match the condition, in their
+	 * order in the list.  The list is split into chunks that are filtered in
+	 * parallel by the calling thread and up to one executor task per available
+	 * processor.  The calling thread never waits for tasks that haven't started,
+	 * so bounded or busy executors are safe to use.
+	 * @throws FieldException if the condition specified a field
+	 * not valid for one of the objects
+	 */
+	public <T> List<T> filterParallel(List<T> list, Executor executor) {
+		return filterParallel(list, executor, true);
+	}
+	
+	/**
+	 * Same as filterParallel(list, executor), except that the matching elements
+	 * are only returned in list order if preserveOrder is true
+	 */
+	public <T> List<T> filterParallel(List<T> list, Executor executor, boolean preserveOrder) {
+		return ParallelFilter.filter(list, new InterpretedPredicate<T>(), preserveOrder, executor);
+	}
+	
+	/**
+	 * A predicate that evaluates the condition with matches(object)
+	 */
+	private class InterpretedPredicate<T> implements Predicate<T> {
+		public boolean test(T object) {
+			return matches(object);
+		}
+	}
+	
 	/**
 	 * Wraps an iterable so that the returned iterator filters its elements
 	 * based on whether they match the condition or not
@@ -191,4 +524,17 @@ public class PojoEvaluator {
 			}
 		}
 	}
+	
+	/**
+	 * A condition as parsed, and optimized by ConditionOptimizer
+	 */
+	private static final class ParsedCondition {
+		final Condition parsed;
+		final Condition optimized;
+		
+		ParsedCondition(Condition parsed) {
+			this.parsed = parsed;
+			this.optimized = ConditionOptimizer.optimize(parsed);
+		}
+	}
 }
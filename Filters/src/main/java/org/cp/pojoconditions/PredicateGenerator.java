@@ -0,0 +1,316 @@
+package org.cp.pojoconditions;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.cp.condition.Operator;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/**
+ * Generates a class implementing Predicate for a compiled condition.  The
+ * generated test method reads identifiers, compares them with the condition's
+ * values as constants and short circuits ANDs and ORs with jumps, so the JIT
+ * can inline the whole condition into the caller.
+ * 
+ * Public fields and methods of public classes are read directly.  Others
+ * are read through method handles held in static final fields, which the JIT
+ * treats as constants and inlines just the same.
+ */
+final class PredicateGenerator {
+	private static final String PACKAGE = "org/cp/pojoconditions/generated/";
+	private static final AtomicLong COUNTER = new AtomicLong();
+	
+	private static final String OBJECT = Type.getInternalName(Object.class);
+	private static final String STRING = Type.getInternalName(String.class);
+	private static final String METHOD_HANDLE = Type.getInternalName(MethodHandle.class);
+	private static final String METHOD_HANDLE_ARRAY = Type.getDescriptor(MethodHandle[].class);
+	private static final String METHOD_HANDLE_DESCRIPTOR = Type.getDescriptor(MethodHandle.class);
+	
+	private final Class<?> pojoClass;
+	private final String className;
+	private final List<MethodHandle> handles = new ArrayList<MethodHandle>();
+	
+	private PredicateGenerator(Class<?> pojoClass) {
+		this.pojoClass = pojoClass;
+		this.className = PACKAGE + "Predicate$" + COUNTER.incrementAndGet();
+	}
+	
+	/**
+	 * Generates and instantiates a predicate equivalent to the compiled condition
+	 * @throws SecurityException if the class loader or class can't be created
+	 * @throws NoClassDefFoundError or IllegalAccessError if the pojo's class
+	 * loader can't see the classes the predicate uses, or they can't be accessed
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> Predicate<T> generate(Class<T> pojoClass, CompiledCondition condition) {
+		PredicateGenerator generator = new PredicateGenerator(pojoClass);
+		byte[] bytes = generator.generateClass(condition);
+		
+		GeneratedPredicateLoader loader = new GeneratedPredicateLoader(pojoClass.getClassLoader(), 
+				generator.handles.toArray(new MethodHandle[generator.handles.size()]));
+		Class<?> predicateClass = loader.define(generator.className.replace('/', '.'), bytes);
+		
+		try {
+			return (Predicate<T>)predicateClass.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			// the class is public with a public constructor, so this is a bug
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private byte[] generateClass(CompiledCondition condition) {
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+		cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, OBJECT, 
+				new String[]{Type.getInternalName(Predicate.class)});
+		
+		MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		init.visitCode();
+		init.visitVarInsn(ALOAD, 0);
+		init.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+		init.visitInsn(RETURN);
+		init.visitMaxs(0, 0);
+		init.visitEnd();
+		
+		// boolean test(Object pojo) jumps to returnFalse as soon as the condition is known to be false
+		MethodVisitor test = cw.visitMethod(ACC_PUBLIC, "test", "(Ljava/lang/Object;)Z", null, null);
+		test.visitCode();
+		Label returnFalse = new Label();
+		generateCondition(test, condition, returnFalse, false);
+		test.visitInsn(ICONST_1);
+		test.visitInsn(IRETURN);
+		test.visitLabel(returnFalse);
+		test.visitInsn(ICONST_0);
+		test.visitInsn(IRETURN);
+		test.visitMaxs(0, 0);
+		test.visitEnd();
+		
+		// the method handles used by test are only known after generating it, and are
+		// handed to the static initializer by the class loader
+		for(int i = 0; i < handles.size(); i++) {
+			cw.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "h" + i, METHOD_HANDLE_DESCRIPTOR, null, null).visitEnd();
+		}
+		
+		MethodVisitor clinit = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+		clinit.visitCode();
+		clinit.visitLdcInsn(Type.getObjectType(className));
+		clinit.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Class", "getClassLoader", "()Ljava/lang/ClassLoader;", false);
+		clinit.visitTypeInsn(CHECKCAST, Type.getInternalName(Supplier.class));
+		clinit.visitMethodInsn(INVOKEINTERFACE, Type.getInternalName(Supplier.class), "get", "()Ljava/lang/Object;", true);
+		clinit.visitTypeInsn(CHECKCAST, METHOD_HANDLE_ARRAY);
+		for(int i = 0; i < handles.size(); i++) {
+			clinit.visitInsn(DUP);
+			clinit.visitLdcInsn(i);
+			clinit.visitInsn(AALOAD);
+			clinit.visitFieldInsn(PUTSTATIC, className, "h" + i, METHOD_HANDLE_DESCRIPTOR);
+		}
+		clinit.visitInsn(POP);
+		clinit.visitInsn(RETURN);
+		clinit.visitMaxs(0, 0);
+		clinit.visitEnd();
+		
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+	
+	/**
+	 * Generates code that jumps to target if the condition evaluates to jumpIf, and
+	 * otherwise falls through
+	 */
+	private void generateCondition(MethodVisitor mv, CompiledCondition condition, Label target, boolean jumpIf) {
+		if(condition instanceof CompiledCondition.Constant) {
+			if(((CompiledCondition.Constant)condition).value == jumpIf) {
+				mv.visitJumpInsn(GOTO, target);
+			}
+		} else if(condition instanceof CompiledCondition.In) {
+			CompiledCondition.In in = (CompiledCondition.In)condition;
+			MethodHandle contains = in.getContainsHandle();
+			loadHandle(mv, contains);
+			loadValue(mv, in.accessor);
+			mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", contains.type().toMethodDescriptorString(), false);
+			// a NOT IN is true when the value isn't found
+			mv.visitJumpInsn(jumpIf != in.negated ? IFNE : IFEQ, target);
+		} else if(condition instanceof CompiledCondition.And) {
+			generateJunction(mv, ((CompiledCondition.And)condition).conditions, false, target, jumpIf);
+		} else if(condition instanceof CompiledCondition.Or) {
+			generateJunction(mv, ((CompiledCondition.Or)condition).conditions, true, target, jumpIf);
+		} else if(condition instanceof CompiledCondition.IntComparison) {
+			CompiledCondition.IntComparison comparison = (CompiledCondition.IntComparison)condition;
+			loadValue(mv, comparison.accessor);
+			mv.visitLdcInsn(comparison.value);
+			mv.visitJumpInsn(intCompareJump(comparison.operator, jumpIf), target);
+		} else if(condition instanceof CompiledCondition.LongComparison) {
+			CompiledCondition.LongComparison comparison = (CompiledCondition.LongComparison)condition;
+			loadValue(mv, comparison.accessor);
+			mv.visitLdcInsn(comparison.value);
+			mv.visitInsn(LCMP);
+			mv.visitJumpInsn(compareResultJump(comparison.operator, jumpIf), target);
+		} else if(condition instanceof CompiledCondition.DoubleComparison) {
+			CompiledCondition.DoubleComparison comparison = (CompiledCondition.DoubleComparison)condition;
+			loadValue(mv, comparison.accessor);
+			mv.visitLdcInsn(comparison.value);
+			// NaN must make every comparison false, which means dcmpg for < and <=, 
+			// and dcmpl otherwise, matching what javac generates
+			Operator operator = comparison.operator;
+			mv.visitInsn(operator == Operator.LESS_THAN || operator == Operator.LESS_THAN_OR_EQUAL ? DCMPG : DCMPL);
+			mv.visitJumpInsn(compareResultJump(operator, jumpIf), target);
+		} else if(condition instanceof CompiledCondition.BooleanEquals) {
+			CompiledCondition.BooleanEquals equals = (CompiledCondition.BooleanEquals)condition;
+			loadValue(mv, equals.accessor);
+			// true == value when the field is true, so jump on a nonzero value if looking
+			// for value, and on zero otherwise
+			mv.visitJumpInsn(equals.value == jumpIf ? IFNE : IFEQ, target);
+		} else if(condition instanceof CompiledCondition.StringComparison) {
+			CompiledCondition.StringComparison comparison = (CompiledCondition.StringComparison)condition;
+			loadValue(mv, comparison.accessor);
+			mv.visitLdcInsn(comparison.value);
+			mv.visitMethodInsn(INVOKEVIRTUAL, STRING, "compareTo", "(Ljava/lang/String;)I", false);
+			mv.visitJumpInsn(compareResultJump(comparison.operator, jumpIf), target);
+		} else if(condition instanceof CompiledCondition.StringContains) {
+			CompiledCondition.StringContains contains = (CompiledCondition.StringContains)condition;
+			loadValue(mv, contains.accessor);
+			mv.visitMethodInsn(INVOKEVIRTUAL, STRING, "toLowerCase", "()Ljava/lang/String;", false);
+			mv.visitLdcInsn(contains.lowerCaseValue);
+			mv.visitMethodInsn(INVOKEVIRTUAL, STRING, "contains", "(Ljava/lang/CharSequence;)Z", false);
+			mv.visitJumpInsn(contains.contains == jumpIf ? IFNE : IFEQ, target);
+		} else {
+			throw new IllegalArgumentException("Unsupported condition: " + condition);
+		}
+	}
+	
+	/**
+	 * Generates an AND (isOr false) or OR (isOr true) of conditions.  An AND jumps
+	 * on the first false condition, and an OR on the first true condition, so when
+	 * that is what we're jumping on every condition jumps straight to the target.
+	 * Otherwise all but the last condition skip the rest once the result is known.
+	 */
+	private void generateJunction(MethodVisitor mv, CompiledCondition[] conditions, boolean isOr, Label target, boolean jumpIf) {
+		if(jumpIf == isOr) {
+			for(CompiledCondition condition : conditions) {
+				generateCondition(mv, condition, target, jumpIf);
+			}
+		} else {
+			Label skip = new Label();
+			for(int i = 0; i < conditions.length - 1; i++) {
+				generateCondition(mv, conditions[i], skip, isOr);
+			}
+			generateCondition(mv, conditions[conditions.length - 1], target, jumpIf);
+			mv.visitLabel(skip);
+		}
+	}
+	
+	/**
+	 * Pushes the identifier's value onto the stack as its comparison type
+	 */
+	private void loadValue(MethodVisitor mv, IdentifierAccessor accessor) {
+		Member member = accessor.getMember();
+		Class<?> valueClass = accessor.getValueClass();
+		Class<?> declaringClass = member.getDeclaringClass();
+		
+		boolean direct = Modifier.isPublic(member.getModifiers()) && !Modifier.isStatic(member.getModifiers())
+				&& Modifier.isPublic(declaringClass.getModifiers()) && !declaringClass.isInterface()
+				&& (valueClass.isPrimitive() || valueClass == String.class);
+		
+		if(direct) {
+			String owner = Type.getInternalName(declaringClass);
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitTypeInsn(CHECKCAST, Type.getInternalName(pojoClass));
+			if(member instanceof Field) {
+				mv.visitFieldInsn(GETFIELD, owner, member.getName(), Type.getDescriptor(valueClass));
+			} else {
+				mv.visitMethodInsn(INVOKEVIRTUAL, owner, member.getName(), Type.getMethodDescriptor((Method)member), false);
+			}
+			
+			// bytes, shorts and ints are already ints on the stack, but floats need widening
+			if(valueClass == Float.TYPE) {
+				mv.visitInsn(F2D);
+			}
+		} else {
+			MethodHandle handle = accessor.getHandle();
+			loadHandle(mv, handle);
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", handle.type().toMethodDescriptorString(), false);
+		}
+	}
+	
+	/**
+	 * Pushes the handle onto the stack from a static field of the generated class
+	 */
+	private void loadHandle(MethodVisitor mv, MethodHandle handle) {
+		String field = "h" + handles.size();
+		handles.add(handle);
+		mv.visitFieldInsn(GETSTATIC, className, field, METHOD_HANDLE_DESCRIPTOR);
+	}
+	
+	/**
+	 * The jump comparing two ints on the stack that is taken when the operator's
+	 * result equals jumpIf
+	 */
+	private static int intCompareJump(Operator operator, boolean jumpIf) {
+		switch(operator) {
+		case LESS_THAN:
+			return jumpIf ? IF_ICMPLT : IF_ICMPGE;
+		case LESS_THAN_OR_EQUAL:
+			return jumpIf ? IF_ICMPLE : IF_ICMPGT;
+		case GREATER_THAN:
+			return jumpIf ? IF_ICMPGT : IF_ICMPLE;
+		case GREATER_THAN_OR_EQUAL:
+			return jumpIf ? IF_ICMPGE : IF_ICMPLT;
+		default:
+			return jumpIf ? IF_ICMPEQ : IF_ICMPNE;
+		}
+	}
+	
+	/**
+	 * The jump testing the result of a comparison (lcmp, dcmp or compareTo) against
+	 * zero that is taken when the operator's result equals jumpIf
+	 */
+	private static int compareResultJump(Operator operator, boolean jumpIf) {
+		switch(operator) {
+		case LESS_THAN:
+			return jumpIf ? IFLT : IFGE;
+		case LESS_THAN_OR_EQUAL:
+			return jumpIf ? IFLE : IFGT;
+		case GREATER_THAN:
+			return jumpIf ? IFGT : IFLE;
+		case GREATER_THAN_OR_EQUAL:
+			return jumpIf ? IFGE : IFLT;
+		default:
+			return jumpIf ? IFEQ : IFNE;
+		}
+	}
+	
+	/**
+	 * Loads a single generated predicate class, and supplies the method handles
+	 * it reads identifiers with to its static initializer.  Each generated class
+	 * gets its own loader so that it can be unloaded once no longer used.
+	 */
+	private static final class GeneratedPredicateLoader extends ClassLoader implements Supplier<Object> {
+		private final MethodHandle[] handles;
+		
+		GeneratedPredicateLoader(ClassLoader parent, MethodHandle[] handles) {
+			super(parent);
+			this.handles = handles;
+		}
+		
+		Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+		
+		public Object get() {
+			return handles;
+		}
+	}
+}
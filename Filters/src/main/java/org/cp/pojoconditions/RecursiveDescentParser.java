@@ -0,0 +1,178 @@
+package org.cp.pojoconditions;
+
+/**
+ * Provides the same base set of rules as PojoParser for hand written
+ * recursive descent parsers.  Each rule either matches at the current
+ * position, advancing past what it matched and returning true, or returns
+ * false leaving the position unchanged.
+ */
+public abstract class RecursiveDescentParser {
+	protected final String input;
+	protected int position;
+	
+	protected RecursiveDescentParser(String input) {
+		this.input = input;
+	}
+	
+	/**
+	 * True once all of the input has been matched
+	 */
+	protected boolean atEnd() {
+		return position == input.length();
+	}
+	
+	/**
+	 * Matches one or more spaces.  Other whitespace characters (tabs, 
+	 * newlines, etc.) are not allowed.
+	 */
+	protected boolean spacing() {
+		int start = position;
+		while(position < input.length() && input.charAt(position) == ' ') {
+			position++;
+		}
+		return position > start;
+	}
+	
+	protected void optionalSpacing() {
+		spacing();
+	}
+	
+	/**
+	 * Matches a single character
+	 */
+	protected boolean ch(char c) {
+		if(position < input.length() && input.charAt(position) == c) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Matches text regardless of case
+	 * @param lowerCaseText the text to match, in lower case
+	 */
+	protected boolean ignoreCase(String lowerCaseText) {
+		int length = lowerCaseText.length();
+		if(position + length > input.length()) {
+			return false;
+		}
+		
+		for(int i = 0; i < length; i++) {
+			if(Character.toLowerCase(input.charAt(position + i)) != lowerCaseText.charAt(i)) {
+				return false;
+			}
+		}
+		
+		position += length;
+		return true;
+	}
+	
+	/**
+	 * A value is represented either by a number directly, or by
+	 * a string representation enclosed in single quotes, with single
+	 * quotes escaped as ''.  Note that inclusion or lack of quotes does
+	 * not impact the type it is evaluated as later.
+	 */
+	protected boolean value() {
+		int start = position;
+		
+		if(ch('\'')) {
+			while(position < input.length()) {
+				if(input.charAt(position) != '\'') {
+					position++;
+				} else if(position + 1 < input.length() && input.charAt(position + 1) == '\'') {
+					position += 2;
+				} else {
+					break;
+				}
+			}
+			
+			if(ch('\'')) {
+				return true;
+			}
+			position = start;
+			return false;
+		}
+		
+		if(!digits()) {
+			return false;
+		}
+		
+		// a decimal point is only part of the number if digits follow it
+		int decimalPoint = position;
+		if(!ch('.') || !digits()) {
+			position = decimalPoint;
+		}
+		return true;
+	}
+	
+	private boolean digits() {
+		int start = position;
+		while(position < input.length() && isDigit(input.charAt(position))) {
+			position++;
+		}
+		return position > start;
+	}
+	
+	/**
+	 * A method with no parameters: an identifier followed by (), optionally
+	 * with spaces before and between the parentheses
+	 */
+	protected boolean noParamMethod() {
+		int start = position;
+		
+		if(identifier()) {
+			optionalSpacing();
+			if(ch('(')) {
+				optionalSpacing();
+				if(ch(')')) {
+					return true;
+				}
+			}
+		}
+		
+		position = start;
+		return false;
+	}
+	
+	/**
+	 * An identifier is represented by one non-numeric character followed
+	 * by characters and numbers
+	 */
+	protected boolean identifier() {
+		if(position == input.length() || !isCharacter(input.charAt(position))) {
+			return false;
+		}
+		
+		position++;
+		while(position < input.length() && (isCharacter(input.charAt(position)) || isDigit(input.charAt(position)))) {
+			position++;
+		}
+		return true;
+	}
+	
+	/**
+	 * Represents legal characters for the start of a field in Java
+	 */
+	protected static boolean isCharacter(char c) {
+		return (c >= 'A' && c <= 'Z')
+				|| (c >= 'a' && c <= 'z')
+				|| (c >= '\u00C0' && c <= '\u00D6')
+				|| (c >= '\u00D8' && c <= '\u00F6')
+				|| (c >= '\u00F8' && c <= '\u02FF')
+				|| (c >= '\u0370' && c <= '\u037D')
+				|| (c >= '\u037F' && c <= '\u1FFF')
+				|| (c >= '\u200C' && c <= '\u200D')
+				|| (c >= '\u2070' && c <= '\u218F')
+				|| (c >= '\u2C00' && c <= '\u2FEF')
+				|| (c >= '\u3001' && c <= '\uD7FF')
+				|| (c >= '\uF900' && c <= '\uFDCF')
+				|| (c >= '\uFDF0' && c <= '\uFFFD')
+				|| c == '_';
+	}
+	
+	protected static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+}
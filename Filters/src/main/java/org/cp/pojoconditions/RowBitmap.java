@@ -0,0 +1,524 @@
+package org.cp.pojoconditions;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A set of rows, the positions of elements in an IndexedCollection,
+ * compressed in the same way as a Roaring bitmap.  Rows are split into chunks
+ * of 65536 by their upper 16 bits, and each chunk holding any rows has a
+ * container for their lower 16 bits: a sorted array when it holds at most
+ * 4096 rows, or otherwise a bitmap of 65536 bits.  Either way a container
+ * takes at most 8KB, so sparse sets take about two bytes per row and dense
+ * sets about one bit per row of their chunks.
+ *
+ * ANDs, ORs and differences of sets are taken a container at a time, only
+ * for the chunks either set holds rows in, with each pair of container types
+ * combined in the cheapest way: merging arrays, testing an array's rows in
+ * a bitmap, or combining bitmaps a word at a time.
+ *
+ * Sets are immutable and may be shared between threads.
+ */
+final class RowBitmap {
+	static final RowBitmap EMPTY = new RowBitmap(new char[0], new Container[0]);
+	
+	// containers with more rows than this are bitmaps
+	private static final int MAX_ARRAY_SIZE = 4096;
+	
+	// the number of longs in a bitmap container
+	private static final int BITMAP_WORDS = 1024;
+	
+	// the upper 16 bits of the rows in each container, in ascending order
+	private final char[] keys;
+	private final Container[] containers;
+	private final int cardinality;
+	
+	private RowBitmap(char[] keys, Container[] containers) {
+		this.keys = keys;
+		this.containers = containers;
+		
+		int cardinality = 0;
+		for(Container container : containers) {
+			cardinality += container.cardinality();
+		}
+		this.cardinality = cardinality;
+	}
+	
+	/**
+	 * Returns the set of rows from (inclusive) to to (exclusive) of the
+	 * array, which must be in ascending order without duplicates
+	 */
+	static RowBitmap fromSorted(int[] rows, int from, int to) {
+		char[] keys = new char[Math.max(0, to - from)];
+		Container[] containers = new Container[keys.length];
+		int count = 0;
+		
+		int start = from;
+		while(start < to) {
+			int key = rows[start] >>> 16;
+			int end = start + 1;
+			while(end < to && rows[end] >>> 16 == key) {
+				end++;
+			}
+			
+			if(end - start <= MAX_ARRAY_SIZE) {
+				char[] values = new char[end - start];
+				for(int i = start; i < end; i++) {
+					values[i - start] = (char)rows[i];
+				}
+				containers[count] = new ArrayContainer(values);
+			} else {
+				long[] words = new long[BITMAP_WORDS];
+				for(int i = start; i < end; i++) {
+					words[(rows[i] >>> 6) & (BITMAP_WORDS - 1)] |= 1L << rows[i];
+				}
+				containers[count] = new BitmapContainer(words, end - start);
+			}
+			keys[count++] = (char)key;
+			start = end;
+		}
+		
+		return new RowBitmap(Arrays.copyOf(keys, count), Arrays.copyOf(containers, count));
+	}
+	
+	/**
+	 * Returns the set of the first count rows of the array, which may be in
+	 * any order but without duplicates.  The array may be reordered.
+	 * @param size the number of rows in the collection, all of which are below it
+	 */
+	static RowBitmap fromUnsorted(int[] rows, int count, int size) {
+		// sorting small sets is quicker than a pass over one bit per row of the collection
+		if(count < 64 || count < (size >>> 10)) {
+			Arrays.sort(rows, 0, count);
+			return fromSorted(rows, 0, count);
+		}
+		
+		long[] words = new long[(size + 63) >>> 6];
+		for(int i = 0; i < count; i++) {
+			words[rows[i] >>> 6] |= 1L << rows[i];
+		}
+		return fromWords(words);
+	}
+	
+	/**
+	 * Returns the set of rows whose bits are set in the words, bit i of word
+	 * w being row w * 64 + i
+	 */
+	private static RowBitmap fromWords(long[] words) {
+		int chunks = (words.length + BITMAP_WORDS - 1) / BITMAP_WORDS;
+		char[] keys = new char[chunks];
+		Container[] containers = new Container[chunks];
+		int count = 0;
+		
+		for(int chunk = 0; chunk < chunks; chunk++) {
+			long[] chunkWords = new long[BITMAP_WORDS];
+			int offset = chunk * BITMAP_WORDS;
+			System.arraycopy(words, offset, chunkWords, 0, Math.min(BITMAP_WORDS, words.length - offset));
+			
+			Container container = container(chunkWords);
+			if(container != null) {
+				keys[count] = (char)chunk;
+				containers[count++] = container;
+			}
+		}
+		
+		return new RowBitmap(Arrays.copyOf(keys, count), Arrays.copyOf(containers, count));
+	}
+	
+	/**
+	 * Returns the set of every row from (inclusive) to to (exclusive)
+	 */
+	static RowBitmap range(int from, int to) {
+		if(from >= to) {
+			return EMPTY;
+		}
+		
+		int firstKey = from >>> 16;
+		int lastKey = (to - 1) >>> 16;
+		char[] keys = new char[lastKey - firstKey + 1];
+		Container[] containers = new Container[keys.length];
+		
+		for(int key = firstKey; key <= lastKey; key++) {
+			int start = key == firstKey ? from & 0xFFFF : 0;
+			int end = key == lastKey ? ((to - 1) & 0xFFFF) + 1 : 0x10000;
+			
+			if(end - start <= MAX_ARRAY_SIZE) {
+				char[] values = new char[end - start];
+				for(int i = start; i < end; i++) {
+					values[i - start] = (char)i;
+				}
+				containers[key - firstKey] = new ArrayContainer(values);
+			} else {
+				long[] words = new long[BITMAP_WORDS];
+				int firstWord = start >>> 6;
+				int lastWord = (end - 1) >>> 6;
+				Arrays.fill(words, firstWord, lastWord + 1, -1L);
+				words[firstWord] &= -1L << start;
+				words[lastWord] &= -1L >>> (63 - ((end - 1) & 63));
+				containers[key - firstKey] = new BitmapContainer(words, end - start);
+			}
+			keys[key - firstKey] = (char)key;
+		}
+		
+		return new RowBitmap(keys, containers);
+	}
+	
+	/**
+	 * Returns the rows in any of the sets
+	 */
+	static RowBitmap or(List<RowBitmap> bitmaps) {
+		if(bitmaps.isEmpty()) {
+			return EMPTY;
+		}
+		return or(bitmaps, 0, bitmaps.size());
+	}
+	
+	// combines halves, so each row is copied once per level rather than once per set
+	private static RowBitmap or(List<RowBitmap> bitmaps, int from, int to) {
+		if(to - from == 1) {
+			return bitmaps.get(from);
+		}
+		int mid = (from + to) >>> 1;
+		return or(bitmaps, from, mid).or(or(bitmaps, mid, to));
+	}
+	
+	/**
+	 * The number of rows in the set
+	 */
+	int cardinality() {
+		return cardinality;
+	}
+	
+	/**
+	 * Returns the rows in ascending order
+	 */
+	int[] toArray() {
+		int[] rows = new int[cardinality];
+		int offset = 0;
+		for(int i = 0; i < containers.length; i++) {
+			offset = containers[i].toArray(rows, offset, keys[i] << 16);
+		}
+		return rows;
+	}
+	
+	/**
+	 * Returns the rows in both this set and the other
+	 */
+	RowBitmap and(RowBitmap other) {
+		int length = Math.min(keys.length, other.keys.length);
+		char[] resultKeys = new char[length];
+		Container[] resultContainers = new Container[length];
+		int count = 0;
+		
+		int i = 0;
+		int j = 0;
+		while(i < keys.length && j < other.keys.length) {
+			if(keys[i] < other.keys[j]) {
+				i++;
+			} else if(keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				Container container = containers[i].and(other.containers[j]);
+				if(container != null) {
+					resultKeys[count] = keys[i];
+					resultContainers[count++] = container;
+				}
+				i++;
+				j++;
+			}
+		}
+		
+		return new RowBitmap(Arrays.copyOf(resultKeys, count), Arrays.copyOf(resultContainers, count));
+	}
+	
+	/**
+	 * Returns the rows in either this set or the other
+	 */
+	RowBitmap or(RowBitmap other) {
+		int length = keys.length + other.keys.length;
+		char[] resultKeys = new char[length];
+		Container[] resultContainers = new Container[length];
+		int count = 0;
+		
+		int i = 0;
+		int j = 0;
+		while(i < keys.length || j < other.keys.length) {
+			if(j >= other.keys.length || i < keys.length && keys[i] < other.keys[j]) {
+				resultKeys[count] = keys[i];
+				resultContainers[count++] = containers[i++];
+			} else if(i >= keys.length || keys[i] > other.keys[j]) {
+				resultKeys[count] = other.keys[j];
+				resultContainers[count++] = other.containers[j++];
+			} else {
+				resultKeys[count] = keys[i];
+				resultContainers[count++] = containers[i++].or(other.containers[j++]);
+			}
+		}
+		
+		return new RowBitmap(Arrays.copyOf(resultKeys, count), Arrays.copyOf(resultContainers, count));
+	}
+	
+	/**
+	 * Returns the rows in this set that aren't in the other
+	 */
+	RowBitmap andNot(RowBitmap other) {
+		char[] resultKeys = new char[keys.length];
+		Container[] resultContainers = new Container[keys.length];
+		int count = 0;
+		
+		int j = 0;
+		for(int i = 0; i < keys.length; i++) {
+			while(j < other.keys.length && other.keys[j] < keys[i]) {
+				j++;
+			}
+			
+			Container container = containers[i];
+			if(j < other.keys.length && other.keys[j] == keys[i]) {
+				container = container.andNot(other.containers[j]);
+			}
+			if(container != null) {
+				resultKeys[count] = keys[i];
+				resultContainers[count++] = container;
+			}
+		}
+		
+		return new RowBitmap(Arrays.copyOf(resultKeys, count), Arrays.copyOf(resultContainers, count));
+	}
+	
+	@Override
+	public String toString() {
+		return "RowBitmap [cardinality=" + cardinality + ", containers=" + containers.length + "]";
+	}
+	
+	/**
+	 * Returns the smallest container holding the bits set in the words, or
+	 * null if none are
+	 */
+	private static Container container(long[] words) {
+		int cardinality = 0;
+		for(long word : words) {
+			cardinality += Long.bitCount(word);
+		}
+		
+		if(cardinality == 0) {
+			return null;
+		} else if(cardinality > MAX_ARRAY_SIZE) {
+			return new BitmapContainer(words, cardinality);
+		}
+		
+		char[] values = new char[cardinality];
+		int next = 0;
+		for(int w = 0; w < words.length; w++) {
+			long bits = words[w];
+			while(bits != 0) {
+				values[next++] = (char)((w << 6) + Long.numberOfTrailingZeros(bits));
+				bits &= bits - 1;
+			}
+		}
+		return new ArrayContainer(values);
+	}
+	
+	/**
+	 * The lower 16 bits of the rows in one chunk.  Operations return null
+	 * rather than an empty container.
+	 */
+	private static abstract class Container {
+		abstract int cardinality();
+		
+		abstract Container and(Container other);
+		
+		abstract Container or(Container other);
+		
+		abstract Container andNot(Container other);
+		
+		/**
+		 * Copies the rows into the array from offset, with high as their upper
+		 * bits, returning the offset after them
+		 */
+		abstract int toArray(int[] rows, int offset, int high);
+	}
+	
+	private static final class ArrayContainer extends Container {
+		// in ascending order
+		final char[] values;
+		
+		ArrayContainer(char[] values) {
+			this.values = values;
+		}
+		
+		int cardinality() {
+			return values.length;
+		}
+		
+		Container and(Container other) {
+			char[] result = new char[values.length];
+			int count = 0;
+			
+			if(other instanceof BitmapContainer) {
+				BitmapContainer bitmap = (BitmapContainer)other;
+				for(char value : values) {
+					if(bitmap.contains(value)) {
+						result[count++] = value;
+					}
+				}
+			} else {
+				char[] otherValues = ((ArrayContainer)other).values;
+				int i = 0;
+				int j = 0;
+				while(i < values.length && j < otherValues.length) {
+					if(values[i] < otherValues[j]) {
+						i++;
+					} else if(values[i] > otherValues[j]) {
+						j++;
+					} else {
+						result[count++] = values[i];
+						i++;
+						j++;
+					}
+				}
+			}
+			
+			return count == 0 ? null : new ArrayContainer(Arrays.copyOf(result, count));
+		}
+		
+		Container or(Container other) {
+			if(other instanceof BitmapContainer) {
+				return other.or(this);
+			}
+			
+			char[] otherValues = ((ArrayContainer)other).values;
+			if(values.length + otherValues.length > MAX_ARRAY_SIZE) {
+				long[] words = new long[BITMAP_WORDS];
+				for(char value : values) {
+					words[value >>> 6] |= 1L << value;
+				}
+				for(char value : otherValues) {
+					words[value >>> 6] |= 1L << value;
+				}
+				return container(words);
+			}
+			
+			char[] result = new char[values.length + otherValues.length];
+			int count = 0;
+			int i = 0;
+			int j = 0;
+			while(i < values.length || j < otherValues.length) {
+				if(j >= otherValues.length || i < values.length && values[i] < otherValues[j]) {
+					result[count++] = values[i++];
+				} else if(i >= values.length || values[i] > otherValues[j]) {
+					result[count++] = otherValues[j++];
+				} else {
+					result[count++] = values[i++];
+					j++;
+				}
+			}
+			return new ArrayContainer(Arrays.copyOf(result, count));
+		}
+		
+		Container andNot(Container other) {
+			char[] result = new char[values.length];
+			int count = 0;
+			
+			if(other instanceof BitmapContainer) {
+				BitmapContainer bitmap = (BitmapContainer)other;
+				for(char value : values) {
+					if(!bitmap.contains(value)) {
+						result[count++] = value;
+					}
+				}
+			} else {
+				char[] otherValues = ((ArrayContainer)other).values;
+				int j = 0;
+				for(char value : values) {
+					while(j < otherValues.length && otherValues[j] < value) {
+						j++;
+					}
+					if(j >= otherValues.length || otherValues[j] != value) {
+						result[count++] = value;
+					}
+				}
+			}
+			
+			return count == 0 ? null : new ArrayContainer(Arrays.copyOf(result, count));
+		}
+		
+		int toArray(int[] rows, int offset, int high) {
+			for(char value : values) {
+				rows[offset++] = high | value;
+			}
+			return offset;
+		}
+	}
+	
+	private static final class BitmapContainer extends Container {
+		final long[] words;
+		final int cardinality;
+		
+		BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+		
+		boolean contains(char value) {
+			return (words[value >>> 6] & (1L << value)) != 0;
+		}
+		
+		int cardinality() {
+			return cardinality;
+		}
+		
+		Container and(Container other) {
+			if(other instanceof ArrayContainer) {
+				return other.and(this);
+			}
+			
+			long[] otherWords = ((BitmapContainer)other).words;
+			long[] result = new long[BITMAP_WORDS];
+			for(int w = 0; w < BITMAP_WORDS; w++) {
+				result[w] = words[w] & otherWords[w];
+			}
+			return container(result);
+		}
+		
+		Container or(Container other) {
+			long[] result = words.clone();
+			if(other instanceof ArrayContainer) {
+				for(char value : ((ArrayContainer)other).values) {
+					result[value >>> 6] |= 1L << value;
+				}
+			} else {
+				long[] otherWords = ((BitmapContainer)other).words;
+				for(int w = 0; w < BITMAP_WORDS; w++) {
+					result[w] |= otherWords[w];
+				}
+			}
+			return container(result);
+		}
+		
+		Container andNot(Container other) {
+			long[] result = words.clone();
+			if(other instanceof ArrayContainer) {
+				for(char value : ((ArrayContainer)other).values) {
+					result[value >>> 6] &= ~(1L << value);
+				}
+			} else {
+				long[] otherWords = ((BitmapContainer)other).words;
+				for(int w = 0; w < BITMAP_WORDS; w++) {
+					result[w] &= ~otherWords[w];
+				}
+			}
+			return container(result);
+		}
+		
+		int toArray(int[] rows, int offset, int high) {
+			for(int w = 0; w < BITMAP_WORDS; w++) {
+				long bits = words[w];
+				while(bits != 0) {
+					rows[offset++] = high | (w << 6) + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+				}
+			}
+			return offset;
+		}
+	}
+}
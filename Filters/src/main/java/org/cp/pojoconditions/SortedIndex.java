@@ -0,0 +1,480 @@
+package org.cp.pojoconditions;
+
+import java.util.Arrays;
+
+import org.cp.condition.Literal;
+import org.cp.condition.Operator;
+import org.cp.condition.SimpleCondition;
+
+/**
+ * The values of one identifier for every element of an IndexedCollection,
+ * sorted, so that a comparison with the identifier is satisfied by a range
+ * of positions in the index, found by binary searching the values.  The rows
+ * of those positions are held in one of two ways:
+ * 
+ * - as a permutation, holding each value along with the row it was read
+ *   from.  Equal values keep their rows in order, so the rows of a single
+ *   value are already sorted, but a range of values needs its rows sorting.
+ * - as bitmaps, holding each distinct value once along with a RowBitmap of
+ *   the rows with that value, so a range of values is an OR of bitmaps.  Far
+ *   smaller and quicker than a permutation when there are few distinct
+ *   values, such as for booleans or a status.
+ * 
+ * Values are ordered as conditions compare them: numbers numerically, with
+ * -0.0 equal to 0.0 and NaN, which compares false with everything, after
+ * every other value, booleans with false first, and strings by compareTo.
+ */
+abstract class SortedIndex {
+	final IdentifierAccessor accessor;
+	
+	// the number of rows in the collection
+	final int size;
+	
+	// rows[i] is the row the value at position i was read from, or null for bitmaps
+	private final int[] rows;
+	
+	// bitmaps[i] holds the rows of the value at position i, or null for a permutation
+	private final RowBitmap[] bitmaps;
+	
+	// starts[i] is the number of rows with values before position i, with
+	// starts[bitmaps.length] the number of rows, or null for a permutation
+	private final int[] starts;
+	
+	SortedIndex(IdentifierAccessor accessor, int[] rows) {
+		this.accessor = accessor;
+		this.size = rows.length;
+		this.rows = rows;
+		this.bitmaps = null;
+		this.starts = null;
+	}
+	
+	SortedIndex(IdentifierAccessor accessor, RowBitmap[] bitmaps, int[] starts) {
+		this.accessor = accessor;
+		this.size = starts[bitmaps.length];
+		this.rows = null;
+		this.bitmaps = bitmaps;
+		this.starts = starts;
+	}
+	
+	/**
+	 * Reads the identifier's value from every element and sorts them, holding
+	 * their rows as bitmaps if bitmaps is true, or a permutation otherwise
+	 * @throws NullPointerException if an element or its value is null
+	 */
+	static SortedIndex build(IdentifierAccessor accessor, Object[] elements, boolean bitmaps) {
+		int[] rows = new int[elements.length];
+		for(int i = 0; i < rows.length; i++) {
+			rows[i] = i;
+		}
+		
+		SortedIndex index;
+		if(accessor.getType() == ValueType.STRING) {
+			String[] values = new String[elements.length];
+			for(int i = 0; i < values.length; i++) {
+				values[i] = accessor.getString(elements[i]);
+				if(values[i] == null) {
+					throw new NullPointerException(accessor.getIdentifier() + " is null for element " + i);
+				}
+			}
+			sort(values, rows, values.clone(), rows.clone(), 0, rows.length);
+			index = new StringIndex(accessor, rows, values);
+		} else {
+			long[] keys = new long[elements.length];
+			for(int i = 0; i < keys.length; i++) {
+				keys[i] = NumericIndex.readKey(accessor, elements[i]);
+			}
+			sort(keys, rows, keys.clone(), rows.clone(), 0, rows.length);
+			index = new NumericIndex(accessor, rows, keys);
+		}
+		
+		return bitmaps ? index.toBitmaps() : index;
+	}
+	
+	/**
+	 * Returns the same index with its rows held as bitmaps
+	 */
+	private SortedIndex toBitmaps() {
+		int[] runStarts = new int[size + 1];
+		int runs = 0;
+		for(int i = 0; i < size; i++) {
+			if(i == 0 || !isSameValue(i - 1, i)) {
+				runStarts[runs++] = i;
+			}
+		}
+		runStarts[runs] = size;
+		
+		// the rows of each value are already in order
+		RowBitmap[] bitmaps = new RowBitmap[runs];
+		for(int i = 0; i < runs; i++) {
+			bitmaps[i] = RowBitmap.fromSorted(rows, runStarts[i], runStarts[i + 1]);
+		}
+		
+		return withBitmaps(bitmaps, Arrays.copyOf(runStarts, runs + 1));
+	}
+	
+	/**
+	 * Returns an index of the values at each run start, with bitmaps holding their rows
+	 */
+	abstract SortedIndex withBitmaps(RowBitmap[] bitmaps, int[] runStarts);
+	
+	/**
+	 * Returns the start (inclusive) and end (exclusive) of the positions in
+	 * the index whose values satisfy the comparison
+	 * @throws FieldTypeException if the identifier's type does not support the operator
+	 * @throws NumberFormatException if the value cannot be converted to the identifier's type
+	 */
+	int[] range(SimpleCondition condition) {
+		Operator operator = condition.getComparisonOperator();
+		if(accessor.getType() == ValueType.BOOLEAN && operator != Operator.EQUAL) {
+			throw new FieldTypeException(accessor.getIdentifier(), accessor.getValueClass(), accessor.getPojoClass());
+		}
+		
+		Literal literal = condition.getLiteral();
+		if(isUnordered(literal)) {
+			return new int[] {0, 0};
+		}
+		
+		switch(operator) {
+		case LESS_THAN:
+			return new int[] {0, lowerBound(literal)};
+		case LESS_THAN_OR_EQUAL:
+			return new int[] {0, upperBound(literal)};
+		case GREATER_THAN:
+			return new int[] {upperBound(literal), orderedEnd()};
+		case GREATER_THAN_OR_EQUAL:
+			return new int[] {lowerBound(literal), orderedEnd()};
+		case EQUAL:
+			return new int[] {lowerBound(literal), upperBound(literal)};
+		default:
+			throw new IllegalArgumentException(operator.getSymbol() + " is not a comparison");
+		}
+	}
+	
+	/**
+	 * The number of rows at positions from (inclusive) to to (exclusive)
+	 */
+	int count(int from, int to) {
+		if(from >= to) {
+			return 0;
+		}
+		return bitmaps == null ? to - from : starts[to] - starts[from];
+	}
+	
+	/**
+	 * Returns the set of rows at positions from (inclusive) to to (exclusive)
+	 */
+	RowBitmap rows(int from, int to) {
+		if(from >= to) {
+			return RowBitmap.EMPTY;
+		}
+		
+		if(bitmaps != null) {
+			return RowBitmap.or(Arrays.asList(bitmaps).subList(from, to));
+		}
+		
+		if(isSameValue(from, to - 1)) {
+			return RowBitmap.fromSorted(rows, from, to);
+		}
+		int[] selected = Arrays.copyOfRange(rows, from, to);
+		return RowBitmap.fromUnsorted(selected, selected.length, size);
+	}
+	
+	/**
+	 * The first position whose value is greater than or equal to the literal
+	 */
+	abstract int lowerBound(Literal literal);
+	
+	/**
+	 * The first position whose value is greater than the literal
+	 */
+	abstract int upperBound(Literal literal);
+	
+	/**
+	 * The end of the positions whose values can satisfy a comparison
+	 */
+	abstract int orderedEnd();
+	
+	/**
+	 * True if the literal compares false with every value, as NaN does
+	 */
+	abstract boolean isUnordered(Literal literal);
+	
+	abstract boolean isSameValue(int i, int j);
+	
+	/**
+	 * A stable merge sort of keys and their rows together, from (inclusive)
+	 * to to (exclusive), using scratch arrays that start as copies of them
+	 */
+	private static void sort(long[] keys, int[] rows, long[] scratchKeys, int[] scratchRows, int from, int to) {
+		if(to - from < 32) {
+			for(int i = from + 1; i < to; i++) {
+				long key = keys[i];
+				int row = rows[i];
+				int j = i - 1;
+				while(j >= from && keys[j] > key) {
+					keys[j + 1] = keys[j];
+					rows[j + 1] = rows[j];
+					j--;
+				}
+				keys[j + 1] = key;
+				rows[j + 1] = row;
+			}
+			return;
+		}
+		
+		// the scratch arrays are sorted into the halves of the arrays and merged
+		// back, so the arrays swap roles at each level instead of being copied
+		int mid = (from + to) >>> 1;
+		sort(scratchKeys, scratchRows, keys, rows, from, mid);
+		sort(scratchKeys, scratchRows, keys, rows, mid, to);
+		
+		if(scratchKeys[mid - 1] <= scratchKeys[mid]) {
+			System.arraycopy(scratchKeys, from, keys, from, to - from);
+			System.arraycopy(scratchRows, from, rows, from, to - from);
+			return;
+		}
+		
+		int i = from;
+		int j = mid;
+		for(int k = from; k < to; k++) {
+			if(j >= to || i < mid && scratchKeys[i] <= scratchKeys[j]) {
+				keys[k] = scratchKeys[i];
+				rows[k] = scratchRows[i++];
+			} else {
+				keys[k] = scratchKeys[j];
+				rows[k] = scratchRows[j++];
+			}
+		}
+	}
+	
+	/**
+	 * The same merge sort as for long keys, for strings
+	 */
+	private static void sort(String[] keys, int[] rows, String[] scratchKeys, int[] scratchRows, int from, int to) {
+		if(to - from < 32) {
+			for(int i = from + 1; i < to; i++) {
+				String key = keys[i];
+				int row = rows[i];
+				int j = i - 1;
+				while(j >= from && keys[j].compareTo(key) > 0) {
+					keys[j + 1] = keys[j];
+					rows[j + 1] = rows[j];
+					j--;
+				}
+				keys[j + 1] = key;
+				rows[j + 1] = row;
+			}
+			return;
+		}
+		
+		int mid = (from + to) >>> 1;
+		sort(scratchKeys, scratchRows, keys, rows, from, mid);
+		sort(scratchKeys, scratchRows, keys, rows, mid, to);
+		
+		if(scratchKeys[mid - 1].compareTo(scratchKeys[mid]) <= 0) {
+			System.arraycopy(scratchKeys, from, keys, from, to - from);
+			System.arraycopy(scratchRows, from, rows, from, to - from);
+			return;
+		}
+		
+		int i = from;
+		int j = mid;
+		for(int k = from; k < to; k++) {
+			if(j >= to || i < mid && scratchKeys[i].compareTo(scratchKeys[j]) <= 0) {
+				keys[k] = scratchKeys[i];
+				rows[k] = scratchRows[i++];
+			} else {
+				keys[k] = scratchKeys[j];
+				rows[k] = scratchRows[j++];
+			}
+		}
+	}
+	
+	/**
+	 * An index of numbers or booleans, all held as longs that order the same
+	 * way: integers as themselves, booleans as 0 and 1, and floats and doubles
+	 * as bits that order as signed longs the way the doubles order numerically
+	 */
+	static final class NumericIndex extends SortedIndex {
+		private final long[] keys;
+		private final int orderedEnd;
+		
+		NumericIndex(IdentifierAccessor accessor, int[] rows, long[] keys) {
+			super(accessor, rows);
+			this.keys = keys;
+			this.orderedEnd = findOrderedEnd();
+		}
+		
+		NumericIndex(IdentifierAccessor accessor, RowBitmap[] bitmaps, int[] starts, long[] keys) {
+			super(accessor, bitmaps, starts);
+			this.keys = keys;
+			this.orderedEnd = findOrderedEnd();
+		}
+		
+		private int findOrderedEnd() {
+			// NaNs have the largest keys, so they're all at the end
+			int end = keys.length;
+			ValueType type = accessor.getType();
+			if(type == ValueType.FLOAT || type == ValueType.DOUBLE) {
+				end = lowerBound(doubleKey(Double.NaN));
+			}
+			return end;
+		}
+		
+		SortedIndex withBitmaps(RowBitmap[] bitmaps, int[] runStarts) {
+			long[] distinctKeys = new long[bitmaps.length];
+			for(int i = 0; i < distinctKeys.length; i++) {
+				distinctKeys[i] = keys[runStarts[i]];
+			}
+			return new NumericIndex(accessor, bitmaps, runStarts, distinctKeys);
+		}
+		
+		static long readKey(IdentifierAccessor accessor, Object pojo) {
+			switch(accessor.getType()) {
+			case BYTE:
+			case SHORT:
+			case INT:
+				return accessor.getInt(pojo);
+			case LONG:
+				return accessor.getLong(pojo);
+			case FLOAT:
+			case DOUBLE:
+				return doubleKey(accessor.getDouble(pojo));
+			default:
+				return accessor.getBoolean(pojo) ? 1 : 0;
+			}
+		}
+		
+		/**
+		 * Decodes the literal as a value of the type, in the same way as
+		 * compiling a comparison with it
+		 */
+		static long literalKey(ValueType type, Literal literal) {
+			switch(type) {
+			case BYTE:
+				return literal.getByteValue();
+			case SHORT:
+				return literal.getShortValue();
+			case INT:
+				return literal.getIntValue();
+			case LONG:
+				return literal.getLongValue();
+			case FLOAT:
+				return doubleKey(literal.getFloatValue());
+			case DOUBLE:
+				return doubleKey(literal.getDoubleValue());
+			default:
+				return literal.getBooleanValue() ? 1 : 0;
+			}
+		}
+		
+		/**
+		 * Maps doubles to longs that order the same way, with -0.0 mapped
+		 * to the same long as 0.0 since they compare equal, and NaN after
+		 * positive infinity
+		 */
+		static long doubleKey(double value) {
+			long bits = Double.doubleToLongBits(value == 0d ? 0d : value);
+			// negative doubles order in reverse as longs, so their other bits are flipped
+			return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+		}
+		
+		int lowerBound(Literal literal) {
+			return lowerBound(literalKey(accessor.getType(), literal));
+		}
+		
+		int upperBound(Literal literal) {
+			long key = literalKey(accessor.getType(), literal);
+			return key == Long.MAX_VALUE ? keys.length : lowerBound(key + 1);
+		}
+		
+		private int lowerBound(long key) {
+			int low = 0;
+			int high = keys.length;
+			while(low < high) {
+				int mid = (low + high) >>> 1;
+				if(keys[mid] < key) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+		
+		int orderedEnd() {
+			return orderedEnd;
+		}
+		
+		boolean isUnordered(Literal literal) {
+			ValueType type = accessor.getType();
+			if(type == ValueType.FLOAT) {
+				return Float.isNaN(literal.getFloatValue());
+			} else if(type == ValueType.DOUBLE) {
+				return Double.isNaN(literal.getDoubleValue());
+			}
+			return false;
+		}
+		
+		boolean isSameValue(int i, int j) {
+			return keys[i] == keys[j];
+		}
+	}
+	
+	static final class StringIndex extends SortedIndex {
+		private final String[] keys;
+		
+		StringIndex(IdentifierAccessor accessor, int[] rows, String[] keys) {
+			super(accessor, rows);
+			this.keys = keys;
+		}
+		
+		StringIndex(IdentifierAccessor accessor, RowBitmap[] bitmaps, int[] starts, String[] keys) {
+			super(accessor, bitmaps, starts);
+			this.keys = keys;
+		}
+		
+		SortedIndex withBitmaps(RowBitmap[] bitmaps, int[] runStarts) {
+			String[] distinctKeys = new String[bitmaps.length];
+			for(int i = 0; i < distinctKeys.length; i++) {
+				distinctKeys[i] = keys[runStarts[i]];
+			}
+			return new StringIndex(accessor, bitmaps, runStarts, distinctKeys);
+		}
+		
+		int lowerBound(Literal literal) {
+			return bound(literal.getText(), false);
+		}
+		
+		int upperBound(Literal literal) {
+			return bound(literal.getText(), true);
+		}
+		
+		private int bound(String value, boolean upper) {
+			int low = 0;
+			int high = keys.length;
+			while(low < high) {
+				int mid = (low + high) >>> 1;
+				int compareTo = keys[mid].compareTo(value);
+				if(compareTo < 0 || upper && compareTo == 0) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+		
+		int orderedEnd() {
+			return keys.length;
+		}
+		
+		boolean isUnordered(Literal literal) {
+			return false;
+		}
+		
+		boolean isSameValue(int i, int j) {
+			return keys[i].equals(keys[j]);
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package org.cp.pojoconditions;
+
+/**
+ * The types of values that can be pulled out of a pojo's fields or methods
+ * and used in conditions or orderings.  Primitive types and their boxed
+ * counterparts map to the same value type.
+ */
+public enum ValueType {
+	BYTE(int.class),
+	SHORT(int.class),
+	INT(int.class),
+	LONG(long.class),
+	FLOAT(double.class),
+	DOUBLE(double.class),
+	BOOLEAN(boolean.class),
+	STRING(String.class);
+	
+	private final Class<?> comparisonType;
+	
+	private ValueType(Class<?> comparisonType) {
+		this.comparisonType = comparisonType;
+	}
+	
+	/**
+	 * The type values are widened to when being compared.  Bytes and shorts
+	 * are compared as ints, and floats are compared as doubles, since widening
+	 * does not change the result of the comparison.
+	 */
+	public Class<?> getComparisonType() {
+		return comparisonType;
+	}
+	
+	/**
+	 * Returns the value type for a field or method return type, or null
+	 * if the type is not supported
+	 */
+	public static ValueType forClass(Class<?> clazz) {
+		if(clazz == Byte.TYPE || clazz == Byte.class) {
+			return BYTE;
+		} else if(clazz == Short.TYPE || clazz == Short.class) {
+			return SHORT;
+		} else if(clazz == Integer.TYPE || clazz == Integer.class) {
+			return INT;
+		} else if(clazz == Long.TYPE || clazz == Long.class) {
+			return LONG;
+		} else if(clazz == Float.TYPE || clazz == Float.class) {
+			return FLOAT;
+		} else if(clazz == Double.TYPE || clazz == Double.class) {
+			return DOUBLE;
+		} else if(clazz == Boolean.TYPE || clazz == Boolean.class) {
+			return BOOLEAN;
+		} else if(clazz == String.class) {
+			return STRING;
+		}
+		
+		return null;
+	}
+}
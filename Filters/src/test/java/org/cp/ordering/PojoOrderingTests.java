@@ -1,16 +1,26 @@
 package org.cp.ordering;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import junit.framework.Assert;
 
 import org.cp.pojoconditions.FieldTypeException;
 import org.cp.pojoconditions.IncompatibleFieldsException;
 import org.cp.pojoconditions.NonexistentIdentifierException;
+import org.cp.pojoconditions.ParserEngine;
+import org.cp.pojoconditions.PojoEvaluator;
 import org.junit.Test;
 
 public class PojoOrderingTests {
@@ -73,6 +83,64 @@ public class PojoOrderingTests {
 		}
 	}
 	
+	@Test
+	public void testParsedOrderBy() {
+		List<IdentifierOrder> identifierOrders = OrderByParser.parseOrderBy("ORDER  BY a, b()  DESC ,c asc,desc");
+		Assert.assertEquals(4, identifierOrders.size());
+		
+		Assert.assertEquals("a", identifierOrders.get(0).getIdentifier());
+		Assert.assertFalse(identifierOrders.get(0).isMethod());
+		Assert.assertTrue(identifierOrders.get(0).isAscending());
+		
+		Assert.assertEquals("b", identifierOrders.get(1).getIdentifier());
+		Assert.assertTrue(identifierOrders.get(1).isMethod());
+		Assert.assertFalse(identifierOrders.get(1).isAscending());
+		
+		Assert.assertEquals("c", identifierOrders.get(2).getIdentifier());
+		Assert.assertTrue(identifierOrders.get(2).isAscending());
+		
+		// a field may be named like an order
+		Assert.assertEquals("desc", identifierOrders.get(3).getIdentifier());
+		Assert.assertTrue(identifierOrders.get(3).isAscending());
+		
+		for(String invalidOrderBy : new String[]{"order by", "orderby a", "order by a,", "order by a ascending", "order by a desc desc", " order by a"}) {
+			try {
+				OrderByParser.parseOrderBy(invalidOrderBy);
+				Assert.fail("Expected failure for order by: " + invalidOrderBy);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+	
+	@Test
+	public void testParserEnginesAgree() {
+		String[] orderBys = {
+				"ORDER  BY a, b()  DESC ,c asc,desc", "order by a", "Order By a Desc", "order by a,b,c",
+				"order by asc asc", "order by desc desc, asc", "order by getA(), b() asc",
+				"order by", "orderby a", "order by a,", "order by a ascending", "order by a desc desc", " order by a",
+				"order by a ", "order by a()()", "order by 1a", "order by a,,b", "order by a desc,", ""
+		};
+		
+		for(boolean matchMethods : new boolean[]{false, true}) {
+			for(String orderBy : orderBys) {
+				Assert.assertEquals(orderBy, parse(orderBy, matchMethods, ParserEngine.GRAPPA),
+						parse(orderBy, matchMethods, ParserEngine.RECURSIVE_DESCENT));
+			}
+		}
+	}
+	
+	/**
+	 * The parsed identifier orders, or the failure to parse them
+	 */
+	private static String parse(String orderBy, boolean matchMethods, ParserEngine engine) {
+		try {
+			return OrderByParser.parseOrderBy(orderBy, matchMethods, engine).toString();
+		} catch (IllegalArgumentException e) {
+			return "Failed to parse";
+		}
+	}
+	
 	@Test
 	public void testComplexComparator() {
 		AnimalColor aardvarkBlue = new AnimalColor("Aardvark", "Blue");
@@ -160,6 +228,367 @@ public class PojoOrderingTests {
 		Assert.assertEquals(7, lists.get(2).size());
 	}
 	
+	@Test
+	public void testStreams() {
+		List<AnimalColor> animalColors = new ArrayList<AnimalColor>();
+		for(int i = 0; i < 1000; i++) {
+			animalColors.add(new AnimalColor("Animal" + (i % 37), "Color" + (i % 11)));
+		}
+		
+		PojoOrdering<AnimalColor> acOrdering = PojoOrdering.forOrderBy("order by color, animal desc");
+		List<AnimalColor> sorted = new ArrayList<AnimalColor>(animalColors);
+		acOrdering.sort(sorted);
+		
+		Assert.assertEquals(sorted, animalColors.parallelStream().sorted(acOrdering.asComparator()).collect(Collectors.<AnimalColor>toList()));
+		Assert.assertEquals(sorted, animalColors.stream().collect(acOrdering.toSortedList()));
+		Assert.assertEquals(sorted, animalColors.parallelStream().collect(acOrdering.toSortedList()));
+		
+		// limited lists are the start of the sorted list, with equal elements in encounter order
+		for(int limit : new int[]{0, 1, 10, 999, 1000, 5000}) {
+			List<AnimalColor> expected = sorted.subList(0, Math.min(limit, sorted.size()));
+			Assert.assertEquals(expected, animalColors.stream().collect(acOrdering.toSortedList(limit)));
+			Assert.assertEquals(expected, animalColors.parallelStream().collect(acOrdering.toSortedList(limit)));
+		}
+	}
+	
+	@Test
+	public void testSortReadsValuesOnce() {
+		List<KeyPojo> pojos = randomKeyPojos(3, 2000, 7, names(13));
+		
+		String[] orderBys = {
+				"order by intField",
+				"order by intField desc, longField, stringField desc",
+				"order by doubleField, booleanField desc, count()",
+				"order by charField desc, floatField, longField",
+				"order by count() desc, intField",
+		};
+		for(String orderBy : orderBys) {
+			PojoOrdering<KeyPojo> ordering = PojoOrdering.forOrderBy(orderBy);
+			for(KeyPojo pojo : pojos) {
+				pojo.calls = 0;
+			}
+			List<KeyPojo> sorted = new ArrayList<KeyPojo>(pojos);
+			ordering.sort(sorted);
+			for(KeyPojo pojo : pojos) {
+				Assert.assertEquals(orderBy, orderBy.contains("count()") ? 1 : 0, pojo.calls);
+			}
+			assertSortedByComparator(orderBy, ordering, pojos, sorted);
+		}
+	}
+	
+	@Test
+	public void testCompiledComparator() {
+		List<KeyPojo> pojos = randomKeyPojos(5, 200, 7, names(13));
+		
+		String[] orderBys = {
+				"order by intField desc, longField, stringField desc",
+				"order by doubleField, booleanField desc, count()",
+				"order by floatField desc, charField",
+		};
+		for(String orderBy : orderBys) {
+			PojoOrdering<KeyPojo> ordering = PojoOrdering.forOrderBy(orderBy);
+			Comparator<KeyPojo> comparator = ordering.getComparator();
+			Comparator<KeyPojo> compiled = ordering.compile(KeyPojo.class);
+			for(KeyPojo pojo1 : pojos) {
+				for(KeyPojo pojo2 : pojos) {
+					Assert.assertEquals(orderBy, comparator.compare(pojo1, pojo2), Integer.signum(compiled.compare(pojo1, pojo2)));
+				}
+			}
+		}
+		
+		// types conditions don't support are compared with compareTo
+		Comparator<ObjectPojo> dateComparator = PojoOrdering.<ObjectPojo>forOrderBy("order by field desc").compile(ObjectPojo.class);
+		Assert.assertTrue(dateComparator.compare(new ObjectPojo(new Date(1)), new ObjectPojo(new Date(2))) > 0);
+		try {
+			dateComparator.compare(new ObjectPojo(new Object()), new ObjectPojo(new Object()));
+			Assert.fail("Expected an exception");
+		} catch (FieldTypeException e) {
+			
+		}
+		try {
+			PojoOrdering.<KeyPojo>forOrderBy("order by intField, otherField").compile(KeyPojo.class);
+			Assert.fail("Expected an exception");
+		} catch (NonexistentIdentifierException e) {
+			
+		}
+	}
+	
+	@Test
+	public void testRadixSort() {
+		// wide keys that don't fit in one long with the positions, and narrow ones that do
+		List<KeyPojo> pojos = randomKeyPojos(19, 30000, 0, names(1));
+		
+		String[] orderBys = {
+				"order by intField",
+				"order by longField desc",
+				"order by doubleField",
+				"order by doubleField desc, intField",
+				"order by booleanField, longField, floatField desc",
+				"order by charField desc, booleanField",
+				"order by count(), booleanField desc",
+		};
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for(String orderBy : orderBys) {
+				PojoOrdering<KeyPojo> ordering = PojoOrdering.forOrderBy(orderBy);
+				for(int size : new int[] {100, 2048, 30000}) {
+					List<KeyPojo> sorted = new ArrayList<KeyPojo>(pojos.subList(0, size));
+					ordering.sort(sorted);
+					assertSortedByComparator(orderBy, ordering, pojos.subList(0, size), sorted);
+				}
+				
+				// ranges large enough to be radix sorted on each thread
+				List<KeyPojo> sorted = new ArrayList<KeyPojo>(pojos);
+				ordering.parallelSort(sorted, pool, 5000);
+				assertSortedByComparator(orderBy, ordering, pojos, sorted);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void testEncodedKeys() {
+		String[] strings = {"", "a", "ab", "a\u0000", "a\u0000b", "\u0000", "\u0001", "\u007f", "\u0080", "\u00e9t\u00e9", "\u07ff", "\u0800",
+				"\ud83d\ude00", "\uffff", "\uffffa", "Z", "zz"};
+		List<KeyPojo> pojos = randomKeyPojos(23, 5000, 5, strings);
+		
+		String[] orderBys = {
+				"order by stringField",
+				"order by stringField desc, intField",
+				"order by intField desc, stringField, longField desc",
+				"order by booleanField, doubleField desc, floatField",
+				"order by charField desc, floatField desc, stringField desc",
+				"order by count(), doubleField",
+		};
+		Random random = new Random(23);
+		for(String orderBy : orderBys) {
+			PojoOrdering<KeyPojo> ordering = PojoOrdering.forOrderBy(orderBy);
+			List<KeyPojo> sorted = new ArrayList<KeyPojo>(pojos);
+			ordering.sortByEncodedKeys(sorted);
+			assertSortedByComparator(orderBy, ordering, pojos, sorted);
+			
+			KeyEncoder<KeyPojo> encoder = ordering.keyEncoder();
+			Comparator<KeyPojo> comparator = ordering.getComparator();
+			for(int i = 0; i < 1000; i++) {
+				KeyPojo pojo1 = pojos.get(random.nextInt(pojos.size()));
+				KeyPojo pojo2 = pojos.get(random.nextInt(pojos.size()));
+				Assert.assertEquals(orderBy, Integer.signum(comparator.compare(pojo1, pojo2)),
+						Integer.signum(KeyEncoder.compare(encoder.encode(pojo1), encoder.encode(pojo2))));
+			}
+		}
+		
+		try {
+			PojoOrdering.<ObjectPojo>forOrderBy("order by field").sortByEncodedKeys(Arrays.asList(new ObjectPojo(new Date()), new ObjectPojo(new Date())));
+			Assert.fail("Expected an exception");
+		} catch (FieldTypeException e) {
+			
+		}
+		try {
+			PojoOrdering.<ObjectPojo>forOrderBy("order by field").sortByEncodedKeys(Arrays.asList(new ObjectPojo(1), new ObjectPojo(1L)));
+			Assert.fail("Expected an exception");
+		} catch (IncompatibleFieldsException e) {
+			
+		}
+	}
+	
+	@Test
+	public void testParallelSort() {
+		List<KeyPojo> pojos = randomKeyPojos(7, 20000, 7, names(300));
+		
+		String[] orderBys = {
+				"order by intField",
+				"order by booleanField, stringField desc",
+				"order by intField desc, longField, stringField desc",
+				"order by stringField, doubleField",
+				"order by floatField desc",
+		};
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for(String orderBy : orderBys) {
+				PojoOrdering<KeyPojo> ordering = PojoOrdering.forOrderBy(orderBy);
+				for(int threshold : new int[] {16, 700, 100000}) {
+					List<KeyPojo> sorted = new ArrayList<KeyPojo>(pojos);
+					ordering.parallelSort(sorted, pool, threshold);
+					assertSortedByComparator(orderBy, ordering, pojos, sorted);
+					
+					KeyPojo[] array = pojos.toArray(new KeyPojo[0]);
+					ordering.parallelSort(array, pool, threshold);
+					assertSortedByComparator(orderBy, ordering, pojos, Arrays.asList(array));
+				}
+				
+				List<KeyPojo> sorted = new ArrayList<KeyPojo>(pojos);
+				ordering.parallelSort(sorted);
+				assertSortedByComparator(orderBy, ordering, pojos, sorted);
+				KeyPojo[] array = pojos.toArray(new KeyPojo[0]);
+				ordering.sort(array);
+				assertSortedByComparator(orderBy, ordering, pojos, Arrays.asList(array));
+			}
+			
+			try {
+				PojoOrdering.<KeyPojo>forOrderBy("order by otherField").parallelSort(new ArrayList<KeyPojo>(pojos), pool, 100);
+				Assert.fail("Expected an exception");
+			} catch (NonexistentIdentifierException e) {
+				
+			}
+			try {
+				PojoOrdering.<KeyPojo>forOrderBy("order by intField").parallelSort(new ArrayList<KeyPojo>(pojos), pool, 0);
+				Assert.fail("Expected an exception");
+			} catch (IllegalArgumentException e) {
+				
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void testTopK() {
+		List<KeyPojo> pojos = randomKeyPojos(11, 20000, 50, names(300));
+		
+		String[] orderBys = {
+				"order by intField",
+				"order by intField desc, count()",
+				"order by booleanField, stringField desc, longField",
+				"order by doubleField desc, floatField",
+		};
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for(String orderBy : orderBys) {
+				PojoOrdering<KeyPojo> ordering = PojoOrdering.forOrderBy(orderBy);
+				List<KeyPojo> sorted = new ArrayList<KeyPojo>(pojos);
+				ordering.sort(sorted);
+				
+				for(int k : new int[] {0, 1, 10, 100, 20000, 30000}) {
+					List<KeyPojo> expected = sorted.subList(0, Math.min(k, sorted.size()));
+					Assert.assertEquals(orderBy, expected, ordering.topK(pojos, k));
+					Assert.assertEquals(orderBy, expected, ordering.topK(pojos.iterator(), k));
+					Assert.assertEquals(orderBy, expected, ordering.parallelTopK(pojos, k, pool, 700));
+				}
+				Assert.assertEquals(orderBy, sorted.subList(0, 25), ordering.parallelTopK(pojos, 25));
+			}
+		} finally {
+			pool.shutdown();
+		}
+		
+		// later identifiers are only read for elements that tie on the earlier ones
+		for(KeyPojo pojo : pojos) {
+			pojo.calls = 0;
+		}
+		PojoOrdering.<KeyPojo>forOrderBy("order by intField desc, count()").topK(pojos, 10);
+		int calls = 0;
+		for(KeyPojo pojo : pojos) {
+			calls += pojo.calls;
+		}
+		Assert.assertTrue(calls < pojos.size() / 10);
+		
+		try {
+			PojoOrdering.<KeyPojo>forOrderBy("order by intField").topK(pojos, -1);
+			Assert.fail("Expected an exception");
+		} catch (IllegalArgumentException e) {
+			
+		}
+	}
+	
+	@Test
+	public void testExternalSort() throws IOException {
+		List<RecordPojo> pojos = new ArrayList<RecordPojo>();
+		Random random = new Random(13);
+		for(int i = 0; i < 5000; i++) {
+			pojos.add(new RecordPojo(i, random.nextInt(40), Long.valueOf(random.nextInt(100)), random.nextDouble(), random.nextBoolean(),
+					(random.nextInt(20) == 0 ? "\udc00Name" : "Name\u00e9") + random.nextInt(50), random.nextInt(10) == 0 ? null : Integer.valueOf(i)));
+		}
+		
+		Path directory = Files.createTempDirectory("sorttest");
+		try {
+			for(String orderBy : new String[] {"order by intField", "order by booleanField desc, stringField, doubleField", "order by longField desc"}) {
+				PojoOrdering<RecordPojo> ordering = PojoOrdering.forOrderBy(orderBy);
+				List<RecordPojo> expected = new ArrayList<RecordPojo>(pojos);
+				Collections.sort(expected, ordering.getComparator());
+				
+				// 50 runs merged 4 at a time, in memory, and in one run in memory
+				for(int runSize : new int[] {100, 5000}) {
+					ExternalSorter<RecordPojo> sorter = ordering.externalSorter(RecordCodec.forClass(RecordPojo.class))
+							.setRunSize(runSize).setFanIn(4).setBufferSize(100).setTempDirectory(directory);
+					List<RecordPojo> sorted = new ArrayList<RecordPojo>();
+					ExternalSorter.SortedIterator<RecordPojo> iterator = sorter.sort(pojos);
+					while(iterator.hasNext()) {
+						sorted.add(iterator.next());
+					}
+					Assert.assertEquals(orderBy, expected.toString(), sorted.toString());
+					Assert.assertEquals(0, directory.toFile().list().length);
+				}
+			}
+			
+			// closing early deletes the runs not yet read
+			ExternalSorter.SortedIterator<RecordPojo> iterator = PojoOrdering.<RecordPojo>forOrderBy("order by intField")
+					.externalSorter(RecordCodec.forClass(RecordPojo.class)).setRunSize(100).setTempDirectory(directory).sort(pojos);
+			Assert.assertEquals(49, directory.toFile().list().length);
+			iterator.next();
+			iterator.close();
+			Assert.assertFalse(iterator.hasNext());
+			Assert.assertEquals(0, directory.toFile().list().length);
+		} finally {
+			Files.delete(directory);
+		}
+		
+		try {
+			RecordCodec.forClass(KeyPojo.class);
+			Assert.fail("Expected an exception");
+		} catch (IllegalArgumentException e) {
+			
+		}
+	}
+	
+	@Test
+	public void testQuery() {
+		List<KeyPojo> pojos = randomKeyPojos(17, 5000, 50, names(300));
+		
+		String[][] queries = {
+				{"where intField < 20 order by intField desc, stringField limit 10 offset 5", "intField < 20", "order by intField desc, stringField", "10", "5"},
+				{"where longField >= 0 and intField in (1, 2, 3) order by longField asc, count() desc offset 3", "longField >= 0 and intField in (1, 2, 3)", "order by longField asc, count() desc", "-1", "3"},
+				{"order by doubleField limit 7", null, "order by doubleField", "7", "0"},
+				{"where stringField = 'Name1 limit 5' or intField = 7 limit 5 offset 2", "stringField = 'Name1 limit 5' or intField = 7", null, "5", "2"},
+				{"  WHERE intField > 45   ORDER BY  stringField   LIMIT 0 ", "intField > 45", "order by  stringField", "0", "0"},
+				{"", null, null, "-1", "0"},
+		};
+		for(String[] query : queries) {
+			PojoQuery<KeyPojo> pojoQuery = PojoQuery.forQuery(query[0]);
+			List<KeyPojo> expected = new ArrayList<KeyPojo>(pojos);
+			if(query[1] != null) {
+				expected = PojoEvaluator.forCondition(query[1], true).filterParallel(expected, ForkJoinPool.commonPool());
+			}
+			if(query[2] != null) {
+				PojoOrdering.<KeyPojo>forOrderBy(query[2]).sort(expected);
+			}
+			int limit = Integer.parseInt(query[3]);
+			int offset = Integer.parseInt(query[4]);
+			expected = expected.subList(Math.min(offset, expected.size()), limit < 0 ? expected.size() : Math.min(offset + limit, expected.size()));
+			
+			Assert.assertEquals(query[0], limit, pojoQuery.getLimit());
+			Assert.assertEquals(query[0], offset, pojoQuery.getOffset());
+			Assert.assertEquals(query[0], expected, pojoQuery.execute(pojos));
+		}
+		
+		Assert.assertEquals(PojoQuery.Strategy.TOP_K, PojoQuery.forQuery(queries[0][0]).getStrategy());
+		Assert.assertEquals(PojoQuery.Strategy.SORT, PojoQuery.forQuery(queries[1][0]).getStrategy());
+		Assert.assertEquals(PojoQuery.Strategy.SCAN, PojoQuery.forQuery(queries[3][0]).getStrategy());
+		
+		// a scan stops reading once the page is full
+		Iterator<KeyPojo> iterator = pojos.iterator();
+		Assert.assertEquals(pojos.subList(3, 13), PojoQuery.<KeyPojo>forQuery("limit 10 offset 3").execute(iterator));
+		Assert.assertEquals(pojos.get(13), iterator.next());
+		
+		for(String invalid : new String[] {"where", "where intField < 20 limit x", "limit 5 order by intField", "order by intField desc desc", "offset 1 limit 2"}) {
+			try {
+				PojoQuery.forQuery(invalid);
+				Assert.fail("Expected an exception for " + invalid);
+			} catch (IllegalArgumentException e) {
+				
+			}
+		}
+	}
+	
 	@Test(expected=NonexistentIdentifierException.class)
 	public void testNonexistentFieldInComparator() {
 		AnimalColor ac = new AnimalColor("Aardvark", "Red");
@@ -225,6 +654,47 @@ public class PojoOrderingTests {
 		}
 	}
 	
+	/**
+	 * Builds KeyPojos from the seed, with ints spread around 0 over intBound
+	 * values, or over every int if intBound is 0, one of the strings, and
+	 * otherwise a mix of repeated, extreme and random values
+	 */
+	private static List<KeyPojo> randomKeyPojos(long seed, int n, int intBound, String[] strings) {
+		double[] doubles = {Double.NaN, -0.0, 0.0, -1.5, 1.5, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Double.MAX_VALUE, Double.MIN_VALUE, -Double.MIN_VALUE};
+		long[] longs = {Long.MIN_VALUE, Long.MIN_VALUE + 1, Long.MAX_VALUE, -1, 0, 1};
+		Random random = new Random(seed);
+		List<KeyPojo> pojos = new ArrayList<KeyPojo>(n);
+		for(int i = 0; i < n; i++) {
+			int intField = intBound == 0 ? random.nextInt() : random.nextInt(intBound) - intBound / 2;
+			long longField = random.nextInt(4) == 0 ? longs[random.nextInt(longs.length)]
+					: random.nextBoolean() ? random.nextInt(1000) - 500L : random.nextLong() >> random.nextInt(64);
+			double doubleField = random.nextBoolean() ? doubles[random.nextInt(doubles.length)] : random.nextGaussian() * 1e6;
+			char charField = random.nextBoolean() ? (char)('a' + random.nextInt(5)) : (char)random.nextInt(1 << 16);
+			float floatField = random.nextInt(4) == 0 ? (float)doubles[random.nextInt(doubles.length)] : random.nextFloat() - 0.5f;
+			pojos.add(new KeyPojo(intField, longField, doubleField, random.nextBoolean(), strings[random.nextInt(strings.length)], charField, floatField));
+		}
+		return pojos;
+	}
+	
+	private static String[] names(int count) {
+		String[] names = new String[count];
+		for(int i = 0; i < count; i++) {
+			names[i] = "Name" + i;
+		}
+		return names;
+	}
+	
+	/**
+	 * Asserts that sorted holds the elements in the order the ordering's
+	 * comparator sorts them in, which is stable
+	 */
+	private static <T> void assertSortedByComparator(String message, PojoOrdering<T> ordering, List<T> elements, List<T> sorted) {
+		List<T> expected = new ArrayList<T>(elements);
+		expected.sort(ordering.getComparator());
+		Assert.assertEquals(message, expected, sorted);
+	}
+	
 	private static class IntPojo {
 		private final int field;
 		public IntPojo(int field) {
@@ -246,6 +716,60 @@ public class PojoOrderingTests {
 		}
 	}
 	
+	private static class KeyPojo {
+		private final int intField;
+		private final long longField;
+		private final double doubleField;
+		private final boolean booleanField;
+		private final String stringField;
+		private final char charField;
+		private final float floatField;
+		private int calls;
+		
+		public KeyPojo(int intField, long longField, double doubleField, boolean booleanField, String stringField, char charField, float floatField) {
+			this.intField = intField;
+			this.longField = longField;
+			this.doubleField = doubleField;
+			this.booleanField = booleanField;
+			this.stringField = stringField;
+			this.charField = charField;
+			this.floatField = floatField;
+		}
+		
+		public int count() {
+			calls++;
+			return intField * 3 % 5;
+		}
+	}
+	
+	private static class RecordPojo {
+		private int sequence;
+		private int intField;
+		private Long longField;
+		private double doubleField;
+		private boolean booleanField;
+		private String stringField;
+		private Integer nullableField;
+		
+		private RecordPojo() {
+		}
+		
+		public RecordPojo(int sequence, int intField, Long longField, double doubleField, boolean booleanField, String stringField, Integer nullableField) {
+			this.sequence = sequence;
+			this.intField = intField;
+			this.longField = longField;
+			this.doubleField = doubleField;
+			this.booleanField = booleanField;
+			this.stringField = stringField;
+			this.nullableField = nullableField;
+		}
+		
+		@Override
+		public String toString() {
+			return sequence + ":" + intField + ":" + longField + ":" + doubleField + ":" + booleanField + ":" + stringField + ":" + nullableField;
+		}
+	}
+	
 	private static class ObjectPojo {
 		private final Object field;
 		
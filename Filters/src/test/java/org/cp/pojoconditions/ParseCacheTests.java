@@ -0,0 +1,143 @@
+package org.cp.pojoconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class ParseCacheTests {
+	@Test
+	public void testHitsAndMisses() {
+		CountingCache cache = new CountingCache(100);
+		
+		String first = cache.get("a<3", false);
+		Assert.assertEquals(1, cache.parseCount);
+		Assert.assertSame(first, cache.get("a<3", false));
+		Assert.assertEquals(1, cache.parseCount);
+		
+		// the same text with methods matched is a different entry
+		cache.get("a<3", true);
+		Assert.assertEquals(2, cache.parseCount);
+		
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(2, cache.getMissCount());
+		Assert.assertEquals(0, cache.getEvictionCount());
+		Assert.assertEquals(2, cache.size());
+	}
+	
+	@Test
+	public void testEviction() {
+		CountingCache cache = new CountingCache(16);
+		for(int i = 0; i < 1000; i++) {
+			cache.get("a<" + i, false);
+		}
+		
+		Assert.assertTrue(cache.size() <= 16);
+		Assert.assertEquals(1000 - cache.size(), cache.getEvictionCount());
+		
+		cache.setMaximumSize(0);
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(1000, cache.getEvictionCount());
+		
+		// nothing is cached once the size is 0
+		cache.get("a<1", false);
+		cache.get("a<1", false);
+		Assert.assertEquals(0, cache.getHitCount());
+		Assert.assertEquals(0, cache.size());
+		
+		// entries dropped when the cache is split into segments aren't evictions
+		cache.setMaximumSize(16);
+		cache.get("a<1", false);
+		cache.setMaximumSize(2048);
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(1000, cache.getEvictionCount());
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() {
+		CountingCache cache = new CountingCache(1);
+		cache.get("a<1", false);
+		cache.get("a<2", false);
+		
+		// with a single entry, only the most recent text is kept
+		Assert.assertEquals(1, cache.size());
+		cache.get("a<2", false);
+		Assert.assertEquals(1, cache.getHitCount());
+	}
+	
+	@Test
+	public void testFailuresAreNotCached() {
+		CountingCache cache = new CountingCache(100);
+		for(int i = 0; i < 2; i++) {
+			try {
+				cache.get("invalid", false);
+				Assert.fail("Expected an exception");
+			} catch (IllegalArgumentException e) {
+				
+			}
+		}
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(2, cache.getMissCount());
+	}
+	
+	@Test
+	public void testConcurrentUse() throws Exception {
+		final CountingCache cache = new CountingCache(64);
+		List<Thread> threads = new ArrayList<Thread>();
+		for(int t = 0; t < 8; t++) {
+			threads.add(new Thread() {
+				public void run() {
+					for(int i = 0; i < 10000; i++) {
+						String text = "a<" + (i % 128);
+						Assert.assertEquals(text, cache.get(text, false));
+					}
+				}
+			});
+		}
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		
+		Assert.assertEquals(80000, cache.getHitCount() + cache.getMissCount());
+		Assert.assertTrue(cache.size() <= 64);
+	}
+	
+	@Test
+	public void testResizeDuringParse() {
+		final CountingCache cache = new CountingCache(2048) {
+			protected String parse(String text, boolean matchMethods) {
+				// going from several segments to one while the text is parsed
+				setMaximumSize(4);
+				return super.parse(text, matchMethods);
+			}
+		};
+		for(int i = 0; i < 64; i++) {
+			cache.setMaximumSize(2048);
+			cache.get("a<" + i, false);
+			
+			// the result was parsed for a segment no longer used, so isn't cached
+			Assert.assertEquals(0, cache.size());
+		}
+	}
+	
+	private static class CountingCache extends ParseCache<String> {
+		private volatile int parseCount;
+		
+		CountingCache(int maximumSize) {
+			super(maximumSize);
+		}
+		
+		protected String parse(String text, boolean matchMethods) {
+			parseCount++;
+			if(text.equals("invalid")) {
+				throw new IllegalArgumentException("Failed to parse: " + text);
+			}
+			return new String(text);
+		}
+	}
+}
@@ -1,14 +1,41 @@
 package org.cp.pojoconditions;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import junit.framework.Assert;
 
+import org.cp.condition.AndCondition;
+import org.cp.condition.CompoundConditionParser;
+import org.cp.condition.Condition;
+import org.cp.condition.ConditionOptimizer;
+import org.cp.condition.ConstantCondition;
+import org.cp.condition.InCondition;
+import org.cp.condition.NotInCondition;
+import org.cp.condition.Operator;
+import org.cp.condition.OrCondition;
+import org.cp.condition.RangeCondition;
+import org.cp.condition.SimpleCondition;
+import org.cp.condition.ValueComparer;
 import org.junit.Test;
 
 
@@ -99,6 +126,75 @@ public class PojoEvaluatorTests {
 
 
 	
+	@Test
+	public void testParsedConditionStructure() {
+		Condition condition = CompoundConditionParser.parseCondition("a<1", false);
+		Assert.assertEquals("a<'1'", condition.toSimpleString());
+		
+		condition = CompoundConditionParser.parseCondition("a < 1 AND b>='x''s' or c=~'y' and d !~ 2.5 Or e()=3", true);
+		Assert.assertEquals("((a<'1' AND b>=''x''s'') OR (c=~''y'' AND d!~'2.5') OR e='3')", condition.toSimpleString());
+		
+		// AND binds tighter than OR
+		condition = CompoundConditionParser.parseCondition("a=1 or b=2 and c=3", false);
+		Assert.assertTrue(condition instanceof OrCondition);
+		List<Condition> conditions = ((OrCondition)condition).getConditions();
+		Assert.assertEquals(2, conditions.size());
+		Assert.assertTrue(conditions.get(0) instanceof SimpleCondition);
+		Assert.assertTrue(conditions.get(1) instanceof AndCondition);
+		
+		SimpleCondition simpleCondition = (SimpleCondition)conditions.get(0);
+		Assert.assertEquals("a", simpleCondition.getIdentifier());
+		Assert.assertEquals(Operator.EQUAL, simpleCondition.getComparisonOperator());
+		Assert.assertEquals(1, simpleCondition.getLiteral().getIntValue());
+		
+		// identifiers may start with the keywords
+		condition = CompoundConditionParser.parseCondition("android=1 and order=2 or origin=3", false);
+		Assert.assertEquals("((android='1' AND order='2') OR origin='3')", condition.toSimpleString());
+		
+		for(String invalidCondition : new String[]{"a=1 andb=2", "a=1  and", " a=1", "a=1 ", "a=\t1", "a=1.", "a='x", "a=1 or or b=2"}) {
+			try {
+				CompoundConditionParser.parseCondition(invalidCondition, true);
+				Assert.fail("Expected failure for condition: " + invalidCondition);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+	
+	@Test
+	public void testParserEnginesAgree() {
+		String[] conditions = {
+				"a<1", "a < 1 AND b>='x''s' or c=~'y' and d !~ 2.5 Or e()=3", "a=1 or b=2 and c=3",
+				"android=1 and order=2 or origin=3", "some_other_method()=1 and afield='cat' or lastMethod<=3",
+				"a<=-3.5 and b>=''", "a='or' or b='and'", "x>5 and x<3", "a<2 and b>1 and c=0 or d=4",
+				"a in (1, 2,3)", "a NOT IN ( 'x' ,'y''s' )", "getA() in(1) and b=2 or c not in (3)",
+				"a in ('x') or b not in (1,2) and c=3", "in in (1)", "not not in (1)", "a IN(1)", "a not in(2)",
+				"a=1 andb=2", "a=1  and", " a=1", "a=1 ", "a=\t1", "a=1.", "a='x", "a=1 or or b=2",
+				"'a'<'d'", "a<d", "<d", "a>", "123<123", "a<..3", "a<3.", "a<3.3.", "", "a<2 and and a<2",
+				"a<2 and or a<2", "a < 2 and b>3 or", "a<\"dog\"", "a()<3",
+				"a in ()", "a in (1", "a in 1", "a in (1,)", "ain (1)", "a notin (1)", "a not (1)", "a in (1) or",
+				"a in (1) and", "a in (1 2)", "a  not  in (1)", "a not in ()"
+		};
+		
+		for(boolean matchMethods : new boolean[]{false, true}) {
+			for(String condition : conditions) {
+				Assert.assertEquals(condition, parse(condition, matchMethods, ParserEngine.GRAPPA),
+						parse(condition, matchMethods, ParserEngine.RECURSIVE_DESCENT));
+			}
+		}
+	}
+	
+	/**
+	 * The parsed condition's structure, or the failure to parse it
+	 */
+	private static String parse(String condition, boolean matchMethods, ParserEngine engine) {
+		try {
+			return CompoundConditionParser.parseCondition(condition, matchMethods, engine).toString();
+		} catch (IllegalArgumentException e) {
+			return "Failed to parse";
+		}
+	}
+	
 	/**
 	 * Tests out a pojo with just a single
 	 * integer field <i>field</i>
@@ -500,6 +596,27 @@ public class PojoEvaluatorTests {
 		Assert.assertFalse(evaluator.matches(new AllTypePojo(null, null, (short)0, null, 0L, null, null)));
 	}
 
+	@Test
+	public void testRepeatedIdentifiersReadOnce() {
+		PojoEvaluator evaluator = PojoEvaluator.forCondition("getCount()>90 and getCount()<100 or getCount()=0 or field=5", true);
+		
+		CountingPojo pojo = new CountingPojo(95, 0);
+		Assert.assertTrue(evaluator.matches(pojo));
+		Assert.assertEquals(1, pojo.calls);
+		
+		pojo = new CountingPojo(50, 5);
+		Assert.assertTrue(evaluator.matches(pojo));
+		Assert.assertEquals(1, pojo.calls);
+		
+		pojo = new CountingPojo(50, 0);
+		Assert.assertFalse(evaluator.matches(pojo));
+		Assert.assertEquals(1, pojo.calls);
+		
+		// each evaluation reads the identifiers afresh
+		Assert.assertFalse(evaluator.matches(pojo));
+		Assert.assertEquals(2, pojo.calls);
+	}
+	
 	@Test
 	public void testIteratorFilter() {
 		PojoEvaluator evaluator = PojoEvaluator.forCondition("field>0");
@@ -605,11 +722,724 @@ public class PojoEvaluatorTests {
 		Assert.assertEquals(3, encounteredPojos.size());
 	}
 	
+	@Test
+	public void testParallelFilter() throws Exception {
+		// enough values for the list to be split into many chunks
+		List<IntPojo> pojos = new ArrayList<IntPojo>();
+		List<IntPojo> expected = new ArrayList<IntPojo>();
+		for(int i = 0; i < 100000; i++) {
+			IntPojo pojo = new IntPojo(i % 7 - 3);
+			pojos.add(pojo);
+			if(pojo.field >= 0) {
+				expected.add(pojo);
+			}
+		}
+		
+		PojoEvaluator evaluator = PojoEvaluator.forCondition("field>=0");
+		ForkJoinPool pool = new ForkJoinPool(4);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		ThreadPoolExecutor bounded = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(1));
+		final CountDownLatch release = new CountDownLatch(1);
+		try {
+			Assert.assertEquals(expected, evaluator.filterParallel(pojos, pool));
+			Assert.assertEquals(expected, evaluator.filterParallel(pojos, executor));
+			Assert.assertEquals(expected, evaluator.filterParallel(new LinkedList<IntPojo>(pojos), pool));
+			
+			// without preserving order the same elements are returned, in any order
+			List<IntPojo> unordered = evaluator.filterParallel(pojos, pool, false);
+			Assert.assertEquals(expected.size(), unordered.size());
+			Assert.assertEquals(new HashSet<IntPojo>(expected), new HashSet<IntPojo>(unordered));
+			unordered = evaluator.filterParallel(pojos, executor, false);
+			Assert.assertEquals(new HashSet<IntPojo>(expected), new HashSet<IntPojo>(unordered));
+			
+			Assert.assertTrue(evaluator.filterParallel(new ArrayList<IntPojo>(), pool).isEmpty());
+			Assert.assertTrue(evaluator.filterParallel(new ArrayList<IntPojo>(), executor).isEmpty());
+			
+			// a saturated executor rejects every helper, so the calling thread filters every chunk
+			Runnable blocked = new Runnable() {
+				public void run() {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			};
+			bounded.execute(blocked);
+			bounded.execute(blocked);
+			Predicate<IntPojo> predicate = evaluator.asPredicate();
+			Assert.assertEquals(expected, evaluator.filterParallel(pojos, bounded));
+			Assert.assertEquals(expected, ParallelFilter.filter(pojos, predicate, true, bounded, 8));
+			unordered = ParallelFilter.filter(pojos, predicate, false, bounded, 8);
+			Assert.assertEquals(new HashSet<IntPojo>(expected), new HashSet<IntPojo>(unordered));
+			
+			// and one with room for some helpers rejects the rest
+			release.countDown();
+			Assert.assertEquals(expected, ParallelFilter.filter(pojos, predicate, true, bounded, 8));
+			
+			// failures on other threads are rethrown to the caller
+			PojoEvaluator invalidEvaluator = PojoEvaluator.forCondition("madeUpField=''");
+			try {
+				invalidEvaluator.filterParallel(pojos, pool);
+				Assert.fail("Expected an exception");
+			} catch (NonexistentIdentifierException e) {
+				Assert.assertEquals("madeUpField", e.getIdentifier());
+			}
+			try {
+				invalidEvaluator.filterParallel(pojos, executor);
+				Assert.fail("Expected an exception");
+			} catch (NonexistentIdentifierException e) {
+				Assert.assertEquals("madeUpField", e.getIdentifier());
+			}
+		} finally {
+			release.countDown();
+			pool.shutdown();
+			executor.shutdown();
+			bounded.shutdown();
+		}
+	}
+	
+	@Test
+	public void testStreams() {
+		List<IntPojo> pojos = new ArrayList<IntPojo>();
+		for(int i = 0; i < 10000; i++) {
+			pojos.add(new IntPojo(i % 10 - 5));
+		}
+		
+		PojoEvaluator evaluator = PojoEvaluator.forCondition("field>=3");
+		Predicate<IntPojo> predicate = evaluator.asPredicate();
+		Assert.assertEquals(2000, pojos.stream().filter(predicate).count());
+		Assert.assertEquals(2000, pojos.parallelStream().filter(predicate).count());
+		
+		// the filtered spliterator keeps the source's characteristics apart from its size
+		Spliterator<IntPojo> spliterator = evaluator.filter(pojos.spliterator());
+		Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED));
+		Assert.assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+		Assert.assertEquals(10000, spliterator.estimateSize());
+		
+		// and splits the same way as the source
+		Spliterator<IntPojo> prefix = spliterator.trySplit();
+		Assert.assertNotNull(prefix);
+		Assert.assertEquals(5000, prefix.estimateSize());
+		Assert.assertEquals(5000, spliterator.estimateSize());
+		
+		List<IntPojo> sequential = StreamSupport.stream(evaluator.filter(pojos.spliterator()), false).collect(Collectors.<IntPojo>toList());
+		List<IntPojo> parallel = StreamSupport.stream(evaluator.filter(pojos.spliterator()), true).collect(Collectors.<IntPojo>toList());
+		Assert.assertEquals(2000, sequential.size());
+		Assert.assertEquals(sequential, parallel);
+		for(IntPojo pojo : sequential) {
+			Assert.assertTrue(pojo.field >= 3);
+		}
+		
+		Spliterator<IntPojo> nonmatching = evaluator.filter(pojos.spliterator(), false);
+		Assert.assertEquals(8000, StreamSupport.stream(nonmatching, true).count());
+		
+		// collectors only see the matching elements
+		Assert.assertEquals(sequential, pojos.parallelStream().collect(evaluator.filtering(Collectors.<IntPojo>toList())));
+	}
+	
+	@Test
+	public void testMatchAll() {
+		// a mix of classes, including one whose field can only be matched reflectively
+		List<Object> pojos = new ArrayList<Object>();
+		for(int i = 0; i < 3000; i++) {
+			if(i % 5 == 0) {
+				pojos.add(new ObjectPojo(Integer.valueOf(i % 13)));
+			} else {
+				pojos.add(new IntPojo(i % 11));
+			}
+		}
+		
+		String[] conditions = {
+				"field>5",
+				"field>2 and field<8",
+				"field<2 or field>9",
+				"field>3 and field<=6 or field=0 or field>=12",
+		};
+		
+		for(String condition : conditions) {
+			PojoEvaluator evaluator = PojoEvaluator.forCondition(condition);
+			BitSet expected = new BitSet();
+			for(int i = 0; i < pojos.size(); i++) {
+				if(evaluator.matches(pojos.get(i))) {
+					expected.set(i);
+				}
+			}
+			
+			Assert.assertEquals(condition, expected, evaluator.matchAll(pojos));
+			Assert.assertEquals(condition, expected, evaluator.matchAll(new LinkedList<Object>(pojos)));
+			Assert.assertEquals(condition, expected.cardinality(), evaluator.matchCount(pojos));
+		}
+		
+		Assert.assertTrue(PojoEvaluator.forCondition("field>5").matchAll(new ArrayList<Object>()).isEmpty());
+		
+		// identifiers are only read where they would be when matching one object at a
+		// time, so short circuited conditions aren't evaluated
+		List<IntPojo> intPojos = new ArrayList<IntPojo>();
+		for(int i = 0; i < 100; i++) {
+			intPojos.add(new IntPojo(i));
+		}
+		Assert.assertEquals(100, PojoEvaluator.forCondition("field>=0 or madeUpField=1").matchCount(intPojos));
+		Assert.assertEquals(0, PojoEvaluator.forCondition("field<0 and madeUpField=1").matchCount(intPojos));
+		try {
+			PojoEvaluator.forCondition("field>=50 and madeUpField=1").matchAll(intPojos);
+			Assert.fail("Expected an exception");
+		} catch (NonexistentIdentifierException e) {
+			Assert.assertEquals("madeUpField", e.getIdentifier());
+		}
+	}
+	
+	@Test
+	public void testColumnarMatching() {
+		// the same rows as pojos and as columns, with a size that isn't a whole number of words
+		int size = 2500;
+		int[] x = new int[size];
+		long[] y = new long[size];
+		double[] z = new double[size];
+		boolean[] flag = new boolean[size];
+		String[] name = new String[size];
+		List<ColumnPojo> pojos = new ArrayList<ColumnPojo>();
+		for(int i = 0; i < size; i++) {
+			x[i] = i % 17 - 8;
+			y[i] = i * 1000000000L;
+			z[i] = i % 5 == 0 ? Double.NaN : (i % 23) / 2.0;
+			flag[i] = i % 3 == 0;
+			name[i] = "Name" + (i % 31);
+			pojos.add(new ColumnPojo(x[i], y[i], z[i], flag[i], name[i]));
+		}
+		Columns columns = new Columns(size).add("x", x).add("y", y).add("z", z).add("flag", flag).add("name", name);
+		
+		String[] conditions = {
+				"x>0",
+				"x<0 and y>=1000000000000",
+				"x=3 or z<=4.5 or z>10",
+				"flag='true' and name>='Name2' or name=~'me1' and x!~'1' or name!~'e3'",
+				"z=5.5 and flag='false' or y<5000000000 or x>=8",
+		};
+		
+		for(String condition : conditions) {
+			PojoEvaluator evaluator = PojoEvaluator.forCondition(condition);
+			if(condition.contains("x!~")) {
+				// numbers can't be matched as substrings
+				try {
+					evaluator.matchAll(columns);
+					Assert.fail("Expected an exception for condition: " + condition);
+				} catch (FieldTypeException e) {
+					Assert.assertEquals(int.class, e.getFieldType());
+				}
+				continue;
+			}
+			
+			BitSet expected = evaluator.matchAll(pojos);
+			Assert.assertEquals(condition, expected, evaluator.matchAll(columns));
+			Assert.assertEquals(condition, expected.cardinality(), evaluator.matchCount(columns));
+		}
+		
+		// methods are read from columns with the same name
+		Assert.assertEquals(size - 1, PojoEvaluator.forCondition("y()>0", true).matchCount(new Columns(size).add("y", y)));
+		Assert.assertEquals(0, PojoEvaluator.forCondition("x>0").matchCount(new Columns(0).add("x", new int[0])));
+		
+		try {
+			PojoEvaluator.forCondition("madeUpField>0").matchAll(columns);
+			Assert.fail("Expected an exception");
+		} catch (NonexistentIdentifierException e) {
+			Assert.assertEquals("madeUpField", e.getIdentifier());
+			Assert.assertEquals(Columns.class, e.getPojoClass());
+		}
+		
+		try {
+			new Columns(size).add("x", new int[size - 1]);
+			Assert.fail("Expected an exception");
+		} catch (IllegalArgumentException e) {
+			
+		}
+	}
+	
 	/**
 	 * Only certain types of pojo field types are supported in conditions.
 	 * Try a condition that matches against a fild with type java.util.Date,
 	 * and verify that we get an exception
 	 */
+	@Test
+	public void testConditionOptimizer() {
+		Assert.assertTrue(optimize("x>0 and x<10") instanceof RangeCondition);
+		Assert.assertEquals("((x>'5' AND x<='7') AND y='1')", optimize("x>3 and x>5 and y=1 and x<=7 and x<=9").toSimpleString());
+		Assert.assertEquals("x='4'", optimize("x=4 and x>3 and x<=4").toSimpleString());
+		Assert.assertEquals("x>'3'", optimize("x>5 or x>=5 or x>3").toSimpleString());
+		Assert.assertEquals("(a<'1' OR b='2')", optimize("a<1 or b=2 or a<1").toSimpleString());
+		Assert.assertSame(ConstantCondition.FALSE, optimize("x>5 and x<3"));
+		Assert.assertSame(ConstantCondition.FALSE, optimize("x>=5 and x<5 or x='a' and x='true' or name='a' and name>'b'"));
+		
+		// both are false to a boolean, so the equalities may both hold
+		Assert.assertTrue(optimize("x=1 and x=2") instanceof AndCondition);
+		Assert.assertTrue(optimize("flag='true' and flag='TRUE'") instanceof AndCondition);
+		Assert.assertEquals("y='1'", optimize("x>5 and x<3 or y=1").toSimpleString());
+		
+		Condition in = optimize("light='red' or light='yellow' or x=1 or light='green'");
+		Assert.assertEquals("(light IN ('red', 'yellow', 'green') OR x='1')", in.toSimpleString());
+		Assert.assertTrue(((OrCondition)in).getConditions().get(0) instanceof InCondition);
+		
+		// 9 and 10 order differently as text, so the bounds are left for the identifier's type to decide
+		Assert.assertEquals("(x>'9' AND x>'10')", optimize("x>9 and x>10").toSimpleString());
+		Assert.assertEquals("(x>'9' AND x<'10')", optimize("x>9 and x<10").toSimpleString());
+		Assert.assertEquals("(x=5 AND x=5.0)", optimize("x=5 and x=5.0").toSimpleString().replace("'", ""));
+		
+		// optimized conditions match the same objects as they would unoptimized
+		String[] conditions = {
+				"x>'-3' and x<5",
+				"x>='-3' and x>'-5' and x<=4 and x<7",
+				"x=3 or x=4 or x='-8' or x=100 or y=2000000000",
+				"x>5 or x>3 or x<'-6' or x<'-7'",
+				"x=3 and x>=3 or x=4 and x<4",
+				"y=1000000000 or y=3000000000 or y='-1' and x>0",
+				"z=5.5 or z=0 or z='-0.0' or z=11 or z=1.5",
+				"z>1 and z<3.5 or z>=2 and z<=10",
+				"flag='true' or flag='false' and x=1 or flag='false'",
+				"flag='true' and flag='TRUE'",
+				"flag='false' and flag='no' and x>0",
+				"flag='true' and flag='yes'",
+				"name='Name3' or name='Name10' or name='Name30' and x<0",
+				"name>'Name1' and name<'Name2' or name='Name7' and name='Name8'",
+		};
+		
+		List<ColumnPojo> pojos = new ArrayList<ColumnPojo>();
+		for(int i = 0; i < 2500; i++) {
+			pojos.add(new ColumnPojo(i % 17 - 8, i * 1000000000L, i % 5 == 0 ? Double.NaN : (i % 23) / 2.0, i % 3 == 0, "Name" + (i % 31)));
+		}
+		
+		for(String condition : conditions) {
+			Condition original = CompoundConditionParser.parseCondition(condition, false);
+			PojoEvaluator evaluator = PojoEvaluator.forCondition(condition);
+			CompiledEvaluator<ColumnPojo> compiled = evaluator.compile(ColumnPojo.class);
+			Predicate<ColumnPojo> predicate = evaluator.toPredicate(ColumnPojo.class);
+			
+			BitSet expected = new BitSet();
+			for(int i = 0; i < pojos.size(); i++) {
+				ColumnPojo pojo = pojos.get(i);
+				boolean matches = original.isTrue(new ObjectFieldComparer(pojo));
+				expected.set(i, matches);
+				Assert.assertEquals(condition, matches, evaluator.matches(pojo));
+				Assert.assertEquals(condition, matches, compiled.matches(pojo));
+				Assert.assertEquals(condition, matches, predicate.test(pojo));
+			}
+			Assert.assertEquals(condition, expected, evaluator.matchAll(pojos));
+		}
+		
+		// contradictions are never evaluated, so don't find that the identifier doesn't exist
+		Assert.assertFalse(PojoEvaluator.forCondition("madeUpField>5 and madeUpField<3").matches(new IntPojo(0)));
+		
+		// but validating against a class still checks every identifier as written
+		PojoEvaluator contradiction = PojoEvaluator.forCondition("field>5 and field<3 and bogus=1");
+		List<FieldException> unsupported = contradiction.getUnsupportedIdentifiers(IntPojo.class);
+		Assert.assertEquals(1, unsupported.size());
+		Assert.assertEquals("bogus", ((NonexistentIdentifierException)unsupported.get(0)).getIdentifier());
+		try {
+			contradiction.compile(IntPojo.class);
+			Assert.fail("Expected an exception");
+		} catch (NonexistentIdentifierException e) {
+			Assert.assertEquals("bogus", e.getIdentifier());
+		}
+		try {
+			contradiction.compileAdaptive(IntPojo.class);
+			Assert.fail("Expected an exception");
+		} catch (NonexistentIdentifierException e) {
+			Assert.assertEquals("bogus", e.getIdentifier());
+		}
+		Assert.assertFalse(contradiction.toPredicate(IntPojo.class).test(new IntPojo(0)));
+	}
+	
+	@Test
+	public void testInConditions() {
+		Assert.assertEquals("a IN ('1', '2', '3')", CompoundConditionParser.parseCondition("a in (1, 2,3)", false).toSimpleString());
+		Condition notIn = CompoundConditionParser.parseCondition("a NOT IN ( 'x' ,'y''s' )", false);
+		Assert.assertTrue(notIn instanceof NotInCondition);
+		Assert.assertEquals("a NOT IN ('x', 'y''s')", notIn.toSimpleString());
+		Assert.assertEquals("((getA IN ('1') AND b='2') OR c NOT IN ('3'))",
+				CompoundConditionParser.parseCondition("getA() in(1) and b=2 or c not in (3)", true).toSimpleString());
+		
+		for(String invalidCondition : new String[]{"a in ()", "a in (1", "a in 1", "a in (1,)", "ain (1)", "a notin (1)", "a not (1)", "a in (1) or"}) {
+			try {
+				CompoundConditionParser.parseCondition(invalidCondition, true);
+				Assert.fail("Expected failure for condition: " + invalidCondition);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		
+		// each IN and NOT IN matches the same objects as the equivalent comparisons
+		String[][] conditions = {
+				{"x in (3, 4, 100) or y in (2000000000, 5)", "x=3 or x=4 or x=100 or y=2000000000 or y=5"},
+				{"z in (5.5, 0, 11, 1.5) and flag in ('true')", "z=5.5 and flag='true' or z=0 and flag='true' or z=11 and flag='true' or z=1.5 and flag='true'"},
+				{"name in ('Name3', 'Name10', 'Name30') and x<0", "name='Name3' and x<0 or name='Name10' and x<0 or name='Name30' and x<0"},
+				{"x not in (1, 2, 3) and name not in ('Name7')", "x<1 and name<'Name7' or x<1 and name>'Name7' or x>3 and name<'Name7' or x>3 and name>'Name7'"},
+				{"z not in (5.5) and z>5", "z>5.5"},
+		};
+		
+		int size = 2500;
+		int[] x = new int[size];
+		long[] y = new long[size];
+		double[] z = new double[size];
+		boolean[] flag = new boolean[size];
+		String[] name = new String[size];
+		List<ColumnPojo> pojos = new ArrayList<ColumnPojo>();
+		for(int i = 0; i < size; i++) {
+			x[i] = i % 17 - 8;
+			y[i] = i * 1000000000L;
+			z[i] = i % 5 == 0 ? Double.NaN : (i % 23) / 2.0;
+			flag[i] = i % 3 == 0;
+			name[i] = "Name" + (i % 31);
+			pojos.add(new ColumnPojo(x[i], y[i], z[i], flag[i], name[i]));
+		}
+		Columns columns = new Columns(size).add("x", x).add("y", y).add("z", z).add("flag", flag).add("name", name);
+		
+		for(String[] condition : conditions) {
+			PojoEvaluator evaluator = PojoEvaluator.forCondition(condition[0]);
+			PojoEvaluator equivalent = PojoEvaluator.forCondition(condition[1]);
+			CompiledEvaluator<ColumnPojo> compiled = evaluator.compile(ColumnPojo.class);
+			Predicate<ColumnPojo> predicate = evaluator.toPredicate(ColumnPojo.class);
+			
+			BitSet expected = new BitSet();
+			for(int i = 0; i < size; i++) {
+				ColumnPojo pojo = pojos.get(i);
+				boolean matches = equivalent.matches(pojo);
+				expected.set(i, matches);
+				Assert.assertEquals(condition[0], matches, evaluator.matches(pojo));
+				Assert.assertEquals(condition[0], matches, compiled.matches(pojo));
+				Assert.assertEquals(condition[0], matches, predicate.test(pojo));
+			}
+			Assert.assertEquals(condition[0], expected, evaluator.matchAll(pojos));
+			Assert.assertEquals(condition[0], expected, evaluator.matchAll(columns));
+		}
+		
+		// large lists of values
+		StringBuilder values = new StringBuilder();
+		for(int i = 0; i < 10000; i++) {
+			values.append(i == 0 ? "" : ", ").append(i * 3);
+		}
+		PojoEvaluator inEvaluator = PojoEvaluator.forCondition("field in (" + values + ")");
+		PojoEvaluator notInEvaluator = PojoEvaluator.forCondition("field not in (" + values + ")");
+		CompiledEvaluator<IntPojo> compiledIn = inEvaluator.compile(IntPojo.class);
+		for(int i = -10; i < 31000; i++) {
+			boolean expected = i >= 0 && i < 30000 && i % 3 == 0;
+			Assert.assertEquals(expected, inEvaluator.matches(new IntPojo(i)));
+			Assert.assertEquals(expected, compiledIn.matches(new IntPojo(i)));
+			Assert.assertEquals(!expected, notInEvaluator.matches(new IntPojo(i)));
+		}
+		
+		try {
+			PojoEvaluator.forCondition("field in (1, 'x')").compile(IntPojo.class);
+			Assert.fail("Expected an exception");
+		} catch (NumberFormatException e) {
+			
+		}
+		
+		// values out of range of bytes and shorts fail like the equivalent comparisons
+		AllTypePojo pojo = new AllTypePojo("cat", (byte)1, (short)1, 1, 1L, 1f, 1d);
+		AllTypePojo other = new AllTypePojo("cat", (byte)2, (short)2, 2, 2L, 2f, 2d);
+		for(String[] condition : new String[][]{{"byteField in (1, 300)", "byteField=1 or byteField=300"},
+				{"shortField in (1, 70000)", "shortField=1 or shortField=70000"}}) {
+			for(String text : condition) {
+				PojoEvaluator evaluator = PojoEvaluator.forCondition(text);
+				Assert.assertTrue(text, evaluator.matches(pojo));
+				try {
+					evaluator.matches(other);
+					Assert.fail("Expected an exception for condition: " + text);
+				} catch (NumberFormatException e) {
+					
+				}
+				try {
+					evaluator.compile(AllTypePojo.class);
+					Assert.fail("Expected an exception for condition: " + text);
+				} catch (NumberFormatException e) {
+					
+				}
+			}
+		}
+		Assert.assertTrue(PojoEvaluator.forCondition("shortField in (1, 300)").compile(AllTypePojo.class).matches(pojo));
+		Assert.assertFalse(PojoEvaluator.forCondition("shortField in (2, 300)").toPredicate(AllTypePojo.class).test(pojo));
+		Assert.assertTrue(PojoEvaluator.forCondition("byteField in (2, 1)").toPredicate(AllTypePojo.class).test(pojo));
+	}
+	
+	@Test
+	public void testValueComparer() {
+		// comparers written against the original interface are passed each comparison's parts
+		final List<String> comparisons = new ArrayList<String>();
+		ValueComparer comparer = new ValueComparer() {
+			public boolean isTrue(String identifier, boolean isMethod, String operator, String value) {
+				comparisons.add(identifier + ":" + isMethod + ":" + operator + ":" + value);
+				return value.contains("2");
+			}
+		};
+		Assert.assertTrue(CompoundConditionParser.parseCondition("getA() in (1, 2) and b<='2'", true).isTrue(comparer));
+		Assert.assertEquals(Arrays.asList("getA:true:=:1", "getA:true:=:2", "b:false:<=:'2'"), comparisons);
+		
+		Assert.assertTrue(new ObjectFieldComparer("Hat").isTrue("length", true, "=", "3"));
+		Assert.assertFalse(new ObjectFieldComparer(new IntPojo(5)).isTrue("field", false, ">", "5"));
+		Assert.assertTrue(new ObjectFieldComparer(new IntPojo(5)).isTrue("field", false, ">=", "5"));
+	}
+	
+	@Test
+	public void testIndexedCollection() {
+		// repeated values, negative zero and NaN in the indexed identifiers, and y left unindexed
+		int size = 5000;
+		List<ColumnPojo> pojos = new ArrayList<ColumnPojo>();
+		for(int i = 0; i < size; i++) {
+			double z = i % 7 == 0 ? Double.NaN : i % 11 == 0 ? -0.0 : (i % 23) / 2.0 - 5;
+			pojos.add(new ColumnPojo((i * 37) % 101 - 50, i * 1000000000L, z, i % 3 == 0, "Name" + (i % 31)));
+		}
+		IndexedCollection<ColumnPojo> collection = new IndexedCollection<ColumnPojo>(ColumnPojo.class, pojos)
+				.addIndex("x").addIndex("z").addIndex("flag").addIndex("name");
+		Assert.assertEquals(size, collection.size());
+		
+		String[] conditions = {
+				"x>=10",
+				"x<'-45'",
+				"x=0",
+				"x>40 and x<=45",
+				"x>10 and x<5",
+				"z=0",
+				"z<0 or z>5",
+				"z>='NaN'",
+				"z<=5.5 and z>'-1' and flag='false'",
+				"name='Name3'",
+				"name>'Name5' and flag='true'",
+				"name in ('Name1', 'Name2', 'Name40') and x>0",
+				"x not in (1, 2, 3) and z>0",
+				"x=5 or name='Name7' or z=1",
+				"x=5 or y<10000000000",
+				"x=5 and y<1000000000000",
+				"name=~'me1' and x>0",
+				"y>0",
+				"x=1 and x=2",
+				"x>'-50' and name='Name4'",
+		};
+		
+		for(String condition : conditions) {
+			PojoEvaluator evaluator = PojoEvaluator.forCondition(condition);
+			List<ColumnPojo> expected = pojos.stream().filter(evaluator.compile(ColumnPojo.class)).collect(Collectors.toList());
+			Assert.assertEquals(condition, expected, evaluator.filter(collection));
+			Assert.assertEquals(condition, expected.size(), evaluator.matchCount(collection));
+		}
+		
+		// matching elements are found without reading their values again
+		List<CountingPojo> counting = new ArrayList<CountingPojo>();
+		for(int i = 0; i < 100; i++) {
+			counting.add(new CountingPojo(i, 0));
+		}
+		IndexedCollection<CountingPojo> countingCollection = new IndexedCollection<CountingPojo>(CountingPojo.class, counting).addIndex("getCount()");
+		Assert.assertEquals(counting.subList(90, 95), PojoEvaluator.forCondition("getCount()>=90 and getCount()<95", true).filter(countingCollection));
+		for(CountingPojo pojo : counting) {
+			Assert.assertEquals(1, pojo.calls);
+		}
+		
+		try {
+			collection.addIndex("x");
+			Assert.fail("Expected an exception");
+		} catch (IllegalArgumentException e) {
+			
+		}
+		
+		try {
+			collection.addIndex("madeUpField");
+			Assert.fail("Expected an exception");
+		} catch (NonexistentIdentifierException e) {
+			Assert.assertEquals("madeUpField", e.getIdentifier());
+		}
+		
+		try {
+			PojoEvaluator.forCondition("flag>'true'").filter(collection);
+			Assert.fail("Expected an exception");
+		} catch (FieldTypeException e) {
+			
+		}
+		
+		try {
+			PojoEvaluator.forCondition("x='abc' or name='Name1'").filter(collection);
+			Assert.fail("Expected an exception");
+		} catch (NumberFormatException e) {
+			
+		}
+		
+		try {
+			PojoEvaluator.forCondition("x=1 and madeUpField>0").filter(collection);
+			Assert.fail("Expected an exception");
+		} catch (NonexistentIdentifierException e) {
+			Assert.assertEquals("madeUpField", e.getIdentifier());
+		}
+	}
+	
+	@Test
+	public void testBitmapIndexes() {
+		// enough rows for several chunks of rows, with values common enough for bitmap containers
+		int size = 150000;
+		List<ColumnPojo> pojos = new ArrayList<ColumnPojo>();
+		for(int i = 0; i < size; i++) {
+			double z = i % 13 == 0 ? Double.NaN : (i % 9) - 4;
+			pojos.add(new ColumnPojo(i % 7, i, z, i % 3 == 0, "Name" + (i * 31 % 5)));
+		}
+		IndexedCollection<ColumnPojo> bitmapCollection = new IndexedCollection<ColumnPojo>(ColumnPojo.class, pojos)
+				.addBitmapIndex("x").addBitmapIndex("z").addBitmapIndex("flag").addBitmapIndex("name");
+		IndexedCollection<ColumnPojo> mixedCollection = new IndexedCollection<ColumnPojo>(ColumnPojo.class, pojos)
+				.addBitmapIndex("x").addBitmapIndex("flag").addIndex("y").addIndex("name");
+		
+		String[] conditions = {
+				"x=3",
+				"x in (1, 2, 9) and flag='true'",
+				"x not in (0, 6)",
+				"x>=2 and x<5 or name='Name4'",
+				"z<0 or z>='NaN'",
+				"z=0 and name>'Name2'",
+				"flag='false' and x=1 and name not in ('Name0', 'Name1')",
+				"y<70000 and x=2 or y>=140000 and flag='true'",
+				"y>=100 and y<200 and x=5",
+				"x=8",
+		};
+		
+		for(String condition : conditions) {
+			PojoEvaluator evaluator = PojoEvaluator.forCondition(condition);
+			List<ColumnPojo> expected = pojos.stream().filter(evaluator.compile(ColumnPojo.class)).collect(Collectors.toList());
+			Assert.assertEquals(condition, expected, evaluator.filter(bitmapCollection));
+			Assert.assertEquals(condition, expected.size(), evaluator.matchCount(bitmapCollection));
+			Assert.assertEquals(condition, expected, evaluator.filter(mixedCollection));
+		}
+		
+		try {
+			bitmapCollection.addIndex("x");
+			Assert.fail("Expected an exception");
+		} catch (IllegalArgumentException e) {
+			
+		}
+	}
+	
+	@Test
+	public void testRowBitmaps() {
+		// sparse, dense and empty chunks of rows combined every way
+		int size = 300000;
+		BitSet[] sets = new BitSet[4];
+		RowBitmap[] bitmaps = new RowBitmap[sets.length];
+		for(int s = 0; s < sets.length; s++) {
+			sets[s] = new BitSet(size);
+			for(int i = 0; i < size; i++) {
+				int chunk = i >>> 16;
+				if(chunk == s || (chunk + s) % 3 == 0 && (i * 7 + s) % 5 == 0 || i % 997 == s) {
+					sets[s].set(i);
+				}
+			}
+			bitmaps[s] = RowBitmap.fromSorted(sets[s].stream().toArray(), 0, sets[s].cardinality());
+			Assert.assertEquals(sets[s].cardinality(), bitmaps[s].cardinality());
+		}
+		
+		for(int a = 0; a < sets.length; a++) {
+			for(int b = 0; b < sets.length; b++) {
+				BitSet and = (BitSet)sets[a].clone();
+				and.and(sets[b]);
+				Assert.assertTrue(Arrays.equals(and.stream().toArray(), bitmaps[a].and(bitmaps[b]).toArray()));
+				
+				BitSet or = (BitSet)sets[a].clone();
+				or.or(sets[b]);
+				Assert.assertTrue(Arrays.equals(or.stream().toArray(), bitmaps[a].or(bitmaps[b]).toArray()));
+				Assert.assertEquals(or.cardinality(), bitmaps[a].or(bitmaps[b]).cardinality());
+				
+				BitSet andNot = (BitSet)sets[a].clone();
+				andNot.andNot(sets[b]);
+				Assert.assertTrue(Arrays.equals(andNot.stream().toArray(), bitmaps[a].andNot(bitmaps[b]).toArray()));
+			}
+		}
+		
+		BitSet all = new BitSet(size);
+		all.set(0, size);
+		Assert.assertTrue(Arrays.equals(all.stream().toArray(), RowBitmap.or(Arrays.asList(bitmaps)).or(RowBitmap.range(0, size)).toArray()));
+		Assert.assertTrue(Arrays.equals(new int[] {65535, 65536, 65537}, RowBitmap.range(65535, 65538).toArray()));
+		Assert.assertEquals(0, RowBitmap.range(5, 5).cardinality());
+		
+		int[] unsorted = {70000, 3, 65536, 1, 200000};
+		Assert.assertTrue(Arrays.equals(new int[] {1, 3, 65536, 70000, 200000}, RowBitmap.fromUnsorted(unsorted, unsorted.length, size).toArray()));
+		int[] reversed = sets[1].stream().toArray();
+		for(int i = 0; i < reversed.length / 2; i++) {
+			int swap = reversed[i];
+			reversed[i] = reversed[reversed.length - 1 - i];
+			reversed[reversed.length - 1 - i] = swap;
+		}
+		Assert.assertTrue(Arrays.equals(sets[1].stream().toArray(), RowBitmap.fromUnsorted(reversed, reversed.length, size).toArray()));
+	}
+	
+	@Test
+	public void testConditionMatcher() {
+		String[] conditions = {
+				"x=3",
+				"x=3 and y>10",
+				"x in (1, 2, 9) and flag='true'",
+				"x not in (0, 6)",
+				"x>=2 and x<5 or name='Name4'",
+				"x>2 and x<=3",
+				"x>4 and x<3",
+				"z<0 or z>='NaN'",
+				"z>='-1.5' and name>'Name2'",
+				"z>0",
+				"z='-0.0'",
+				"flag='false' and x=1 and name not in ('Name0', 'Name1')",
+				"y<20 and x=2 or y>=40 and flag='true'",
+				"name=~'ame3' and y<=30",
+				"name!~'1'",
+				"name>='Name1' and name<'Name3'",
+				"x<2147483647",
+				"x>2147483647",
+		};
+		List<ColumnPojo> pojos = new ArrayList<ColumnPojo>();
+		for(int i = 0; i < 60; i++) {
+			double z = i % 13 == 0 ? Double.NaN : i % 11 == 0 ? -0.0 : (i % 9) - 4;
+			pojos.add(new ColumnPojo(i % 7, i, z, i % 3 == 0, "Name" + (i * 31 % 5)));
+		}
+		
+		ConditionMatcher<ColumnPojo, String> matcher = new ConditionMatcher<ColumnPojo, String>(ColumnPojo.class);
+		for(String condition : conditions) {
+			matcher.add(condition, PojoEvaluator.forCondition(condition));
+		}
+		Assert.assertEquals(conditions.length, matcher.size());
+		
+		for(int round = 0; round < 3; round++) {
+			for(ColumnPojo pojo : pojos) {
+				HashSet<String> expected = new HashSet<String>();
+				for(String condition : conditions) {
+					if(matcher.remove(condition) || round == 0) {
+						matcher.add(condition, PojoEvaluator.forCondition(condition));
+					}
+					if(PojoEvaluator.forCondition(condition).compile(ColumnPojo.class).test(pojo)) {
+						expected.add(condition);
+					}
+				}
+				Assert.assertEquals(expected, matcher.match(pojo));
+			}
+			
+			// removing every other subscription, then adding them back, reuses their slots
+			for(int i = round % 2; i < conditions.length; i += 2) {
+				Assert.assertTrue(matcher.remove(conditions[i]));
+			}
+			for(int i = round % 2; i < conditions.length; i += 2) {
+				matcher.add(conditions[i], PojoEvaluator.forCondition(conditions[i]));
+			}
+		}
+		
+		Assert.assertFalse(matcher.remove("x=100"));
+		try {
+			matcher.add("x=3", PojoEvaluator.forCondition("x=4"));
+			Assert.fail("Expected an exception");
+		} catch (IllegalArgumentException e) {
+			
+		}
+		try {
+			matcher.add("missing", PojoEvaluator.forCondition("missing=4"));
+			Assert.fail("Expected an exception");
+		} catch (NonexistentIdentifierException e) {
+			
+		}
+		Assert.assertEquals(conditions.length, matcher.size());
+	}
+	
+	private static Condition optimize(String condition) {
+		return ConditionOptimizer.optimize(CompoundConditionParser.parseCondition(condition, false));
+	}
+	
 	@Test
 	public void testInvalidFieldType() {
 		DatePojo datePojo = new DatePojo(Calendar.getInstance().getTime());
@@ -658,6 +1488,158 @@ public class PojoEvaluatorTests {
 		}
 	}
 	
+	@Test
+	public void testCompiledEvaluator() {
+		CompiledEvaluator<AllTypePojo> evaluator = PojoEvaluator.forCondition(
+				"stringField=~'AT' and byteField<=5 and shortField>1 or integerField=3 or longField>=10 and floatField<1.5 and doubleField>2").compile(AllTypePojo.class);
+		Assert.assertEquals(AllTypePojo.class, evaluator.getPojoClass());
+		Assert.assertTrue(evaluator.matches(new AllTypePojo("cat", (byte)5, (short)2, 0, 0L, 0f, 0d)));
+		Assert.assertFalse(evaluator.matches(new AllTypePojo("dog", (byte)5, (short)2, 0, 0L, 0f, 0d)));
+		Assert.assertFalse(evaluator.matches(new AllTypePojo("cat", (byte)6, (short)2, 0, 0L, 0f, 0d)));
+		Assert.assertTrue(evaluator.matches(new AllTypePojo("dog", (byte)6, (short)2, 3, 0L, 0f, 0d)));
+		Assert.assertTrue(evaluator.matches(new AllTypePojo("dog", (byte)6, (short)2, 0, 10L, 1.4f, 2.1d)));
+		Assert.assertFalse(evaluator.matches(new AllTypePojo("dog", (byte)6, (short)2, 0, 10L, 1.5f, 2.1d)));
+		
+		CompiledEvaluator<BooleanPojo> booleanEvaluator = PojoEvaluator.forCondition("field='true' or getField()='true'", true).compile(BooleanPojo.class);
+		Assert.assertTrue(booleanEvaluator.matches(new BooleanPojo(true)));
+		Assert.assertFalse(booleanEvaluator.matches(new BooleanPojo(false)));
+		
+		CompiledEvaluator<String> methodEvaluator = PojoEvaluator.forCondition("trim()='' or toString()='Hat' and length()=3", true).compile(String.class);
+		Assert.assertTrue(methodEvaluator.matches("    "));
+		Assert.assertTrue(methodEvaluator.matches("Hat"));
+		Assert.assertFalse(methodEvaluator.matches("Hat "));
+	}
+	
+	@Test
+	public void testCompiledEvaluatorValidatesIdentifiers() {
+		try {
+			PojoEvaluator.forCondition("madeUpField=''").compile(IntPojo.class);
+			Assert.fail("Expected an exception");
+		} catch (NonexistentIdentifierException e) {
+			Assert.assertEquals("madeUpField", e.getIdentifier());
+			Assert.assertEquals(IntPojo.class, e.getPojoClass());
+		}
+		
+		try {
+			PojoEvaluator.forCondition("field=''").compile(DatePojo.class);
+			Assert.fail("Expected an exception");
+		} catch (FieldTypeException e) {
+			Assert.assertEquals(Date.class, e.getFieldType());
+		}
+		
+		for(String condition : new String[]{"field=~'12'", "field!~'12'"}) {
+			try {
+				PojoEvaluator.forCondition(condition).compile(IntPojo.class);
+				Assert.fail("Expected an exception for condition: " + condition);
+			} catch (FieldTypeException e) {
+				
+			}
+		}
+		
+		for(String operator : new String[]{">", "<", ">=", "<=", "=~", "!~"}) {
+			try {
+				PojoEvaluator.forCondition("field" + operator + "'false'").compile(BooleanPojo.class);
+				Assert.fail("Should've thrown exception for operator: " + operator);
+			} catch (FieldTypeException e) {
+				
+			}
+		}
+	}
+	
+	@Test
+	public void testCompiledAdaptiveEvaluator() {
+		String condition = "stringField=~'AT' and byteField<=5 and shortField>1 or integerField=3 or longField>=10 and floatField<1.5 and doubleField>2";
+		CompiledEvaluator<AllTypePojo> compiled = PojoEvaluator.forCondition(condition).compile(AllTypePojo.class);
+		CompiledEvaluator<AllTypePojo> adaptive = PojoEvaluator.forCondition(condition).compileAdaptive(AllTypePojo.class);
+		String[] strings = {"cat", "dog", "hat"};
+		for(int i = 0; i < 100000; i++) {
+			AllTypePojo pojo = new AllTypePojo(strings[i % 3], (byte)(i % 7), (short)(i % 3), i % 5, (long)(i % 13), (i % 4) * 0.5f, (i % 5) * 0.75d);
+			Assert.assertEquals(compiled.matches(pojo), adaptive.matches(pojo));
+		}
+		
+		// the slow method never decides the result, so it moves behind the field in both
+		for(String adaptiveCondition : new String[]{"getSlow()>0 and field>5", "getSlow()<0 or field=0"}) {
+			SlowPojo pojo = new SlowPojo(0);
+			CompiledEvaluator<SlowPojo> evaluator = PojoEvaluator.forCondition(adaptiveCondition, true).compileAdaptive(SlowPojo.class);
+			boolean expected = evaluator.matches(pojo);
+			for(int i = 0; i < 100000; i++) {
+				Assert.assertEquals(expected, evaluator.matches(pojo));
+			}
+			
+			Assert.assertTrue("slow method was called " + pojo.calls + " times", pojo.calls < 50000);
+			Assert.assertEquals(1, ((CompiledCondition.Adaptive)evaluator.getCondition()).getOrder()[0]);
+		}
+		
+		// a null String behind a condition that decides the result is never read, in samples
+		// or after a reorder, while one that is reached fails the same way every time
+		CompiledEvaluator<AllTypePojo> nullable = PojoEvaluator.forCondition("integerField=1 or stringField=~'AT'").compileAdaptive(AllTypePojo.class);
+		AllTypePojo decided = new AllTypePojo(null, (byte)0, (short)0, 1, 0L, 0f, 0d);
+		AllTypePojo undecided = new AllTypePojo(null, (byte)0, (short)0, 2, 0L, 0f, 0d);
+		AllTypePojo matching = new AllTypePojo("cat", (byte)0, (short)0, 2, 0L, 0f, 0d);
+		for(int i = 0; i < 100000; i++) {
+			Assert.assertTrue(nullable.matches(decided));
+			Assert.assertTrue(nullable.matches(matching));
+			if(i % 100 == 0) {
+				try {
+					nullable.matches(undecided);
+					Assert.fail("Expected an exception");
+				} catch (NullPointerException e) {
+					
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testToPredicate() {
+		Predicate<AllTypePojo> predicate = PojoEvaluator.forCondition(
+				"stringField=~'AT' and byteField<=5 and shortField>1 or integerField=3 or longField>=10 and floatField<1.5 and doubleField>2").toPredicate(AllTypePojo.class);
+		Assert.assertTrue(predicate.test(new AllTypePojo("cat", (byte)5, (short)2, 0, 0L, 0f, 0d)));
+		Assert.assertFalse(predicate.test(new AllTypePojo("dog", (byte)5, (short)2, 0, 0L, 0f, 0d)));
+		Assert.assertTrue(predicate.test(new AllTypePojo("dog", (byte)6, (short)2, 3, 0L, 0f, 0d)));
+		Assert.assertTrue(predicate.test(new AllTypePojo("dog", (byte)6, (short)2, 0, 10L, 1.4f, 2.1d)));
+		Assert.assertFalse(predicate.test(new AllTypePojo("dog", (byte)6, (short)2, 0, 10L, 1.5f, 2.1d)));
+		Assert.assertFalse(predicate.test(new AllTypePojo("dog", (byte)6, (short)2, 0, 10L, Float.NaN, 2.1d)));
+		assertGenerated(predicate);
+		
+		Predicate<String> methodPredicate = PojoEvaluator.forCondition("trim()='' or toString()='Hat' and length()=3", true).toPredicate(String.class);
+		Assert.assertTrue(methodPredicate.test("    "));
+		Assert.assertTrue(methodPredicate.test("Hat"));
+		Assert.assertFalse(methodPredicate.test("Hat "));
+		assertGenerated(methodPredicate);
+		
+		// public fields of public classes are read directly rather than through handles
+		Predicate<PublicPojo> publicPredicate = PojoEvaluator.forCondition("number>2 and name='a'").toPredicate(PublicPojo.class);
+		Assert.assertTrue(publicPredicate.test(new PublicPojo(3, "a")));
+		Assert.assertFalse(publicPredicate.test(new PublicPojo(2, "a")));
+		Assert.assertFalse(publicPredicate.test(new PublicPojo(3, "b")));
+		assertGenerated(publicPredicate);
+		
+		// conditions that aren't valid for the class fail when evaluated, like matches does
+		Predicate<IntPojo> invalidPredicate = PojoEvaluator.forCondition("madeUpField=''").toPredicate(IntPojo.class);
+		try {
+			invalidPredicate.test(new IntPojo(0));
+			Assert.fail("Expected an exception");
+		} catch (NonexistentIdentifierException e) {
+			Assert.assertEquals("madeUpField", e.getIdentifier());
+		}
+	}
+	
+	private static void assertGenerated(Predicate<?> predicate) {
+		Assert.assertFalse(predicate instanceof CompiledEvaluator);
+		Assert.assertTrue(predicate.getClass().getName(), predicate.getClass().getName().startsWith("org.cp.pojoconditions.generated."));
+	}
+	
+	public static class PublicPojo {
+		public final int number;
+		public final String name;
+		
+		public PublicPojo(int number, String name) {
+			this.number = number;
+			this.name = name;
+		}
+	}
+	
 	private static class IntPojo {
 		private final int field;
 		public IntPojo(int field) {
@@ -694,6 +1676,64 @@ public class PojoEvaluatorTests {
 		}
 	}
 
+	private static class ColumnPojo {
+		private final int x;
+		private final long y;
+		private final double z;
+		private final boolean flag;
+		private final String name;
+		
+		public ColumnPojo(int x, long y, double z, boolean flag, String name) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.flag = flag;
+			this.name = name;
+		}
+	}
+	
+	private static class ObjectPojo {
+		private final Object field;
+		
+		public ObjectPojo(Object field) {
+			this.field = field;
+		}
+	}
+	
+	private static class CountingPojo {
+		private final int count;
+		private final int field;
+		private int calls;
+		
+		public CountingPojo(int count, int field) {
+			this.count = count;
+			this.field = field;
+		}
+		
+		public int getCount() {
+			calls++;
+			return count;
+		}
+	}
+	
+	private static class SlowPojo {
+		private final int field;
+		private int calls;
+		
+		public SlowPojo(int field) {
+			this.field = field;
+		}
+		
+		public int getSlow() {
+			calls++;
+			int slow = 1;
+			for(int i = 0; i < 1000; i++) {
+				slow = slow * 31 + i;
+			}
+			return slow == 0 ? 2 : 1;
+		}
+	}
+	
 	private static class BooleanPojo {
 		private final boolean field;
 		
@@ -0,0 +1,99 @@
+package org.cp.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A pojo with one field of each commonly used type, and a getter for each so
+ * that the same conditions can be written against fields or methods.  Every
+ * numeric field is uniformly distributed over [0, 1000), and the string field
+ * holds the int field zero padded to three digits, so that a comparison
+ * against a threshold selects a known fraction of the objects.
+ */
+public class BenchmarkPojo {
+	public static final int RANGE = 1000;
+	
+	private final int intField;
+	private final long longField;
+	private final double doubleField;
+	private final String stringField;
+	private final boolean booleanField;
+	
+	public BenchmarkPojo(int intField, long longField, double doubleField, boolean booleanField) {
+		this.intField = intField;
+		this.longField = longField;
+		this.doubleField = doubleField;
+		this.stringField = String.format("%03d", intField);
+		this.booleanField = booleanField;
+	}
+	
+	public int getIntField() {
+		return intField;
+	}
+	
+	public long getLongField() {
+		return longField;
+	}
+	
+	public double getDoubleField() {
+		return doubleField;
+	}
+	
+	public String getStringField() {
+		return stringField;
+	}
+	
+	public boolean getBooleanField() {
+		return booleanField;
+	}
+	
+	/**
+	 * Builds a list of random pojos.  The same seed always builds the same list.
+	 */
+	public static List<BenchmarkPojo> randomPojos(int size, long seed) {
+		Random random = new Random(seed);
+		List<BenchmarkPojo> pojos = new ArrayList<BenchmarkPojo>(size);
+		for(int i = 0; i < size; i++) {
+			pojos.add(new BenchmarkPojo(random.nextInt(RANGE), random.nextInt(RANGE), random.nextDouble() * RANGE, random.nextBoolean()));
+		}
+		return pojos;
+	}
+	
+	/**
+	 * Builds a condition matching roughly the given fraction of random pojos.
+	 * @param typeMix which fields the condition reads: int, long, double, string,
+	 *        or mixed, which reads an int, a string and a double
+	 * @param methods true to read values through the getters instead of the fields
+	 */
+	public static String condition(String typeMix, double selectivity, boolean methods) {
+		int threshold = (int)Math.round(selectivity * RANGE);
+		
+		if(typeMix.equals("int")) {
+			return identifier("intField", methods) + "<" + threshold;
+		} else if(typeMix.equals("long")) {
+			return identifier("longField", methods) + "<" + threshold;
+		} else if(typeMix.equals("double")) {
+			return identifier("doubleField", methods) + "<" + threshold;
+		} else if(typeMix.equals("string")) {
+			return identifier("stringField", methods) + "<'" + String.format("%03d", threshold) + "'";
+		} else if(typeMix.equals("mixed")) {
+			// the string and double comparisons are always true, so only the int comparison selects
+			return identifier("intField", methods) + "<" + threshold + " and " 
+					+ identifier("stringField", methods) + ">='000' and " 
+					+ identifier("doubleField", methods) + ">=0";
+		}
+		
+		throw new IllegalArgumentException("Unknown type mix: " + typeMix);
+	}
+	
+	/**
+	 * Returns the name of a field, or of its getter when methods is true.
+	 */
+	static String identifier(String field, boolean methods) {
+		if(!methods) {
+			return field;
+		}
+		return "get" + Character.toUpperCase(field.charAt(0)) + field.substring(1) + "()";
+	}
+}
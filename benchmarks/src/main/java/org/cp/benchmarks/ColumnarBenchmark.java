@@ -0,0 +1,66 @@
+package org.cp.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.cp.pojoconditions.Columns;
+import org.cp.pojoconditions.PojoEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares counting the matches of the same data held as columns and as
+ * pojos, for a condition on two numeric fields.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ColumnarBenchmark {
+	@Param({"1000000", "10000000"})
+	public int size;
+	
+	@Param({"0.01", "0.5", "0.99"})
+	public double selectivity;
+	
+	private List<BenchmarkPojo> pojos;
+	private Columns columns;
+	private PojoEvaluator evaluator;
+	
+	@Setup
+	public void setup() {
+		pojos = BenchmarkPojo.randomPojos(size, 42);
+		int[] intColumn = new int[size];
+		double[] doubleColumn = new double[size];
+		for(int i = 0; i < size; i++) {
+			intColumn[i] = pojos.get(i).getIntField();
+			doubleColumn[i] = pojos.get(i).getDoubleField();
+		}
+		columns = new Columns(size).add("intField", intColumn).add("doubleField", doubleColumn);
+		
+		// the double comparison is always true, so only the int comparison selects
+		int threshold = (int)Math.round(selectivity * BenchmarkPojo.RANGE);
+		evaluator = PojoEvaluator.forCondition("intField<" + threshold + " and doubleField>=0");
+	}
+	
+	@Benchmark
+	public int matchCountColumns() {
+		return evaluator.matchCount(columns);
+	}
+	
+	@Benchmark
+	public int matchCountPojos() {
+		return evaluator.matchCount(pojos);
+	}
+}
@@ -0,0 +1,86 @@
+package org.cp.benchmarks;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.cp.pojoconditions.PojoEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures filtering whole collections, across collection sizes, selectivities
+ * and the types of the fields being compared.  The largest size needs a big heap,
+ * so the forks are given one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class FilterBenchmark {
+	@Param({"1000", "100000", "10000000"})
+	public int size;
+	
+	@Param({"0.01", "0.5", "0.99"})
+	public double selectivity;
+	
+	@Param({"int", "string", "mixed"})
+	public String typeMix;
+	
+	@Param({"false", "true"})
+	public boolean methods;
+	
+	private List<BenchmarkPojo> pojos;
+	private PojoEvaluator evaluator;
+	private Predicate<BenchmarkPojo> predicate;
+	
+	@Setup
+	public void setup() {
+		pojos = BenchmarkPojo.randomPojos(size, 42);
+		evaluator = PojoEvaluator.forCondition(BenchmarkPojo.condition(typeMix, selectivity, methods), methods);
+		predicate = evaluator.toPredicate(BenchmarkPojo.class);
+	}
+	
+	@Benchmark
+	public void filterIterable(Blackhole blackhole) {
+		for(BenchmarkPojo pojo : evaluator.filter(pojos)) {
+			blackhole.consume(pojo);
+		}
+	}
+	
+	@Benchmark
+	public void filterIterator(Blackhole blackhole) {
+		Iterator<BenchmarkPojo> iterator = evaluator.filter(pojos.iterator());
+		while(iterator.hasNext()) {
+			blackhole.consume(iterator.next());
+		}
+	}
+	
+	@Benchmark
+	public BitSet matchAllBatch() {
+		return evaluator.matchAll(pojos);
+	}
+	
+	@Benchmark
+	public void filterGeneratedPredicate(Blackhole blackhole) {
+		for(BenchmarkPojo pojo : pojos) {
+			if(predicate.test(pojo)) {
+				blackhole.consume(pojo);
+			}
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package org.cp.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.cp.pojoconditions.PojoEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of matching a single object, for each way of evaluating a
+ * condition and for field and method identifiers.  Each invocation matches a
+ * small array of objects so the loop overhead and branch history are amortized;
+ * the reported time is per object.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MatchBenchmark {
+	private static final int OBJECTS = 1024;
+	
+	@Param({"int", "long", "double", "string", "mixed"})
+	public String typeMix;
+	
+	@Param({"false", "true"})
+	public boolean methods;
+	
+	@Param({"interpreted", "compiled", "generated"})
+	public String evaluation;
+	
+	private BenchmarkPojo[] pojos;
+	private Predicate<BenchmarkPojo> predicate;
+	
+	@Setup
+	public void setup() {
+		List<BenchmarkPojo> list = BenchmarkPojo.randomPojos(OBJECTS, 42);
+		pojos = list.toArray(new BenchmarkPojo[list.size()]);
+		predicate = predicate(PojoEvaluator.forCondition(BenchmarkPojo.condition(typeMix, 0.5, methods), methods), evaluation);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(OBJECTS)
+	public int match() {
+		int count = 0;
+		for(BenchmarkPojo pojo : pojos) {
+			if(predicate.test(pojo)) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	static Predicate<BenchmarkPojo> predicate(final PojoEvaluator evaluator, String evaluation) {
+		if(evaluation.equals("interpreted")) {
+			return new Predicate<BenchmarkPojo>() {
+				public boolean test(BenchmarkPojo pojo) {
+					return evaluator.matches(pojo);
+				}
+			};
+		} else if(evaluation.equals("compiled")) {
+			return evaluator.compile(BenchmarkPojo.class);
+		} else if(evaluation.equals("generated")) {
+			return evaluator.toPredicate(BenchmarkPojo.class);
+		}
+		throw new IllegalArgumentException("Unknown evaluation: " + evaluation);
+	}
+}
@@ -0,0 +1,72 @@
+package org.cp.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.cp.pojoconditions.PojoEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how parallel filtering scales with the number of threads.  Running
+ * every thread count on the same machine gives the scaling curve; thread counts
+ * beyond the number of cores only show the cost of oversubscription.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ParallelFilterBenchmark {
+	@Param({"1000000", "10000000"})
+	public int size;
+	
+	@Param({"1", "2", "4", "8", "16", "32", "64"})
+	public int threads;
+	
+	@Param({"true", "false"})
+	public boolean preserveOrder;
+	
+	private List<BenchmarkPojo> pojos;
+	private PojoEvaluator evaluator;
+	private ForkJoinPool pool;
+	private ExecutorService executor;
+	
+	@Setup
+	public void setup() {
+		pojos = BenchmarkPojo.randomPojos(size, 42);
+		evaluator = PojoEvaluator.forCondition(BenchmarkPojo.condition("mixed", 0.5, false));
+		pool = new ForkJoinPool(threads);
+		executor = Executors.newFixedThreadPool(threads);
+	}
+	
+	@TearDown
+	public void tearDown() {
+		pool.shutdown();
+		executor.shutdown();
+	}
+	
+	@Benchmark
+	public List<BenchmarkPojo> forkJoinPool() {
+		return evaluator.filterParallel(pojos, pool, preserveOrder);
+	}
+	
+	@Benchmark
+	public List<BenchmarkPojo> executor() {
+		return evaluator.filterParallel(pojos, executor, preserveOrder);
+	}
+}
@@ -0,0 +1,55 @@
+package org.cp.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.cp.condition.CompoundConditionParser;
+import org.cp.condition.Condition;
+import org.cp.ordering.IdentifierOrder;
+import org.cp.ordering.OrderByParser;
+import org.cp.pojoconditions.ParserEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing of conditions and order by clauses with each parser engine.
+ * The parse caches are bypassed so that every invocation really parses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ParseBenchmark {
+	private static final String SIMPLE_CONDITION = "intField<500";
+	private static final String COMPOUND_CONDITION = 
+			"intField<500 and stringField>='050' or getDoubleField()>=250.5 and booleanField='true' or longField<=10";
+	private static final String ORDER_BY = "order by intField, getStringField() desc, doubleField asc";
+	
+	@Param({"GRAPPA", "RECURSIVE_DESCENT"})
+	public ParserEngine engine;
+	
+	@Benchmark
+	public Condition parseSimpleCondition() {
+		return CompoundConditionParser.parseCondition(SIMPLE_CONDITION, true, engine);
+	}
+	
+	@Benchmark
+	public Condition parseCompoundCondition() {
+		return CompoundConditionParser.parseCondition(COMPOUND_CONDITION, true, engine);
+	}
+	
+	@Benchmark
+	public List<IdentifierOrder> parseOrderBy() {
+		return OrderByParser.parseOrderBy(ORDER_BY, true, engine);
+	}
+}